@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Jira descriptions and comments to benchmark conversion with. Most kinds are
+ * generated from a fixed seed, so runs are comparable. {@link Kind#SAMPLES}
+ * are anonymized descriptions and comments in a file in the format written by
+ * {@link io.pivotal.pre.MarkupConverter}, by default "corpus/jira-samples.txt",
+ * or the file in the "corpus.file" system property, e.g. a "markup-before.txt"
+ * dump of a Jira project.
+ */
+public final class ConversionCorpus {
+
+	private static final String[] WORDS = {
+			"the", "bean", "context", "request", "handler", "is", "not", "when", "with", "configuration",
+			"should", "be", "registered", "after", "refresh", "converter", "message", "a", "of", "for"};
+
+	private static final String[] PROJECTS = {"SPR", "SPR", "SPR", "SEC", "DATAREST", "INT"};
+
+
+	public enum Kind {
+
+		/** A sentence or two, with some inline markup */
+		SHORT,
+
+		/** Exceptions, in "noformat" and inline, with pointcut expressions */
+		STACK_TRACE,
+
+		/** Jira tables with heading rows */
+		TABLE,
+
+		/** "code" blocks with some text around them */
+		CODE,
+
+		/** Ordered and unordered lists nested a few levels deep, with tasks */
+		NESTED_LIST,
+
+		/** Text with many issue keys, issue links, and raw Jira links */
+		ISSUE_KEYS,
+
+		/** Anonymized descriptions and comments from Jira */
+		SAMPLES
+	}
+
+
+	private ConversionCorpus() {
+	}
+
+
+	public static List<String> create(Kind kind, int size, long seed) throws IOException {
+		if (kind == Kind.SAMPLES) {
+			return loadSamples();
+		}
+		Random random = new Random(seed);
+		List<String> texts = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			texts.add(generate(kind, random));
+		}
+		return texts;
+	}
+
+	private static String generate(Kind kind, Random random) {
+		StringBuilder sb = new StringBuilder();
+		switch (kind) {
+			case SHORT:
+				sentence(sb, random);
+				if (random.nextBoolean()) {
+					sentence(sb.append(' '), random);
+				}
+				break;
+			case STACK_TRACE:
+				sentence(sb, random);
+				sb.append(random.nextBoolean() ? "\n{noformat}\n" : "\n");
+				stackTrace(sb, random);
+				sb.append(random.nextBoolean() ? "{noformat}\n" : "\n");
+				sb.append("The pointcut is execution(* org.example..*.*(..)) and *.xml files are in classpath*:/META-INF/*\n");
+				stackTrace(sb, random);
+				break;
+			case TABLE:
+				sentence(sb, random).append("\n\n||Module||Annotation||Supported||Attribute||\n");
+				for (int i = 0, rows = 3 + random.nextInt(15); i < rows; i++) {
+					sb.append("|spring-").append(word(random)).append("|{{@").append(StringUtils.capitalize(word(random)))
+							.append("}}|").append(random.nextBoolean() ? "(/)" : "(x)").append('|')
+							.append(word(random)).append("|\n");
+				}
+				break;
+			case CODE:
+				sentence(sb, random).append("\n{code:java}\n");
+				for (int i = 0, lines = 5 + random.nextInt(30); i < lines; i++) {
+					sb.append("\tpublic ").append(StringUtils.capitalize(word(random))).append(' ').append(word(random))
+							.append("(@Valid ").append(StringUtils.capitalize(word(random))).append(" item) { return null; }\n");
+				}
+				sb.append("{code}\n");
+				sentence(sb, random).append(" {{").append(word(random)).append("()}} ");
+				sentence(sb, random);
+				break;
+			case NESTED_LIST:
+				for (int i = 0, items = 5 + random.nextInt(20); i < items; i++) {
+					int depth = 1 + random.nextInt(3);
+					for (int j = 0; j < depth; j++) {
+						sb.append(random.nextInt(3) == 0 ? '*' : (j == 0 ? '#' : random.nextBoolean() ? '#' : '-'));
+					}
+					sb.append(' ').append(random.nextInt(4) == 0 ? "(x) " : random.nextInt(4) == 0 ? "(/) " : "");
+					sentence(sb, random).append('\n');
+				}
+				break;
+			case ISSUE_KEYS:
+				for (int i = 0, count = 5 + random.nextInt(20); i < count; i++) {
+					String key = PROJECTS[random.nextInt(PROJECTS.length)] + "-" + (1 + random.nextInt(2000));
+					switch (random.nextInt(3)) {
+						case 0:
+							sb.append("See ").append(key).append(", ");
+							break;
+						case 1:
+							sb.append("[").append(key).append("|https://jira.spring.io/browse/").append(key).append("] ");
+							break;
+						default:
+							sb.append("https://jira.spring.io/browse/").append(key).append(" and ");
+					}
+					sentence(sb, random).append('\n');
+				}
+				break;
+			default:
+				throw new IllegalArgumentException(kind.name());
+		}
+		return sb.toString();
+	}
+
+	private static StringBuilder sentence(StringBuilder sb, Random random) {
+		for (int i = 0, words = 5 + random.nextInt(15); i < words; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			switch (random.nextInt(20)) {
+				case 0:
+					sb.append("{{").append(word(random)).append("}}");
+					break;
+				case 1:
+					sb.append('*').append(word(random)).append('*');
+					break;
+				case 2:
+					sb.append("[~user").append(random.nextInt(50)).append(']');
+					break;
+				default:
+					sb.append(word(random));
+			}
+		}
+		return sb.append('.');
+	}
+
+	private static void stackTrace(StringBuilder sb, Random random) {
+		sb.append("org.example.").append(StringUtils.capitalize(word(random))).append("Exception: ").append(word(random)).append('\n');
+		for (int i = 0, frames = 10 + random.nextInt(40); i < frames; i++) {
+			String type = StringUtils.capitalize(word(random));
+			sb.append("\tat org.example.").append(word(random)).append('.').append(type).append('.')
+					.append(word(random)).append('(').append(type).append(".java:").append(random.nextInt(900))
+					.append(")\n");
+		}
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+
+	private static List<String> loadSamples() throws IOException {
+		String file = System.getProperty("corpus.file");
+		String content;
+		if (StringUtils.hasText(file)) {
+			content = new String(Files.readAllBytes(new File(file).toPath()), StandardCharsets.UTF_8);
+		}
+		else {
+			try (InputStream in = new ClassPathResource("corpus/jira-samples.txt").getInputStream()) {
+				content = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+			}
+		}
+		return parseDump(content);
+	}
+
+	/**
+	 * Split a dump into descriptions and comments, separated by lines starting
+	 * with "==========" before each issue, and lines of dashes before comments.
+	 */
+	static List<String> parseDump(String content) {
+		List<String> texts = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		for (String line : content.split("\n", -1)) {
+			if (line.startsWith("==========") || line.matches("-{20,}")) {
+				addText(texts, sb);
+			}
+			else {
+				sb.append(line).append('\n');
+			}
+		}
+		addText(texts, sb);
+		return texts;
+	}
+
+	private static void addText(List<String> texts, StringBuilder sb) {
+		String text = sb.toString().trim();
+		if (!text.isEmpty()) {
+			texts.add(text);
+		}
+		sb.setLength(0);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.jira.JiraClient;
+import io.pivotal.jira.JiraConfig;
+import io.pivotal.jira.JiraSimulator;
+import io.pivotal.jira.SyntheticJiraProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for loading all issues of a {@link SyntheticJiraProject} from a
+ * local {@link JiraSimulator}, one operation per project, with search pages
+ * only, and with commits from dev-status requests as in the migration. The
+ * latency parameters are per response, and per issue of a search page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JiraFetchBenchmarks {
+
+	private static final String JQL = "project = SPR ORDER BY key ASC";
+
+	@Param("5000")
+	public int issueCount;
+
+	@Param({"0", "50"})
+	public int latencyMillis;
+
+	@Param({"0", "200"})
+	public int latencyPerIssueMicros;
+
+
+	private JiraSimulator simulator;
+
+	private JiraClient client;
+
+
+	@Setup
+	public void setup() {
+		this.simulator = new JiraSimulator(new SyntheticJiraProject("SPR", this.issueCount, 42));
+		this.simulator.setResponseLatency(Duration.ofMillis(this.latencyMillis));
+		this.simulator.setSearchLatencyPerIssue(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(this.latencyPerIssueMicros)));
+		this.simulator.start(0);
+
+		JiraConfig jiraConfig = new JiraConfig();
+		jiraConfig.setBaseUrl(this.simulator.getBaseUrl());
+		jiraConfig.setProjectId("SPR");
+		jiraConfig.setDevelopmentField(SyntheticJiraProject.DEVELOPMENT_FIELD);
+		this.client = new JiraClient(jiraConfig);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.simulator.close();
+	}
+
+
+	@Benchmark
+	public void findIssues(Blackhole blackhole) {
+		blackhole.consume(this.client.findIssues(JQL));
+	}
+
+	@Benchmark
+	public void streamIssuesVotesAndCommits(Blackhole blackhole) {
+		this.client.streamIssuesVotesAndCommits(JQL, issue -> true).doOnNext(blackhole::consume).blockLast();
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import io.pivotal.jira.JiraConfig;
+import io.pivotal.post.JiraLinkConverter;
+import io.pivotal.post.PostMigrationConverter;
+import io.pivotal.util.IssueMappingIndex;
+import io.pivotal.util.MarkdownEngine;
+import io.pivotal.util.TextileEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for converting a corpus of Jira descriptions and comments, one
+ * operation per corpus. The post-migration converters are given the Markdown
+ * that {@link MarkdownEngine} produces for the corpus. Run with the "jmh" Maven
+ * profile, which also reports the allocation rate with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkupConversionBenchmarks {
+
+	@Param({"SHORT", "STACK_TRACE", "TABLE", "CODE", "NESTED_LIST", "ISSUE_KEYS", "SAMPLES"})
+	public ConversionCorpus.Kind corpus;
+
+	@Param("200")
+	public int corpusSize;
+
+
+	private List<String> jiraMarkup;
+
+	private List<String> markdown;
+
+	private MarkdownEngine markdownEngine;
+
+	private TextileEngine textileEngine;
+
+	private PostMigrationConverter postMigrationConverter;
+
+	private JiraLinkConverter jiraLinkConverter;
+
+
+	@Setup
+	public void setup() throws IOException {
+		JiraConfig jiraConfig = new JiraConfig();
+		jiraConfig.setBaseUrl("https://jira.spring.io");
+		jiraConfig.setProjectId("SPR");
+		jiraConfig.setLinkedProjects(Arrays.asList("SPR", "SEC", "DATAREST", "INT"));
+
+		this.markdownEngine = new MarkdownEngine();
+		this.markdownEngine.setJiraConfig(jiraConfig);
+		this.textileEngine = new TextileEngine();
+		this.textileEngine.setJiraConfig(jiraConfig);
+
+		IssueMappingIndex issueMappings = new IssueMappingIndex();
+		for (int i = 1; i <= 2000; i++) {
+			issueMappings.put("SPR-" + i, 10000 + i);
+		}
+		this.postMigrationConverter = new PostMigrationConverter(new NoOpWriter());
+		this.jiraLinkConverter = new JiraLinkConverter("SPR", issueMappings, new NoOpWriter());
+
+		this.jiraMarkup = ConversionCorpus.create(this.corpus, this.corpusSize, 42);
+		this.markdown = this.jiraMarkup.stream().map(this.markdownEngine::convert).collect(Collectors.toList());
+	}
+
+
+	@Benchmark
+	public void markdownEngine(Blackhole blackhole) {
+		for (String text : this.jiraMarkup) {
+			blackhole.consume(this.markdownEngine.convert(text));
+		}
+	}
+
+	@Benchmark
+	public void textileEngine(Blackhole blackhole) {
+		for (String text : this.jiraMarkup) {
+			blackhole.consume(this.textileEngine.convert(text));
+		}
+	}
+
+	@Benchmark
+	public void postMigrationConverter(Blackhole blackhole) {
+		AtomicBoolean failed = new AtomicBoolean();
+		for (String text : this.markdown) {
+			blackhole.consume(this.postMigrationConverter.convert(text, failed));
+		}
+	}
+
+	@Benchmark
+	public void jiraLinkConverter(Blackhole blackhole) {
+		for (String text : this.markdown) {
+			blackhole.consume(this.jiraLinkConverter.convert(text));
+		}
+	}
+
+
+	/**
+	 * For failures written by the converters, which would otherwise accumulate.
+	 */
+	private static class NoOpWriter extends Writer {
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
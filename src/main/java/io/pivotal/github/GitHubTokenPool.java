@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.pivotal.util.RateLimitHelper;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * Pool of access tokens to spread read requests across the rate limit budgets
+ * of several tokens. Each token has its own {@link RateLimitHelper}, updated
+ * from the responses to requests made with it.
+ *
+ * <p>Read requests use the token with the most remaining budget. All other
+ * requests use the write token, so that updates come from the same identity.
+ * The write token is also used for reads.
+ */
+public class GitHubTokenPool {
+
+	private final Credential writeCredential;
+
+	private final List<Credential> credentials = new ArrayList<>();
+
+
+	public GitHubTokenPool(String writeToken) {
+		this(writeToken, Collections.emptyList());
+	}
+
+	/**
+	 * @param writeToken the token for all write requests
+	 * @param readTokens additional tokens for read requests only
+	 */
+	public GitHubTokenPool(String writeToken, List<String> readTokens) {
+		Assert.notNull(writeToken, "Write token is required");
+		this.writeCredential = new Credential(writeToken);
+		this.credentials.add(this.writeCredential);
+		readTokens.stream()
+				.filter(token -> !token.equals(writeToken))
+				.distinct()
+				.forEach(token -> this.credentials.add(new Credential(token)));
+	}
+
+
+	public int size() {
+		return this.credentials.size();
+	}
+
+	/**
+	 * Return the credential to use for a request with the given HTTP method.
+	 */
+	public Credential getCredential(HttpMethod method) {
+		return (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) ?
+				getReadCredential() : this.writeCredential);
+	}
+
+	public Credential getWriteCredential() {
+		return this.writeCredential;
+	}
+
+	/**
+	 * Return the credential with the most remaining budget, preferring the
+	 * write token when equal.
+	 */
+	public Credential getReadCredential() {
+		Credential result = this.writeCredential;
+		long max = result.getRateLimitHelper().getPrimaryRemaining();
+		for (Credential credential : this.credentials) {
+			long remaining = credential.getRateLimitHelper().getPrimaryRemaining();
+			if (remaining > max) {
+				result = credential;
+				max = remaining;
+			}
+		}
+		return result;
+	}
+
+
+	public static class Credential {
+
+		private final String token;
+
+		private final RateLimitHelper rateLimitHelper = new RateLimitHelper();
+
+		Credential(String token) {
+			this.token = token;
+		}
+
+		public RateLimitHelper getRateLimitHelper() {
+			return this.rateLimitHelper;
+		}
+
+		public String getAuthorizationHeader() {
+			return "token " + this.token;
+		}
+
+		@Override
+		public String toString() {
+			// Don't expose the token
+			return "Credential[..." + this.token.substring(Math.max(0, this.token.length() - 4)) + "]";
+		}
+	}
+
+}
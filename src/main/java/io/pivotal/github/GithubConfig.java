@@ -15,7 +15,9 @@
  */
 package io.pivotal.github;
 
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -30,6 +32,13 @@ import lombok.Data;
 @ConfigurationProperties(prefix="github")
 @Data
 public class GithubConfig {
+
+	/**
+	 * The root of the GitHub API. This can be changed to dry-run the migration
+	 * against a local stand-in for GitHub.
+	 */
+	String apiUrl = ReactiveGitHubClient.DEFAULT_API_URL;
+
 	/**
 	 * The github repository slug to migrate to. For example, to migrate the
 	 * issues to https://github.com/spring-projects/spring-security/issues use
@@ -51,6 +60,13 @@ public class GithubConfig {
 	 */
 	String accessToken;
 
+	/**
+	 * Additional OAuth Access Tokens to spread read requests across, in order
+	 * to use the rate limit budget of each. Updates are always made with the
+	 * {@link #getAccessToken() access token}.
+	 */
+	List<String> readAccessTokens = new ArrayList<>();
+
 	/**
 	 * <p>
 	 * If set, the migration script will attempt to delete / create a GitHub
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import io.pivotal.util.RateLimitHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.Nullable;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Non-blocking client for the GitHub API on {@link WebClient} and reactor-netty,
+ * for the issues, comments, labels, milestones and issue import endpoints of
+ * a repository.
+ *
+ * <p>Each request uses a token from the {@link GitHubTokenPool}, and obtains a
+ * permit from the {@link RateLimitHelper} of that token. When a permit is not
+ * immediately available, the request is delayed rather than a thread blocked.
+ * Requests rejected due to a rate limit are retried once a permit is available.
+ *
+ * @author Rossen Stoyanchev
+ */
+public class ReactiveGitHubClient {
+
+	private static final Logger logger = LogManager.getLogger(ReactiveGitHubClient.class);
+
+	public static final MediaType IMPORT_MEDIA_TYPE = new MediaType("application", "vnd.github.golden-comet-preview+json");
+
+	public static final String DEFAULT_API_URL = "https://api.github.com";
+
+	private static final int PAGE_SIZE = 100;
+
+	private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
+			new ParameterizedTypeReference<Map<String, Object>>() {};
+
+	private static final ParameterizedTypeReference<List<Map<String, Object>>> LIST_OF_MAPS_TYPE =
+			new ParameterizedTypeReference<List<Map<String, Object>>>() {};
+
+	private static final ParameterizedTypeReference<Void> VOID_TYPE = new ParameterizedTypeReference<Void>() {};
+
+	/** For the egit model types, which use snake case in JSON */
+	private static final ObjectMapper egitObjectMapper = Jackson2ObjectMapperBuilder.json()
+			.propertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+			.featuresToDisable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.build();
+
+
+	private final String apiUrl;
+
+	private final String repositorySlug;
+
+	private final GitHubTokenPool tokenPool;
+
+	private final WebClient webClient;
+
+
+	public ReactiveGitHubClient(String repositorySlug, GitHubTokenPool tokenPool) {
+		this(DEFAULT_API_URL, repositorySlug, tokenPool);
+	}
+
+	/**
+	 * @param apiUrl the root of the API, e.g. of a local stand-in for GitHub
+	 * @param repositorySlug the repository, e.g. "spring-projects/spring-framework"
+	 * @param tokenPool the tokens to make requests with
+	 */
+	public ReactiveGitHubClient(String apiUrl, String repositorySlug, GitHubTokenPool tokenPool) {
+		this.apiUrl = apiUrl;
+		this.repositorySlug = repositorySlug;
+		this.tokenPool = tokenPool;
+		this.webClient = WebClient.create();
+	}
+
+
+	public String getApiUrl() {
+		return this.apiUrl;
+	}
+
+	public String getRepositorySlug() {
+		return this.repositorySlug;
+	}
+
+
+	// Repository
+
+	/**
+	 * Whether the repository has commits, or is empty or doesn't exist.
+	 */
+	public Mono<Boolean> hasCommits() {
+		return execute(HttpMethod.GET, repoUri("/commits"), null, LIST_OF_MAPS_TYPE)
+				.map(entity -> true)
+				.onErrorResume(WebClientResponseException.class, ex ->
+						ex.getStatusCode() == HttpStatus.NOT_FOUND || ex.getStatusCode() == HttpStatus.CONFLICT ?
+								Mono.just(false) : Mono.error(ex));
+	}
+
+	public Mono<Void> deleteRepository() {
+		return execute(HttpMethod.DELETE, repoUri(""), null, VOID_TYPE).then();
+	}
+
+	public Mono<Void> createRepository(boolean isPrivate) {
+		Map<String, Object> repository = new HashMap<>();
+		repository.put("name", this.repositorySlug.split("/")[1]);
+		repository.put("private", isPrivate);
+		URI uri = URI.create(this.apiUrl + "/user/repos");
+		return execute(HttpMethod.POST, uri, repository, VOID_TYPE).then();
+	}
+
+
+	// Labels
+
+	public Flux<Label> getLabels() {
+		return getAllPages(repoUriBuilder("/labels"))
+				.map(map -> egitObjectMapper.convertValue(map, Label.class));
+	}
+
+	public Mono<Void> createLabel(Label label) {
+		Map<String, Object> body = new HashMap<>();
+		body.put("name", label.getName());
+		body.put("color", label.getColor());
+		return execute(HttpMethod.POST, repoUri("/labels"), body, VOID_TYPE).then();
+	}
+
+	public Mono<Void> deleteLabel(String name) {
+		return execute(HttpMethod.DELETE, repoUri("/labels/{name}", name), null, VOID_TYPE).then();
+	}
+
+
+	// Milestones
+
+	/**
+	 * @param state "open", "closed", or "all"
+	 */
+	public Flux<Milestone> getMilestones(String state) {
+		return getAllPages(repoUriBuilder("/milestones").queryParam("state", state))
+				.map(map -> egitObjectMapper.convertValue(map, Milestone.class));
+	}
+
+	public Mono<Void> createMilestone(Milestone milestone) {
+		Map<String, Object> body = new HashMap<>();
+		body.put("title", milestone.getTitle());
+		body.put("state", milestone.getState());
+		body.put("description", milestone.getDescription());
+		if (milestone.getDueOn() != null) {
+			body.put("due_on", new DateTime(milestone.getDueOn().getTime(), DateTimeZone.UTC).toString());
+		}
+		return execute(HttpMethod.POST, repoUri("/milestones"), body, VOID_TYPE).then();
+	}
+
+
+	// Issues and comments
+
+	public Mono<Map<String, Object>> getIssue(int number) {
+		return execute(HttpMethod.GET, repoUri("/issues/{number}", number), null, MAP_TYPE)
+				.map(ResponseEntity::getBody);
+	}
+
+	/**
+	 * @param state "open", "closed", or "all"
+	 */
+	public Flux<Map<String, Object>> getIssues(String state) {
+		return getAllPages(repoUriBuilder("/issues").queryParam("state", state));
+	}
+
+	public Mono<Void> editIssue(int number, Map<String, ?> fields) {
+		return execute(HttpMethod.PATCH, repoUri("/issues/{number}", number), fields, VOID_TYPE).then();
+	}
+
+	public Flux<Map<String, Object>> getComments(int issueNumber) {
+		return getAllPages(repoUriBuilder("/issues/{number}/comments").uriVariables(
+				Collections.singletonMap("number", issueNumber)));
+	}
+
+	public Mono<Void> addComment(int issueNumber, String body) {
+		URI uri = repoUri("/issues/{number}/comments", issueNumber);
+		return execute(HttpMethod.POST, uri, Collections.singletonMap("body", body), VOID_TYPE).then();
+	}
+
+	public Mono<Void> editComment(long commentId, String body) {
+		URI uri = repoUri("/issues/comments/{id}", commentId);
+		return execute(HttpMethod.PATCH, uri, Collections.singletonMap("body", body), VOID_TYPE).then();
+	}
+
+
+	// Issue import, https://gist.github.com/jonmagic/5282384165e0f86ef105
+
+	public <T> Mono<ResponseEntity<T>> importIssue(ImportGithubIssue importIssue, Class<T> responseType) {
+		return execute(HttpMethod.POST, repoUri("/import/issues"), IMPORT_MEDIA_TYPE, importIssue,
+				ParameterizedTypeReference.forType(responseType));
+	}
+
+	/**
+	 * Get the status of an import.
+	 * @param importUrl the URL returned from {@link #importIssue}
+	 */
+	public Mono<Map<String, Object>> getImportStatus(String importUrl) {
+		URI uri = UriComponentsBuilder.fromUriString(importUrl).build().toUri();
+		return execute(HttpMethod.GET, uri, IMPORT_MEDIA_TYPE, null, MAP_TYPE).map(ResponseEntity::getBody);
+	}
+
+
+	/**
+	 * Perform a request prepared by the caller. The Authorization header is
+	 * set from the token pool.
+	 */
+	public <T> Mono<ResponseEntity<T>> exchange(RequestEntity<?> request, ParameterizedTypeReference<T> responseType) {
+		MediaType accept = request.getHeaders().getAccept().isEmpty() ?
+				MediaType.APPLICATION_JSON : request.getHeaders().getAccept().get(0);
+		return execute(request.getMethod(), request.getUrl(), accept, request.getBody(), responseType);
+	}
+
+
+	private URI repoUri(String path, Object... uriVariables) {
+		return repoUriBuilder(path).buildAndExpand(uriVariables).encode().toUri();
+	}
+
+	private UriComponentsBuilder repoUriBuilder(String path) {
+		return UriComponentsBuilder.fromUriString(this.apiUrl + "/repos/" + this.repositorySlug + path);
+	}
+
+	private Flux<Map<String, Object>> getAllPages(UriComponentsBuilder uriBuilder) {
+		return getPage(uriBuilder, 1);
+	}
+
+	private Flux<Map<String, Object>> getPage(UriComponentsBuilder uriBuilder, int page) {
+		URI uri = uriBuilder.cloneBuilder()
+				.queryParam("per_page", PAGE_SIZE)
+				.queryParam("page", page)
+				.build().encode().toUri();
+		return execute(HttpMethod.GET, uri, null, LIST_OF_MAPS_TYPE)
+				.flatMapMany(entity -> {
+					List<Map<String, Object>> items = entity.getBody() != null ? entity.getBody() : Collections.emptyList();
+					Flux<Map<String, Object>> result = Flux.fromIterable(items);
+					return items.size() < PAGE_SIZE ? result : result.concatWith(getPage(uriBuilder, page + 1));
+				});
+	}
+
+	private <T> Mono<ResponseEntity<T>> execute(HttpMethod method, URI uri, @Nullable Object body,
+			ParameterizedTypeReference<T> responseType) {
+
+		return execute(method, uri, MediaType.APPLICATION_JSON, body, responseType);
+	}
+
+	private <T> Mono<ResponseEntity<T>> execute(HttpMethod method, URI uri, MediaType accept, @Nullable Object body,
+			ParameterizedTypeReference<T> responseType) {
+
+		return Mono.defer(() -> {
+			GitHubTokenPool.Credential credential = this.tokenPool.getCredential(method);
+			RateLimitHelper rateLimitHelper = credential.getRateLimitHelper();
+
+			WebClient.RequestBodySpec spec = this.webClient.method(method).uri(uri)
+					.header(HttpHeaders.AUTHORIZATION, credential.getAuthorizationHeader())
+					.accept(accept);
+
+			Mono<ResponseEntity<T>> result = (body != null ? spec.syncBody(body) : spec)
+					.retrieve()
+					.toEntity(responseType)
+					.doOnNext(entity -> {
+						rateLimitHelper.updateLimits(entity.getHeaders()::getFirst);
+						logger.debug("{} {} {} {X-RateLimit-Remaining:{}}", method, uri.getPath(),
+								entity.getStatusCode(), entity.getHeaders().getFirst("X-RateLimit-Remaining"));
+					})
+					.onErrorResume(WebClientResponseException.class, ex -> {
+						boolean limited = rateLimitHelper.updateLimits(ex.getHeaders()::getFirst);
+						if (limited && (ex.getStatusCode() == HttpStatus.FORBIDDEN ||
+								ex.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS)) {
+							logger.debug("Rate limited {Retry-After:{}, X-RateLimit-Reset:{}} for {} {}",
+									ex.getHeaders().getFirst("Retry-After"),
+									ex.getHeaders().getFirst("X-RateLimit-Reset"), method, uri.getPath());
+							return execute(method, uri, accept, body, responseType);
+						}
+						return Mono.error(ex);
+					});
+
+			long wait = rateLimitHelper.reservePermit(method.name());
+			return (wait > 0 ? Mono.delay(Duration.ofMillis(wait)).then(result) : result);
+		});
+	}
+
+}
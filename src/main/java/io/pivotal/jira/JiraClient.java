@@ -15,23 +15,35 @@
  */
 package io.pivotal.jira;
 
+import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.pivotal.util.ProgressTracker;
 import lombok.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -45,23 +57,39 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 public class JiraClient {
 
 	/**
-	 * The max number of issues expected in the Jira project. It should be some reasonably high number,
-	 * so all issues will be fetched, in multiples of 1000. This is necessary because we don't
-	 * politely fetch one page at a time, but rather get 5 at a time concurrently. This number gives
-	 * a hint where to stop so we avoid running into a bunch of 400 errors before realizing to stop.
+	 * The max number of issues to ask for per search page. Jira may cap this further,
+	 * and the {@link SearchPagePlanner} may go lower based on response times.
 	 */
-	public static final int MAX_ISSUE_COUNT_HINT = 20000;
+	public static final int MAX_PAGE_SIZE = 1000;
 
 	private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
 			new ParameterizedTypeReference<Map<String, Object>>() {};
 
 	private static final Logger logger = LogManager.getLogger(JiraClient.class);
 
+	/** Commit count in the summary of the "Development" field. */
+	private static final Pattern commitCountPattern = Pattern.compile("repository=.*?count=(\\d+)");
+
+	private static final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	/** Max number of times to request the rest of a search page after an error */
+	private static final int SEARCH_PAGE_RETRIES = 3;
+
+	/** Max number of dev-status requests for commits at a time */
+	private static final int COMMITS_CONCURRENCY = 16;
+
+	/** Max number of comments to add at a time */
+	private static final int ADD_COMMENTS_CONCURRENCY = 4;
+
 
 	JiraConfig jiraConfig;
 
 	WebClient webClient;
 
+	JiraIssueSnapshot snapshot;
+
+	String searchFields;
+
 
 	@Autowired
 	public JiraClient(JiraConfig jiraConfig) {
@@ -72,6 +100,11 @@ public class JiraClient {
 					headers.setBasicAuth(jiraConfig.getUser(), jiraConfig.getPassword()));
 		}
 		this.webClient = builder.build();
+		this.searchFields = JiraIssue.FIELD_NAMES +
+				(jiraConfig.getDevelopmentField() != null ? "," + jiraConfig.getDevelopmentField() : "");
+		if (jiraConfig.getSnapshotFile() != null) {
+			this.snapshot = new JiraIssueSnapshot(new File(jiraConfig.getSnapshotFile()));
+		}
 	}
 
 
@@ -88,15 +121,66 @@ public class JiraClient {
 
 		return getAndCollectIssues(jql)
 				.flatMap(issues -> {
-					// Load votes and commits only for issues not already imported
-					return populateVotesAndCommits(filterIssuesToImport.apply(issues))
+					// Load commits only for issues not already imported
+					return populateCommits(filterIssuesToImport.apply(issues))
 							.then(Mono.just(issues));
 				})
 				.block();
 	}
 
+	/**
+	 * Stream the issues for the given query, in the order of the search results,
+	 * as they're loaded, initialized as with {@link #findIssuesVotesAndCommits}.
+	 * The "Backport" sub-tasks that fix versions depend on are loaded first with
+	 * a separate query. Commits are loaded a few issues at a time, keeping the
+	 * order, and only for issues that match the given predicate.
+	 * <p>With a snapshot, all issues are loaded through it first, as usual.
+	 */
+	public Flux<JiraIssue> streamIssuesVotesAndCommits(String jql, Predicate<JiraIssue> loadCommits) {
+		if (snapshot != null) {
+			return getAndCollectIssues(jql)
+					.flatMapMany(issues -> populateCommits(issues.stream().filter(loadCommits).collect(Collectors.toList()))
+							.thenMany(Flux.fromIterable(issues)));
+		}
+		return getIssues(JiraIssueSnapshot.and(jql, "issuetype = Backport"), "issuetype,fixVersions")
+				.filter(issue -> issue.getFields().getFixVersions() != null)
+				.collectMap(JiraIssue::getKey)
+				.flatMapMany(backportSubtasks -> {
+					logger.info("Found {} backport sub-tasks", backportSubtasks.size());
+					return getIssues(jql, searchFields)
+							.doOnNext(issue -> {
+								issue.initFixAndBackportVersions(backportSubtasks);
+								issue.initVotes();
+							});
+				})
+				.flatMapSequential(issue -> loadCommits.test(issue) ? populateCommits(issue) : Mono.just(issue),
+						COMMITS_CONCURRENCY);
+	}
+
+	/**
+	 * Return the number of issues for the given query, without loading them.
+	 */
+	public long countIssues(String jql) {
+		return getTotal(jql).block();
+	}
+
+	/**
+	 * Find the keys of issues for the given query that are not public.
+	 */
+	public List<String> findRestrictedIssueKeys(String jql) {
+		return getIssues(JiraIssueSnapshot.and(jql, "level IS NOT EMPTY"), "security")
+				.filter(issue -> !issue.getFields().isPublic())
+				.map(JiraIssue::getKey)
+				.collectList()
+				.block();
+	}
+
+	public Mono<JiraUser> findUser(String key) {
+		return webClient.get().uri("/user?key={key}", key).retrieve().bodyToMono(JiraUser.class);
+	}
+
 	private Mono<List<JiraIssue>> getAndCollectIssues(String jql) {
-		return getIssues(jql).collectList()
+		return (snapshot != null ? getIssuesWithSnapshot(jql, snapshot) : getIssues(jql, searchFields).collectList())
 				.doOnNext(issues -> {
 					logger.info("Found {} issues", issues.size());
 
@@ -105,68 +189,244 @@ public class JiraClient {
 							.filter(issue -> issue.getFields().getFixVersions() != null)
 							.collect(Collectors.toMap(JiraIssue::getKey, o -> o));
 
-					issues.forEach(issue -> issue.initFixAndBackportVersions(backportSubtasks));
+					issues.forEach(issue -> {
+						issue.initFixAndBackportVersions(backportSubtasks);
+						issue.initVotes();
+					});
 				});
 	}
 
-	private Flux<JiraIssue> getIssues(String jql) {
-		int pageSize = 1000;
-		logger.info("Loading issues (1000 per page) for jql=\"{}\"", jql);
-		int concurrency = 5; // we could go higher but each brings large amount of data to convert in parallel
-		return Flux.range(0, MAX_ISSUE_COUNT_HINT / 1000)
-				.flatMap(page -> {
-					int startAt = page * pageSize;
-					System.out.print((page + 1) + " ");
-					return webClient.get()
-							.uri("/search?maxResults=1000&startAt={0}&jql={jql}&fields=" + JiraIssue.FIELD_NAMES, startAt, jql)
-							.retrieve()
-							.bodyToMono(JiraSearchResult.class)
-							.onErrorResume(ex -> {
-								logger.error("page " + page + ": " + ex.getMessage(), ex);
-								return Mono.empty();
-							});
+	/**
+	 * Load issues from the snapshot, and merge issues updated since. If the
+	 * resulting count doesn't match, e.g. due to deleted or moved issues, fall
+	 * back on loading all issues. Either way, save the snapshot for next time.
+	 * Votes and commits of issues not updated since are as of the snapshot.
+	 */
+	private Mono<List<JiraIssue>> getIssuesWithSnapshot(String jql, JiraIssueSnapshot snapshot) {
+		return Mono.defer(() -> {
+			long startTime = System.currentTimeMillis();
+			if (!snapshot.load(jql)) {
+				return getAllIssuesForSnapshot(jql, snapshot, startTime);
+			}
+			// Add a few minutes for clock differences with the Jira server
+			long minutes = TimeUnit.MILLISECONDS.toMinutes(startTime - snapshot.getTimestamp()) + 5;
+			return getIssues(JiraIssueSnapshot.updatedWithin(jql, minutes), searchFields).collectList()
+					.flatMap(updatedIssues -> {
+						logger.info("Merging {} issues updated in the last {} minutes", updatedIssues.size(), minutes);
+						snapshot.merge(startTime, updatedIssues);
+						return getTotal(jql);
+					})
+					.flatMap(total -> {
+						if (total != snapshot.size()) {
+							logger.info("Snapshot has {} issues vs {} in Jira, loading all issues", snapshot.size(), total);
+							return getAllIssuesForSnapshot(jql, snapshot, startTime);
+						}
+						snapshot.save();
+						return Mono.just(snapshot.getIssues());
+					});
+		});
+	}
+
+	private Mono<List<JiraIssue>> getAllIssuesForSnapshot(String jql, JiraIssueSnapshot snapshot, long startTime) {
+		return getIssues(jql, searchFields).collectList()
+				.doOnNext(issues -> {
+					snapshot.replace(jql, startTime, issues);
+					snapshot.save();
+				});
+	}
+
+	private Mono<Long> getTotal(String jql) {
+		return webClient.get()
+				.uri("/search?maxResults=0&jql={jql}", jql)
+				.retrieve()
+				.bodyToMono(JiraSearchResult.class)
+				.map(JiraSearchResult::getTotal);
+	}
 
-				}, concurrency)
-				.sort(Comparator.comparingLong(JiraSearchResult::getStartAt))
-				.concatMapIterable(JiraSearchResult::getIssues)
+	/**
+	 * Stream the issues for the given query, in the order of the search results.
+	 * Each page is decoded incrementally, and pages loaded concurrently are
+	 * merged in order, so issues are emitted as soon as they're decoded.
+	 * @param fields the issue fields to load
+	 */
+	private Flux<JiraIssue> getIssues(String jql, String fields) {
+		logger.info("Loading issues for jql=\"{}\"", jql);
+		SearchPagePlanner planner = new SearchPagePlanner(MAX_PAGE_SIZE);
+		// The first page may be short of the size asked for, if the server caps maxResults,
+		// which the planner then learns, and plans the remaining pages for
+		Flux<JiraIssue> firstPage = getSearchPage(jql, fields, 0, planner.getPageSize(), false, planner, parser ->
+				// If resumed after an error, fewer issues were asked for, so maxResults is not the server's cap
+				planner.init(parser.getStartAt(), parser.getStartAt() == 0 ? parser.getMaxResults() : 0,
+						parser.getTotal(), parser.getIssueCount()));
+		Flux<JiraIssue> remainingPages = Flux.defer(() -> {
+			int concurrency = planner.getConcurrency();
+			logger.info("{} issues in total, loading the rest ~{} per page, {} pages at a time",
+					planner.getTotal(), planner.getPageSize(), concurrency);
+			return Flux
+					.<SearchPagePlanner.Page>generate(sink -> {
+						SearchPagePlanner.Page page = planner.nextPage();
+						if (page != null) {
+							sink.next(page);
+						}
+						else {
+							sink.complete();
+						}
+					})
+					// Pages after the current one are buffered (decoded) until it's their turn
+					.flatMapSequential(page -> getSearchPage(jql, fields, page.getStartAt(), page.getSize(), true,
+							planner, parser -> {}), concurrency, MAX_PAGE_SIZE);
+		});
+		return firstPage.concatWith(remainingPages)
 				.doOnComplete(() -> System.out.println("complete"));
 	}
 
 	/**
-	 * @param issues the issues to populate
+	 * Stream the issues of a search page. If the request fails, the rest of the
+	 * page is requested again, starting after the issues emitted already, up to
+	 * {@link #SEARCH_PAGE_RETRIES} times, after which the range of issues not
+	 * loaded is logged, and the error propagates, failing the whole search,
+	 * rather than skipping the issues.
+	 * @param fillPage whether to request the rest of the page, if the response
+	 * has fewer issues than asked for, but is not the last page, e.g. as the
+	 * server caps maxResults lower than the planner knows
+	 * @param completionHandler called with the parser of the request that
+	 * completes the page
 	 */
-	private Mono<Void> populateVotesAndCommits(List<JiraIssue> issues) {
-		logger.info("Loading votes and commits for {} issues (2 requests per issue/iteration)", issues.size());
-		ProgressTracker tracker = new ProgressTracker(issues.size(), 50, 1000, logger.isDebugEnabled());
-		int concurrency = 8; // 16 concurrent requests (2 per flatMap)s
-		return Flux.fromIterable(issues)
-				.flatMap(issue -> {
-					Mono<Map<String, Object>> votesResult = webClient.get()
-							.uri("/issue/{id}/votes", issue.getId())
-							.retrieve()
-							.bodyToMono(MAP_TYPE)
-							.timeout(Duration.ofSeconds(10))
-							.retry(3);
-					Mono<Map<String, Object>> commitsResult = webClient.get()
-							.uri(builder -> builder
-									.replacePath("/rest/dev-status/1.0/issue/detail")
-									.query("issueId={id}&applicationType=github&dataType=repository")
-									.build(issue.getId()))
+	private Flux<JiraIssue> getSearchPage(String jql, String fields, long startAt, int maxResults, boolean fillPage,
+			SearchPagePlanner planner, Consumer<SearchPageParser> completionHandler) {
+
+		return getSearchPage(jql, fields, startAt, maxResults, fillPage, planner, completionHandler, 0);
+	}
+
+	private Flux<JiraIssue> getSearchPage(String jql, String fields, long startAt, int maxResults, boolean fillPage,
+			SearchPagePlanner planner, Consumer<SearchPageParser> completionHandler, int retries) {
+
+		AtomicInteger emitted = new AtomicInteger();
+		return Flux
+				.defer(() -> {
+					SearchPageParser parser = new SearchPageParser(objectMapper);
+					long start = System.currentTimeMillis();
+					return webClient.get()
+							.uri("/search?maxResults={0}&startAt={1}&jql={jql}&fields={fields}",
+									maxResults, startAt, jql, fields)
 							.retrieve()
-							.bodyToMono(MAP_TYPE)
-							.timeout(Duration.ofSeconds(10))
-							.retry(3);
-					return Mono.zip(Mono.just(issue), votesResult, commitsResult);
-				}, concurrency)
+							.bodyToFlux(DataBuffer.class)
+							.concatMapIterable(parser::parse)
+							.concatWith(Flux.defer(() -> Flux.fromIterable(parser.endOfInput())))
+							.doOnComplete(() -> {
+								planner.onPage(parser.getIssueCount(), parser.getByteCount(),
+										System.currentTimeMillis() - start);
+								completionHandler.accept(parser);
+								System.out.print(startAt + "+" + parser.getIssueCount() + " ");
+							})
+							.concatWith(Flux.defer(() -> {
+								int count = parser.getIssueCount();
+								if (!fillPage || count == 0 || count >= maxResults ||
+										startAt + count >= parser.getTotal()) {
+									return Flux.empty();
+								}
+								logger.warn("Search page at startAt {} has {} of {} issues (maxResults={}), " +
+										"requesting the rest", startAt, count, maxResults, parser.getMaxResults());
+								planner.limitPageSize(parser.getMaxResults());
+								return getSearchPage(jql, fields, startAt + count, maxResults - count, true,
+										planner, completionHandler, retries);
+							}));
+				})
+				.doOnNext(issue -> emitted.incrementAndGet())
+				.onErrorResume(ex -> {
+					// Continue after the issues emitted already, or they'd be emitted again
+					int count = emitted.get();
+					if (retries >= SEARCH_PAGE_RETRIES) {
+						logger.error("Search page failed {} times, issues startAt {} to {} not loaded: {}",
+								retries + 1, startAt + count, startAt + maxResults - 1, ex.getMessage());
+						return Flux.error(ex);
+					}
+					logger.warn("Search page at startAt {} failed after {} issues, requesting the rest: {}",
+							startAt, count, ex.getMessage());
+					return getSearchPage(jql, fields, startAt + count, maxResults - count, fillPage,
+							planner, completionHandler, retries + 1);
+				});
+	}
+
+	/**
+	 * Populate commit URLs for issues that don't have them yet, e.g. from the
+	 * snapshot. If the "Development" field is configured, the dev-status request
+	 * is made only for issues for which it shows commits. Votes come with the
+	 * search results, see {@link JiraIssue#initVotes()}.
+	 * @param issues the issues to populate
+	 */
+	private Mono<Void> populateCommits(List<JiraIssue> issues) {
+		Map<String, List<JiraIssue>> issuesById = new LinkedHashMap<>();
+		for (JiraIssue issue : issues) {
+			if (issue.getCommitUrls() != null) {
+				continue;
+			}
+			if (hasDevelopmentInfo(issue)) {
+				issuesById.computeIfAbsent(issue.getId(), id -> new ArrayList<>(1)).add(issue);
+			}
+			else {
+				issue.setCommitUrls(Collections.emptyList());
+			}
+		}
+		logger.info("Loading commits for {} issues ({} already loaded or without commits)",
+				issuesById.size(), issues.size() - issuesById.size());
+		ProgressTracker tracker = new ProgressTracker(issuesById.size(), 50, 1000, logger.isDebugEnabled());
+		return Flux.fromIterable(issuesById.entrySet())
+				.flatMap(entry -> getCommits(entry.getKey())
+						.map(commits -> Tuples.of(entry.getValue(), commits)), COMMITS_CONCURRENCY)
 				.doOnNext(tuple -> {
-					tuple.getT1().setVotes((int) tuple.getT2().get("votes"));
-					tuple.getT1().setCommitUrls(extractCommits(tuple.getT3()));
+					tuple.getT1().forEach(issue -> issue.setCommitUrls(tuple.getT2()));
 					tracker.updateForIteration();
 				})
-				.doOnComplete(tracker::stopProgress)
+				.doOnComplete(() -> {
+					tracker.stopProgress();
+					if (snapshot != null && !issuesById.isEmpty()) {
+						snapshot.save();
+					}
+				})
 				.then();
 	}
 
+	/**
+	 * Variant of {@link #populateCommits(List)} for a single issue.
+	 */
+	private Mono<JiraIssue> populateCommits(JiraIssue issue) {
+		if (issue.getCommitUrls() != null) {
+			return Mono.just(issue);
+		}
+		if (!hasDevelopmentInfo(issue)) {
+			issue.setCommitUrls(Collections.emptyList());
+			return Mono.just(issue);
+		}
+		return getCommits(issue.getId()).doOnNext(issue::setCommitUrls).thenReturn(issue);
+	}
+
+	private Mono<List<String>> getCommits(String issueId) {
+		return webClient.get()
+				.uri(builder -> builder
+						.replacePath("/rest/dev-status/1.0/issue/detail")
+						.query("issueId={id}&applicationType=github&dataType=repository")
+						.build(issueId))
+				.retrieve()
+				.bodyToMono(MAP_TYPE)
+				.timeout(Duration.ofSeconds(10))
+				.retry(3)
+				.map(this::extractCommits);
+	}
+
+	boolean hasDevelopmentInfo(JiraIssue issue) {
+		if (jiraConfig.getDevelopmentField() == null) {
+			return true;
+		}
+		Object value = issue.getFields().getCustomFields().get(jiraConfig.getDevelopmentField());
+		if (value == null || value.toString().equals("{}")) {
+			return false;
+		}
+		// If the summary format isn't recognized, better to check
+		Matcher matcher = commitCountPattern.matcher(value.toString());
+		return !matcher.find() || Integer.parseInt(matcher.group(1)) > 0;
+	}
+
 	@SuppressWarnings("unchecked")
 	private List<String> extractCommits(Map<String, Object> result) {
 		List<Map<String, Object>> details = (List<Map<String, Object>>) result.get("detail");
@@ -183,7 +443,6 @@ public class JiraClient {
 	public void addComments(Map<String, String> comments) {
 		logger.info("Adding comments for {} issues", comments.size());
 		ProgressTracker tracker = new ProgressTracker(comments.size(), 50, 1000, logger.isDebugEnabled());
-		int concurrency = 1;
 		Flux.fromIterable(comments.entrySet())
 				.doOnNext(o -> tracker.updateForIteration())
 				.flatMap(entry -> webClient.post().uri("/issue/{key}/comment", entry.getKey())
@@ -193,7 +452,7 @@ public class JiraClient {
 						.doOnError(WebClientResponseException.class,
 								ex -> logger.error(ex.getStatusCode() + ": " + ex.getResponseBodyAsString()))
 						.timeout(Duration.ofSeconds(10))
-						.retry(3), concurrency)
+						.retry(3), ADD_COMMENTS_CONCURRENCY)
 				.doOnTerminate(tracker::stopProgress)
 				.blockLast();
 	}
@@ -15,6 +15,9 @@
  */
 package io.pivotal.jira;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -38,6 +41,12 @@ public class JiraConfig {
 	 */
 	String projectId;
 
+	/**
+	 * Keys of the Jira projects whose issue keys are turned into links when
+	 * found in text, e.g. "SPR,SEC,INT". Defaults to the projectId only.
+	 */
+	List<String> linkedProjects;
+
 	/**
 	 * (Optional) the JQL used to query which issues should be migrated. This
 	 * defaults to all the issues for the projectId.
@@ -54,6 +63,23 @@ public class JiraConfig {
 	 */
 	String password;
 
+	/**
+	 * (Optional) file for a local snapshot of the issues loaded from Jira. If set,
+	 * later runs load the snapshot, and query Jira only for issues updated since.
+	 * For example, "jira-issues-snapshot.ndjson.gz".
+	 */
+	String snapshotFile;
+
+	/**
+	 * (Optional) id of the "Development" custom field, e.g. "customfield_10000".
+	 * If set, commits are loaded only for issues for which the field shows commits.
+	 */
+	String developmentField;
+
+	public List<String> getLinkedProjects() {
+		return linkedProjects == null || linkedProjects.isEmpty() ? Collections.singletonList(getProjectId()) : linkedProjects;
+	}
+
 	public String getMigrateJql() {
 		return migrateJql == null ? "project = " + getProjectId() + " ORDER BY key ASC" : migrateJql;
 	}
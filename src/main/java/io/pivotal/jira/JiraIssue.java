@@ -19,6 +19,7 @@ import lombok.Data;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -27,6 +28,7 @@ import org.joda.time.DateTime;
 
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -40,7 +42,7 @@ public class JiraIssue {
 
 	public static final String FIELD_NAMES = "summary,comment,assignee,components,created,creator," +
 			"description,versions,fixVersions,issuetype,reporter,resolution,status,issuelinks," +
-			"resolution,updated,parent,subtasks,labels,attachment,watches," +
+			"resolution,updated,parent,subtasks,labels,attachment,watches,votes," +
 			"customfield_10120,customfield_10684,security";
 
 
@@ -59,10 +61,10 @@ public class JiraIssue {
 	/** Initialized via {@link #initFixAndBackportVersions()} **/
 	List<JiraFixVersion> backportVersions = Collections.emptyList();
 
-	/** Initialized via separate HTTP call to obtain votes for the issue */
+	/** Initialized from the "votes" field via {@link #initVotes()} */
 	int votes = -1;
 
-	/** Retrieved via separate HTTP call */
+	/** Retrieved via separate HTTP call, or empty if the issue has no development info */
 	List<String> commitUrls;
 
 
@@ -116,6 +118,16 @@ public class JiraIssue {
 				Collections.emptyList();
 	}
 
+	/**
+	 * Invoke after an issue is loaded to initialize the vote count from the
+	 * "votes" field, if it was requested.
+	 */
+	public void initVotes() {
+		if (fields.getVotes() != null) {
+			votes = fields.getVotes().getVotes();
+		}
+	}
+
 	public boolean hasLabel(String label) {
 
 		return getFields().getLabels() != null
@@ -144,11 +156,21 @@ public class JiraIssue {
 		List<String> labels;
 		List<JiraAttachment> attachment;
 		JiraWatcher watches;
+		JiraVotes votes;
 		@JsonProperty("customfield_10120")
 		String referenceUrl;
 		@JsonProperty("customfield_10684")
 		String pullRequestUrl;
 		JiraSecurity security;
+		/** Other requested fields, e.g. instance specific custom fields */
+		Map<String, Object> customFields = new HashMap<>();
+
+		@JsonAnySetter
+		public void setCustomField(String name, Object value) {
+			if (name.startsWith("customfield_")) {
+				customFields.put(name, value);
+			}
+		}
 
 		public boolean isPublic() {
 			return security == null || security.getName().equals("Public");
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StringUtils;
+
+/**
+ * Local snapshot of the issues returned by a JQL query, stored as gzipped
+ * NDJSON: a header line with the query and the time of the snapshot, followed
+ * by one line per issue. Issues are keyed by issue key, so a later query for
+ * issues updated since the snapshot can be merged in.
+ *
+ * <p>Issues are stored field by field as loaded from Jira, along with votes and
+ * commit URLs if populated. Fix and backport versions are derived and must be
+ * re-initialized after loading. Votes and commits are not refreshed by a merge
+ * for issues not otherwise updated, since neither changes the "updated" time
+ * of an issue in Jira.
+ */
+public class JiraIssueSnapshot {
+
+	private static final Logger logger = LogManager.getLogger(JiraIssueSnapshot.class);
+
+	private static final Pattern orderByPattern = Pattern.compile("(?i)\\s*\\bORDER\\s+BY\\s.*$");
+
+	private static final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.visibility(PropertyAccessor.ALL, Visibility.NONE)
+			.visibility(PropertyAccessor.FIELD, Visibility.ANY)
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+
+
+	private final File file;
+
+	private String jql;
+
+	private long timestamp;
+
+	private final Map<String, JiraIssue> issues = new LinkedHashMap<>();
+
+
+	public JiraIssueSnapshot(File file) {
+		this.file = file;
+	}
+
+
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * The time, in millis, when the query for the snapshot content was started.
+	 */
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public int size() {
+		return this.issues.size();
+	}
+
+	public List<JiraIssue> getIssues() {
+		return new ArrayList<>(this.issues.values());
+	}
+
+	/**
+	 * Load the snapshot from disk, if it exists and was taken for the given query.
+	 * @return whether the snapshot was loaded
+	 */
+	public boolean load(String jql) {
+		this.issues.clear();
+		if (!this.file.exists()) {
+			return false;
+		}
+		try (BufferedReader reader = new BufferedReader(openReader())) {
+			String line = reader.readLine();
+			Header header = (line != null ? objectMapper.readValue(line, Header.class) : null);
+			if (header == null || !jql.equals(header.getJql())) {
+				logger.info("Ignoring snapshot {} taken for a different query", this.file);
+				return false;
+			}
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					JiraIssue issue = objectMapper.readValue(line, JiraIssue.class);
+					this.issues.put(issue.getKey(), issue);
+				}
+			}
+			this.jql = header.getJql();
+			this.timestamp = header.getTimestamp();
+			logger.info("Loaded {} issues from snapshot {}", this.issues.size(), this.file);
+			return true;
+		}
+		catch (IOException ex) {
+			logger.error("Failed to read snapshot " + this.file + ": " + ex.getMessage());
+			this.issues.clear();
+			return false;
+		}
+	}
+
+	/**
+	 * Replace the content of the snapshot.
+	 * @param jql the query the issues were loaded with
+	 * @param timestamp the time when the query was started
+	 * @param issues the issues
+	 */
+	public void replace(String jql, long timestamp, Collection<JiraIssue> issues) {
+		this.issues.clear();
+		this.jql = jql;
+		merge(timestamp, issues);
+	}
+
+	/**
+	 * Merge updated issues into the snapshot, replacing existing issues with
+	 * the same key in place, and appending new ones.
+	 * @param timestamp the time when the query for updated issues was started
+	 * @param issues the updated issues
+	 */
+	public void merge(long timestamp, Collection<JiraIssue> issues) {
+		issues.forEach(issue -> this.issues.put(issue.getKey(), issue));
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Write the snapshot to disk, replacing the previous one.
+	 */
+	public void save() {
+		File tempFile = new File(this.file.getPath() + ".tmp");
+		ObjectWriter writer = objectMapper.writerFor(JiraIssue.class);
+		try {
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(
+					new GZIPOutputStream(new FileOutputStream(tempFile)), StandardCharsets.UTF_8))) {
+
+				out.write(objectMapper.writeValueAsString(new Header(this.jql, this.timestamp)));
+				out.write("\n");
+				for (JiraIssue issue : this.issues.values()) {
+					out.write(writer.writeValueAsString(issue));
+					out.write("\n");
+				}
+			}
+			Files.move(tempFile.toPath(), this.file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logger.info("Saved {} issues to snapshot {}", this.issues.size(), this.file);
+		}
+		catch (IOException ex) {
+			logger.error("Failed to write snapshot " + this.file + ": " + ex.getMessage());
+		}
+	}
+
+	private Reader openReader() throws IOException {
+		return new InputStreamReader(new GZIPInputStream(new FileInputStream(this.file)), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Restrict the given query to issues updated within the given number of minutes.
+	 * A relative date is used so the time zone of the Jira server doesn't matter.
+	 */
+	public static String updatedWithin(String jql, long minutes) {
+		return and(jql, "updated >= \"-" + minutes + "m\"");
+	}
+
+	/**
+	 * Add a condition to the given query, keeping its "ORDER BY" clause, if any.
+	 */
+	public static String and(String jql, String condition) {
+		String where = jql;
+		String orderBy = "";
+		Matcher matcher = orderByPattern.matcher(jql);
+		if (matcher.find()) {
+			where = jql.substring(0, matcher.start());
+			orderBy = " " + matcher.group().trim();
+		}
+		return (StringUtils.hasText(where) ? "(" + where.trim() + ") AND " + condition : condition) + orderBy;
+	}
+
+
+	@Data
+	private static class Header {
+
+		private String jql;
+
+		private long timestamp;
+
+		Header() {
+		}
+
+		Header(String jql, long timestamp) {
+			this.jql = jql;
+			this.timestamp = timestamp;
+		}
+	}
+
+}
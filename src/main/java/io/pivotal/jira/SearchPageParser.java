@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * Incremental parser for a single page of Jira search results, i.e. the
+ * {@code /search} response. Input is fed chunk by chunk, as it arrives, and each
+ * {@link JiraIssue} is decoded as soon as its JSON object is complete, without
+ * aggregating the whole page first. The page level "startAt", "maxResults", and
+ * "total" values are captured along the way.
+ *
+ * <p>A parser instance is stateful and can be used for one response only.
+ */
+class SearchPageParser {
+
+	private final ObjectMapper objectMapper;
+
+	private final JsonParser parser;
+
+	private final ByteArrayFeeder feeder;
+
+	private int depth;
+
+	private String fieldName;
+
+	private boolean inIssues;
+
+	private TokenBuffer issueTokens;
+
+	private long startAt;
+
+	private long maxResults;
+
+	private long total;
+
+	private int issueCount;
+
+	private long byteCount;
+
+
+	SearchPageParser(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		try {
+			this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to create parser", ex);
+		}
+		this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+	}
+
+
+	long getStartAt() {
+		return this.startAt;
+	}
+
+	long getMaxResults() {
+		return this.maxResults;
+	}
+
+	long getTotal() {
+		return this.total;
+	}
+
+	int getIssueCount() {
+		return this.issueCount;
+	}
+
+	long getByteCount() {
+		return this.byteCount;
+	}
+
+	/**
+	 * Feed the next chunk of input, and release it.
+	 * @return the issues completed with this chunk, possibly none
+	 */
+	List<JiraIssue> parse(DataBuffer buffer) {
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.read(bytes);
+		DataBufferUtils.release(buffer);
+		this.byteCount += bytes.length;
+		try {
+			this.feeder.feedInput(bytes, 0, bytes.length);
+			return parseTokens();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to parse search result", ex);
+		}
+	}
+
+	/**
+	 * Signal the end of the input.
+	 * @return any remaining issues, normally none
+	 */
+	List<JiraIssue> endOfInput() {
+		this.feeder.endOfInput();
+		try {
+			List<JiraIssue> issues = parseTokens();
+			if (this.depth != 0) {
+				throw new IllegalStateException("Incomplete search result after " + this.byteCount + " bytes");
+			}
+			return issues;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to parse search result", ex);
+		}
+	}
+
+	private List<JiraIssue> parseTokens() throws IOException {
+		List<JiraIssue> issues = null;
+		while (true) {
+			JsonToken token = this.parser.nextToken();
+			if (token == null || token == JsonToken.NOT_AVAILABLE) {
+				break;
+			}
+			if (token.isStructStart()) {
+				this.depth++;
+			}
+			else if (token.isStructEnd()) {
+				this.depth--;
+			}
+			if (this.issueTokens != null) {
+				this.issueTokens.copyCurrentEvent(this.parser);
+				if (this.depth == 2) {
+					issues = (issues != null ? issues : new ArrayList<>());
+					issues.add(readIssue());
+				}
+			}
+			else if (this.inIssues && this.depth == 3 && token == JsonToken.START_OBJECT) {
+				this.issueTokens = new TokenBuffer(this.parser);
+				this.issueTokens.copyCurrentEvent(this.parser);
+			}
+			else if (this.depth == 2 && token == JsonToken.START_ARRAY && "issues".equals(this.fieldName)) {
+				this.inIssues = true;
+			}
+			else if (this.depth == 1) {
+				if (token == JsonToken.FIELD_NAME) {
+					this.fieldName = this.parser.getCurrentName();
+				}
+				else if (token == JsonToken.VALUE_NUMBER_INT) {
+					setPageValue(this.fieldName, this.parser.getLongValue());
+				}
+				else if (token == JsonToken.END_ARRAY) {
+					this.inIssues = false;
+				}
+			}
+		}
+		return (issues != null ? issues : Collections.emptyList());
+	}
+
+	private JiraIssue readIssue() throws IOException {
+		try (JsonParser issueParser = this.issueTokens.asParser(this.objectMapper)) {
+			this.issueCount++;
+			return this.objectMapper.readValue(issueParser, JiraIssue.class);
+		}
+		finally {
+			this.issueTokens = null;
+		}
+	}
+
+	private void setPageValue(String name, long value) {
+		if ("startAt".equals(name)) {
+			this.startAt = value;
+		}
+		else if ("maxResults".equals(name)) {
+			this.maxResults = value;
+		}
+		else if ("total".equals(name)) {
+			this.total = value;
+		}
+	}
+
+}
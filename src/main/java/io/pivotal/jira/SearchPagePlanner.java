@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import lombok.Data;
+
+/**
+ * Plans the pages of a Jira search. The first page tells us the {@code total}
+ * number of issues and the actual {@code maxResults} limit of the server, so we
+ * request exactly the pages needed. The number of concurrent page requests is
+ * decided then, from the payload per issue of the first page, as the requests
+ * are started with a fixed concurrency, while the size of each subsequent page
+ * follows the observed time per issue.
+ */
+class SearchPagePlanner {
+
+	/** Aim for pages that come back within this time. */
+	private static final long TARGET_PAGE_MILLIS = 10_000;
+
+	/** Limit on the raw payload of all pages in flight (and later decoded). */
+	private static final long MAX_BYTES_IN_FLIGHT = 100 * 1024 * 1024;
+
+	private static final int MIN_PAGE_SIZE = 100;
+
+	private static final int MAX_CONCURRENCY = 8;
+
+
+	private int maxPageSize;
+
+	private int pageSize;
+
+	private int concurrency = 1;
+
+	private long total;
+
+	private long nextStartAt;
+
+	private double millisPerIssue = -1;
+
+	private double bytesPerIssue = -1;
+
+
+	SearchPagePlanner(int maxPageSize) {
+		this.maxPageSize = maxPageSize;
+		this.pageSize = maxPageSize;
+	}
+
+
+	synchronized int getPageSize() {
+		return this.pageSize;
+	}
+
+	synchronized long getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Number of concurrent page requests to use for the remaining pages, as
+	 * decided when {@link #init initialized}.
+	 */
+	synchronized int getConcurrency() {
+		long remainingPages = (this.total - this.nextStartAt + this.pageSize - 1) / this.pageSize;
+		return (int) Math.max(1, Math.min(this.concurrency, remainingPages));
+	}
+
+	/**
+	 * Initialize the plan from the values of the first page, which must have
+	 * been recorded via {@link #onPage} already.
+	 */
+	synchronized void init(long startAt, long maxResults, long total, int count) {
+		this.total = total;
+		if (maxResults > 0) {
+			// The server may cap maxResults below what we asked for
+			this.maxPageSize = (int) Math.min(this.maxPageSize, maxResults);
+			this.pageSize = Math.min(this.pageSize, this.maxPageSize);
+		}
+		this.nextStartAt = startAt + count;
+		adjustPageSize();
+		if (this.bytesPerIssue > 0) {
+			long pageBytes = Math.max(1, (long) (this.pageSize * this.bytesPerIssue));
+			this.concurrency = (int) Math.max(1, Math.min(MAX_CONCURRENCY, MAX_BYTES_IN_FLIGHT / pageBytes));
+		}
+	}
+
+	/**
+	 * Record the response time and payload size of a page, and adjust the size
+	 * of subsequent pages.
+	 */
+	synchronized void onPage(int issueCount, long bytes, long millis) {
+		if (issueCount == 0) {
+			return;
+		}
+		this.millisPerIssue = average(this.millisPerIssue, (double) millis / issueCount);
+		this.bytesPerIssue = average(this.bytesPerIssue, (double) bytes / issueCount);
+		adjustPageSize();
+	}
+
+	/**
+	 * Lower the max page size to the {@code maxResults} of a page that has
+	 * fewer issues than asked for, e.g. if the cap of the server could not be
+	 * learned from the first page, as it was resumed after an error.
+	 */
+	synchronized void limitPageSize(long maxResults) {
+		if (maxResults > 0 && maxResults < this.maxPageSize) {
+			this.maxPageSize = (int) maxResults;
+			this.pageSize = Math.min(this.pageSize, this.maxPageSize);
+		}
+	}
+
+	/**
+	 * Return the next page to fetch, or {@code null} if there are no more.
+	 */
+	synchronized Page nextPage() {
+		if (this.nextStartAt >= this.total) {
+			return null;
+		}
+		Page page = new Page(this.nextStartAt, (int) Math.min(this.pageSize, this.total - this.nextStartAt));
+		this.nextStartAt += page.getSize();
+		return page;
+	}
+
+	private void adjustPageSize() {
+		if (this.millisPerIssue > 0) {
+			long size = (long) (TARGET_PAGE_MILLIS / this.millisPerIssue);
+			this.pageSize = (int) Math.max(Math.min(MIN_PAGE_SIZE, this.maxPageSize), Math.min(this.maxPageSize, size));
+		}
+	}
+
+	private static double average(double current, double sample) {
+		return current < 0 ? sample : current * 0.7 + sample * 0.3;
+	}
+
+
+	@Data
+	static class Page {
+
+		private final long startAt;
+
+		private final int size;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.pivotal.github.ImportGithubIssue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Format of a file with issues converted and ready to import, so conversion
+ * can be done ahead of time, and the import later only uploads them.
+ *
+ * <p>The file is gzipped, with one record per line, each a record type, the
+ * length in bytes of its JSON content, and the JSON content, separated by a
+ * space, e.g. {@code "I 1234 {...}"}. The first record is the {@link Header},
+ * followed by an {@link IssueEntry} for each issue, in import order, and the
+ * last is the {@link Trailer}. A bundle without a trailer is incomplete. The
+ * length prefix allows checking that a bundle is complete, and counting its
+ * issues, without parsing them.
+ *
+ * @see ImportBundleWriter
+ * @see ImportBundleReader
+ */
+final class ImportBundle {
+
+	static final char HEADER_TYPE = 'H';
+
+	static final char ISSUE_TYPE = 'I';
+
+	static final char TRAILER_TYPE = 'T';
+
+	/** Max length of a record, well above GitHub's limits for an issue and its comments */
+	static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+	static final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+
+
+	private ImportBundle() {
+	}
+
+
+	/**
+	 * Where and how the bundle was prepared.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Header {
+
+		private String repositorySlug;
+
+		private String jql;
+
+		private DateTime created;
+
+		/** Numbers of the milestones referenced by issues, by title */
+		private Map<String, Integer> milestones = new LinkedHashMap<>();
+	}
+
+
+	/**
+	 * An issue ready to import, as submitted to the GitHub import API.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class IssueEntry {
+
+		private String jiraKey;
+
+		private ImportGithubIssue importIssue;
+	}
+
+
+	/**
+	 * What remains to be imported once all issues are imported.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Trailer {
+
+		private int issueCount;
+
+		/** Issues for backport issue holders, by milestone title */
+		private Map<String, List<BackportIssue>> backports = new LinkedHashMap<>();
+	}
+
+
+	/**
+	 * What a backport issue holder needs from each of its issues.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class BackportIssue {
+
+		private String jiraKey;
+
+		private String summary;
+
+		private DateTime created;
+
+		private DateTime updated;
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import io.pivotal.migration.ImportBundle.Header;
+import io.pivotal.migration.ImportBundle.IssueEntry;
+import io.pivotal.migration.ImportBundle.Trailer;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Reads an {@link ImportBundle} one issue at a time, so that only the issues
+ * being uploaded are in memory.
+ */
+class ImportBundleReader implements Closeable {
+
+	private final File file;
+
+	private final DataInputStream in;
+
+	private final Header header;
+
+	@Nullable
+	private Trailer trailer;
+
+	private int issueCount;
+
+
+	/**
+	 * Open the bundle, and read its header.
+	 */
+	ImportBundleReader(File file) throws IOException {
+		this.file = file;
+		this.in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(file), 64 * 1024)));
+		try {
+			this.header = (Header) readRecord(ImportBundle.HEADER_TYPE);
+		}
+		catch (IOException ex) {
+			this.in.close();
+			throw ex;
+		}
+	}
+
+
+	Header getHeader() {
+		return this.header;
+	}
+
+	/**
+	 * Return the trailer, once all issues have been read.
+	 */
+	@Nullable
+	Trailer getTrailer() {
+		return this.trailer;
+	}
+
+	/**
+	 * Read the next issue.
+	 * @return the issue, or {@code null} if there are no more issues
+	 * @throws IOException if the bundle is incomplete or corrupt
+	 */
+	@Nullable
+	IssueEntry read() throws IOException {
+		if (this.trailer != null) {
+			return null;
+		}
+		Object record = readRecord(ImportBundle.ISSUE_TYPE, ImportBundle.TRAILER_TYPE);
+		if (record instanceof Trailer) {
+			this.trailer = (Trailer) record;
+			checkIssueCount();
+			return null;
+		}
+		this.issueCount++;
+		return (IssueEntry) record;
+	}
+
+	private void checkIssueCount() throws IOException {
+		if (this.trailer.getIssueCount() != this.issueCount) {
+			throw new IOException("Bundle " + this.file + " has " + this.issueCount + " issues, " +
+					"but its trailer expects " + this.trailer.getIssueCount());
+		}
+	}
+
+	private Object readRecord(char... expectedTypes) throws IOException {
+		char type = readRecordType(expectedTypes);
+		byte[] content = new byte[readLength()];
+		this.in.readFully(content);
+		readEndOfRecord();
+		switch (type) {
+			case ImportBundle.HEADER_TYPE:
+				return ImportBundle.objectMapper.readValue(content, Header.class);
+			case ImportBundle.ISSUE_TYPE:
+				return ImportBundle.objectMapper.readValue(content, IssueEntry.class);
+			default:
+				return ImportBundle.objectMapper.readValue(content, Trailer.class);
+		}
+	}
+
+	/**
+	 * Skip the remaining issues, without parsing them, and return the trailer.
+	 */
+	private Trailer skipToTrailer() throws IOException {
+		while (readRecordType(ImportBundle.ISSUE_TYPE, ImportBundle.TRAILER_TYPE) == ImportBundle.ISSUE_TYPE) {
+			int length = readLength();
+			while (length > 0) {
+				int skipped = this.in.skipBytes(length);
+				if (skipped <= 0) {
+					throw new EOFException("Bundle " + this.file + " is incomplete");
+				}
+				length -= skipped;
+			}
+			readEndOfRecord();
+			this.issueCount++;
+		}
+		byte[] content = new byte[readLength()];
+		this.in.readFully(content);
+		readEndOfRecord();
+		this.trailer = ImportBundle.objectMapper.readValue(content, Trailer.class);
+		checkIssueCount();
+		return this.trailer;
+	}
+
+	private char readRecordType(char... expectedTypes) throws IOException {
+		int type = this.in.read();
+		if (type == -1) {
+			throw new EOFException("Bundle " + this.file + " is incomplete, it has no trailer");
+		}
+		for (char expectedType : expectedTypes) {
+			if (type == expectedType && this.in.read() == ' ') {
+				return expectedType;
+			}
+		}
+		throw new IOException("Unexpected record in bundle " + this.file + " after " + this.issueCount + " issues");
+	}
+
+	private int readLength() throws IOException {
+		int length = 0;
+		for (int c = this.in.read(); c != ' '; c = this.in.read()) {
+			if (c < '0' || c > '9' || length > ImportBundle.MAX_RECORD_LENGTH / 10) {
+				throw new IOException("Invalid record length in bundle " + this.file);
+			}
+			length = length * 10 + (c - '0');
+		}
+		return length;
+	}
+
+	private void readEndOfRecord() throws IOException {
+		if (this.in.readByte() != '\n') {
+			throw new IOException("Record length mismatch in bundle " + this.file);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+
+	/**
+	 * Check that the bundle is complete, reading through it without parsing
+	 * issues, and return its trailer.
+	 * @throws IOException if the bundle is incomplete or corrupt
+	 */
+	static Trailer verify(File file) throws IOException {
+		try (ImportBundleReader reader = new ImportBundleReader(file)) {
+			return reader.skipToTrailer();
+		}
+	}
+
+}
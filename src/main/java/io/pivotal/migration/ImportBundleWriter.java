@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+import io.pivotal.github.ImportGithubIssue;
+import io.pivotal.migration.ImportBundle.Header;
+import io.pivotal.migration.ImportBundle.IssueEntry;
+import io.pivotal.migration.ImportBundle.Trailer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.util.Assert;
+
+/**
+ * Writes an {@link ImportBundle} to a temporary file next to the target file,
+ * and moves it into place when {@link #finish finished}, so the target file is
+ * always either a complete bundle, or left as it was.
+ */
+class ImportBundleWriter implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(ImportBundleWriter.class);
+
+
+	private final File file;
+
+	private final File tempFile;
+
+	private final OutputStream out;
+
+	private int issueCount;
+
+	private boolean finished;
+
+
+	/**
+	 * Create the bundle, and write its header.
+	 */
+	ImportBundleWriter(File file, Header header) throws IOException {
+		this.file = file;
+		this.tempFile = new File(file.getPath() + ".tmp");
+		this.out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(this.tempFile), 64 * 1024));
+		writeRecord(ImportBundle.HEADER_TYPE, header);
+	}
+
+
+	int getIssueCount() {
+		return this.issueCount;
+	}
+
+	void writeIssue(String jiraKey, ImportGithubIssue importIssue) throws IOException {
+		Assert.state(!this.finished, "Bundle already finished");
+		writeRecord(ImportBundle.ISSUE_TYPE, new IssueEntry(jiraKey, importIssue));
+		this.issueCount++;
+	}
+
+	/**
+	 * Write the trailer, with the number of issues written, and move the bundle
+	 * into place.
+	 */
+	void finish(Trailer trailer) throws IOException {
+		Assert.state(!this.finished, "Bundle already finished");
+		trailer.setIssueCount(this.issueCount);
+		writeRecord(ImportBundle.TRAILER_TYPE, trailer);
+		this.out.close();
+		Files.move(this.tempFile.toPath(), this.file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.finished = true;
+		logger.info("Saved {} issues to bundle {}", this.issueCount, this.file);
+	}
+
+	private void writeRecord(char type, Object record) throws IOException {
+		byte[] content = ImportBundle.objectMapper.writeValueAsBytes(record);
+		this.out.write((type + " " + content.length + " ").getBytes(StandardCharsets.US_ASCII));
+		this.out.write(content);
+		this.out.write('\n');
+	}
+
+	/**
+	 * Close the bundle, and remove it if not finished, e.g. after a failure.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!this.finished) {
+			this.out.close();
+			if (this.tempFile.delete()) {
+				logger.error("Removed unfinished bundle {} with {} issues", this.tempFile, this.issueCount);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.pivotal.migration.MigrationClient.ImportedIssue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Polls the status of submitted imports from a small scheduler, rather than
+ * from a blocked thread per import. Each import is checked again with
+ * exponential backoff and jitter while it remains pending, so many imports
+ * can be tracked at once without polling in lockstep. Errors from checking
+ * the status, e.g. network or rate limit errors, are retried the same way.
+ *
+ * <p>Completed imports, with an issue number or a failure set, are passed to
+ * the result handler, in order of completion, and then to the future returned
+ * from {@link #submit(ImportedIssue)}. An import that is still pending after
+ * the max wait time is passed on the same way, but with neither set, i.e.
+ * unresolved, since GitHub may still complete it later.
+ */
+class ImportStatusPoller implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(ImportStatusPoller.class);
+
+	private static final long INITIAL_DELAY_MILLIS = 500;
+
+	private static final long MAX_DELAY_MILLIS = 30 * 1000;
+
+	static final Duration MAX_WAIT = Duration.ofMinutes(15);
+
+	private static final int POLLER_THREADS = 4;
+
+
+	private final Function<ImportedIssue, Boolean> statusChecker;
+
+	private final Consumer<ImportedIssue> resultHandler;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final long maxWaitMillis;
+
+
+	/**
+	 * @param statusChecker to check the status of an import once, setting the
+	 * issue number or the failure on it, and returning whether it succeeded, or
+	 * {@code null} if it is still pending
+	 * @param resultHandler to be called when an import completes, or remains
+	 * unresolved after the max wait time
+	 */
+	ImportStatusPoller(Function<ImportedIssue, Boolean> statusChecker, Consumer<ImportedIssue> resultHandler) {
+		this(statusChecker, resultHandler, MAX_WAIT);
+	}
+
+	/**
+	 * Variant of {@link #ImportStatusPoller(Function, Consumer)} with the max
+	 * time to wait for a pending import, 15 minutes by default.
+	 */
+	ImportStatusPoller(Function<ImportedIssue, Boolean> statusChecker, Consumer<ImportedIssue> resultHandler,
+			Duration maxWait) {
+
+		this.statusChecker = statusChecker;
+		this.resultHandler = resultHandler;
+		this.scheduler = Executors.newScheduledThreadPool(POLLER_THREADS);
+		this.maxWaitMillis = maxWait.toMillis();
+	}
+
+
+	/**
+	 * Start polling the status of a submitted import.
+	 * @return future that completes after the result handler is called
+	 */
+	CompletableFuture<ImportedIssue> submit(ImportedIssue imported) {
+		PendingImport pending = new PendingImport(imported);
+		schedule(pending);
+		return pending.future;
+	}
+
+	private void schedule(PendingImport pending) {
+		long delay = getDelay(pending.attempts);
+		this.scheduler.schedule(() -> poll(pending), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll(PendingImport pending) {
+		ImportedIssue imported = pending.imported;
+		Boolean result;
+		try {
+			result = this.statusChecker.apply(imported);
+		}
+		catch (Throwable ex) {
+			// The import itself may be fine, so check again later
+			logger.warn("Failed to check import status for " + getUrl(imported) + ": " + ex.getMessage());
+			result = null;
+		}
+		if (result == null) {
+			long elapsed = System.currentTimeMillis() - pending.startTime;
+			if (elapsed < this.maxWaitMillis) {
+				pending.attempts++;
+				schedule(pending);
+				return;
+			}
+			logger.warn("Import still pending after " + elapsed / 1000 + " seconds: " + getUrl(imported));
+		}
+		try {
+			this.resultHandler.accept(imported);
+		}
+		catch (Throwable ex) {
+			logger.error("Failed to handle import result", ex);
+		}
+		pending.future.complete(imported);
+	}
+
+	private static String getUrl(ImportedIssue imported) {
+		return (imported.getImportResponse() != null ? imported.getImportResponse().getUrl() : null);
+	}
+
+	/**
+	 * Exponential backoff with "equal jitter": half of the delay is fixed, and
+	 * the other half is random.
+	 */
+	static long getDelay(int attempts) {
+		long delay = Math.min(MAX_DELAY_MILLIS, INITIAL_DELAY_MILLIS << Math.min(attempts, 16));
+		return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+	}
+
+
+	private static class PendingImport {
+
+		private final ImportedIssue imported;
+
+		private final long startTime = System.currentTimeMillis();
+
+		private final CompletableFuture<ImportedIssue> future = new CompletableFuture<>();
+
+		private int attempts;
+
+		PendingImport(ImportedIssue imported) {
+			this.imported = imported;
+		}
+	}
+
+}
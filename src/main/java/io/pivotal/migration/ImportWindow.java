@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import io.pivotal.migration.MigrationClient.ImportedIssue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded window of submitted imports with a pending result.
+ *
+ * <p>Imports are submitted one at a time, in order, and GitHub queues them in
+ * the order received, so issue numbers follow the order of submission. The
+ * status of pending imports is checked through the {@link ImportStatusPoller},
+ * which records results as they complete, while the window checks, in order
+ * of submission, that issue numbers are increasing.
+ *
+ * <p>In strict order, the default, each import is submitted only once all
+ * previous imports have an issue number, so issue numbers are guaranteed to
+ * follow the order of Jira keys, at the cost of waiting for every import in
+ * turn. An import still pending after the max wait of the poller stops the
+ * run, since it could complete after the next import. Without strict order,
+ * imports are pipelined, and issues out of order are only reported.
+ */
+class ImportWindow {
+
+	private static final Logger logger = LogManager.getLogger(ImportWindow.class);
+
+
+	private final int size;
+
+	private final boolean strictOrder;
+
+	private final ImportStatusPoller poller;
+
+	private final MigrationContext context;
+
+	private final Deque<CompletableFuture<ImportedIssue>> pending = new ArrayDeque<>();
+
+	private int lastIssueNumber;
+
+	private int outOfOrderCount;
+
+
+	/**
+	 * @param size the max number of imports with a pending result
+	 * @param strictOrder whether to wait for all pending imports to complete
+	 * before submitting the next one
+	 * @param poller to check the status of pending imports
+	 * @param context where to report imports out of order
+	 */
+	ImportWindow(int size, boolean strictOrder, ImportStatusPoller poller, MigrationContext context) {
+		this.size = size;
+		this.strictOrder = strictOrder;
+		this.poller = poller;
+		this.context = context;
+	}
+
+
+	int getOutOfOrderCount() {
+		return this.outOfOrderCount;
+	}
+
+	int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Wait until the next import can be submitted: for all pending imports to
+	 * complete in strict order, or otherwise for the window to have room.
+	 * @throws IllegalStateException in strict order, if an import is still
+	 * pending after the max wait of the poller
+	 */
+	void awaitTurn() {
+		if (this.strictOrder) {
+			while (!this.pending.isEmpty()) {
+				ImportedIssue imported = completeOldest();
+				if (imported.getIssueNumber() == null && !imported.isResolved()) {
+					throw new IllegalStateException("Import of " + getRef(imported) + " still pending: " +
+							"stopping, since the next import could get an earlier issue number. " +
+							"The next run checks it again.");
+				}
+			}
+		}
+		while (this.pending.size() >= this.size) {
+			completeOldest();
+		}
+	}
+
+	/**
+	 * Add a submitted import, first waiting for the oldest one to complete if
+	 * the window is full.
+	 */
+	void add(ImportedIssue imported) {
+		while (this.pending.size() >= this.size) {
+			completeOldest();
+		}
+		this.pending.add(this.poller.submit(imported));
+	}
+
+	/**
+	 * Wait for all pending imports to complete.
+	 */
+	void awaitAll() {
+		while (!this.pending.isEmpty()) {
+			completeOldest();
+		}
+	}
+
+	private ImportedIssue completeOldest() {
+		ImportedIssue imported = getResult(this.pending.poll());
+		Integer number = imported.getIssueNumber();
+		if (number == null) {
+			if (imported.isResolved()) {
+				logger.error("Detected import failure for " + getRef(imported) + ": " + imported.getFailure());
+			}
+			else {
+				logger.warn("Import of " + getRef(imported) + " still pending, to be checked in the next run");
+			}
+			return imported;
+		}
+		if (number <= this.lastIssueNumber) {
+			this.outOfOrderCount++;
+			this.context.addFailureMessage("Out of order: " + getRef(imported) +
+					" imported as #" + number + " after #" + this.lastIssueNumber);
+		}
+		this.lastIssueNumber = number;
+		return imported;
+	}
+
+	private static ImportedIssue getResult(CompletableFuture<ImportedIssue> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for import result", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Failed to check import result", ex.getCause());
+		}
+	}
+
+	private static String getRef(ImportedIssue imported) {
+		return imported.getJiraIssue() != null ?
+				imported.getJiraIssue().getKey() : imported.getMilestone().getTitle() + " backports";
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.pivotal.jira.IssueLink;
+import io.pivotal.jira.JiraFixVersion;
+import io.pivotal.jira.JiraIssue;
+import org.eclipse.egit.github.core.Milestone;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * What preparing an issue needs to know about other issues: which ones are
+ * restricted, and must not be referenced from sub-task and link lists, and
+ * which ones are backported to each milestone.
+ *
+ * <p>Restricted keys are known up front, and are looked up by hash while issues
+ * are prepared in parallel. Backports are added as issues are loaded, one at a
+ * time, and used once all issues are imported.
+ */
+class IssueIndex {
+
+	private final Set<String> restrictedKeys;
+
+	private final Map<String, Milestone> milestones;
+
+	private final MultiValueMap<Milestone, JiraIssue> backports = new LinkedMultiValueMap<>();
+
+
+	IssueIndex(Collection<String> restrictedKeys, Map<String, Milestone> milestones) {
+		this.restrictedKeys = new HashSet<>(restrictedKeys);
+		this.milestones = milestones;
+	}
+
+
+	boolean isRestricted(String key) {
+		return this.restrictedKeys.contains(key);
+	}
+
+	/**
+	 * Return the sub-tasks of the issue that are not restricted.
+	 */
+	List<JiraIssue> getVisibleSubtasks(JiraIssue issue) {
+		return issue.getFields().getSubtasks().stream()
+				.filter(subtask -> !isRestricted(subtask.getKey()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Return the links of the issue to other issues that are not restricted.
+	 */
+	List<IssueLink> getVisibleLinks(JiraIssue issue) {
+		return issue.getFields().getIssuelinks().stream()
+				.filter(link -> !isRestricted(link.getOutwardIssue() != null ?
+						link.getOutwardIssue().getKey() : link.getInwardIssue().getKey()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Add the issue to the backports of each of its backport versions that has
+	 * a milestone, with a lightweight reference to it.
+	 * @see MigrationClient#initBackportReference(JiraIssue)
+	 */
+	void addBackports(JiraIssue issue) {
+		JiraIssue reference = null;
+		for (JiraFixVersion version : issue.getBackportVersions()) {
+			Milestone milestone = this.milestones.get(version.getName());
+			if (milestone != null) {
+				reference = (reference != null ? reference : MigrationClient.initBackportReference(issue));
+				this.backports.add(milestone, reference);
+			}
+		}
+	}
+
+	/**
+	 * Return the issues backported to each milestone, in the order they were
+	 * added.
+	 */
+	MultiValueMap<Milestone, JiraIssue> getBackports() {
+		return this.backports;
+	}
+
+}
@@ -16,31 +16,37 @@
 package io.pivotal.migration;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.Writer;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import io.pivotal.jira.JiraClient;
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraIssue;
 import io.pivotal.jira.JiraProject;
+import io.pivotal.util.ConversionCache;
+import io.pivotal.util.GroupCommitWriter;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
 import org.springframework.util.Assert;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 
 /**
  * @author Rob Winch
@@ -60,80 +66,139 @@ public class MigrationApp implements CommandLineRunner {
 	@Autowired
 	JiraConfig jiraConfig;
 
+	@Value("${migration.commit-lines:100}")
+	int commitLines;
+
+	@Value("${migration.commit-interval:1000}")
+	long commitIntervalMillis;
+
+	@Autowired
+	ConversionCache conversionCache;
+
+	@Value("${migration.export-bundle:}")
+	String exportBundle;
+
+	@Value("${migration.import-bundle:}")
+	String importBundle;
+
 
 	public static void main(String args[]) {
 		SpringApplication.run(MigrationApp.class);
 	}
 
 
+	@Bean
+	public ConversionCache conversionCache(@Value("${markup.cache-size:10000}") int cacheSize,
+			@Value("${markup.cache-file:}") String cacheFile) throws IOException {
+
+		return new ConversionCache(cacheSize, StringUtils.hasText(cacheFile) ? new File(cacheFile) : null);
+	}
+
+
 	@Override
 	public void run(String... strings) throws Exception {
 
 		File mappingsFile = new File("github-issue-mappings.properties");
 		File failuresFile = new File("github-migration-failures.txt");
+		File journalFile = new File("github-import-journal.txt");
+
+		Duration commitInterval = Duration.ofMillis(commitIntervalMillis);
 
-		try (FileWriter mappingsWriter = new FileWriter(mappingsFile, true);
-			 FileWriter failuresWriter = new FileWriter(failuresFile, true)) {
+		// An unterminated last line in the mappings file may be torn within the
+		// number, so it's kept only if not for an import in the journal
+		Set<String> submittedImportKeys = MigrationContext.readSubmittedImportKeys(journalFile);
+
+		try (Writer mappingsWriter = new GroupCommitWriter(mappingsFile, commitLines, commitInterval,
+					IssueMappingIndex.lastLineCheck(submittedImportKeys));
+			 Writer failuresWriter = new GroupCommitWriter(failuresFile, commitLines, commitInterval);
+			 // Each submitted import is synced before waiting for its result, and
+			 // an unterminated last line is always torn, since the file is not edited
+			 Writer journalWriter = new GroupCommitWriter(journalFile, 1, commitInterval, line -> false)) {
 
 			String startTime = DateTimeFormat.forStyle("ML").print(DateTime.now());
 			failuresWriter.write("==================================\n" + startTime + "\n");
 			failuresWriter.flush();
 
-			Map<String, Integer> issueMappings = loadIssueMappings(mappingsFile);
-			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter);
-			context.setPreviouslyImportedIssueMappings(issueMappings);
+			// A removed last line of the mappings file is restored by checking the
+			// import in the journal again, as an unresolved import
 
-			try {
-				// Delete if github.delete-create-repository-slug=true AND 0 commits
-				if (github.deleteRepository()) {
-					Assert.isTrue(issueMappings.isEmpty(),
-							"Repository was deleted but github-issue-mappings.properties has content." +
-									"Please delete the file, or save the content elsewhere and then delete.");
-				}
-			}
-			catch (HttpClientErrorException ex) {
-				if (ex.getStatusCode().value() != HttpStatus.NOT_FOUND.value()) {
-					throw ex;
-				}
+			IssueMappingIndex issueMappings = IssueMappingIndex.load(mappingsFile);
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, journalWriter);
+			context.setPreviouslyImportedIssueMappings(issueMappings);
+			Map<String, String> unresolvedImports;
+			try (FileReader journalReader = new FileReader(journalFile)) {
+				unresolvedImports = context.getUnresolvedImports(journalReader);
 			}
 
-			github.createRepository();
+			String migrateJql = jiraConfig.getMigrateJql();
 
-			if (issueMappings.isEmpty()) {
-				JiraProject project = jira.findProject(jiraConfig.getProjectId());
-				github.createLabels();
-				github.createMilestones(project.getVersions());
+			if (StringUtils.hasText(exportBundle)) {
+				logger.info("Exporting issues to {}, without importing them", exportBundle);
+				github.exportIssues(streamPublicIssues(migrateJql, context), (int) jira.countIssues(migrateJql),
+						jira.findRestrictedIssueKeys(migrateJql), jira::findUser, context, migrateJql,
+						new File(exportBundle));
 			}
 			else {
-				// If there are issue mappings, we'll assume it's "restart after failure" and
-				// that milestones and labels have already been created,
-			}
+				prepareRepository(issueMappings, unresolvedImports);
 
-			String migrateJql = jiraConfig.getMigrateJql();
-			List<JiraIssue> issues = jira.findIssuesVotesAndCommits(migrateJql, context::filterRemaingIssuesToImport);
+				github.resumeImports(unresolvedImports, context);
 
-			List<String> restrictedIssueKeys = issues.stream()
-					.filter(issue -> !issue.getFields().isPublic())
-					.map(JiraIssue::getKey).collect(Collectors.toList());
+				if (StringUtils.hasText(importBundle)) {
+					// Issues were converted ahead of time with migration.export-bundle
+					github.importBundle(new File(importBundle), context);
+				}
+				else {
+					List<String> restrictedIssueKeys = jira.findRestrictedIssueKeys(migrateJql);
+					github.createIssues(streamPublicIssues(migrateJql, context), (int) jira.countIssues(migrateJql),
+							restrictedIssueKeys, jira::findUser, context);
+				}
 
-			List<JiraIssue> publicIssues = issues.stream()
-					.filter(issue -> issue.getFields().isPublic())
-					.collect(Collectors.toList());
+				logger.info("Migration run completed: " + context);
+			}
+			logger.info("Markup conversion: " + conversionCache);
+		}
 
-			github.createIssues(publicIssues, restrictedIssueKeys, context);
+		System.exit(0);
+	}
 
-			logger.info("Migration run completed: " + context);
+	private void prepareRepository(IssueMappingIndex issueMappings, Map<String, String> unresolvedImports)
+			throws IOException {
+
+		try {
+			// Delete if github.delete-create-repository-slug=true AND 0 commits
+			if (github.deleteRepository()) {
+				Assert.isTrue(issueMappings.isEmpty() && unresolvedImports.isEmpty(),
+						"Repository was deleted but github-issue-mappings.properties has content." +
+								"Please delete the file, or save the content elsewhere and then delete. " +
+								"The same applies to github-import-journal.txt.");
+			}
+		}
+		catch (WebClientResponseException ex) {
+			if (ex.getStatusCode().value() != HttpStatus.NOT_FOUND.value()) {
+				throw ex;
+			}
 		}
 
-		System.exit(0);
+		github.createRepository();
+
+		if (issueMappings.isEmpty() && unresolvedImports.isEmpty()) {
+			JiraProject project = jira.findProject(jiraConfig.getProjectId());
+			github.createLabels();
+			github.createMilestones(project.getVersions());
+		}
+		else {
+			// If there are issue mappings, we'll assume it's "restart after failure" and
+			// that milestones and labels have already been created,
+		}
 	}
 
-	private static Map<String, Integer> loadIssueMappings(File mappingsFile) throws IOException {
-		Properties props = new Properties();
-		props.load(new FileInputStream(mappingsFile));
-		Map<String, Integer> result = new HashMap<>();
-		props.stringPropertyNames().forEach(name -> result.put(name, Integer.valueOf(props.getProperty(name))));
-		return result;
+	/**
+	 * Issues flow through conversion into the import, or the export, as they're loaded.
+	 */
+	private Flux<JiraIssue> streamPublicIssues(String migrateJql, MigrationContext context) {
+		return jira
+				.streamIssuesVotesAndCommits(migrateJql, issue -> context.getGitHubIssueId(issue.getKey()) == null)
+				.filter(issue -> issue.getFields().isPublic());
 	}
 
 }
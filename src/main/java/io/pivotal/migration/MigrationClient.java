@@ -15,73 +15,73 @@
  */
 package io.pivotal.migration;
 
-import io.pivotal.github.ExtendedEgitGitHubClient;
-import io.pivotal.github.GitHubRestTemplate;
+import io.pivotal.github.GitHubTokenPool;
 import io.pivotal.github.GithubComment;
 import io.pivotal.github.GithubConfig;
 import io.pivotal.github.GithubIssue;
 import io.pivotal.github.ImportGithubIssue;
+import io.pivotal.github.ReactiveGitHubClient;
 import io.pivotal.jira.IssueLink;
 import io.pivotal.jira.JiraAttachment;
 import io.pivotal.jira.JiraComment;
-import io.pivotal.jira.JiraFixVersion;
 import io.pivotal.jira.JiraIssue;
 import io.pivotal.jira.JiraIssue.Fields;
 import io.pivotal.jira.JiraUser;
 import io.pivotal.jira.JiraVersion;
+import io.pivotal.migration.ImportBundle.BackportIssue;
+import io.pivotal.migration.ImportBundle.Header;
+import io.pivotal.migration.ImportBundle.IssueEntry;
+import io.pivotal.migration.ImportBundle.Trailer;
+import io.pivotal.util.MarkdownEngine;
 import io.pivotal.util.MarkupEngine;
 import io.pivotal.util.MarkupManager;
 import io.pivotal.util.ProgressTracker;
-import io.pivotal.util.RateLimitHelper;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URLEncoder;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Label;
 import org.eclipse.egit.github.core.Milestone;
-import org.eclipse.egit.github.core.RepositoryId;
-import org.eclipse.egit.github.core.client.GitHubClient;
-import org.eclipse.egit.github.core.client.RequestException;
-import org.eclipse.egit.github.core.service.CommitService;
-import org.eclipse.egit.github.core.service.LabelService;
-import org.eclipse.egit.github.core.service.MilestoneService;
 import org.joda.time.DateTime;
 import org.joda.time.base.AbstractInstant;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.RequestEntity;
-import org.springframework.http.RequestEntity.BodyBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -101,8 +101,14 @@ public class MigrationClient {
 
 	private static final List<String> SUPPRESSED_LINK_TYPES = Arrays.asList("relates to", "is related to");
 
-	private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
-			new ParameterizedTypeReference<Map<String, Object>>() {};
+	/** Max number of issues prepared for import at a time */
+	private static final int PREPARE_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+	/** Max number of prepared issues waiting to be imported */
+	private static final int PREPARED_BUFFER_SIZE = 32;
+
+	/** Max number of issues with Jira user lookups at a time, for users mentioned in them */
+	private static final int USER_LOOKUP_CONCURRENCY = 8;
 
 
 	private final GithubConfig config;
@@ -121,19 +127,19 @@ public class MigrationClient {
 	// From https://developer.github.com/v3/guides/best-practices-for-integrators/#dealing-with-rate-limits
 	// If you're making a large number of POST, PATCH, PUT, or DELETE requests
 	// for a single user or client ID, wait at least one second between each request.
-	private final RateLimitHelper rateLimitHelper = new RateLimitHelper();
-
-	private final GitHubRestTemplate rest = new GitHubRestTemplate(rateLimitHelper, logger);
-
-	private final GitHubClient client = new ExtendedEgitGitHubClient(rateLimitHelper, logger);
-
-	private final IRepositoryIdProvider repositoryIdProvider;
+	// This is taken care of by the RateLimitHelper for each token in the pool.
+	private final ReactiveGitHubClient github;
 
 	private final DateTime migrationDateTime = DateTime.now();
 
-	private final BodyBuilder importRequestBuilder;
+	/** Max number of submitted imports with a pending result */
+	private int importWindowSize = 20;
+
+	/** How long to keep checking the status of a pending import, before leaving it unresolved */
+	private Duration importStatusMaxWait = ImportStatusPoller.MAX_WAIT;
 
-	private int importBatchSize = 100;
+	/** Whether to wait for the previous import to get an issue number before submitting the next */
+	private boolean strictImportOrder = true;
 
 
 	@Autowired
@@ -145,18 +151,24 @@ public class MigrationClient {
 		this.milestoneFilter = milestoneFilter;
 		this.labelHandler = labelHandler;
 		this.issueProcessor = issueProcessor;
-		this.repositoryIdProvider = RepositoryId.createFromId(this.config.getRepositorySlug());
-		this.importRequestBuilder = initImportRequestBuilder();
-		this.client.setCredentials(config.getUser(), config.getAccessToken());
+		GitHubTokenPool tokenPool = new GitHubTokenPool(config.getAccessToken(), config.getReadAccessTokens());
+		this.github = new ReactiveGitHubClient(config.getApiUrl(), config.getRepositorySlug(), tokenPool);
 	}
 
-	private BodyBuilder initImportRequestBuilder() {
-		String slug = this.config.getRepositorySlug();
+	@Autowired
+	public void setImportWindowSize(@Value("${migration.import-window-size:20}") int importWindowSize) {
+		Assert.isTrue(importWindowSize > 0, "migration.import-window-size must be greater than 0");
+		this.importWindowSize = importWindowSize;
+	}
+
+	@Autowired
+	public void setStrictImportOrder(@Value("${migration.strict-import-order:true}") boolean strictImportOrder) {
+		this.strictImportOrder = strictImportOrder;
+	}
 
-		URI uri = URI.create("https://api.github.com/repos/" + slug + "/import/issues");
-		return RequestEntity.post(uri)
-				.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"))
-				.header("Authorization", this.config.getAuthorizationHeader());
+	@Autowired
+	public void setImportStatusMaxWait(@Value("${migration.import-status-max-wait-seconds:900}") long seconds) {
+		this.importStatusMaxWait = Duration.ofSeconds(seconds);
 	}
 
 	@SuppressWarnings("unused")
@@ -178,25 +190,19 @@ public class MigrationClient {
 		}
 		String slug = this.config.getRepositorySlug();
 
-		CommitService commitService = new CommitService(this.client);
+		boolean hasCommits;
 		try {
-			commitService.getCommits(repositoryIdProvider);
+			hasCommits = this.github.hasCommits().block();
+		}
+		catch (WebClientException ex) {
+			throw new IllegalStateException("Attempting to delete a repository, but it appears the repository has commits. Terminating!", ex);
+		}
+		if (hasCommits) {
 			throw new IllegalStateException("Attempting to delete a repository that has commits. Terminating!");
-		} catch(RequestException e) {
-			if(e.getStatus() != 404 & e.getStatus() != 409) {
-				throw new IllegalStateException("Attempting to delete a repository, but it appears the repository has commits. Terminating!", e);
-			}
 		}
 
 		logger.info("Deleting repository {}", slug);
-
-		String url = UriComponentsBuilder
-				.fromUriString("https://api.github.com/repos/" + slug)
-				.toUriString();
-
-		HttpHeaders headers = new HttpHeaders();
-		headers.set(HttpHeaders.AUTHORIZATION, this.config.getAuthorizationHeader());
-		rest.exchange(url, HttpMethod.DELETE, new HttpEntity<>(headers), String.class);
+		this.github.deleteRepository().block();
 		return true;
 	}
 
@@ -208,22 +214,10 @@ public class MigrationClient {
 
 		logger.info("Creating repository {}", slug);
 
-		UriComponentsBuilder uri = UriComponentsBuilder.fromUriString("https://api.github.com/user/repos");
-
-		Map<String, Object> repository = new HashMap<>();
-		repository.put("name", slug.split("/")[1]);
-		repository.put("private", true);
-
-		HttpHeaders headers = new HttpHeaders();
-		headers.set(HttpHeaders.AUTHORIZATION, this.config.getAuthorizationHeader());
-
-		ResponseEntity<String> entity = rest.postForEntity(uri.toUriString(), new HttpEntity(repository, headers),
-				String.class);
-		Assert.notNull(entity, "No response");
+		this.github.createRepository(true).block();
 	}
 
 	public void createMilestones(List<JiraVersion> versions) throws IOException {
-		MilestoneService milestones = new MilestoneService(this.client);
 		versions = versions.stream().filter(milestoneFilter).collect(Collectors.toList());
 		logger.info("Creating {} milestones", versions.size());
 		ProgressTracker tracker = new ProgressTracker(versions.size(), 1, 50, logger.isDebugEnabled());
@@ -237,23 +231,18 @@ public class MigrationClient {
 				milestone.setCreatedAt(date);
 				milestone.setDueOn(date);
 			}
-			milestones.createMilestone(repositoryIdProvider, milestone);
+			this.github.createMilestone(milestone).block();
 		}
 		tracker.stopProgress();
 	}
 
 	public void createLabels() throws IOException {
-		LabelService labelService = new LabelService(this.client);
-		List<Label> existingLabels = labelService.getLabels(repositoryIdProvider);
-
-		existingLabels.forEach(it -> {
-			try {
-				labelService.deleteLabel(repositoryIdProvider,
-						URLEncoder.encode(it.getName(), "US-ASCII").replaceAll("\\+", "%20"));
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		});
+		List<Label> existingLabels = this.github.getLabels().collectList().block();
+		Flux.fromIterable(existingLabels)
+				.flatMap(label -> this.github.deleteLabel(label.getName())
+						.doOnError(ex -> logger.error("Failed to delete label \"" + label.getName() + "\"", ex))
+						.onErrorResume(ex -> Mono.empty()))
+				.blockLast();
 
 		Set<Label> labels = labelHandler.getAllLabels();
 		logger.info("Creating labels: {}", labels);
@@ -261,142 +250,334 @@ public class MigrationClient {
 		for (Label label : labels) {
 			tracker.updateForIteration();
 			logger.debug("Creating label: \"{}\"", label.getName());
-			labelService.createLabel(repositoryIdProvider, label);
+			this.github.createLabel(label).block();
 		}
 		tracker.stopProgress();
 	}
 
 
+	/**
+	 * Check the result of imports submitted in a previous run that ended before
+	 * their result was recorded. Completed imports are recorded as mappings,
+	 * while failed imports are reported, but not counted as failures, since
+	 * the issues remain to be imported again. Imports that are still pending
+	 * may yet complete, and importing those issues again could duplicate them,
+	 * so the run is aborted, to be run again later.
+	 * @param importUrls import URLs by Jira issue key
+	 * @throws IllegalStateException if any import is still pending
+	 */
+	public void resumeImports(Map<String, String> importUrls, MigrationContext context) {
+		if (importUrls.isEmpty()) {
+			return;
+		}
+		logger.info("Checking the result of {} imports submitted in a previous run", importUrls.size());
+		Consumer<ImportedIssue> resultHandler = imported -> {
+			if (imported.getIssueNumber() != null) {
+				context.addImportResult(imported);
+			}
+			else if (imported.isResolved()) {
+				context.addFailureMessage("Previously submitted import of " +
+						imported.getJiraIssue().getKey() + " failed [" + imported.getFailure() + "]");
+			}
+		};
+		try (ImportStatusPoller poller = createStatusPoller(resultHandler)) {
+			List<CompletableFuture<ImportedIssue>> results = importUrls.entrySet().stream()
+					.map(entry -> {
+						JiraIssue jiraIssue = new JiraIssue();
+						jiraIssue.setKey(entry.getKey());
+						ImportGithubIssueResponse importResponse = new ImportGithubIssueResponse();
+						importResponse.setUrl(entry.getValue());
+						return poller.submit(new ImportedIssue(jiraIssue, null, importResponse));
+					})
+					.collect(Collectors.toList());
+			List<ImportedIssue> imports = results.stream().map(CompletableFuture::join).collect(Collectors.toList());
+			List<String> pending = imports.stream()
+					.filter(imported -> !imported.isResolved())
+					.map(imported -> imported.getJiraIssue().getKey())
+					.collect(Collectors.toList());
+			if (!pending.isEmpty()) {
+				context.checkpoint();
+				throw new IllegalStateException(pending.size() + " imports submitted in a previous run " +
+						"are still pending: " + pending + ". Run the migration again later, once GitHub " +
+						"has processed them, rather than import those issues again.");
+			}
+			long resumed = imports.stream().filter(imported -> imported.getIssueNumber() != null).count();
+			logger.info("{} previously submitted imports completed, {} failed, to be imported again",
+					resumed, importUrls.size() - resumed);
+		}
+	}
+
 	// https://gist.github.com/jonmagic/5282384165e0f86ef105#start-an-issue-import
 
-	public void createIssues(List<JiraIssue> publicIssues, List<String> restrictedIssueKeys,
-			MigrationContext context) {
+	/**
+	 * Prepare and import issues as they're loaded, in order. Issues are prepared
+	 * (wiki to markdown, select labels, format Jira details, etc) in parallel, and
+	 * only a bounded number of them ahead of the import, so that the import starts
+	 * with the first issue loaded, and memory use does not grow with the number
+	 * of issues.
+	 * @param issues the public issues, including previously imported ones
+	 * @param issueCount the number of issues expected, for progress tracking
+	 * @param restrictedIssueKeys the keys of issues that are not public
+	 * @param userLookup to look up Jira users mentioned in issues
+	 * @param context the migration context
+	 */
+	public void createIssues(Flux<JiraIssue> issues, int issueCount, List<String> restrictedIssueKeys,
+			Function<String, Mono<JiraUser>> userLookup, MigrationContext context) {
+
+		logger.info("Retrieving list of milestones");
+		Map<String, Milestone> milestones = retrieveMilestones();
+
+		// Backports are added as issues are loaded, and used once all are imported
+		IssueIndex index = new IssueIndex(restrictedIssueKeys, milestones);
+
+		Flux<Tuple2<JiraIssue, ImportGithubIssue>> importData =
+				prepareIssues(issues, milestones, index, userLookup, context);
+
+		logger.info("Importing issues as they're loaded and prepared on {} cores, with up to {} pending import results",
+				PREPARE_CONCURRENCY, importWindowSize);
+		importIssues(importData.toIterable(PREPARED_BUFFER_SIZE), issueCount, index.getBackports(), context);
+	}
 
-		logger.info("Collecting list of users from all issues");
-		Map<String, JiraUser> users = collectUsers(publicIssues);
-		this.markup.configureUserLookup(users);
+	/**
+	 * Variant of {@link #createIssues} that saves the issues prepared for import
+	 * to a bundle file, to be imported later with {@link #importBundle}, rather
+	 * than importing them. Milestones must exist already, since issues refer to
+	 * them by number.
+	 * @param bundleFile the bundle file to create or replace
+	 */
+	public void exportIssues(Flux<JiraIssue> issues, int issueCount, List<String> restrictedIssueKeys,
+			Function<String, Mono<JiraUser>> userLookup, MigrationContext context, String jql, File bundleFile)
+			throws IOException {
 
 		logger.info("Retrieving list of milestones");
 		Map<String, Milestone> milestones = retrieveMilestones();
+		IssueIndex index = new IssueIndex(restrictedIssueKeys, milestones);
 
-		logger.info("Collecting lists of backport issues by milestone");
-		MultiValueMap<Milestone, JiraIssue> backportMap = collectBackports(publicIssues, milestones);
+		Flux<Tuple2<JiraIssue, ImportGithubIssue>> importData =
+				prepareIssues(issues, milestones, index, userLookup, context);
 
-		logger.info("Preparing for import (wiki to markdown, select labels, format Jira details, etc)");
-		List<JiraIssue> importIssues = context.filterRemaingIssuesToImport(publicIssues);
-		List<ImportGithubIssue> importData = importIssues.stream()
-				.map(jiraIssue -> {
-					issueProcessor.beforeConversion(jiraIssue);
-					ImportGithubIssue issueToImport = new ImportGithubIssue();
-					issueToImport.setIssue(initGithubIssue(jiraIssue, milestones, restrictedIssueKeys));
-					issueToImport.setComments(initComments(jiraIssue));
-					issueProcessor.beforeImport(jiraIssue, issueToImport);
-					return issueToImport;
-				})
-				.collect(Collectors.toList());
-
-		logger.info("Starting to import {} issues (2 requests per issue/iteration)", importIssues.size());
-		ProgressTracker tracker1 = new ProgressTracker(importIssues.size(), 4, 200, logger.isDebugEnabled());
-		List<ImportedIssue> importedIssues = new ArrayList<>(importIssues.size());
-		for (int i = 0, issuesSize = importIssues.size(); i < issuesSize; i++) {
-			tracker1.updateForIteration();
-			ImportGithubIssueResponse importResponse = executeIssueImport(importData.get(i), context);
-			importedIssues.add(new ImportedIssue(importIssues.get(i), null, importResponse));
-			if (i % importBatchSize == 0 && i != 0) {
-				for (int j = i - importBatchSize; j <= i; j++) {
-					if (!checkImportResult(importedIssues.get(j), context)) {
-						logger.error("Detected import failure for " + importIssues.get(i).getKey());
-						break;
-					}
-				}
+		Map<String, Integer> milestoneNumbers = new LinkedHashMap<>();
+		milestones.values().forEach(milestone -> milestoneNumbers.put(milestone.getTitle(), milestone.getNumber()));
+		Header header = new Header(this.config.getRepositorySlug(), jql, DateTime.now(), milestoneNumbers);
+
+		logger.info("Exporting issues as they're loaded and prepared on {} cores to {}", PREPARE_CONCURRENCY, bundleFile);
+		ProgressTracker tracker = new ProgressTracker(issueCount, 4, 200, logger.isDebugEnabled());
+		try (ImportBundleWriter writer = new ImportBundleWriter(bundleFile, header)) {
+			for (Tuple2<JiraIssue, ImportGithubIssue> tuple : importData.toIterable(PREPARED_BUFFER_SIZE)) {
+				tracker.updateForIteration();
+				writer.writeIssue(tuple.getT1().getKey(), tuple.getT2());
 			}
+			tracker.stopProgress();
+			Trailer trailer = new Trailer();
+			index.getBackports().forEach((milestone, backportIssues) -> trailer.getBackports().put(milestone.getTitle(),
+					backportIssues.stream().map(MigrationClient::initBundleBackportIssue).collect(Collectors.toList())));
+			writer.finish(trailer);
 		}
-		tracker1.stopProgress();
+	}
 
-		logger.info("Checking remaining import results");
-		importedIssues.forEach(issue -> checkImportResult(issue, context));
-		if (context.getFailedImportCount() == 0) {
-			logger.info("0 failures");
-		}
-		else {
-			int failed = context.getFailedImportCount();
-			int total = importedIssues.size();
-			logger.error(failed + " failed, " + (total - failed) + " succeeded, " + total + " total");
-			return;
-		}
+	/**
+	 * Import the issues in a bundle saved with {@link #exportIssues}, streaming
+	 * them from disk, and skipping those already imported. The bundle is checked
+	 * to be complete, to be prepared for the target repository, and to refer to
+	 * the same milestone numbers as the target repository, before anything is
+	 * imported.
+	 */
+	public void importBundle(File bundleFile, MigrationContext context) throws IOException {
+		logger.info("Checking bundle {}", bundleFile);
+		Trailer trailer = ImportBundleReader.verify(bundleFile);
+
+		try (ImportBundleReader reader = new ImportBundleReader(bundleFile)) {
+			Header header = reader.getHeader();
+			logger.info("Bundle with {} issues for {}, prepared {} for jql=\"{}\"",
+					trailer.getIssueCount(), header.getRepositorySlug(), header.getCreated(), header.getJql());
+			Assert.state(header.getRepositorySlug().equals(this.config.getRepositorySlug()),
+					"Bundle prepared for " + header.getRepositorySlug() + ", " +
+							"but importing to " + this.config.getRepositorySlug());
+
+			logger.info("Retrieving list of milestones");
+			Map<String, Milestone> milestones = retrieveMilestones();
+			header.getMilestones().forEach((title, number) -> {
+				Milestone milestone = milestones.get(title);
+				Assert.state(milestone != null && number.equals(milestone.getNumber()),
+						"Milestone \"" + title + "\" is #" + number + " in the bundle, but " +
+								(milestone != null ? "#" + milestone.getNumber() : "missing") + " in the repository");
+			});
+
+			MultiValueMap<Milestone, JiraIssue> backportMap = new LinkedMultiValueMap<>();
+			trailer.getBackports().forEach((title, backportIssues) -> backportIssues.forEach(backportIssue ->
+					backportMap.add(milestones.get(title), initBackportReference(backportIssue))));
+
+			Flux<Tuple2<JiraIssue, ImportGithubIssue>> importData = Flux
+					.<IssueEntry>generate(sink -> {
+						try {
+							IssueEntry entry = reader.read();
+							if (entry != null) {
+								sink.next(entry);
+							}
+							else {
+								sink.complete();
+							}
+						}
+						catch (IOException ex) {
+							sink.error(ex);
+						}
+					})
+					.filter(entry -> context.getGitHubIssueId(entry.getJiraKey()) == null)
+					.map(entry -> {
+						JiraIssue jiraIssue = new JiraIssue();
+						jiraIssue.setKey(entry.getJiraKey());
+						return Tuples.of(jiraIssue, entry.getImportIssue());
+					});
 
-		logger.info("{} backport issue holders to create", backportMap.size());
-		if (backportMap.isEmpty()) {
-			return;
-		}
-		List<ImportedIssue> backportIssueHolders = new ArrayList<>(backportMap.size());
-		ProgressTracker tracker2 = new ProgressTracker(backportIssueHolders.size(), logger.isDebugEnabled());
-		backportMap.keySet().forEach(milestone -> {
-			tracker2.updateForIteration();
-			GithubIssue ghIssue = initMilestoneBackportIssue(milestone, backportMap.get(milestone), context);
-			ImportGithubIssue toImport = new ImportGithubIssue();
-			toImport.setIssue(ghIssue);
-			ImportGithubIssueResponse importResponse = executeIssueImport(toImport, context);
-			backportIssueHolders.add(new ImportedIssue(null, milestone, importResponse));
-		});
-		tracker2.stopProgress();
-		logger.info("Checking import results for backport issue holders");
-		backportIssueHolders.forEach(issue -> checkImportResult(issue, context));
-		if (context.getFailedImportCount() == 0) {
-			logger.info("0 failures");
-		}
-		else {
-			List<String> failed = backportIssueHolders.stream()
-					.filter(issue -> !checkImportResult(issue, context))
-					.map(issue -> issue.getMilestone().getTitle())
-					.collect(Collectors.toList());
-			List<String> succeeded = backportIssueHolders.stream()
-					.filter(i -> checkImportResult(i, context))
-					.map(issue -> issue.getMilestone().getTitle())
-					.collect(Collectors.toList());
-			logger.error("Failed:\n" + failed + "\nSucceeded:\n" + succeeded);
+			logger.info("Importing issues from bundle, with up to {} pending import results", importWindowSize);
+			importIssues(importData.toIterable(PREPARED_BUFFER_SIZE), trailer.getIssueCount(), backportMap, context);
 		}
 	}
 
-	private Map<String, JiraUser> collectUsers(List<JiraIssue> issues) {
-		Map<String, JiraUser> userLookup = new HashMap<>();
-		for (JiraIssue issue : issues) {
-			Fields fields = issue.getFields();
-			userLookup.put(fields.getReporter().getKey(), fields.getReporter());
-			for (JiraComment comment : fields.getComment().getComments()) {
-				userLookup.put(comment.getAuthor().getKey(), comment.getAuthor());
+	/**
+	 * Prepare issues for import (wiki to markdown, select labels, format Jira
+	 * details, etc) in parallel, a bounded number at a time, and emit them in
+	 * their original order. Backports are collected for all issues, including
+	 * previously imported ones, while only issues not imported yet are prepared.
+	 */
+	private Flux<Tuple2<JiraIssue, ImportGithubIssue>> prepareIssues(Flux<JiraIssue> issues,
+			Map<String, Milestone> milestones, IssueIndex index, Function<String, Mono<JiraUser>> userLookup,
+			MigrationContext context) {
+
+		UserCollector userCollector = new UserCollector(userLookup);
+		return issues
+				.doOnNext(index::addBackports)
+				.filter(jiraIssue -> context.getGitHubIssueId(jiraIssue.getKey()) == null)
+				.flatMapSequential(userCollector::collectUsers, USER_LOOKUP_CONCURRENCY)
+				// Issues are prepared independently, and emitted in their original order
+				.flatMapSequential(jiraIssue -> Mono
+						.fromCallable(() -> Tuples.of(jiraIssue, prepareImport(jiraIssue, milestones, index)))
+						.subscribeOn(Schedulers.parallel()), PREPARE_CONCURRENCY);
+	}
+
+	/**
+	 * Submit issues for import in order, and once all are imported, create
+	 * backport issue holders.
+	 */
+	private void importIssues(Iterable<Tuple2<JiraIssue, ImportGithubIssue>> importData, int issueCount,
+			MultiValueMap<Milestone, JiraIssue> backportMap, MigrationContext context) {
+
+		ProgressTracker tracker1 = new ProgressTracker(issueCount, 4, 200, logger.isDebugEnabled());
+		int importCount = 0;
+		try (ImportStatusPoller poller = createStatusPoller(context::addImportResult)) {
+			ImportWindow window = new ImportWindow(importWindowSize, strictImportOrder, poller, context);
+			for (Tuple2<JiraIssue, ImportGithubIssue> tuple : importData) {
+				tracker1.updateForIteration();
+				JiraIssue jiraIssue = tuple.getT1();
+				window.awaitTurn();
+				ImportGithubIssueResponse importResponse = executeIssueImport(tuple.getT2(), context);
+				ImportedIssue importedIssue = new ImportedIssue(jiraIssue, null, importResponse);
+				if (importResponse != null) {
+					context.addSubmittedImport(jiraIssue.getKey(), importResponse.getUrl());
+				}
+				importCount++;
+				window.add(importedIssue);
+			}
+			tracker1.stopProgress();
+			logger.info("Checking remaining import results");
+			window.awaitAll();
+			context.checkpoint();
+			if (window.getOutOfOrderCount() > 0) {
+				logger.error("{} issues imported out of order", window.getOutOfOrderCount());
+			}
+			if (context.getFailedImportCount() == 0 && context.getUnresolvedImportCount() == 0) {
+				logger.info("0 failures");
+			}
+			else {
+				int failed = context.getFailedImportCount();
+				int unresolved = context.getUnresolvedImportCount();
+				logger.error(failed + " failed, " + unresolved + " still pending, " +
+						(importCount - failed - unresolved) + " succeeded, " + importCount + " total");
+				return;
+			}
+
+			logger.info("{} backport issue holders to create", backportMap.size());
+			if (backportMap.isEmpty()) {
+				return;
+			}
+			List<ImportedIssue> backportIssueHolders = new ArrayList<>(backportMap.size());
+			List<CompletableFuture<ImportedIssue>> backportResults = new ArrayList<>(backportMap.size());
+			ProgressTracker tracker2 = new ProgressTracker(backportMap.size(), logger.isDebugEnabled());
+			backportMap.keySet().forEach(milestone -> {
+				tracker2.updateForIteration();
+				GithubIssue ghIssue = initMilestoneBackportIssue(milestone, backportMap.get(milestone), context);
+				ImportGithubIssue toImport = new ImportGithubIssue();
+				toImport.setIssue(ghIssue);
+				ImportGithubIssueResponse importResponse = executeIssueImport(toImport, context);
+				ImportedIssue holder = new ImportedIssue(null, milestone, importResponse);
+				backportIssueHolders.add(holder);
+				backportResults.add(poller.submit(holder));
+			});
+			tracker2.stopProgress();
+			logger.info("Checking import results for backport issue holders");
+			backportResults.forEach(CompletableFuture::join);
+			context.checkpoint();
+			if (context.getFailedImportCount() == 0 && context.getUnresolvedImportCount() == 0) {
+				logger.info("0 failures");
+			}
+			else {
+				List<String> failed = backportIssueHolders.stream()
+						.filter(issue -> issue.getIssueNumber() == null)
+						.map(issue -> issue.getMilestone().getTitle())
+						.collect(Collectors.toList());
+				List<String> succeeded = backportIssueHolders.stream()
+						.filter(issue -> issue.getIssueNumber() != null)
+						.map(issue -> issue.getMilestone().getTitle())
+						.collect(Collectors.toList());
+				logger.error("Failed:\n" + failed + "\nSucceeded:\n" + succeeded);
 			}
 		}
-		return userLookup;
+	}
+
+	private ImportGithubIssue prepareImport(JiraIssue jiraIssue, Map<String, Milestone> milestones,
+			IssueIndex index) {
+
+		issueProcessor.beforeConversion(jiraIssue);
+		ImportGithubIssue issueToImport = new ImportGithubIssue();
+		issueToImport.setIssue(initGithubIssue(jiraIssue, milestones, index));
+		issueToImport.setComments(initComments(jiraIssue));
+		issueProcessor.beforeImport(jiraIssue, issueToImport);
+		return issueToImport;
 	}
 
 	private Map<String, Milestone> retrieveMilestones() {
-		try {
-			return new MilestoneService(this.client)
-					.getMilestones(repositoryIdProvider, "all")
-					.stream()
-					.collect(Collectors.toMap(Milestone::getTitle, Function.identity()));
-		}
-		catch (IOException ex) {
-			throw new IllegalStateException(ex);
-		}
+		return this.github.getMilestones("all")
+				.collectMap(Milestone::getTitle, Function.identity())
+				.block();
 	}
 
-	private MultiValueMap<Milestone, JiraIssue> collectBackports(List<JiraIssue> issues, Map<String, Milestone> milestones) {
-		MultiValueMap<Milestone, JiraIssue> backportMap = new LinkedMultiValueMap<>();
-		for (JiraIssue jiraIssue : issues) {
-			for (JiraFixVersion version : jiraIssue.getBackportVersions()) {
-				Milestone milestone = milestones.get(version.getName());
-				if (milestone != null) {
-					backportMap.add(milestone, jiraIssue);
-				}
-			}
-		}
-		return backportMap;
+	/**
+	 * Copy what backport issue holders need from the issue, so the rest of it
+	 * is not held on to until all issues are imported.
+	 */
+	static JiraIssue initBackportReference(JiraIssue jiraIssue) {
+		Fields fields = jiraIssue.getFields();
+		return initBackportReference(new BackportIssue(
+				jiraIssue.getKey(), fields.getSummary(), fields.getCreated(), fields.getUpdated()));
+	}
+
+	private static JiraIssue initBackportReference(BackportIssue backportIssue) {
+		Fields fields = new Fields();
+		fields.setSummary(backportIssue.getSummary());
+		fields.setCreated(backportIssue.getCreated());
+		fields.setUpdated(backportIssue.getUpdated());
+		JiraIssue reference = new JiraIssue();
+		reference.setKey(backportIssue.getJiraKey());
+		reference.setFields(fields);
+		return reference;
+	}
+
+	private static BackportIssue initBundleBackportIssue(JiraIssue reference) {
+		Fields fields = reference.getFields();
+		return new BackportIssue(reference.getKey(), fields.getSummary(), fields.getCreated(), fields.getUpdated());
 	}
 
-	private GithubIssue initGithubIssue(JiraIssue issue, Map<String, Milestone> milestones,
-			List<String> restrictedIssues) {
+	private GithubIssue initGithubIssue(JiraIssue issue, Map<String, Milestone> milestones, IssueIndex index) {
 
 		Fields fields = issue.getFields();
 		DateTime updated = fields.getUpdated();
@@ -421,7 +602,7 @@ public class MigrationClient {
 			}
 			body += "\n" + engine.convert(description);
 		}
-		String jiraDetails = initJiraDetails(issue, engine, milestones, restrictedIssues);
+		String jiraDetails = initJiraDetails(issue, engine, milestones, index);
 		body += "\n\n---\n" + (StringUtils.isEmpty(jiraDetails) ? "No further details from " + jiraIssueLink : jiraDetails);
 		ghIssue.setBody(body);
 
@@ -460,7 +641,7 @@ public class MigrationClient {
 	}
 
 	private String initJiraDetails(JiraIssue issue, MarkupEngine engine,
-			Map<String, Milestone> milestones, List<String> restrictedIssues) {
+			Map<String, Milestone> milestones, IssueIndex index) {
 
 		Fields fields = issue.getFields();
 		String jiraDetails = "";
@@ -489,9 +670,7 @@ public class MigrationClient {
 			String subTaskType = "Backport".equalsIgnoreCase(issueType) ? "backport sub-task" : "sub-task";
 			jiraDetails += "\nThis issue is a " + subTaskType + " of " + engine.link(key, parent.getBrowserUrl()) + "\n";
 		}
-		List<JiraIssue> subtasks = fields.getSubtasks().stream()
-				.filter(subtask -> !restrictedIssues.contains(subtask.getKey()))
-				.collect(Collectors.toList());
+		List<JiraIssue> subtasks = index.getVisibleSubtasks(issue);
 		if (!subtasks.isEmpty()) {
 			jiraDetails += subtasks.stream()
 					.map(subtask -> {
@@ -503,15 +682,9 @@ public class MigrationClient {
 					})
 					.collect(Collectors.joining("\n", "\n**Sub-tasks:**\n", "\n"));
 		}
-		List<IssueLink> issueLinks = fields.getIssuelinks().stream()
-				.filter(link -> link.getOutwardIssue() != null ?
-						!restrictedIssues.contains(link.getOutwardIssue().getKey()) :
-						!restrictedIssues.contains(link.getInwardIssue().getKey()))
-				.collect(Collectors.toList());
+		List<IssueLink> issueLinks = index.getVisibleLinks(issue);
 		if (!issueLinks.isEmpty()) {
 			jiraDetails += issueLinks.stream()
-					.filter(link -> !restrictedIssues.contains(link.getOutwardIssue() != null ?
-							link.getOutwardIssue().getKey() : link.getInwardIssue().getKey()))
 					.map(link -> {
 						// For now link to Jira. Later we'll make another pass to replace with GH issue numbers.
 						String key;
@@ -590,9 +763,8 @@ public class MigrationClient {
 		ImportGithubIssueResponse response = null;
 		Throwable failure = null;
 		try {
-			RequestEntity<ImportGithubIssue> request = importRequestBuilder.body(importIssue);
-			ResponseEntity<ImportGithubIssueResponse> exchange = rest
-					.exchange(request, ImportGithubIssueResponse.class);
+			ResponseEntity<ImportGithubIssueResponse> exchange =
+					this.github.importIssue(importIssue, ImportGithubIssueResponse.class).block();
 			logger.info("{} {X-RateLimit-Remaining:{}}", exchange.getStatusCode(), getRemainingRequests(exchange));
 			response = exchange.getBody();
 			if (response != null) {
@@ -629,65 +801,45 @@ public class MigrationClient {
 		}
 	}
 
-	private boolean checkImportResult(ImportedIssue importedIssue, MigrationContext context) {
-		if(importedIssue.getIssueNumber() != null) {
-			return true;
-		}
-		if (importedIssue.getFailure() != null) {
+	private ImportStatusPoller createStatusPoller(Consumer<ImportedIssue> resultHandler) {
+		return new ImportStatusPoller(this::checkImportStatus, resultHandler, this.importStatusMaxWait);
+	}
+
+	/**
+	 * Check the status of the import once, and set the resulting issue number,
+	 * or the failure. A failure is set only if GitHub reports the import as
+	 * failed, or it was not submitted, while errors from the status request
+	 * propagate, for the status to be checked again. This does not update the
+	 * context, and is safe to call concurrently for different imports.
+	 * @return whether the import succeeded, or {@code null} if still pending
+	 */
+	private Boolean checkImportStatus(ImportedIssue importedIssue) {
+		JiraIssue jiraIssue = importedIssue.getJiraIssue();
+		if (importedIssue.getImportResponse() == null) {
+			importedIssue.setFailure("No body from import request");
 			return false;
 		}
-		JiraIssue jiraIssue = importedIssue.getJiraIssue();
-		try {
-			if (importedIssue.getImportResponse() == null) {
-				importedIssue.setFailure("No body from import request");
-				return false;
-			}
-			String importUrl = importedIssue.getImportResponse().getUrl();
-			URI uri = UriComponentsBuilder.fromUriString(importUrl).build().toUri();
-			RequestEntity<Void> request = RequestEntity.get(uri)
-					.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"))
-					.header("Authorization", this.config.getAuthorizationHeader())
-					.build();
-			while (true) {
-				Map<String, Object> body;
-				try {
-					body = rest.exchange(request, MAP_TYPE).getBody();
-				}
-				catch (RestClientException ex) {
-					logger.error("Import failed: " + importUrl, ex);
-					importedIssue.setFailure(ex.getMessage());
-					return false;
-				}
-				if (body == null) {
-					importedIssue.setFailure("No body from import result request");
-					return false;
-				}
-				String url = (String) body.get("issue_url");
-				String status = (String) body.get("status");
-				if ("failed".equals(status)) {
-					importedIssue.setFailure("status: " + body);
-					return false;
-				}
-				else if ("pending".equals(status)) {
-					logger.debug("{} import still pending. Waiting 1 second",
-							jiraIssue != null ? jiraIssue.getKey() : importUrl);
-					rateLimitHelper.obtainPermitToCall();
-					continue;
-				}
-				if (url == null) {
-					importedIssue.setFailure("No URL for imported issue: " + body);
-					return false;
-				}
-				UriComponents parts = UriComponentsBuilder.fromUriString(url).build();
-				List<String> segments = parts.getPathSegments();
-				int issueNumber = Integer.parseInt(segments.get(segments.size() - 1));
-				importedIssue.setIssueNumber(issueNumber);
-				return true;
-			}
+		String importUrl = importedIssue.getImportResponse().getUrl();
+		Map<String, Object> body = this.github.getImportStatus(importUrl).block();
+		if (body == null) {
+			logger.debug("No body from import result request: {}", importUrl);
+			return null;
+		}
+		String url = (String) body.get("issue_url");
+		String status = (String) body.get("status");
+		if ("failed".equals(status)) {
+			importedIssue.setFailure("status: " + body);
+			return false;
 		}
-		finally {
-			context.addImportResult(importedIssue);
+		else if ("pending".equals(status) || url == null) {
+			logger.debug("{} import still pending", jiraIssue != null ? jiraIssue.getKey() : importUrl);
+			return null;
 		}
+		UriComponents parts = UriComponentsBuilder.fromUriString(url).build();
+		List<String> segments = parts.getPathSegments();
+		int issueNumber = Integer.parseInt(segments.get(segments.size() - 1));
+		importedIssue.setIssueNumber(issueNumber);
+		return true;
 	}
 
 	private GithubIssue initMilestoneBackportIssue(
@@ -731,6 +883,76 @@ public class MigrationClient {
 	}
 
 
+	/**
+	 * Registers the reporters and comment authors of issues as they're loaded,
+	 * and looks up other users mentioned in them that are not known yet, so that
+	 * mentions are converted the same way regardless of the order issues are
+	 * loaded in. That costs one Jira request per distinct mentioned user not
+	 * known yet. If a lookup fails, it's logged, and the mention is converted
+	 * with the user key, unless an earlier issue made the user known, so the
+	 * result depends on the order of issues again for that user.
+	 */
+	private class UserCollector {
+
+		private final Function<String, Mono<JiraUser>> userLookup;
+
+		/** Lookups by user key, shared by issues that mention the same user */
+		private final Map<String, Mono<JiraUser>> lookups = new ConcurrentHashMap<>();
+
+		private final Map<String, JiraUser> users = new ConcurrentHashMap<>();
+
+
+		UserCollector(Function<String, Mono<JiraUser>> userLookup) {
+			this.userLookup = userLookup;
+		}
+
+
+		Mono<JiraIssue> collectUsers(JiraIssue issue) {
+			Fields fields = issue.getFields();
+			Map<String, JiraUser> issueUsers = new HashMap<>();
+			addUser(issueUsers, fields.getReporter());
+			for (JiraComment comment : fields.getComment().getComments()) {
+				addUser(issueUsers, comment.getAuthor());
+			}
+			markup.configureUserLookup(issueUsers);
+			this.users.putAll(issueUsers);
+
+			Set<String> mentions = new LinkedHashSet<>();
+			if (fields.getDescription() != null) {
+				mentions.addAll(MarkdownEngine.findUserMentions(fields.getDescription()));
+			}
+			for (JiraComment comment : fields.getComment().getVisibleComments()) {
+				mentions.addAll(MarkdownEngine.findUserMentions(comment.getBody()));
+			}
+			mentions.removeAll(this.users.keySet());
+			if (mentions.isEmpty()) {
+				return Mono.just(issue);
+			}
+			return Flux.fromIterable(mentions)
+					.flatMap(key -> this.lookups.computeIfAbsent(key,
+							k -> this.userLookup.apply(k)
+									.onErrorResume(ex -> {
+										logger.warn("Failed to look up user \"{}\" mentioned in {}: {}",
+												k, issue.getKey(), ex.getMessage());
+										return Mono.empty();
+									})
+									.cache()))
+					.collectMap(JiraUser::getKey, Function.identity())
+					.map(mentionedUsers -> {
+						markup.configureUserLookup(mentionedUsers);
+						this.users.putAll(mentionedUsers);
+						return issue;
+					});
+		}
+
+		private void addUser(Map<String, JiraUser> issueUsers, @Nullable JiraUser user) {
+			if (user != null && user.getKey() != null) {
+				issueUsers.put(user.getKey(), user);
+			}
+		}
+	}
+
+
 	@SuppressWarnings("unused")
 	@Data
 	@JsonIgnoreProperties(ignoreUnknown = true)
@@ -744,7 +966,7 @@ public class MigrationClient {
 	static class ImportedIssue {
 
 		// The below two (issueNumber and failure) will be null, until we get the
-		// result from the import.
+		// result from the import, or if the import remains pending (unresolved).
 
 		Integer issueNumber;
 		String failure;
@@ -757,6 +979,10 @@ public class MigrationClient {
 		final Milestone milestone;
 
 		final ImportGithubIssueResponse importResponse;
+
+		boolean isResolved() {
+			return (this.issueNumber != null || this.failure != null);
+		}
 	}
 
 
@@ -15,18 +15,30 @@
  */
 package io.pivotal.migration;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.GroupCommitWriter;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
+
 /**
+ * Results of a migration run. Import results are added as they complete, from
+ * the threads polling import status, so access is synchronized.
+ *
  * @author Rossen Stoyanchev
  */
 public class MigrationContext {
@@ -38,31 +50,91 @@ public class MigrationContext {
 
 	private final Writer failuresWriter;
 
-	private final Map<String, Integer> issueMappings = new HashMap<>();
+	private final Writer journalWriter;
+
+	private IssueMappingIndex issueMappings = new IssueMappingIndex();
 
 	private int failedImportCount;
 
+	private int unresolvedImportCount;
+
 	private int backportIssueHolderCount;
 
 
 	public MigrationContext(Writer mappingsWriter, Writer failuresWriter) {
+		this(mappingsWriter, failuresWriter, null);
+	}
+
+	/**
+	 * @param mappingsWriter for Jira issue key to GitHub issue number mappings
+	 * @param failuresWriter for failure messages
+	 * @param journalWriter for the URLs of submitted imports, see {@link #addSubmittedImport}
+	 */
+	public MigrationContext(Writer mappingsWriter, Writer failuresWriter, Writer journalWriter) {
 		this.mappingsWriter = mappingsWriter;
 		this.failuresWriter = failuresWriter;
+		this.journalWriter = journalWriter;
 	}
 
 
-	public void setPreviouslyImportedIssueMappings(Map<String, Integer> issueMappings) {
-		this.issueMappings.clear();
-		this.issueMappings.putAll(issueMappings);
+	public synchronized void setPreviouslyImportedIssueMappings(Map<String, Integer> issueMappings) {
+		this.issueMappings = new IssueMappingIndex();
+		issueMappings.forEach(this.issueMappings::put);
+	}
+
+	public synchronized void setPreviouslyImportedIssueMappings(IssueMappingIndex issueMappings) {
+		this.issueMappings = new IssueMappingIndex();
+		issueMappings.forEach(this.issueMappings::put);
+	}
+
+	/**
+	 * Read the import journal from a previous run, and return the imports that
+	 * were submitted but don't have an issue mapping. Those may still be pending,
+	 * or may have completed after the previous run ended. A torn last line, from
+	 * a run that ended while writing it, is ignored.
+	 * @return import URLs by Jira issue key, in order of submission
+	 */
+	public synchronized Map<String, String> getUnresolvedImports(Reader journalReader) throws IOException {
+		Map<String, String> result = new LinkedHashMap<>();
+		String content = FileCopyUtils.copyToString(journalReader);
+		// Only lines terminated with a newline were written completely
+		content = content.substring(0, content.lastIndexOf('\n') + 1);
+		for (String line : StringUtils.tokenizeToStringArray(content, "\n")) {
+			String[] parts = line.split(" ");
+			if (parts.length == 2 && !issueMappings.containsKey(parts[0])) {
+				result.put(parts[0], parts[1]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the Jira keys of the imports in the journal from previous runs,
+	 * ignoring a torn last line as {@link #getUnresolvedImports} does, e.g. to
+	 * check the last line of the mappings file before it's opened.
+	 * @see IssueMappingIndex#lastLineCheck(Set)
+	 */
+	public static Set<String> readSubmittedImportKeys(File journalFile) throws IOException {
+		Set<String> keys = new HashSet<>();
+		if (journalFile.exists()) {
+			String content = GroupCommitWriter.readCompleteLines(journalFile, line -> false);
+			for (String line : StringUtils.tokenizeToStringArray(content, "\n")) {
+				String[] parts = line.split(" ");
+				if (parts.length == 2) {
+					keys.add(parts[0]);
+				}
+			}
+		}
+		return keys;
 	}
 
-	public List<JiraIssue> filterRemaingIssuesToImport(List<JiraIssue> issues) {
+	public synchronized List<JiraIssue> filterRemaingIssuesToImport(List<JiraIssue> issues) {
 		return issues.stream()
 				.filter(issue -> !issueMappings.containsKey(issue.getKey()))
 				.collect(Collectors.toList());
 	}
 
-	public void addImportResult(MigrationClient.ImportedIssue imported) {
+	public synchronized void addImportResult(MigrationClient.ImportedIssue imported) {
 		JiraIssue jiraIssue = imported.getJiraIssue();
 		if (imported.getIssueNumber() != null) {
 			if (jiraIssue == null) {
@@ -72,6 +144,12 @@ public class MigrationContext {
 			issueMappings.put(jiraIssue.getKey(), imported.getIssueNumber());
 			writeLine(mappingsWriter, jiraIssue.getKey() + ":" + imported.getIssueNumber() + "\n");
 		}
+		else if (!imported.isResolved()) {
+			// Not a failure: the journal entry remains, for the next run to check
+			unresolvedImportCount++;
+			String ref = jiraIssue != null ? jiraIssue.getKey() : imported.getMilestone().getTitle() + " backports";
+			writeLine(failuresWriter, "=> " + ref + " [still pending: " + imported.getImportResponse().getUrl() + "]\n");
+		}
 		else {
 			failedImportCount++;
 			String ref = jiraIssue != null ? jiraIssue.getKey() : imported.getMilestone().getTitle() + " backports";
@@ -79,30 +157,69 @@ public class MigrationContext {
 		}
 	}
 
-	public void addFailureMessage(String message) {
+	/**
+	 * Record the URL of a submitted import before waiting for its result, so
+	 * that if the run ends before then, the next run can check the result
+	 * rather than submit the issue again.
+	 */
+	public synchronized void addSubmittedImport(String jiraIssueKey, String importUrl) {
+		if (journalWriter != null) {
+			writeLine(journalWriter, jiraIssueKey + " " + importUrl + "\n");
+		}
+	}
+
+	public synchronized void addFailureMessage(String message) {
 		writeLine(failuresWriter, message + "\n");
 	}
 
+	/**
+	 * Make sure import results and failures written so far are on disk.
+	 */
+	public synchronized void checkpoint() {
+		for (Writer writer : new Writer[] {mappingsWriter, failuresWriter}) {
+			try {
+				writer.flush();
+			}
+			catch (IOException ex) {
+				logger.error("Failed to sync import results: " + ex.getMessage());
+			}
+		}
+	}
+
 	private void writeLine(Writer writer, String line) {
 		try {
 			writer.write(line);
-			writer.flush();
+			if (writer instanceof GroupCommitWriter) {
+				((GroupCommitWriter) writer).commitIfDue();
+			}
+			else {
+				writer.flush();
+			}
 		}
 		catch (IOException ex) {
 			logger.error("Failed to write the below import result due to \"{}\":\n{}", ex.getMessage(), line);
 		}
 	}
 
-	public int getFailedImportCount() {
+	public synchronized int getFailedImportCount() {
 		return failedImportCount;
 	}
 
-	public Integer getGitHubIssueId(String jiraIssueKey) {
-		return issueMappings.get(jiraIssueKey);
+	/**
+	 * Return the number of imports still pending after the max wait time,
+	 * which may yet complete, and are checked again in the next run.
+	 */
+	public synchronized int getUnresolvedImportCount() {
+		return unresolvedImportCount;
+	}
+
+	public synchronized Integer getGitHubIssueId(String jiraIssueKey) {
+		int number = issueMappings.getGitHubIssueNumber(jiraIssueKey);
+		return (number != IssueMappingIndex.NOT_MAPPED ? number : null);
 	}
 
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		return this.issueMappings.size() + " imported issues, " +
 				this.failedImportCount + " failed imports, " + backportIssueHolderCount + " backported issue holders";
 	}
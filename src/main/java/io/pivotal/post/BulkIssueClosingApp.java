@@ -23,6 +23,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 import org.springframework.http.RequestEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -80,22 +83,10 @@ public class BulkIssueClosingApp extends GitHubBaseApp {
 					break;
 				}
 				AtomicBoolean failed = new AtomicBoolean();
-				for (Map<String, Object> map : issues) {
-					Integer ghIssueId = (Integer) map.get("number");
-					logger.info("Issue: " + ghIssueId);
-					RequestEntity<Void> commentsRequest = getCommentsRequest(ghIssueId);
-					List<Map<String, Object>> comments = exchange(commentsRequest, LIST_OF_MAPS_TYPE, failWriter, null);
-					if (needsComment(comments)) {
-						exchange(addCommentRequest(ghIssueId), Void.class, failWriter, failed);
-						if (failed.get()) {
-							break;
-						}
-					}
-					String state = (String) map.get("state");
-					if (state.equals("open")) {
-						exchange(closeIssueRequest(ghIssueId), Void.class, failWriter, null);
-					}
-				}
+				Flux.fromIterable(issues)
+						.takeWhile(map -> !failed.get())
+						.flatMap(map -> closeIssue(map, failWriter, failed), ISSUE_CONCURRENCY)
+						.blockLast();
 				if (failed.get()) {
 					logger.info("Detected failure, exiting...");
 					break;
@@ -105,29 +96,46 @@ public class BulkIssueClosingApp extends GitHubBaseApp {
 		}
 	}
 
+	/**
+	 * Add the comment, unless already there, and close the issue if open. The
+	 * issue is left open if the comment could not be added, or if another issue
+	 * failed meanwhile.
+	 */
+	private static Mono<Void> closeIssue(Map<String, Object> map, FileWriter failWriter, AtomicBoolean failed) {
+		Integer ghIssueId = (Integer) map.get("number");
+		logger.info("Issue: " + ghIssueId);
+		return exchangeAsync(getCommentsRequest(ghIssueId), LIST_OF_MAPS_TYPE, failWriter, null)
+				.defaultIfEmpty(Collections.emptyList())
+				.flatMap(comments -> needsComment(comments) ?
+						exchangeAsync(addCommentRequest(ghIssueId), Void.class, failWriter, failed) : Mono.<Void>empty())
+				.then(Mono.defer(() -> {
+					String state = (String) map.get("state");
+					if (!state.equals("open") || failed.get()) {
+						return Mono.empty();
+					}
+					return exchangeAsync(closeIssueRequest(ghIssueId), Void.class, failWriter, null);
+				}));
+	}
+
 	private static RequestEntity<Void> issuesPageRequest(UriComponentsBuilder uricBuilder, int page) {
 		return RequestEntity.get(uricBuilder.build(String.valueOf(page)))
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId) {
 		return RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Map<String, String>> addCommentRequest(Integer ghIssueId) {
 		return RequestEntity.post(commentsUricBuilder.expand(ghIssueId).toUri())
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", COMMENT_BODY));
 	}
 
 	private static RequestEntity<Map<String, String>> closeIssueRequest(Integer ghIssueId) {
 		return RequestEntity.patch(issueUric.expand(ghIssueId).toUri())
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("state", "closed"));
 	}
 
@@ -17,20 +17,24 @@ package io.pivotal.post;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import io.pivotal.github.GitHubRestTemplate;
+import io.pivotal.github.GitHubTokenPool;
+import io.pivotal.github.ReactiveGitHubClient;
 import io.pivotal.pre.BaseApp;
-import io.pivotal.util.RateLimitHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -52,15 +56,26 @@ public class GitHubBaseApp extends BaseApp {
 	protected static final MediaType APPLICATION_GH_RAW_JSON = new MediaType("application", "vnd.github.3.raw+json");
 
 
-	protected static final RestTemplate rest = new GitHubRestTemplate(new RateLimitHelper(), logger);
+	protected static final String apiUrl = props.getProperty("github.api-url", ReactiveGitHubClient.DEFAULT_API_URL);
 
 	protected static final String repositorySlug = props.getProperty("github.repository-slug");
 
 	protected static final String accessToken = props.getProperty("github.access-token");
 
+	/** Created on first use, see {@link #getGitHub()} */
+	@Nullable
+	private static ReactiveGitHubClient github;
+
+	/**
+	 * Max number of issues processed at a time, each with its own sequence of
+	 * requests. Updates are still spaced out by the rate limit of the token.
+	 */
+	protected static final int ISSUE_CONCURRENCY =
+			Integer.parseInt(props.getProperty("github.issue-concurrency", "8"));
+
 
 	protected static UriComponents issuesUric = UriComponentsBuilder
-			.fromUriString("https://api.github.com/repos/" + repositorySlug + "/issues").encode().build();
+			.fromUriString(apiUrl + "/repos/" + repositorySlug + "/issues").encode().build();
 
 	protected static UriComponents issueUric = UriComponentsBuilder.newInstance()
 			.uriComponents(issuesUric).path("/{issueId}").encode().build();
@@ -73,6 +88,25 @@ public class GitHubBaseApp extends BaseApp {
 
 
 
+	/**
+	 * Return the client for the repository, created on first use, so that a
+	 * missing access token is reported as such rather than as a failure to
+	 * initialize the app class. Reads are spread across the access token and
+	 * any additional read access tokens, while updates are all made with the
+	 * access token.
+	 */
+	protected static synchronized ReactiveGitHubClient getGitHub() {
+		if (github == null) {
+			Assert.state(StringUtils.hasText(accessToken),
+					"Missing property 'github.access-token', e.g. in application-local.properties");
+			Assert.state(StringUtils.hasText(repositorySlug), "Missing property 'github.repository-slug'");
+			GitHubTokenPool tokenPool = new GitHubTokenPool(accessToken, Arrays.asList(
+					StringUtils.tokenizeToStringArray(props.getProperty("github.read-access-tokens", ""), ",")));
+			github = new ReactiveGitHubClient(apiUrl, repositorySlug, tokenPool);
+		}
+		return github;
+	}
+
 	protected static <T> T exchange(RequestEntity<?> requestEntity, Class<T> responseType,
 			FileWriter writer, AtomicBoolean failed) {
 
@@ -82,24 +116,39 @@ public class GitHubBaseApp extends BaseApp {
 	protected static <T> T exchange(RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType,
 			FileWriter writer, AtomicBoolean failed) {
 
-		try {
-			return rest.exchange(requestEntity, responseType).getBody();
-		}
-		catch (Throwable ex) {
-			if (failed != null) {
-				failed.set(true);
-			}
-			String line = "Failed to write " + requestEntity.getUrl() + ": " + ex.getMessage() + "\n";
-			try {
-				writer.write(line);
-				writer.flush();
-			}
-			catch (IOException ioEx) {
-				logger.error("Failed to write the below error result due to \"{}\":\n{}", ex.getMessage(), line);
-			}
-		}
-		return null;
+		return exchangeAsync(requestEntity, responseType, writer, failed).block();
+	}
+
+	protected static <T> Mono<T> exchangeAsync(RequestEntity<?> requestEntity, Class<T> responseType,
+			FileWriter writer, AtomicBoolean failed) {
+
+		return exchangeAsync(requestEntity, ParameterizedTypeReference.forType(responseType), writer, failed);
 	}
 
+	/**
+	 * Perform the request without blocking, and complete with the response
+	 * body, or empty if there is none, or if the request failed, in which case
+	 * the failure is written, and the failed flag set, if provided.
+	 */
+	protected static <T> Mono<T> exchangeAsync(RequestEntity<?> requestEntity,
+			ParameterizedTypeReference<T> responseType, FileWriter writer, AtomicBoolean failed) {
+
+		return getGitHub().exchange(requestEntity, responseType)
+				.flatMap(entity -> Mono.justOrEmpty(entity.getBody()))
+				.onErrorResume(ex -> {
+					if (failed != null) {
+						failed.set(true);
+					}
+					String line = "Failed to write " + requestEntity.getUrl() + ": " + ex.getMessage() + "\n";
+					try {
+						writer.write(line);
+						writer.flush();
+					}
+					catch (IOException ioEx) {
+						logger.error("Failed to write the below error result due to \"{}\":\n{}", ex.getMessage(), line);
+					}
+					return Mono.empty();
+				});
+	}
 
 }
@@ -18,11 +18,15 @@ package io.pivotal.post;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import io.pivotal.util.IssueMappingIndex;
 import io.pivotal.util.ProgressTracker;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.http.RequestEntity;
 
@@ -37,7 +41,7 @@ public class JiraLinkConversionApp extends GitHubBaseApp {
 	public static void main(String[] args) throws IOException {
 
 		File mappingsFile = new File("github-issue-mappings.properties");
-		Map<String, Integer> issueMappings = loadIssueMappings(mappingsFile);
+		IssueMappingIndex issueMappings = loadIssueMappings(mappingsFile);
 
 		File failuresFile = new File("jira-link-conversion-failures.txt");
 		try (FileWriter failWriter = new FileWriter(failuresFile, true)) {
@@ -45,61 +49,68 @@ public class JiraLinkConversionApp extends GitHubBaseApp {
 			String projectId = initJiraConfig().getProjectId();
 			JiraLinkConverter converter = new JiraLinkConverter(projectId, issueMappings, failWriter);
 
-			ProgressTracker tracker = new ProgressTracker(issueMappings.size(), 4, 200, logger.isDebugEnabled());
-			issueMappings.forEach((jiraKey, ghIssueId) -> {
-				tracker.updateForIteration();
+			List<Integer> ghIssueIds = new ArrayList<>(issueMappings.size());
+			issueMappings.forEach((jiraKey, ghIssueId) -> ghIssueIds.add(ghIssueId));
 
-				Map<String, Object> map = exchange(getIssueRequest(ghIssueId), MAP_TYPE, failWriter, null);
-				if (map != null) {
+			ProgressTracker tracker = new ProgressTracker(ghIssueIds.size(), 4, 200, logger.isDebugEnabled());
+			Flux.fromIterable(ghIssueIds)
+					.doOnNext(ghIssueId -> tracker.updateForIteration())
+					.flatMap(ghIssueId -> convertIssue(ghIssueId, converter, failWriter)
+							.then(convertComments(ghIssueId, converter, failWriter)), ISSUE_CONCURRENCY)
+					.blockLast();
+			tracker.stopProgress();
+		}
+	}
+
+
+	private static Mono<Void> convertIssue(Integer ghIssueId, JiraLinkConverter converter, FileWriter failWriter) {
+		return exchangeAsync(getIssueRequest(ghIssueId), MAP_TYPE, failWriter, null)
+				.flatMap(map -> {
 					String descBefore = (String) map.get("body");
 					String descAfter = converter.convert(descBefore);
-					if (!equalToIgnoringWhiteSpace(descBefore).matches(descAfter)) {
-						exchange(patchIssueRequest(ghIssueId, descAfter), Void.class, failWriter, null);
+					if (equalToIgnoringWhiteSpace(descBefore).matches(descAfter)) {
+						return Mono.empty();
 					}
-				}
-
-				List<Map<String, Object>> body = exchange(getCommentsRequest(ghIssueId), LIST_OF_MAPS_TYPE, failWriter, null);
-				if (body != null) {
-					body.forEach(commentMap -> {
-						Integer commentId = (Integer) commentMap.get("id");
-						String commentBefore = (String) commentMap.get("body");
-						String commentAfter = converter.convert(commentBefore);
-						if (!equalToIgnoringWhiteSpace(commentBefore).matches(commentAfter)) {
-							exchange(patchCommentRequest(commentId, commentAfter), Void.class, failWriter, null);
-						}
-					});
-				}
-			});
-			tracker.stopProgress();
-		}
+					return exchangeAsync(patchIssueRequest(ghIssueId, descAfter), Void.class, failWriter, null);
+				});
 	}
 
+	private static Mono<Void> convertComments(Integer ghIssueId, JiraLinkConverter converter, FileWriter failWriter) {
+		return exchangeAsync(getCommentsRequest(ghIssueId), LIST_OF_MAPS_TYPE, failWriter, null)
+				.flatMapMany(Flux::fromIterable)
+				.concatMap(commentMap -> {
+					Integer commentId = (Integer) commentMap.get("id");
+					String commentBefore = (String) commentMap.get("body");
+					String commentAfter = converter.convert(commentBefore);
+					if (equalToIgnoringWhiteSpace(commentBefore).matches(commentAfter)) {
+						return Mono.empty();
+					}
+					return exchangeAsync(patchCommentRequest(commentId, commentAfter), Void.class, failWriter, null);
+				})
+				.then();
+	}
 
 	private static RequestEntity<Void> getIssueRequest(Integer ghIssueId) {
 		return RequestEntity.get(issueUric.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Map<?, ?>> patchIssueRequest(Integer ghIssueId, String body) {
 		return RequestEntity.patch(issueUric.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", body));
 	}
 
 	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId) {
 		return RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Map<?, ?>> patchCommentRequest(Integer commentId, String body) {
 		return RequestEntity.patch(commentUricBuilder.expand(commentId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", body));
 	}
 
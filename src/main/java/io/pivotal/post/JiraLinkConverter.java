@@ -17,9 +17,7 @@ package io.pivotal.post;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
 import com.vladsch.flexmark.ast.Document;
 import com.vladsch.flexmark.ast.Link;
@@ -30,6 +28,8 @@ import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.parser.block.NodePostProcessor;
 import com.vladsch.flexmark.parser.block.NodePostProcessorFactory;
 import com.vladsch.flexmark.util.NodeTracker;
+import io.pivotal.util.IssueMappingIndex;
+import io.pivotal.util.JiraKeyMatcher;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -40,10 +40,12 @@ public class JiraLinkConverter {
 
 	private static final Logger logger = LogManager.getLogger(JiraLinkConverter.class);
 
+	private static final String JIRA_BROWSE_URL = "https://jira.spring.io/browse/";
 
-	private final Pattern rawKiraLinkPattern;
 
-	private final Map<String, Integer> issueMappings;
+	private final JiraKeyMatcher jiraKeyMatcher;
+
+	private final IssueMappingIndex issueMappings;
 
 	private final Writer failWriter;
 
@@ -52,14 +54,12 @@ public class JiraLinkConverter {
 	private final Formatter formatter = Formatter.builder().build();
 
 
-	public JiraLinkConverter(String jiraProject, Map<String, Integer> issueMappings, Writer failWriter) {
-
-		this.rawKiraLinkPattern = Pattern.compile(
-				"(https://jira\\.spring\\.io/browse/(" + jiraProject + "-[0-9]{1,5}+)([^?]))");
+	public JiraLinkConverter(String jiraProject, IssueMappingIndex issueMappings, Writer failWriter) {
 
+		this.jiraKeyMatcher = new JiraKeyMatcher(Collections.singletonList(jiraProject));
 		this.issueMappings = issueMappings;
 		this.failWriter = failWriter;
-		JiraLinkPostProcessorFactory factory = new JiraLinkPostProcessorFactory(jiraProject, issueMappings);
+		JiraLinkPostProcessorFactory factory = new JiraLinkPostProcessorFactory(this.jiraKeyMatcher, issueMappings);
 		this.parser = Parser.builder().postProcessorFactory(factory).build();
 	}
 
@@ -85,23 +85,33 @@ public class JiraLinkConverter {
 		return body;
 	}
 
-	private String replaceRawJiraLinks(String body, Map<String, Integer> issueMappings) throws IOException {
-		Matcher matcher = rawKiraLinkPattern.matcher(body);
-		StringBuffer sb = new StringBuffer();
-		while (matcher.find()) {
-			String jiraKey = matcher.group(2);
-			Integer ghIssueId = issueMappings.get(jiraKey);
-			if (ghIssueId == null) {
-				failWriter.write("No mapping for " + jiraKey + "\n");
+	/**
+	 * Replace "https://jira.spring.io/browse/KEY" links, other than those
+	 * followed by a query, with "#" and the GitHub issue number.
+	 */
+	private String replaceRawJiraLinks(String body, IssueMappingIndex issueMappings) throws IOException {
+		StringBuilder sb = new StringBuilder(body.length());
+		int index = 0;
+		int start = body.indexOf(JIRA_BROWSE_URL);
+		while (start != -1) {
+			JiraKeyMatcher.Match match = jiraKeyMatcher.matchAt(body, start + JIRA_BROWSE_URL.length());
+			if (match == null || match.getEnd() == body.length() || body.charAt(match.getEnd()) == '?') {
+				start = body.indexOf(JIRA_BROWSE_URL, start + 1);
+				continue;
+			}
+			int end = match.getEnd() + 1;
+			int ghIssueId = issueMappings.getGitHubIssueNumber(match.getKey());
+			if (ghIssueId == IssueMappingIndex.NOT_MAPPED) {
+				failWriter.write("No mapping for " + match.getKey() + "\n");
 				failWriter.flush();
-				matcher.appendReplacement(sb, matcher.group(1));
 			}
 			else {
-				matcher.appendReplacement(sb, "#" + ghIssueId + (matcher.group(3) != null ? matcher.group(3) : ""));
+				sb.append(body, index, start).append('#').append(ghIssueId).append(body.charAt(match.getEnd()));
+				index = end;
 			}
+			start = body.indexOf(JIRA_BROWSE_URL, end);
 		}
-		matcher.appendTail(sb);
-		return sb.toString();
+		return sb.append(body, index, body.length()).toString();
 	}
 
 
@@ -111,9 +121,9 @@ public class JiraLinkConverter {
 		private JiraLinkPostProcessor processor;
 
 
-		JiraLinkPostProcessorFactory(String projectId, Map<String, Integer> issueMappings) {
+		JiraLinkPostProcessorFactory(JiraKeyMatcher jiraKeyMatcher, IssueMappingIndex issueMappings) {
 			super(false);
-			processor = new JiraLinkPostProcessor(projectId, issueMappings);
+			processor = new JiraLinkPostProcessor(jiraKeyMatcher, issueMappings);
 			addNodes(Link.class);
 		}
 
@@ -127,13 +137,13 @@ public class JiraLinkConverter {
 
 	private static class JiraLinkPostProcessor extends NodePostProcessor {
 
-		private final Pattern sprKeyPattern;
+		private final JiraKeyMatcher jiraKeyMatcher;
 
-		private final Map<String, Integer> issueMappings;
+		private final IssueMappingIndex issueMappings;
 
 
-		JiraLinkPostProcessor(String projectId, Map<String, Integer> issueMappings) {
-			this.sprKeyPattern = Pattern.compile("(" + projectId + "-[0-9]{1,5}+)");
+		JiraLinkPostProcessor(JiraKeyMatcher jiraKeyMatcher, IssueMappingIndex issueMappings) {
+			this.jiraKeyMatcher = jiraKeyMatcher;
 			this.issueMappings = issueMappings;
 		}
 
@@ -142,9 +152,9 @@ public class JiraLinkConverter {
 			if (node instanceof Link) {
 				String targetText = ((Link) node).getText().toString();
 				String targetLink = ((Link) node).getUrl().toString();
-				if (sprKeyPattern.matcher(targetText).matches() && targetLink.endsWith(targetText)) {
-					Integer ghIssueId = issueMappings.get(targetText);
-					if (ghIssueId != null) {
+				if (jiraKeyMatcher.matches(targetText) && targetLink.endsWith(targetText)) {
+					int ghIssueId = issueMappings.getGitHubIssueNumber(targetText);
+					if (ghIssueId != IssueMappingIndex.NOT_MAPPED) {
 						Text textNode = new Text("#" + ghIssueId);
 						node.insertAfter(textNode);
 						state.nodeAdded(textNode);
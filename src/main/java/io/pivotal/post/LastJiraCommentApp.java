@@ -27,6 +27,7 @@ import io.pivotal.jira.JiraComment;
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraIssue;
 import io.pivotal.pre.BaseApp;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -52,7 +53,7 @@ public class LastJiraCommentApp extends BaseApp {
 		String issueBaseUrl = "https://github.com/" + repoSlug + "/issues/";
 
 		File mappingsFile = new File("github-issue-mappings.properties");
-		Map<String, Integer> issueMappings = loadIssueMappings(mappingsFile);
+		IssueMappingIndex issueMappings = loadIssueMappings(mappingsFile);
 
 		List<JiraIssue> issues = client.findIssues(config.getMigrateJql())
 				.stream()
@@ -72,8 +73,8 @@ public class LastJiraCommentApp extends BaseApp {
 
 		Map<String, String> commentsToAdd = new LinkedHashMap<>(issues.size());
 		issues.forEach(issue -> {
-			Integer targetId = issueMappings.get(issue.getKey());
-			Assert.notNull(targetId, "No mapping for issue " + issue.getKey());
+			int targetId = issueMappings.getGitHubIssueNumber(issue.getKey());
+			Assert.isTrue(targetId != IssueMappingIndex.NOT_MAPPED, "No mapping for issue " + issue.getKey());
 			String body = START_OF_COMMENT;
 			body += "This issue was migrated to " +
 					"[spring-projects/spring-framework#" + targetId + "|" + issueBaseUrl + targetId + "]. ";
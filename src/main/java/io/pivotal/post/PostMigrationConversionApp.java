@@ -117,28 +117,24 @@ public class PostMigrationConversionApp extends GitHubBaseApp {
 	private static RequestEntity<Void> issuesPageRequest(UriComponentsBuilder uricBuilder, int page) {
 		return RequestEntity.get(uricBuilder.build(String.valueOf(page)))
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Map<?, ?>> patchIssueRequest(Integer ghIssueId, String body) {
 		return RequestEntity.patch(issueUric.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", body));
 	}
 
 	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId) {
 		return RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.build();
 	}
 
 	private static RequestEntity<Map<?, ?>> patchCommentRequest(Integer commentId, String body) {
 		return RequestEntity.patch(commentUricBuilder.expand(commentId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", body));
 	}
 
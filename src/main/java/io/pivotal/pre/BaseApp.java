@@ -16,16 +16,16 @@
 package io.pivotal.pre;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Properties;
 
 import io.pivotal.jira.JiraConfig;
+import io.pivotal.util.IssueMappingIndex;
 
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
 
 
 /**
@@ -50,18 +50,17 @@ public class BaseApp {
 		JiraConfig config = new JiraConfig();
 		config.setBaseUrl(props.getProperty("jira.base-url"));
 		config.setProjectId(props.getProperty("jira.projectId"));
+		config.setLinkedProjects(Arrays.asList(
+				StringUtils.commaDelimitedListToStringArray(props.getProperty("jira.linked-projects", ""))));
 		config.setMigrateJql(props.getProperty("jira.migrate-jql"));
 		config.setUser(props.getProperty("jira.user"));
 		config.setPassword(props.getProperty("jira.password"));
+		config.setSnapshotFile(props.getProperty("jira.snapshot-file"));
 		return config;
 	}
 
-	protected static Map<String, Integer> loadIssueMappings(File mappingsFile) throws IOException {
-		Properties props = new Properties();
-		props.load(new FileInputStream(mappingsFile));
-		Map<String, Integer> result = new HashMap<>();
-		props.stringPropertyNames().forEach(name -> result.put(name, Integer.valueOf(props.getProperty(name))));
-		return result;
+	protected static IssueMappingIndex loadIssueMappings(File mappingsFile) throws IOException {
+		return IssueMappingIndex.load(mappingsFile);
 	}
 
 }
@@ -24,6 +24,7 @@ import io.pivotal.jira.JiraClient;
 import io.pivotal.jira.JiraComment;
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.ConversionCache;
 import io.pivotal.util.MarkdownEngine;
 
 
@@ -32,6 +33,9 @@ import io.pivotal.util.MarkdownEngine;
  * to mine for examples of occurrences of specific markup. This is very useful
  * for debugging the Jira markup to Markdown conversion.
  *
+ * <p>Conversion results are saved to a cache file, and re-used in subsequent
+ * runs for unchanged input, unless the conversion code has changed.
+ *
  * @author Rossen Stoyanchev
  */
 public class MarkupConverter extends BaseApp {
@@ -42,12 +46,17 @@ public class MarkupConverter extends BaseApp {
 		JiraConfig config = initJiraConfig();
 		JiraClient client = new JiraClient(config);
 
-		MarkdownEngine engine = new MarkdownEngine();
-		engine.setJiraConfig(config);
-
 		List<JiraIssue> issues = client.findIssues(config.getMigrateJql());
 		writeIssuesMarkup(issues, new File("markup-before.txt"), null);
-		writeIssuesMarkup(issues, new File("markup-after.txt"), engine);
+
+		try (ConversionCache cache = new ConversionCache(10000, new File("markup-conversion-cache.txt"))) {
+			MarkdownEngine engine = new MarkdownEngine();
+			engine.setJiraConfig(config);
+			engine.setConversionCache(cache);
+			writeIssuesMarkup(issues, new File("markup-after.txt"), engine);
+			System.out.println("Markup conversion: " + cache);
+			System.out.println("Nodes rewritten in phase 2: " + engine.getRewrittenNodeCount());
+		}
 	}
 
 	private static void writeIssuesMarkup(List<JiraIssue> issues, File file, MarkdownEngine engine) throws IOException {
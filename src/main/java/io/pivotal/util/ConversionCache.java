@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Cache of markup conversion results, keyed by a hash of the input text and of
+ * the engine configuration, so the same text is converted only once.
+ *
+ * <p>The most recently used results are kept in memory, up to a maximum number.
+ * Optionally all results are also appended to a file, so that subsequent runs
+ * can skip conversions for unchanged input. The file is indexed when opened,
+ * and results are read back from it on demand.
+ */
+public class ConversionCache implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(ConversionCache.class);
+
+
+	private final Map<String, String> entries;
+
+	@Nullable
+	private final DiskTier diskTier;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder diskHits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+
+	public ConversionCache(int maxSize) throws IOException {
+		this(maxSize, null);
+	}
+
+	/**
+	 * @param maxSize the maximum number of results to keep in memory
+	 * @param file the file to append results to, or {@code null} for memory only
+	 */
+	public ConversionCache(int maxSize, @Nullable File file) throws IOException {
+		this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				if (size() > maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.diskTier = (file != null ? new DiskTier(file) : null);
+	}
+
+
+	/**
+	 * Return the cached result of converting the text, or convert it and cache
+	 * the result. The same text may be converted more than once when requested
+	 * concurrently.
+	 * @param configuration the engine configuration the result depends on,
+	 * preferably in the form of a {@link #hash}
+	 * @param text the text to convert
+	 * @param converter to convert the text if there is no cached result
+	 */
+	public String get(String configuration, String text, Function<String, String> converter) {
+		String key = hash(configuration + '\u0000' + text);
+		String result;
+		synchronized (this.entries) {
+			result = this.entries.get(key);
+		}
+		if (result != null) {
+			this.hits.increment();
+			return result;
+		}
+		result = (this.diskTier != null ? this.diskTier.read(key) : null);
+		if (result != null) {
+			this.diskHits.increment();
+		}
+		else {
+			this.misses.increment();
+			result = converter.apply(text);
+			if (this.diskTier != null) {
+				this.diskTier.write(key, result);
+			}
+		}
+		synchronized (this.entries) {
+			this.entries.put(key, result);
+		}
+		return result;
+	}
+
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	public long getDiskHitCount() {
+		return this.diskHits.sum();
+	}
+
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Return the ratio of memory and disk hits to all lookups.
+	 */
+	public double getHitRate() {
+		long hitCount = getHitCount() + getDiskHitCount();
+		long total = hitCount + getMissCount();
+		return (total != 0 ? (double) hitCount / total : 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.diskTier != null) {
+			this.diskTier.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionCache[hits=" + getHitCount() + ", disk hits=" + getDiskHitCount() +
+				", misses=" + getMissCount() + ", evictions=" + getEvictionCount() +
+				", hit rate=" + String.format("%.1f%%", getHitRate() * 100) + "]";
+	}
+
+
+	/**
+	 * Return a hash of the compiled code of the given classes, including their
+	 * nested and anonymous classes, for use in the engine configuration so that
+	 * results cached on disk by a different version of the code are not used.
+	 */
+	public static String hashClasses(Class<?>... classes) {
+		StringBuilder sb = new StringBuilder();
+		for (Class<?> clazz : classes) {
+			appendClassHash(clazz, sb);
+			int anonymousIndex = 1;
+			while (appendClassHash(clazz.getName() + "$" + anonymousIndex, clazz, sb)) {
+				anonymousIndex++;
+			}
+		}
+		return hash(sb.toString());
+	}
+
+	private static void appendClassHash(Class<?> clazz, StringBuilder sb) {
+		appendClassHash(clazz.getName(), clazz, sb);
+		for (Class<?> nestedClass : clazz.getDeclaredClasses()) {
+			appendClassHash(nestedClass, sb);
+		}
+	}
+
+	private static boolean appendClassHash(String className, Class<?> clazz, StringBuilder sb) {
+		String resource = "/" + className.replace('.', '/') + ".class";
+		try (InputStream in = clazz.getResourceAsStream(resource)) {
+			if (in == null) {
+				return false;
+			}
+			sb.append(className).append(':').append(hash(StreamUtils.copyToByteArray(in))).append('\n');
+			return true;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read " + resource, ex);
+		}
+	}
+
+	/**
+	 * Return the SHA-256 hash of the value, e.g. to use a long engine
+	 * configuration in a compact form.
+	 */
+	public static String hash(String value) {
+		return hash(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String hash(byte[] bytes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		StringBuilder sb = new StringBuilder(64);
+		for (byte b : digest.digest(bytes)) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * File with one "hash base64-result" line per result, and an index of the
+	 * position of each result in the file.
+	 */
+	private static class DiskTier implements Closeable {
+
+		private static final int KEY_LENGTH = 64;
+
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		private final Map<String, long[]> positions = new HashMap<>();
+
+		private long size;
+
+
+		DiskTier(File file) throws IOException {
+			this.file = file;
+			this.channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			index();
+			logger.info("Loaded index of {} conversion results from {}", this.positions.size(), file);
+		}
+
+		private void index() throws IOException {
+			long fileSize = this.channel.size();
+			// Lines are ASCII only, so the number of chars is the number of bytes
+			BufferedReader reader = new BufferedReader(Channels.newReader(this.channel, "US-ASCII"));
+			String line;
+			while ((line = reader.readLine()) != null && this.size + line.length() < fileSize) {
+				if (line.length() > KEY_LENGTH && line.charAt(KEY_LENGTH) == ' ') {
+					long position = this.size + KEY_LENGTH + 1;
+					this.positions.put(line.substring(0, KEY_LENGTH), new long[] {position, line.length() - KEY_LENGTH - 1});
+				}
+				this.size += line.length() + 1;
+			}
+			if (this.size < fileSize) {
+				logger.warn("Removing torn last line of {} ({} bytes)", this.file, fileSize - this.size);
+				this.channel.truncate(this.size);
+			}
+		}
+
+		@Nullable
+		String read(String key) {
+			long[] position;
+			synchronized (this) {
+				position = this.positions.get(key);
+			}
+			if (position == null) {
+				return null;
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate((int) position[1]);
+				while (buffer.hasRemaining()) {
+					if (this.channel.read(buffer, position[0] + buffer.position()) == -1) {
+						throw new IOException("Unexpected end of file");
+					}
+				}
+				return new String(Base64.getDecoder().decode(buffer.array()), StandardCharsets.UTF_8);
+			}
+			catch (IOException | IllegalArgumentException ex) {
+				logger.warn("Failed to read conversion result from {}: {}", this.file, ex.toString());
+				return null;
+			}
+		}
+
+		synchronized void write(String key, String result) {
+			if (this.positions.containsKey(key)) {
+				return;
+			}
+			String value = Base64.getEncoder().encodeToString(result.getBytes(StandardCharsets.UTF_8));
+			ByteBuffer buffer = ByteBuffer.wrap((key + " " + value + "\n").getBytes(StandardCharsets.US_ASCII));
+			try {
+				while (buffer.hasRemaining()) {
+					this.channel.write(buffer, this.size + buffer.position());
+				}
+			}
+			catch (IOException ex) {
+				logger.warn("Failed to write conversion result to {}: {}", this.file, ex.toString());
+				return;
+			}
+			this.positions.put(key, new long[] {this.size + KEY_LENGTH + 1, value.length()});
+			this.size += buffer.capacity();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			this.channel.close();
+		}
+	}
+
+}
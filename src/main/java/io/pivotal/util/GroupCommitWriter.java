@@ -0,0 +1,230 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writer that appends lines to a file, and commits them in groups, i.e. writes
+ * and syncs them to disk, once a number of lines is pending, or once they have
+ * been pending for some time, rather than on every line.
+ *
+ * <p>Use {@link #commitIfDue()} after writing lines, to commit only if one of
+ * those limits has been reached, and {@link #flush()} or {@link #sync()} at
+ * checkpoints, when pending lines must be on disk. Lines pending for longer
+ * than the interval are also committed in the background.
+ *
+ * <p>If the file ends with a last line not terminated with a newline, e.g. a
+ * torn line from a run that was killed while writing it, or a line added by
+ * hand, the line is checked when the file is opened. If it's valid for the
+ * file, it's terminated, or otherwise it's removed. When reading such a file,
+ * use {@link #readCompleteLines} to apply the same rule.
+ */
+public class GroupCommitWriter extends Writer {
+
+	private static final Logger logger = LogManager.getLogger(GroupCommitWriter.class);
+
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	private final Predicate<String> lastLineCheck;
+
+	private final int maxPendingLines;
+
+	private final long maxPendingMillis;
+
+	private final StringBuilder pending = new StringBuilder();
+
+	private int pendingLines;
+
+	private long lastCommitTime = System.currentTimeMillis();
+
+	private final ScheduledExecutorService scheduler;
+
+
+	/**
+	 * Variant of {@link #GroupCommitWriter(File, int, Duration, Predicate)} that
+	 * keeps an unterminated last line, for files with free text lines.
+	 */
+	public GroupCommitWriter(File file, int maxPendingLines, Duration maxPendingTime) throws IOException {
+		this(file, maxPendingLines, maxPendingTime, line -> true);
+	}
+
+	/**
+	 * @param file the file to append to
+	 * @param maxPendingLines the number of lines that triggers a commit
+	 * @param maxPendingTime the time after which pending lines are committed
+	 * @param lastLineCheck whether a last line not terminated with a newline
+	 * is valid, and is kept, rather than removed as torn
+	 */
+	public GroupCommitWriter(File file, int maxPendingLines, Duration maxPendingTime,
+			Predicate<String> lastLineCheck) throws IOException {
+
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.lastLineCheck = lastLineCheck;
+		this.maxPendingLines = maxPendingLines;
+		this.maxPendingMillis = maxPendingTime.toMillis();
+		checkLastLine();
+		this.channel.position(this.channel.size());
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "group-commit-" + file.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this::commitInBackground,
+				this.maxPendingMillis, this.maxPendingMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void checkLastLine() throws IOException {
+		long size = this.channel.size();
+		long length = size;
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		while (length > 0) {
+			buffer.clear();
+			this.channel.read(buffer, length - 1);
+			if (buffer.get(0) == '\n') {
+				break;
+			}
+			length--;
+		}
+		if (length == size) {
+			return;
+		}
+		ByteBuffer lastLine = ByteBuffer.allocate((int) (size - length));
+		while (lastLine.hasRemaining()) {
+			this.channel.read(lastLine, length + lastLine.position());
+		}
+		String line = new String(lastLine.array(), StandardCharsets.UTF_8);
+		if (this.lastLineCheck.test(line)) {
+			logger.warn("Terminating last line of {}: \"{}\"", this.file, line);
+			this.channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+		}
+		else {
+			logger.warn("Removing torn last line of {}: \"{}\"", this.file, line);
+			this.channel.truncate(length);
+		}
+		this.channel.force(true);
+	}
+
+
+	@Override
+	public synchronized void write(char[] chars, int offset, int length) {
+		this.pending.append(chars, offset, length);
+		for (int i = offset; i < offset + length; i++) {
+			if (chars[i] == '\n') {
+				this.pendingLines++;
+			}
+		}
+	}
+
+	/**
+	 * Commit pending lines if their number, or the time since the last commit,
+	 * has reached the limit.
+	 */
+	public synchronized void commitIfDue() throws IOException {
+		if (this.pendingLines >= this.maxPendingLines ||
+				System.currentTimeMillis() - this.lastCommitTime >= this.maxPendingMillis) {
+			commit();
+		}
+	}
+
+	/**
+	 * Commit all pending lines, same as {@link #sync()}.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		commit();
+	}
+
+	/**
+	 * Commit all pending lines, and return when they are on disk.
+	 */
+	public synchronized void sync() throws IOException {
+		commit();
+	}
+
+	private void commitInBackground() {
+		try {
+			synchronized (this) {
+				if (this.pending.length() > 0) {
+					commitIfDue();
+				}
+			}
+		}
+		catch (IOException ex) {
+			logger.error("Failed to commit lines to " + this.file, ex);
+		}
+	}
+
+	private void commit() throws IOException {
+		if (this.pending.length() > 0) {
+			ByteBuffer buffer = ByteBuffer.wrap(this.pending.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.channel.force(false);
+			this.pending.setLength(0);
+			this.pendingLines = 0;
+		}
+		this.lastCommitTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			commit();
+		}
+		finally {
+			this.scheduler.shutdownNow();
+			this.channel.close();
+		}
+	}
+
+
+	/**
+	 * Read the complete lines of a file, including a last line not terminated
+	 * with a newline only if it's valid, as when the file is opened for writing.
+	 * @param lastLineCheck whether an unterminated last line is valid
+	 */
+	public static String readCompleteLines(File file, Predicate<String> lastLineCheck) throws IOException {
+		String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		int length = content.lastIndexOf('\n') + 1;
+		if (length < content.length() && lastLineCheck.test(content.substring(length))) {
+			return content + "\n";
+		}
+		return content.substring(0, length);
+	}
+
+}
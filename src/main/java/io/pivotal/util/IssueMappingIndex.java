@@ -0,0 +1,348 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+/**
+ * Index of Jira issue key to GitHub issue number mappings, and back, with
+ * issue numbers stored as primitive ints in arrays per Jira project prefix.
+ *
+ * <p>The source of truth is the text file with one "KEY:number" line per
+ * mapping, as written by the migration. A binary copy is saved next to it,
+ * and is used instead of parsing the text, as long as the text file has not
+ * changed since.
+ */
+public class IssueMappingIndex {
+
+	private static final Logger logger = LogManager.getLogger(IssueMappingIndex.class);
+
+	/** Returned when there is no mapping, since issue numbers start at 1 */
+	public static final int NOT_MAPPED = 0;
+
+	private static final int MAGIC = 0x4A47484D;
+
+	private static final int VERSION = 1;
+
+
+	private final Map<String, ProjectMappings> projects = new LinkedHashMap<>();
+
+	private int size;
+
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public boolean containsKey(String jiraKey) {
+		return getGitHubIssueNumber(jiraKey) != NOT_MAPPED;
+	}
+
+	/**
+	 * Return the GitHub issue number for the Jira issue key, or {@link #NOT_MAPPED}.
+	 */
+	public int getGitHubIssueNumber(String jiraKey) {
+		int index = jiraKey.lastIndexOf('-');
+		if (index == -1) {
+			return NOT_MAPPED;
+		}
+		ProjectMappings project = this.projects.get(jiraKey.substring(0, index));
+		int number = parseNumber(jiraKey, index + 1);
+		return (project != null && number > 0 ? project.getGitHubIssueNumber(number) : NOT_MAPPED);
+	}
+
+	/**
+	 * Return the Jira issue key for a GitHub issue number, or {@code null}.
+	 * @param projectPrefix the Jira project prefix, e.g. "SPR"
+	 * @param gitHubIssueNumber the GitHub issue number
+	 */
+	public String getJiraKey(String projectPrefix, int gitHubIssueNumber) {
+		ProjectMappings project = this.projects.get(projectPrefix);
+		int number = (project != null ? project.getJiraIssueNumber(gitHubIssueNumber) : NOT_MAPPED);
+		return (number != NOT_MAPPED ? projectPrefix + "-" + number : null);
+	}
+
+	/**
+	 * Add a mapping, replacing an existing mapping for the same Jira issue.
+	 * @return whether the key was a valid Jira issue key
+	 */
+	public boolean put(String jiraKey, int gitHubIssueNumber) {
+		int index = jiraKey.lastIndexOf('-');
+		int number = (index != -1 ? parseNumber(jiraKey, index + 1) : -1);
+		if (number <= 0 || gitHubIssueNumber <= 0) {
+			return false;
+		}
+		put(jiraKey.substring(0, index), number, gitHubIssueNumber);
+		return true;
+	}
+
+	private void put(String projectPrefix, int jiraIssueNumber, int gitHubIssueNumber) {
+		ProjectMappings project = this.projects.computeIfAbsent(projectPrefix, ProjectMappings::new);
+		if (project.put(jiraIssueNumber, gitHubIssueNumber)) {
+			this.size++;
+		}
+	}
+
+	/**
+	 * Iterate over mappings by project, and by Jira issue number.
+	 */
+	public void forEach(ObjIntConsumer<String> consumer) {
+		this.projects.values().forEach(project -> project.forEach(consumer));
+	}
+
+	private static int parseNumber(String s, int start) {
+		if (start >= s.length() || s.length() - start > 9) {
+			return -1;
+		}
+		int result = 0;
+		for (int i = start; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+
+	/**
+	 * Load the mappings from the text file, or from its binary copy if the
+	 * text file has not changed since the copy was saved. If the text file is
+	 * parsed, the binary copy is saved again.
+	 * @param textFile the mappings file written by the migration
+	 */
+	public static IssueMappingIndex load(File textFile) throws IOException {
+		IssueMappingIndex index = new IssueMappingIndex();
+		if (!textFile.exists()) {
+			return index;
+		}
+		File indexFile = getIndexFile(textFile);
+		if (indexFile.exists() && index.readIndex(indexFile, textFile)) {
+			return index;
+		}
+		index.parse(GroupCommitWriter.readCompleteLines(textFile, IssueMappingIndex::isValidLine));
+		try {
+			index.writeIndex(indexFile, textFile);
+		}
+		catch (IOException ex) {
+			logger.warn("Failed to save {}: {}", indexFile, ex.getMessage());
+		}
+		return index;
+	}
+
+	private static File getIndexFile(File textFile) {
+		return new File(textFile.getPath() + ".idx");
+	}
+
+	/**
+	 * Parse lines in the format "KEY:number", or "KEY=number".
+	 */
+	void parse(String content) {
+		for (String line : StringUtils.tokenizeToStringArray(content, "\n")) {
+			if (!parseLine(line)) {
+				logger.warn("Ignoring invalid mapping \"{}\"", line);
+			}
+		}
+	}
+
+	private boolean parseLine(String line) {
+		line = line.trim();
+		if (line.startsWith("#")) {
+			return true;
+		}
+		int separator = line.indexOf(':');
+		separator = (separator != -1 ? separator : line.indexOf('='));
+		int number = (separator != -1 ? parseNumber(line.substring(separator + 1).trim(), 0) : -1);
+		return (number > 0 && put(line.substring(0, separator).trim(), number));
+	}
+
+	/**
+	 * Whether the line is a comment, or a valid mapping, e.g. to check the last
+	 * line of the text file if it's not terminated with a newline.
+	 */
+	public static boolean isValidLine(String line) {
+		return new IssueMappingIndex().parseLine(line);
+	}
+
+	/**
+	 * Return the check for an unterminated last line of the text file, when
+	 * the migration opens it for writing. A line torn within the number, e.g.
+	 * "SPR-1234:56" from "SPR-1234:5678", still looks valid, and the journal
+	 * of submitted imports has the import URL of every mapping the migration
+	 * writes, but not its number. So a mapping for an import in the journal is
+	 * removed, for the next run to check that import again, while other lines,
+	 * e.g. added by hand, are kept if valid.
+	 * @param submittedImportKeys the Jira keys of the imports in the journal
+	 */
+	public static Predicate<String> lastLineCheck(Set<String> submittedImportKeys) {
+		return line -> {
+			String key = getMappedKey(line);
+			return (key != null ? !submittedImportKeys.contains(key) : isValidLine(line));
+		};
+	}
+
+	/**
+	 * Return the Jira key of a valid mapping line, or {@code null} for a
+	 * comment or an invalid line.
+	 */
+	@Nullable
+	static String getMappedKey(String line) {
+		line = line.trim();
+		int separator = line.indexOf(':');
+		separator = (separator != -1 ? separator : line.indexOf('='));
+		return (!line.startsWith("#") && separator != -1 && isValidLine(line) ?
+				line.substring(0, separator).trim() : null);
+	}
+
+	private boolean readIndex(File indexFile, File textFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 28 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+					buffer.getLong() != textFile.length() || buffer.getLong() != textFile.lastModified()) {
+				return false;
+			}
+			int projectCount = buffer.getInt();
+			for (int i = 0; i < projectCount; i++) {
+				byte[] prefix = new byte[buffer.getShort()];
+				buffer.get(prefix);
+				String projectPrefix = new String(prefix, StandardCharsets.UTF_8);
+				int count = buffer.getInt();
+				for (int j = 0; j < count; j++) {
+					put(projectPrefix, buffer.getInt(), buffer.getInt());
+				}
+			}
+			return true;
+		}
+		catch (RuntimeException ex) {
+			logger.warn("Ignoring invalid {}: {}", indexFile, ex.toString());
+			this.projects.clear();
+			this.size = 0;
+			return false;
+		}
+	}
+
+	private void writeIndex(File indexFile, File textFile) throws IOException {
+		File tempFile = new File(indexFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(textFile.length());
+			out.writeLong(textFile.lastModified());
+			out.writeInt(this.projects.size());
+			for (ProjectMappings project : this.projects.values()) {
+				byte[] prefix = project.prefix.getBytes(StandardCharsets.UTF_8);
+				out.writeShort(prefix.length);
+				out.write(prefix);
+				out.writeInt(project.count);
+				for (int number = 1; number < project.gitHubByJira.length; number++) {
+					if (project.gitHubByJira[number] != NOT_MAPPED) {
+						out.writeInt(number);
+						out.writeInt(project.gitHubByJira[number]);
+					}
+				}
+			}
+		}
+		Files.move(tempFile.toPath(), indexFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+
+	/**
+	 * Mappings for one Jira project, in arrays indexed by issue number.
+	 */
+	private static class ProjectMappings {
+
+		private final String prefix;
+
+		private int[] gitHubByJira = new int[64];
+
+		private int[] jiraByGitHub = new int[64];
+
+		private int count;
+
+		ProjectMappings(String prefix) {
+			this.prefix = prefix;
+		}
+
+		int getGitHubIssueNumber(int jiraIssueNumber) {
+			return (jiraIssueNumber < this.gitHubByJira.length ? this.gitHubByJira[jiraIssueNumber] : NOT_MAPPED);
+		}
+
+		int getJiraIssueNumber(int gitHubIssueNumber) {
+			return (gitHubIssueNumber > 0 && gitHubIssueNumber < this.jiraByGitHub.length ?
+					this.jiraByGitHub[gitHubIssueNumber] : NOT_MAPPED);
+		}
+
+		/**
+		 * @return whether this is a new mapping, rather than a replacement
+		 */
+		boolean put(int jiraIssueNumber, int gitHubIssueNumber) {
+			this.gitHubByJira = ensureCapacity(this.gitHubByJira, jiraIssueNumber);
+			this.jiraByGitHub = ensureCapacity(this.jiraByGitHub, gitHubIssueNumber);
+			int previous = this.gitHubByJira[jiraIssueNumber];
+			if (previous != NOT_MAPPED && this.jiraByGitHub[previous] == jiraIssueNumber) {
+				this.jiraByGitHub[previous] = NOT_MAPPED;
+			}
+			this.gitHubByJira[jiraIssueNumber] = gitHubIssueNumber;
+			this.jiraByGitHub[gitHubIssueNumber] = jiraIssueNumber;
+			if (previous == NOT_MAPPED) {
+				this.count++;
+				return true;
+			}
+			return false;
+		}
+
+		private static int[] ensureCapacity(int[] array, int index) {
+			return (index < array.length ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2)));
+		}
+
+		void forEach(ObjIntConsumer<String> consumer) {
+			for (int number = 1; number < this.gitHubByJira.length; number++) {
+				if (this.gitHubByJira[number] != NOT_MAPPED) {
+					consumer.accept(this.prefix + "-" + number, this.gitHubByJira[number]);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Finds Jira issue keys, e.g. "SPR-1234", for a set of Jira projects, with the
+ * project keys in a trie, so the text is scanned once, and each position only
+ * as far as it matches the start of a project key.
+ *
+ * <p>Matches are the same as for the regular expression "(SPR|SEC|...)-[0-9]{1,5}+"
+ * that this replaces: there is no check for a boundary before the project key,
+ * and at most 5 digits are matched.
+ */
+public class JiraKeyMatcher {
+
+	private static final int MAX_DIGITS = 5;
+
+
+	private final TrieNode root = new TrieNode();
+
+
+	/**
+	 * @param projectKeys the keys of the Jira projects, e.g. "SPR"
+	 */
+	public JiraKeyMatcher(Collection<String> projectKeys) {
+		Assert.notEmpty(projectKeys, "No Jira project keys");
+		for (String projectKey : projectKeys) {
+			Assert.isTrue(StringUtils.hasText(projectKey) && projectKey.indexOf('-') == -1,
+					"Invalid Jira project key \"" + projectKey + "\"");
+			TrieNode node = this.root;
+			for (char c : projectKey.trim().toCharArray()) {
+				node = node.addChild(c);
+			}
+			node.projectKey = true;
+		}
+	}
+
+
+	/**
+	 * Whether the text is a single Jira issue key.
+	 */
+	public boolean matches(CharSequence text) {
+		return matchEnd(text, 0) == text.length();
+	}
+
+	/**
+	 * Match a Jira issue key that starts at the given index.
+	 * @return the match, or {@code null} if there is no key at the index
+	 */
+	@Nullable
+	public Match matchAt(CharSequence text, int index) {
+		int end = matchEnd(text, index);
+		return (end != -1 ? new Match(text.subSequence(index, end).toString(), index, end) : null);
+	}
+
+	/**
+	 * Find the first Jira issue key at or after the given index.
+	 * @return the match, or {@code null} if there is none
+	 */
+	@Nullable
+	public Match find(CharSequence text, int fromIndex) {
+		for (int start = fromIndex; start < text.length(); start++) {
+			Match match = matchAt(text, start);
+			if (match != null) {
+				return match;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find all Jira issue keys that don't overlap, from left to right.
+	 */
+	public List<Match> findAll(CharSequence text) {
+		List<Match> matches = new ArrayList<>();
+		Match match = find(text, 0);
+		while (match != null) {
+			matches.add(match);
+			match = find(text, match.getEnd());
+		}
+		return matches;
+	}
+
+	private int matchEnd(CharSequence text, int start) {
+		TrieNode node = this.root;
+		for (int i = start; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '-' && node.projectKey) {
+				return matchDigits(text, i + 1);
+			}
+			node = node.getChild(c);
+			if (node == null) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private static int matchDigits(CharSequence text, int start) {
+		int end = start;
+		while (end < text.length() && end - start < MAX_DIGITS && isDigit(text.charAt(end))) {
+			end++;
+		}
+		return (end > start ? end : -1);
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0' && c <= '9');
+	}
+
+
+	/**
+	 * A Jira issue key found in text.
+	 */
+	public static final class Match {
+
+		private final String key;
+
+		private final int start;
+
+		private final int end;
+
+		Match(String key, int start, int end) {
+			this.key = key;
+			this.start = start;
+			this.end = end;
+		}
+
+		public String getKey() {
+			return this.key;
+		}
+
+		public int getStart() {
+			return this.start;
+		}
+
+		public int getEnd() {
+			return this.end;
+		}
+
+		@Override
+		public String toString() {
+			return this.key + "[" + this.start + ".." + this.end + "]";
+		}
+	}
+
+
+	/**
+	 * Trie node with child nodes in an array indexed by char, covering the
+	 * range from the lowest to the highest char with a child.
+	 */
+	private static class TrieNode {
+
+		private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+
+		private TrieNode[] children = NO_CHILDREN;
+
+		private char offset;
+
+		private boolean projectKey;
+
+
+		@Nullable
+		TrieNode getChild(char c) {
+			int index = c - this.offset;
+			return (index >= 0 && index < this.children.length ? this.children[index] : null);
+		}
+
+		TrieNode addChild(char c) {
+			TrieNode child = getChild(c);
+			if (child != null) {
+				return child;
+			}
+			if (this.children.length == 0) {
+				this.children = new TrieNode[1];
+				this.offset = c;
+			}
+			else if (c < this.offset) {
+				TrieNode[] newChildren = new TrieNode[this.children.length + this.offset - c];
+				System.arraycopy(this.children, 0, newChildren, this.offset - c, this.children.length);
+				this.children = newChildren;
+				this.offset = c;
+			}
+			else if (c - this.offset >= this.children.length) {
+				this.children = Arrays.copyOf(this.children, c - this.offset + 1);
+			}
+			child = new TrieNode();
+			this.children[c - this.offset] = child;
+			return child;
+		}
+	}
+
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Translates Jira wiki markup to Markdown in a single scan of the text, ahead
+ * of the Flexmark based transformations in {@link MarkdownEngine}.
+ *
+ * <p>Each line is checked once for a list item, task, heading, table header,
+ * or "---", and the rest of the line is scanned for inline code, code blocks,
+ * quotes, color tags, links, and user mentions. The result is the same as
+ * applying those rules one after the other to the whole text, e.g. inline code
+ * and link aliases are scanned for the constructs that follow them, except
+ * that a construct never spans lines.
+ *
+ * <p>Ordered lists are converted here, even if that disrupts a small number of
+ * code snippets. Empirically in SPR most occurrences of "#" in the beginning
+ * of a line are numbered lists. If left alone, unless those are in code
+ * blocks, they would be interpreted as headings in Markdown and would look
+ * even worse. It's also why this can't be done in a Flexmark Text node
+ * processor (they're seen as headings by the Flexmark parser). Nested
+ * unordered lists, e.g. "** " or "-- ", are left to the Flexmark node
+ * processor in order to avoid disrupting occurrences in code blocks.
+ */
+final class JiraWikiLexer {
+
+	private static final Map<String, String> listItems = new HashMap<>();
+
+	static {
+		listItems.put("#",   "1. ");
+		listItems.put("##",  "   1. ");
+		listItems.put("#-",  "   - ");
+		listItems.put("#*",  "   * ");
+		listItems.put("###", "      1. ");
+		listItems.put("#--", "      - ");
+		listItems.put("#**", "      * ");
+	}
+
+	private static final String[] codeMacros = {"code", "noformat", "panel"};
+
+	private static final String[] colorMacros = {"color"};
+
+	private static final String quoteMacro = "{quote}";
+
+	private static final int INLINE_CODE = 1;
+
+	private static final int LINKS = 2;
+
+	/** No previous character on the line */
+	private static final char NONE = 0;
+
+
+	private final Function<String, String> userMentionRenderer;
+
+
+	/**
+	 * @param userMentionRenderer renders the Markdown for a Jira user key
+	 */
+	JiraWikiLexer(Function<String, String> userMentionRenderer) {
+		this.userMentionRenderer = userMentionRenderer;
+	}
+
+
+	String translate(String text) {
+		return new Scan(text).run();
+	}
+
+
+	private static boolean isLineTerminator(char c) {
+		return (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029');
+	}
+
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	private static boolean startsWith(CharSequence src, String prefix, int index, int end) {
+		if (index + prefix.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (src.charAt(index + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(CharSequence src, char c, int from, int end) {
+		for (int i = from; i < end; i++) {
+			if (src.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int skip(CharSequence src, int index, int end, String chars) {
+		while (index < end && chars.indexOf(src.charAt(index)) != -1) {
+			index++;
+		}
+		return index;
+	}
+
+
+	/**
+	 * State for the translation of one text.
+	 */
+	private class Scan {
+
+		private final String text;
+
+		private StringBuilder out;
+
+		private boolean inQuote;
+
+		/** Whether at the start of a line where "bq." applies */
+		private boolean quoteLineStart = true;
+
+		/** The previous character on the line, before line breaks added for code fences */
+		private char previous = NONE;
+
+		/** Whether a code fence has been split from the text that follows on this line */
+		private boolean fenceSplit;
+
+		/** The language of the last matched code macro */
+		private String macroLanguage;
+
+		private int[] macroParams;
+
+		private int macroParamsStart;
+
+
+		Scan(String text) {
+			this.text = text;
+			this.out = new StringBuilder(text.length() + text.length() / 8);
+		}
+
+
+		String run() {
+			int length = this.text.length();
+			int start = 0;
+			while (start < length) {
+				int end = start;
+				while (end < length && !isLineTerminator(this.text.charAt(end))) {
+					end++;
+				}
+				line(start, end);
+				if (end == length) {
+					break;
+				}
+				int next = (this.text.charAt(end) == '\r' && end + 1 < length &&
+						this.text.charAt(end + 1) == '\n' ? end + 2 : end + 1);
+				this.out.append(this.text, end, next);
+				boolean lineFeed = (this.text.charAt(next - 1) == '\n');
+				lineStarted(lineFeed, true);
+				start = next;
+			}
+			return this.out.toString();
+		}
+
+		private void line(int start, int end) {
+			this.fenceSplit = false;
+			int index = skip(this.text, start, end, " \t");
+
+			// Tasks in lists
+			int space = listMarkerEnd(index, end);
+			String task = (space != -1 ? task(space + 1, end) : null);
+			if (task != null) {
+				String marker = this.text.substring(index, space);
+				prefix(listItems.getOrDefault(marker, marker + " ") + task);
+				scan(this.text, space + 4, end, INLINE_CODE | LINKS, false);
+				return;
+			}
+
+			// Ordered lists
+			if (index < end && this.text.charAt(index) == '#') {
+				space = indexOf(this.text, ' ', index, Math.min(index + 4, end));
+				String item = (space != -1 ? listItems.get(this.text.substring(index, space)) : null);
+				if (item != null) {
+					prefix(item);
+					scan(this.text, space + 1, end, INLINE_CODE | LINKS, false);
+					return;
+				}
+			}
+
+			// Headings
+			if (end - start > 3 && this.text.charAt(start) == 'h' && this.text.charAt(start + 3) == ' ' &&
+					this.text.charAt(start + 1) >= '1' && this.text.charAt(start + 1) <= '6') {
+				prefix("######".substring(0, this.text.charAt(start + 1) - '0') + " ");
+				scan(this.text, start + 4, end, INLINE_CODE | LINKS, false);
+				return;
+			}
+
+			// Table headings
+			if (startsWith(this.text, "||", index, end) && tableHeadings(index, end)) {
+				return;
+			}
+
+			// Jira "---" is an em-dash, but a horizontal rule in Markdown
+			int dash = skip(this.text, start, Math.min(start + 3, end), " ");
+			if (startsWith(this.text, "---", dash, end) && skip(this.text, dash + 3, end, " \t") == end) {
+				prefix("&mdash;");
+				return;
+			}
+
+			scan(this.text, start, end, INLINE_CODE | LINKS, false);
+		}
+
+		/**
+		 * Match a list marker, i.e. "#", "##", "-", or "--", optionally followed
+		 * by up to two "-" or "*", and return the index of the space after it.
+		 */
+		private int listMarkerEnd(int index, int end) {
+			if (index >= end || (this.text.charAt(index) != '#' && this.text.charAt(index) != '-')) {
+				return -1;
+			}
+			char c = this.text.charAt(index);
+			int markerEnd = (index + 1 < end && this.text.charAt(index + 1) == c ? index + 2 : index + 1);
+			int dashes = skip(this.text, markerEnd, Math.min(markerEnd + 2, end), "-");
+			if (dashes < end && this.text.charAt(dashes) == ' ') {
+				return dashes;
+			}
+			int stars = skip(this.text, markerEnd, Math.min(markerEnd + 2, end), "*");
+			return (stars < end && this.text.charAt(stars) == ' ' ? stars : -1);
+		}
+
+		private String task(int index, int end) {
+			if (startsWith(this.text, "(x)", index, end) || startsWith(this.text, "(!)", index, end)) {
+				return "[ ]";
+			}
+			else if (startsWith(this.text, "(/)", index, end)) {
+				return "[x]";
+			}
+			return null;
+		}
+
+		private boolean tableHeadings(int start, int end) {
+			while (end > start && (this.text.charAt(end - 1) == ' ' || this.text.charAt(end - 1) == '\t')) {
+				end--;
+			}
+			if (end - start < 4 || !startsWith(this.text, "||", end - 2, end)) {
+				return false;
+			}
+			String[] headings = this.text.substring(start + 2, end).split("\\|\\|");
+			if (headings.length == 0) {
+				return false;
+			}
+			StringBuilder row1 = new StringBuilder("|");
+			StringBuilder row2 = new StringBuilder("|");
+			for (String heading : headings) {
+				row1.append(heading.trim()).append('|');
+				row2.append(":---|");
+			}
+			prefix("");
+			scan(row1, 0, row1.length(), INLINE_CODE | LINKS, false);
+			this.out.append('\n');
+			lineStarted(true, true);
+			prefix(row2.toString());
+			return true;
+		}
+
+		private void prefix(String prefix) {
+			this.out.append(prefix);
+			this.quoteLineStart = false;
+			if (!prefix.isEmpty()) {
+				this.previous = prefix.charAt(prefix.length() - 1);
+			}
+		}
+
+		/**
+		 * Update state after a line break.
+		 * @param lineFeed whether the line break is, or ends with, "\n"
+		 * @param newLine whether the line break ends a line of the Jira text,
+		 * rather than one added to separate a code fence
+		 */
+		private void lineStarted(boolean lineFeed, boolean newLine) {
+			if (this.inQuote && lineFeed) {
+				this.out.append("> ");
+			}
+			this.quoteLineStart = !(this.inQuote && lineFeed);
+			this.previous = NONE;
+			if (newLine) {
+				this.fenceSplit = false;
+			}
+		}
+
+		private void fenceLineBreak() {
+			this.out.append('\n');
+			lineStarted(true, false);
+		}
+
+
+		/**
+		 * Scan text within a line.
+		 * @param src the text to scan
+		 * @param start the start index
+		 * @param end the end index
+		 * @param rules which of {@link #INLINE_CODE} and {@link #LINKS} apply
+		 * @param more whether the line continues after the end index
+		 */
+		private void scan(CharSequence src, int start, int end, int rules, boolean more) {
+			int index = start;
+			while (index < end) {
+				if (this.quoteLineStart) {
+					this.quoteLineStart = false;
+					int quote = skip(src, index, end, " \t");
+					if (startsWith(src, "bq.", quote, end)) {
+						this.out.append("> ");
+						this.previous = '.';
+						index = quote + 3;
+						continue;
+					}
+				}
+				char c = src.charAt(index);
+				int next = -1;
+				if (c == '{') {
+					next = brace(src, index, end, rules, more);
+				}
+				else if (c == '[' && (rules & LINKS) != 0) {
+					next = bracket(src, index, end, rules);
+				}
+				else if (c == '`') {
+					next = fence(src, index, end, more);
+				}
+				if (next != -1) {
+					index = next;
+				}
+				else {
+					this.out.append(c);
+					this.previous = c;
+					index++;
+				}
+			}
+		}
+
+		private int brace(CharSequence src, int start, int end, int rules, boolean more) {
+			if ((rules & INLINE_CODE) != 0 && startsWith(src, "{{", start, end)) {
+				for (int close = start + 3; close + 1 < end; close++) {
+					if (src.charAt(close) == '}' && src.charAt(close + 1) == '}') {
+						this.out.append('`');
+						scan(src, start + 2, close, rules & ~INLINE_CODE, true);
+						this.out.append('`');
+						this.previous = '`';
+						return close + 2;
+					}
+				}
+			}
+			int macroEnd = macro(src, start, end, codeMacros, false);
+			if (macroEnd != -1) {
+				codeFence(this.macroLanguage, macroEnd < end || more);
+				return macroEnd;
+			}
+			if (startsWith(src, quoteMacro, start, end)) {
+				int quoteEnd = start + quoteMacro.length();
+				if (!this.inQuote && src == this.text && onlyQuoteMacrosAfter(quoteEnd)) {
+					// Nothing left to quote
+					return end;
+				}
+				this.inQuote = !this.inQuote;
+				if (this.inQuote) {
+					this.out.append("\n > ");
+				}
+				this.previous = '}';
+				return quoteEnd;
+			}
+			macroEnd = macro(src, start, end, colorMacros, true);
+			if (macroEnd != -1) {
+				this.previous = '}';
+				return macroEnd;
+			}
+			return -1;
+		}
+
+		private boolean onlyQuoteMacrosAfter(int index) {
+			while (index < this.text.length()) {
+				if (!this.text.startsWith(quoteMacro, index)) {
+					return false;
+				}
+				index += quoteMacro.length();
+			}
+			return true;
+		}
+
+		/**
+		 * Match a macro like "{code}", "{code:java}", or "{code:title=Foo.java|borderStyle=solid}".
+		 * @return the end index of the macro, or -1
+		 */
+		private int macro(CharSequence src, int start, int end, String[] names, boolean colorValue) {
+			for (String name : names) {
+				if (!startsWith(src, name, start + 1, end)) {
+					continue;
+				}
+				int index = start + 1 + name.length();
+				if (index < end && src.charAt(index) == ':') {
+					int value = index + 1;
+					int valueStart = (colorValue && value < end && src.charAt(value) == '#' ? value + 1 : value);
+					int valueEnd = skipWordChars(src, valueStart, end);
+					if (valueEnd > valueStart) {
+						int macroEnd = macroParams(src, valueEnd, end);
+						if (macroEnd != -1) {
+							this.macroLanguage = src.subSequence(value, valueEnd).toString();
+							return macroEnd;
+						}
+					}
+				}
+				int macroEnd = macroParams(src, index, end);
+				if (macroEnd != -1) {
+					this.macroLanguage = "";
+					return macroEnd;
+				}
+				return -1;
+			}
+			return -1;
+		}
+
+		/**
+		 * Match ":key=value" or "|key=value" parameters followed by "}", where
+		 * the shortest value that leads to a match is taken.
+		 * @return the end index of the macro, or -1
+		 */
+		private int macroParams(CharSequence src, int index, int end) {
+			this.macroParams = null;
+			this.macroParamsStart = index;
+			return macroParamsFrom(src, index, end);
+		}
+
+		private int macroParamsFrom(CharSequence src, int index, int end) {
+			if (index >= end) {
+				return -1;
+			}
+			if (src.charAt(index) == ':' || src.charAt(index) == '|') {
+				int keyEnd = skipWordChars(src, index + 1, end);
+				if (keyEnd > index + 1 && keyEnd < end && src.charAt(keyEnd) == '=') {
+					for (int valueEnd = keyEnd + 2; valueEnd <= end; valueEnd++) {
+						int result = cachedMacroParamsFrom(src, valueEnd, end);
+						if (result != -1) {
+							return result;
+						}
+					}
+				}
+			}
+			return (src.charAt(index) == '}' ? index + 1 : -1);
+		}
+
+		private int cachedMacroParamsFrom(CharSequence src, int index, int end) {
+			// Values may contain further parameters, so remember results by index
+			if (this.macroParams == null) {
+				this.macroParams = new int[end - this.macroParamsStart + 1];
+			}
+			int cached = this.macroParams[index - this.macroParamsStart];
+			if (cached == 0) {
+				int result = macroParamsFrom(src, index, end);
+				this.macroParams[index - this.macroParamsStart] = (result != -1 ? result + 1 : -1);
+				return result;
+			}
+			return (cached != -1 ? cached - 1 : -1);
+		}
+
+		private int skipWordChars(CharSequence src, int index, int end) {
+			while (index < end && isWordChar(src.charAt(index))) {
+				index++;
+			}
+			return index;
+		}
+
+		/**
+		 * Write the fence for a code macro. The fence is followed by a line break
+		 * if it is the first on the line with more text after it, or preceded by
+		 * a line break if it has no language and text before it on the line.
+		 */
+		private void codeFence(String language, boolean textAfter) {
+			if (!this.fenceSplit && textAfter) {
+				this.out.append("```").append(language);
+				this.fenceSplit = true;
+				fenceLineBreak();
+			}
+			else if (language.isEmpty() && this.previous != NONE) {
+				fenceLineBreak();
+				this.out.append("```");
+				this.quoteLineStart = false;
+				this.previous = NONE;
+			}
+			else {
+				this.out.append("```").append(language).append(' ');
+				this.previous = ' ';
+			}
+		}
+
+		/**
+		 * Apply the same line breaks as for code macros to a "```" fence that
+		 * is followed by a space.
+		 */
+		private int fence(CharSequence src, int start, int end, boolean more) {
+			if (!startsWith(src, "```", start, end)) {
+				return -1;
+			}
+			int languageEnd = skipWordChars(src, start + 3, end);
+			if (languageEnd >= end || src.charAt(languageEnd) != ' ') {
+				return -1;
+			}
+			boolean textAfter = (languageEnd + 1 < end || more);
+			if (this.fenceSplit || !textAfter) {
+				if (languageEnd > start + 3 || this.previous == NONE) {
+					return -1;
+				}
+			}
+			codeFence(src.subSequence(start + 3, languageEnd).toString(), textAfter);
+			return languageEnd + 1;
+		}
+
+		private int bracket(CharSequence src, int start, int end, int rules) {
+			int linkEnd = link(src, start, end, rules);
+			if (linkEnd != -1) {
+				this.previous = ']';
+				return linkEnd;
+			}
+			if (startsWith(src, "[~", start, end)) {
+				int close = indexOf(src, ']', start + 2, end);
+				if (close > start + 2) {
+					this.out.append(userMentionRenderer.apply(src.subSequence(start + 2, close).toString()));
+					this.previous = ']';
+					return close + 1;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Match "[alias|http...]" with the shortest alias that leads to a match.
+		 * @return the end index of the link, or -1
+		 */
+		private int link(CharSequence src, int start, int end, int rules) {
+			for (int bar = start + 2; bar < end; bar++) {
+				if (src.charAt(bar) != '|') {
+					continue;
+				}
+				int url = skip(src, bar + 1, end, " ");
+				if (!startsWith(src, "http", url, end)) {
+					continue;
+				}
+				int close = indexOf(src, ']', url + 4, end);
+				if (close == -1) {
+					return -1;
+				}
+				int alias = bar;
+				while (alias > start + 2 && src.charAt(alias - 1) == ' ') {
+					alias--;
+				}
+				StringBuilder out = this.out;
+				this.out = new StringBuilder();
+				this.out.append('[');
+				scan(src, start + 1, alias, rules & ~LINKS, true);
+				this.out.append("](");
+				scan(src, url, close, rules & ~LINKS, true);
+				this.out.append(')');
+				String link = this.out.toString();
+				this.out = out;
+				userMentions(link);
+				return close + 1;
+			}
+			return -1;
+		}
+
+		private void userMentions(String src) {
+			int index = 0;
+			while (index < src.length()) {
+				int mention = src.indexOf("[~", index);
+				int close = (mention != -1 ? src.indexOf(']', mention + 2) : -1);
+				if (close == -1) {
+					this.out.append(src, index, src.length());
+					return;
+				}
+				if (close == mention + 2) {
+					this.out.append(src, index, mention + 1);
+					index = mention + 1;
+					continue;
+				}
+				this.out.append(src, index, mention);
+				this.out.append(userMentionRenderer.apply(src.substring(mention + 2, close)));
+				index = close + 1;
+			}
+		}
+	}
+
+}
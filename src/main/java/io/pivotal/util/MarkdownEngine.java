@@ -19,15 +19,18 @@ import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraUser;
 import lombok.Data;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -38,9 +41,15 @@ import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.parser.block.NodePostProcessor;
 import com.vladsch.flexmark.parser.block.NodePostProcessorFactory;
 import com.vladsch.flexmark.util.NodeTracker;
+import com.vladsch.flexmark.util.options.DataKey;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 
 /**
+ * Converts Jira wiki markup to Markdown.
+ *
+ * <p>Instances are thread-safe once configured, so that issues can be converted
+ * in parallel. State that changes during a conversion is kept per document.
+ *
  * @author Rob Winch
  * @author Rossen Stoyanchev
  */
@@ -48,14 +57,31 @@ import com.vladsch.flexmark.util.sequence.BasedSequence;
 @Component
 public class MarkdownEngine implements MarkupEngine {
 
-	private static final Pattern jiraUserMentionPattern = Pattern.compile("\\[~([^]]+)]");
+	/** Upper bound on phase 1 parser invocations per document */
+	private static final int MAX_PHASE1_PASSES = 3;
 
-	private static final Pattern tablesPattern = Pattern.compile("(?m)^[ \\t]*(\\|\\|.*\\|\\|)[ \\t]*$");
+	/** Cached results are not used after changes to the conversion code */
+	private static final String implementationHash = ConversionCache.hashClasses(
+			MarkdownEngine.class, JiraWikiLexer.class, JiraKeyMatcher.class, OversizedTextConverter.class);
 
 
 	String jiraBaseUrl;
 
-	private Map<String, JiraUser> userLookup = new HashMap<>();
+	private final Map<String, JiraUser> userLookup = new ConcurrentHashMap<>();
+
+	/** Jira wiki markup to Markdown, ahead of parsing */
+	private final JiraWikiLexer lexer = new JiraWikiLexer(this::renderUserMention);
+
+	/** For text longer than {@link #oversizedThreshold}, converting only the prose around the bulk of it */
+	private final OversizedTextConverter oversizedTextConverter = new OversizedTextConverter(this::convertMarkup);
+
+	/** Text longer than this is converted with the {@link OversizedTextConverter} */
+	@Value("${markup.oversized-threshold:65536}")
+	private int oversizedThreshold = 65536;
+
+	/** Output limit for oversized text, within GitHub's limit of 65536 for the whole body */
+	@Value("${markup.oversized-max-length:60000}")
+	private int oversizedMaxLength = 60000;
 
 	/** Escape/suppress emphasis over multiple lines, ahead of other transformations. */
 	private Parser phase1Parser;
@@ -64,7 +90,14 @@ public class MarkdownEngine implements MarkupEngine {
 	/** Render transformed markdown */
 	private final Formatter formatter = Formatter.builder().build();
 	/** For things that can't be done as easily with a post processor */
-	private final NodeVisitor visitor = new NodeVisitor(new VisitHandler<>(Link.class, new InlineLinkVisitor()));
+	private final InlineLinkVisitor inlineLinkVisitor = new InlineLinkVisitor();
+
+	@Nullable
+	private ConversionCache conversionCache;
+	/** Hash of the configuration that conversion results depend on, other than users */
+	private volatile String configurationHash;
+
+	private final LongAdder rewrittenNodeCount = new LongAdder();
 
 
 	@Autowired
@@ -72,11 +105,51 @@ public class MarkdownEngine implements MarkupEngine {
 		this.jiraBaseUrl = jiraConfig.getBaseUrl();
 		phase1Parser = Parser.builder().postProcessorFactory(new Phase1NodePostProcessorFactory()).build();
 		phase2Parser = Parser.builder().postProcessorFactory(new Phase2NodePostProcessorFactory(jiraConfig)).build();
+		this.configurationHash = ConversionCache.hash(implementationHash + '\n' + this.jiraBaseUrl + '\n' +
+				String.join(",", jiraConfig.getLinkedProjects()));
+	}
+
+	@Autowired(required = false)
+	public void setConversionCache(@Nullable ConversionCache conversionCache) {
+		this.conversionCache = conversionCache;
 	}
 
 	@Override
 	public void configureUserLookup(Map<String, JiraUser> userLookup) {
-		this.userLookup.putAll(userLookup);
+		userLookup.forEach((key, user) -> {
+			if (key != null && user != null) {
+				this.userLookup.put(key, user);
+			}
+		});
+	}
+
+	/**
+	 * Return the keys of the Jira users mentioned in the given markup, e.g. "[~jdoe]".
+	 */
+	public static Set<String> findUserMentions(String text) {
+		int index = text.indexOf("[~");
+		if (index == -1) {
+			return Collections.emptySet();
+		}
+		Set<String> keys = new LinkedHashSet<>();
+		for (; index != -1; index = text.indexOf("[~", index + 2)) {
+			int close = text.indexOf(']', index + 2);
+			if (close == -1) {
+				break;
+			}
+			if (close > index + 2) {
+				keys.add(text.substring(index + 2, close));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Return the number of nodes that phase 2 replaced with converted text, over
+	 * all conversions so far, excluding results from the cache.
+	 */
+	public long getRewrittenNodeCount() {
+		return this.rewrittenNodeCount.sum();
 	}
 
 	@Override
@@ -94,133 +167,132 @@ public class MarkdownEngine implements MarkupEngine {
 			return "";
 		}
 
-		if (text.endsWith(".") && !text.endsWith("..")) {
-			text = text.substring(0, text.length() - 1).trim();
+		// Oversized text is rarely repeated, and not worth keeping
+		ConversionCache cache = this.conversionCache;
+		if (cache != null && text.length() <= this.oversizedThreshold) {
+			return cache.get(getCacheConfiguration(text), text, this::doConvert);
 		}
+		return doConvert(text);
+	}
 
-		// Lists and headings (in that order!)
-		text = lists(text);
-		text = headings(text);
-		text = tables(text);
-		text = text.replaceAll("(?m)^[ ]{0,3}---[ \\t]*$", "&mdash;");
-
-		// Code
-		text = text.replaceAll("\\{\\{(.+?)\\}\\}", "`$1`"); // inline code
-		text = text.replaceAll("\\{(code|noformat|panel)(:(\\w+))?(?:(:|\\|)\\w+=.+?)*\\}", "```$3 ");
-		text = text.replaceAll("(```\\w*) (.+)", "$1\n$2");
-		text = text.replaceAll("(.)(```) ", "$1\n$2");
+	/**
+	 * The configuration hash, plus the users mentioned in the text, since the
+	 * result depends on them, and users are added as issues are loaded.
+	 */
+	private String getCacheConfiguration(String text) {
+		Set<String> mentions = findUserMentions(text);
+		if (mentions.isEmpty()) {
+			return this.configurationHash;
+		}
+		StringBuilder sb = new StringBuilder(this.configurationHash);
+		for (String key : mentions) {
+			JiraUser user = this.userLookup.get(key);
+			sb.append('\n').append(key);
+			if (user != null) {
+				sb.append(' ').append(user.getDisplayName()).append(' ').append(user.getSelf());
+			}
+		}
+		return sb.toString();
+	}
 
-		// Quotes
-		text = quoteBlocks(text);
-		text = text.replaceAll("(?m)^[ \\t]*bq\\.", "> "); // single line quotes
-		text = text.replaceAll("\\{(color)(:((#)?\\w+))?(?:(:|\\|)\\w+=.+?)*\\}", ""); // color tags
+	private String doConvert(String text) {
+		if (text.endsWith(".") && !text.endsWith("..")) {
+			text = text.substring(0, text.length() - 1).trim();
+		}
+		if (text.length() > this.oversizedThreshold) {
+			return this.oversizedTextConverter.convert(text, this.oversizedMaxLength);
+		}
+		return convertMarkup(text);
+	}
 
-		text = text.replaceAll("\\[(.+?)[ ]*\\|[ ]*(http.*?)\\]", "[$1]($2)"); // links
-		text = replaceUserKeyWithDisplayNameInJiraUserMentions(text);
+	private String convertMarkup(String text) {
+		text = this.lexer.translate(text);
 
+		// Escaping one emphasis may free a delimiter to pair with another one,
+		// so parse again only if that is possible, and at most a few times.
+		int passes = 0;
+		boolean modified;
 		do {
 			Node node = phase1Parser.parse(text);
 			text = formatter.render(node);
+			modified = Phase1NodePostProcessor.MODIFIED.getFrom(node.getDocument());
 		}
-		while (phase1PostProcessor.keepProcessing());
+		while (modified && ++passes < MAX_PHASE1_PASSES && mayHaveEmphasisToEscape(text));
 
 		Node node = phase2Parser.parse(text);
-		visitor.visit(node);
+		this.rewrittenNodeCount.add(Phase2NodePostProcessor.REWRITTEN_NODES.getFrom(node.getDocument()));
+		new NodeVisitor(new VisitHandler<>(Link.class, this.inlineLinkVisitor)).visit(node);
 		text = formatter.render(node);
 
 		return text;
 	}
 
-	private String lists(String text) {
-
-		// Tasks in lists (lists handled separately below)
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(x\\))", "$1[ ]");
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(/\\))", "$1[x]");
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(!\\))", "$1[ ]");
-
-		// Ordered lists
-		// Replacing "#" and "##" disrupts a small number of code snippets, but the impact is small,
-		// Empirically in SPR most occurrences of "#" in the beginning of a line are numbered lists.
-		// If left alone, unless those are in code blocks, they would be interpreted as headings in
-		// markdown and would look even worse. It's also why we can't do this in a Flexmark Text node
-		// processor (they're seen as headings by the Flexmark parser).
-		text = text.replaceAll("(?m)^[ \\t]*# ",       "1. ");
-		text = text.replaceAll("(?m)^[ \\t]*## ",      "   1. ");
-		text = text.replaceAll("(?m)^[ \\t]*#- ",      "   - ");
-		text = text.replaceAll("(?m)^[ \\t]*#\\* ",    "   * ");
-		text = text.replaceAll("(?m)^[ \\t]*### ",     "      1. ");
-		text = text.replaceAll("(?m)^[ \\t]*#-- ",     "      - ");
-		text = text.replaceAll("(?m)^[ \\t]*#\\*\\* ", "      * ");
-
-		// Unordered lists:
-		// No need to convert "-" or "* " (same in Markdown)..
-		// For nested lists (e.g. "** ", "-- ", etc) we use a Flexmark Text node processor later on,
-		// in order to avoid disrupting occurrences in code blocks.
-
-		return text;
-	}
-
-	private String headings(String text) {
-		text = text.replaceAll("(?m)^h1. ", "# ");
-		text = text.replaceAll("(?m)^h2. ", "## ");
-		text = text.replaceAll("(?m)^h3. ", "### ");
-		text = text.replaceAll("(?m)^h4. ", "#### ");
-		text = text.replaceAll("(?m)^h5. ", "##### ");
-		text = text.replaceAll("(?m)^h6. ", "###### ");
-		return text;
-	}
-
-	private String tables(String text) {
-		Matcher matcher = tablesPattern.matcher(text);
-		StringBuffer sb = null;
-		while (matcher.find()) {
-			String[] headings = matcher.group(1).split("\\|\\|");
-			headings = Arrays.copyOfRange(headings, 1, headings.length);
-			String row1 = Arrays.stream(headings).map(String::trim).collect(Collectors.joining("|", "|", "|\n"));
-			String row2 = Arrays.stream(headings).map(s -> ":---").collect(Collectors.joining("|", "|", "|"));
-			sb = sb != null ? sb : new StringBuffer();
-			matcher.appendReplacement(sb, row1 + row2);
-		}
-		if (sb == null) {
-			return text;
+	/**
+	 * Whether the text may have emphasis that phase 1 escapes, i.e. an unescaped
+	 * "*" or "_" that could open emphasis, and the same on a later line of the
+	 * same paragraph that could close it, or "*&#47;*" and "*.*". This is a quick
+	 * check that may report false positives, but not false negatives.
+	 */
+	static boolean mayHaveEmphasisToEscape(String text) {
+		boolean asteriskOpener = false;
+		boolean underscoreOpener = false;
+		boolean lineAsteriskOpener = false;
+		boolean lineUnderscoreOpener = false;
+		boolean blankLine = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				if (blankLine) {
+					asteriskOpener = false;
+					underscoreOpener = false;
+				}
+				asteriskOpener |= lineAsteriskOpener;
+				underscoreOpener |= lineUnderscoreOpener;
+				lineAsteriskOpener = false;
+				lineUnderscoreOpener = false;
+				blankLine = true;
+				continue;
+			}
+			blankLine &= Character.isWhitespace(c);
+			if ((c != '*' && c != '_') || isEscaped(text, i)) {
+				continue;
+			}
+			char prev = (i > 0 ? text.charAt(i - 1) : '\n');
+			char next = (i + 1 < text.length() ? text.charAt(i + 1) : '\n');
+			if ((c == '*' ? asteriskOpener : underscoreOpener) && !Character.isWhitespace(prev)) {
+				return true;
+			}
+			if (c == '*' && (next == '/' || next == '.') && text.startsWith("*", i + 2)) {
+				return true;
+			}
+			if (!Character.isWhitespace(next)) {
+				lineAsteriskOpener |= (c == '*');
+				lineUnderscoreOpener |= (c == '_');
+			}
 		}
-		matcher.appendTail(sb);
-		return sb.toString();
+		return false;
 	}
 
-	private static String quoteBlocks(String str) {
-		String[] parts = str.split("\\{quote\\}");
-		for (int i = 1; i < parts.length; i += 2) {
-			parts[i] = "\n > " + parts[i].replaceAll("\n", "\n> ");
+	private static boolean isEscaped(String text, int index) {
+		int backslashCount = 0;
+		while (index - backslashCount > 0 && text.charAt(index - backslashCount - 1) == '\\') {
+			backslashCount++;
 		}
-		return StringUtils.arrayToDelimitedString(parts, "");
+		return backslashCount % 2 == 1;
 	}
 
-	private String replaceUserKeyWithDisplayNameInJiraUserMentions(String text) {
-		Matcher matcher = jiraUserMentionPattern.matcher(text);
-		StringBuffer sb = null;
-		while (matcher.find()) {
-			String key = matcher.group(1);
-			JiraUser user = this.userLookup.computeIfAbsent(key, k -> {
-				JiraUser u = new JiraUser();
-				u.setKey(k);
-				u.setDisplayName(k);
-				u.setSelf(this.jiraBaseUrl);
-				return u;
-			});
-			sb = sb != null ? sb : new StringBuffer();
-			matcher.appendReplacement(sb, "[" + user.getDisplayName() + "](" + user.getBrowserUrl() + ")");
-		}
-		if (sb == null) {
-			return text;
-		}
-		matcher.appendTail(sb);
-		return sb.toString();
+	private String renderUserMention(String key) {
+		JiraUser user = this.userLookup.computeIfAbsent(key, k -> {
+			JiraUser u = new JiraUser();
+			u.setKey(k);
+			u.setDisplayName(k);
+			u.setSelf(this.jiraBaseUrl);
+			return u;
+		});
+		return "[" + user.getDisplayName() + "](" + user.getBrowserUrl() + ")";
 	}
 
 
-	private static final Phase1NodePostProcessor phase1PostProcessor = new Phase1NodePostProcessor();
-
 	private static class Phase1NodePostProcessorFactory extends NodePostProcessorFactory {
 
 		Phase1NodePostProcessorFactory() {
@@ -231,23 +303,22 @@ public class MarkdownEngine implements MarkupEngine {
 
 		@Override
 		public NodePostProcessor create(Document document) {
-			phase1PostProcessor.reset();
-			return phase1PostProcessor;
+			return new Phase1NodePostProcessor(document);
 		}
 	}
 
 
 	private static class Phase1NodePostProcessor extends NodePostProcessor {
 
-		private int modificationCount = 0;
+		/** Whether the document needs another pass */
+		static final DataKey<Boolean> MODIFIED = new DataKey<>("JIRA_EMPHASIS_ESCAPED", false);
 
 
-		boolean keepProcessing() {
-			return modificationCount > 0;
-		}
+		private final Document document;
+
 
-		void reset() {
-			modificationCount = 0;
+		Phase1NodePostProcessor(Document document) {
+			this.document = document;
 		}
 
 		@Override
@@ -264,7 +335,7 @@ public class MarkdownEngine implements MarkupEngine {
 				}
 				// "\n"  - emphasis over multiple lines is legal but in 99% of cases not actually an emphasis
 				else if (content.contains("\n")) {
-					modificationCount++;
+					this.document.set(MODIFIED, true);
 					content = "\\" + content;
 					replaceNodeWithText(state, node, content);
 				}
@@ -285,10 +356,13 @@ public class MarkdownEngine implements MarkupEngine {
 
 		private final JiraConfig jiraConfig;
 
+		private final JiraKeyMatcher jiraKeyMatcher;
+
 
 		Phase2NodePostProcessorFactory(JiraConfig jiraConfig) {
 			super(false);
 			this.jiraConfig = jiraConfig;
+			this.jiraKeyMatcher = new JiraKeyMatcher(jiraConfig.getLinkedProjects());
 			addNodes(Emphasis.class);
 			addNodes(HtmlBlock.class, HtmlCommentBlock.class, HtmlInline.class, HtmlInlineComment.class);
 			addNodes(LinkRef.class);
@@ -297,55 +371,61 @@ public class MarkdownEngine implements MarkupEngine {
 
 		@Override
 		public NodePostProcessor create(Document document) {
-			return new Phase2NodePostProcessor(jiraConfig);
+			return new Phase2NodePostProcessor(document, jiraKeyMatcher, jiraConfig);
 		}
 	}
 
 
+	/**
+	 * Replaces nodes with converted text, but only where the conversion changes
+	 * the text, so nodes that are fine as they are, typically most of them, are
+	 * left in place.
+	 */
 	private static class Phase2NodePostProcessor extends NodePostProcessor {
 
+		/** Number of nodes replaced in the document */
+		static final DataKey<Integer> REWRITTEN_NODES = new DataKey<>("JIRA_REWRITTEN_NODES", 0);
+
 		private static final Pattern ghUserMentionPattern = Pattern.compile("(^|[^\\w])(@[\\w-]+)");
 
-		private static final Pattern jiraKeyPattern = Pattern.compile("(" +
-				"(GREENHOUSE|IMPALA|GRADLE|SHDPADMIN|AMQP|AMQPNET|BATCH|" +
-				"BATCHADM|FLEX|DATAAERO|DATACOL|DATACMNS|DATACOUCH|DATAES|DATACASS|DATASOLR|SGF|DATAGEODE|DATAHB|" +
-				"DATAJDBC|DATAJPA|DATAKV|DATALDAP|DATAMAP|DATAMONGO|DATAGRAPH|DATAREDIS|DATAREST|DATARIAK|ANDROID|" +
-				"SHDP|SPR|SGFNET|IDE|INT|INTEXT|INTDSLGROOVY|INTROO|INTSAMPLES|INTSCALA|INTTEMPLATES|SJC|LDAP|SMA|" +
-				"MOBILE|MOD|OSGI|SPS|RCP|ROO|ROOFLEX|SCALA|SEC|SECOAUTH|SHL|SLICE|SOCIAL|SOCIALFB|SOCIALGH|" +
-				"SOCIALLI|SOCIALTI|SOCIALTW|STS|SWF|SWS|XD|SPRNET|SPRNETCODECONFIG|SPRNETREST|SPRNETSOCIAL|" +
-				"SPRNETSOCIALDB|SPRNETSOCIALFB|SPRNETSOCIALLI|SPRNETSOCIALTW|SPRNETVSADDIN|SESPRINGACTIONSCRIPTAS|" +
-				"SEBLOB|SECOUCHDB|SEDBFONET|SEDBFO|SE|SEBATCHNET|SECONFIGNET|SENMSNET|SERICHCLIENTNET|SETHREADNET|" +
-				"SESIA|SESPRINGINTEGRATIONNET|SEJCR|SESPRINGPYTHONPY|SES|SESQLJ|SESURF|SEWORKFLOW|SEWPFNET)"+
-				"-[0-9]{1,5}+)");
+		/** Nested list items: "**", "--", "-#", "*#" */
+		private static final Pattern nestedListItemPattern = Pattern.compile("(?m)^[ \\t]*(\\*\\*|--|-#|\\*#) ");
+
 
 		/**
 		 * Derived by using {@link io.pivotal.pre.MarkupConverter} to dump
 		 * descriptions and comments for all issues and grepping for examples.
 		 */
-		private static final List<Character> skipCharsPrecedingJiraIssueKey =
-				Arrays.asList('/', '-', ':', '^', '@', '\\', '=', '"', '\'', '`');
+		private static final String skipCharsPrecedingJiraIssueKey = "/-:^@\\=\"'`";
 
 
+		private final Document document;
+
+		private final JiraKeyMatcher jiraKeyMatcher;
+
 		private final String jiraIssueBaseUrl;
 
 
-		Phase2NodePostProcessor(JiraConfig jiraConfig) {
+		Phase2NodePostProcessor(Document document, JiraKeyMatcher jiraKeyMatcher, JiraConfig jiraConfig) {
+			this.document = document;
+			this.jiraKeyMatcher = jiraKeyMatcher;
 			this.jiraIssueBaseUrl = jiraConfig.getBaseUrl() + "/browse/";
 		}
 
 
 		@Override
 		public void process(NodeTracker state, Node node) {
-			String content = node.getChars().toString();
+			if (isWithinEmphasisOrLinkRef(node)) {
+				return;
+			}
+			String original = node.getChars().toString();
+			String content = original;
 			if (node instanceof Text) {
 				content = applyGhUserMentionPattern(content);
 				content = replaceJiraKeysWithLinks(node, content);
 				// Unordered lists:
 				// no need to convert "-" or "* " (same in Markdown).
-				content = content.replaceAll("(?m)^[ \\t]*\\*\\* ", "   * ");
-				content = content.replaceAll("(?m)^[ \\t]*-- ",     "   - ");
-				content = content.replaceAll("(?m)^[ \\t]*-# ",     "   1. ");
-				content = content.replaceAll("(?m)^[ \\t]*\\*# ",   "   1. ");
+				content = replaceNestedListItems(content);
 			}
 			else if (node instanceof LinkRef) {
 				if (content.startsWith("[http://") || content.startsWith("[https://")) {
@@ -356,7 +436,7 @@ public class MarkdownEngine implements MarkupEngine {
 				}
 				else {
 					String s = content.substring(1, content.length() - 1);
-					if (jiraKeyPattern.matcher(s).matches()) {
+					if (this.jiraKeyMatcher.matches(s)) {
 						content = getJiraIssueUrl(s);
 					}
 				}
@@ -376,45 +456,73 @@ public class MarkdownEngine implements MarkupEngine {
 				if (content.startsWith("<a ") || content.equals("</a>")) {
 					return;
 				}
-				content = content.replaceAll("<", "\\\\<");
+				if (content.indexOf('<') != -1) {
+					content = content.replace("<", "\\<");
+				}
+			}
+			if (!content.equals(original)) {
+				replaceNodeWithText(state, node, content);
 			}
-			replaceNodeWithText(state, node, content);
+		}
+
+		/**
+		 * Emphasis and link references are either replaced as a whole, including
+		 * their content, or left as they are, so there is nothing to do within.
+		 */
+		private static boolean isWithinEmphasisOrLinkRef(Node node) {
+			for (Node parent = node.getParent(); parent != null; parent = parent.getParent()) {
+				if (parent instanceof Emphasis || parent instanceof LinkRef) {
+					return true;
+				}
+			}
+			return false;
 		}
 
 		private String applyGhUserMentionPattern(String text) {
+			if (text.indexOf('@') == -1) {
+				return text;
+			}
 			// Escape "@"-prefixed content to avoid incidental GitHub user mentions.
 			return ghUserMentionPattern.matcher(text).replaceAll("$1`$2`");
 		}
 
+		private static String replaceNestedListItems(String text) {
+			Matcher matcher = nestedListItemPattern.matcher(text);
+			if (!matcher.find()) {
+				return text;
+			}
+			StringBuffer sb = new StringBuffer(text.length() + 16);
+			do {
+				String marker = matcher.group(1);
+				matcher.appendReplacement(sb, marker.equals("**") ? "   * " : marker.equals("--") ? "   - " : "   1. ");
+			}
+			while (matcher.find());
+			return matcher.appendTail(sb).toString();
+		}
+
 		private String replaceJiraKeysWithLinks(Node node, String text) {
-			Matcher matcher = jiraKeyPattern.matcher(text);
-			StringBuffer sb = null;
-			while (matcher.find()) {
-				String key = matcher.group(1);
-				sb = sb != null ? sb : new StringBuffer();
-				if (skipJiraKeyMatch(matcher, text, node)) {
-					matcher.appendReplacement(sb, key);
-				}
-				else {
-					matcher.appendReplacement(sb, getJiraIssueUrl(key));
+			StringBuilder sb = null;
+			int index = 0;
+			for (JiraKeyMatcher.Match match : this.jiraKeyMatcher.findAll(text)) {
+				if (!skipJiraKeyMatch(match, text, node)) {
+					sb = sb != null ? sb : new StringBuilder(text.length() + 64);
+					sb.append(text, index, match.getStart()).append(getJiraIssueUrl(match.getKey()));
+					index = match.getEnd();
 				}
 			}
 			if (sb != null) {
-				matcher.appendTail(sb);
-				return sb.toString();
+				return sb.append(text, index, text.length()).toString();
 			}
 			return text;
 		}
 
-		private static boolean skipJiraKeyMatch(Matcher matcher, String text, Node node) {
-			int start = matcher.start();
-			int end = matcher.end();
-			Character prevChar = start > 0 ? text.charAt(start - 1) : null;
-			Character nextChar = end < text.length() ? text.charAt(end) : null;
+		private static boolean skipJiraKeyMatch(JiraKeyMatcher.Match match, String text, Node node) {
+			int start = match.getStart();
+			int end = match.getEnd();
 			Node prevNode = node.getPrevious();
-			return prevChar != null && skipCharsPrecedingJiraIssueKey.contains(prevChar) ||
-					nextChar != null && nextChar == '-' ||
-					matcher.start() == 0 && prevNode instanceof HtmlInline && prevNode.getChars().startsWith("<a");
+			return start > 0 && skipCharsPrecedingJiraIssueKey.indexOf(text.charAt(start - 1)) != -1 ||
+					end < text.length() && text.charAt(end) == '-' ||
+					start == 0 && prevNode instanceof HtmlInline && prevNode.getChars().startsWith("<a");
 		}
 
 		private String getJiraIssueUrl(String content) {
@@ -427,6 +535,7 @@ public class MarkdownEngine implements MarkupEngine {
 			state.nodeAdded(text);
 			node.unlink();
 			state.nodeRemoved(node);
+			this.document.set(REWRITTEN_NODES, REWRITTEN_NODES.getFrom(this.document) + 1);
 		}
 	}
 
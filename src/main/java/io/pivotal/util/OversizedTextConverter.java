@@ -0,0 +1,267 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.util.function.Function;
+
+/**
+ * Converts descriptions and comments that are too large to convert as a whole
+ * in {@link MarkdownEngine}, typically stack traces or log dumps of several MB.
+ *
+ * <p>The lines from the first to the last one that looks like machine output,
+ * i.e. stack trace frames, log lines, or the content of "code" and "noformat"
+ * blocks, are copied as they are into a fenced code block, without parsing.
+ * Only the prose before and after is converted, as long as it is short enough,
+ * or else it becomes part of the code block too. The code block is truncated
+ * to keep the result within the given maximum length, with a note of how much
+ * was left out.
+ */
+final class OversizedTextConverter {
+
+	/** Prose before and after the code block is converted up to this share of the maximum length */
+	private static final int PROSE_DIVISOR = 4;
+
+	/** Room for the code fences and the truncation note */
+	private static final int RESERVED_LENGTH = 128;
+
+	private static final String[] codeMacroTags = {"{code", "{noformat"};
+
+	private static final String[] logLevels = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL", "SEVERE"};
+
+
+	private final Function<String, String> proseConverter;
+
+
+	/**
+	 * @param proseConverter converts the text before and after the code block
+	 */
+	OversizedTextConverter(Function<String, String> proseConverter) {
+		this.proseConverter = proseConverter;
+	}
+
+
+	/**
+	 * Convert the text to Markdown of at most the given length.
+	 */
+	String convert(String text, int maxLength) {
+		int bulkStart = text.length();
+		int bulkEnd = 0;
+		boolean inCodeBlock = false;
+		for (int start = 0, end; start < text.length(); start = nextLine(text, end)) {
+			end = lineEnd(text, start);
+			int tagCount = countCodeMacroTags(text, start, end);
+			if (inCodeBlock || tagCount > 0 || isMachineOutput(text, start, end)) {
+				bulkStart = Math.min(bulkStart, start);
+				bulkEnd = end;
+			}
+			inCodeBlock ^= (tagCount % 2 == 1);
+		}
+		int proseLength = maxLength / PROSE_DIVISOR;
+		if (bulkEnd < bulkStart) {
+			bulkStart = 0;
+			bulkEnd = text.length();
+		}
+		if (bulkStart > proseLength || skipWhitespace(text, 0, bulkStart) == bulkStart) {
+			bulkStart = 0;
+		}
+		if (text.length() - bulkEnd > proseLength || skipWhitespace(text, bulkEnd, text.length()) == text.length()) {
+			bulkEnd = text.length();
+		}
+
+		String before = (bulkStart > 0 ? this.proseConverter.apply(text.substring(0, bulkStart)) : "");
+		String after = (bulkEnd < text.length() ? this.proseConverter.apply(text.substring(bulkEnd)) : "");
+		if (before.length() + after.length() > 2 * proseLength) {
+			before = "";
+			after = "";
+			bulkStart = 0;
+			bulkEnd = text.length();
+		}
+
+		StringBuilder sb = new StringBuilder(Math.min(text.length(), maxLength) + RESERVED_LENGTH);
+		if (!before.isEmpty()) {
+			sb.append(before).append(before.endsWith("\n") ? "\n" : "\n\n");
+		}
+		int codeLength = maxLength - before.length() - after.length() - RESERVED_LENGTH;
+		appendCodeBlock(sb, text, bulkStart, bulkEnd, codeLength);
+		if (!after.isEmpty()) {
+			sb.append('\n').append(after);
+		}
+		return sb.toString();
+	}
+
+	private static void appendCodeBlock(StringBuilder sb, String text, int start, int end, int maxLength) {
+		StringBuilder code = new StringBuilder(Math.min(end - start, maxLength) + 1);
+		int index = start;
+		while (index < end) {
+			int lineEnd = Math.min(lineEnd(text, index), end);
+			if (!isCodeMacroTagLine(text, index, lineEnd)) {
+				int length = Math.min(lineEnd - index, maxLength - code.length() - 1);
+				if (length < lineEnd - index) {
+					code.append(text, index, index + Math.max(length, 0)).append('\n');
+					index += Math.max(length, 0);
+					break;
+				}
+				code.append(text, index, lineEnd).append('\n');
+			}
+			index = nextLine(text, lineEnd);
+		}
+		String fence = codeFence(code);
+		sb.append(fence).append('\n').append(code).append(fence).append('\n');
+		if (index < end) {
+			sb.append("\n_").append(end - index).append(" more characters omitted, see Jira for the full text._\n");
+		}
+	}
+
+	/**
+	 * A fence longer than any run of backticks in the code, so it can't be closed early.
+	 */
+	private static String codeFence(CharSequence code) {
+		int maxRun = 0;
+		int run = 0;
+		for (int i = 0; i < code.length(); i++) {
+			run = (code.charAt(i) == '`' ? run + 1 : 0);
+			maxRun = Math.max(maxRun, run);
+		}
+		StringBuilder fence = new StringBuilder("```");
+		for (int i = 3; i <= maxRun; i++) {
+			fence.append('`');
+		}
+		return fence.toString();
+	}
+
+
+	/**
+	 * Whether the line looks like a stack trace frame, an exception, or a log line.
+	 */
+	private static boolean isMachineOutput(String text, int start, int end) {
+		int index = skipWhitespace(text, start, end);
+		if (index == end) {
+			return false;
+		}
+		if (text.startsWith("at ", index)) {
+			char last = text.charAt(end - 1);
+			return (last == ')' || last == ']');
+		}
+		if (text.startsWith("Caused by: ", index) || text.startsWith("Suppressed: ", index)) {
+			return true;
+		}
+		if (text.startsWith("... ", index)) {
+			return index + 4 < end && isDigit(text.charAt(index + 4));
+		}
+		return isTimestamp(text, index, end) || isLogLevel(text, index, end) || isExceptionName(text, index, end);
+	}
+
+	/** "2020-01-31 ...", "12:34:56,789 ...", "31/01/2020 ..." */
+	private static boolean isTimestamp(String text, int index, int end) {
+		int digitsEnd = index;
+		while (digitsEnd < end && digitsEnd - index < 4 && isDigit(text.charAt(digitsEnd))) {
+			digitsEnd++;
+		}
+		return digitsEnd > index && digitsEnd + 1 < end &&
+				"-:/".indexOf(text.charAt(digitsEnd)) != -1 && isDigit(text.charAt(digitsEnd + 1));
+	}
+
+	/** "DEBUG ...", "[INFO] ..." */
+	private static boolean isLogLevel(String text, int index, int end) {
+		if (text.charAt(index) == '[') {
+			index++;
+		}
+		for (String level : logLevels) {
+			int levelEnd = index + level.length();
+			if (levelEnd < end && text.startsWith(level, index) &&
+					(text.charAt(levelEnd) == ' ' || text.charAt(levelEnd) == ']')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** "java.lang.IllegalStateException: ...", "org.example.SomeError" */
+	private static boolean isExceptionName(String text, int index, int end) {
+		int nameEnd = index;
+		boolean qualified = false;
+		while (nameEnd < end && (Character.isJavaIdentifierPart(text.charAt(nameEnd)) || text.charAt(nameEnd) == '.')) {
+			qualified |= (text.charAt(nameEnd) == '.');
+			nameEnd++;
+		}
+		if (!qualified || (nameEnd < end && text.charAt(nameEnd) != ':')) {
+			return false;
+		}
+		return endsWith(text, nameEnd, "Exception") || endsWith(text, nameEnd, "Error");
+	}
+
+	private static boolean endsWith(String text, int end, String suffix) {
+		return text.regionMatches(end - suffix.length(), suffix, 0, suffix.length());
+	}
+
+	private static int countCodeMacroTags(String text, int start, int end) {
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == '{') {
+				for (String tag : codeMacroTags) {
+					if (text.startsWith(tag, i)) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/** A line with only a "code" or "noformat" tag, e.g. "{code:java}" */
+	private static boolean isCodeMacroTagLine(String text, int start, int end) {
+		int index = skipWhitespace(text, start, end);
+		int closing = index;
+		while (closing < end && text.charAt(closing) != '}') {
+			closing++;
+		}
+		if (closing == end || skipWhitespace(text, closing + 1, end) != end) {
+			return false;
+		}
+		for (String tag : codeMacroTags) {
+			if (text.startsWith(tag, index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int skipWhitespace(String text, int index, int end) {
+		while (index < end && Character.isWhitespace(text.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0' && c <= '9');
+	}
+
+	private static int lineEnd(String text, int start) {
+		for (int i = start; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') {
+				return i;
+			}
+		}
+		return text.length();
+	}
+
+	private static int nextLine(String text, int lineEnd) {
+		return (text.startsWith("\r\n", lineEnd) ? lineEnd + 2 : lineEnd + 1);
+	}
+
+}
@@ -16,59 +16,164 @@
 package io.pivotal.util;
 
 import java.time.Duration;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
 
-import reactor.core.publisher.Mono;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
- * Rate limiter to ensure more efficient adherence to GitHub's limit of 1 update
- * per second. Simply sleeping before a call tends to stretch the overall time
- * as there is some additional processing time between calls.
+ * Rate limiter shared by the clients calling GitHub, with two budgets:
+ * <ul>
+ * <li>The primary, hourly budget applies to all requests. It is tracked from
+ * the {@code X-RateLimit-Remaining} and {@code X-RateLimit-Reset} response
+ * headers, and requests wait for the reset only once it is used up.
+ * <li>The secondary budget applies to requests that create content, i.e. POST,
+ * PATCH, PUT and DELETE. It is a token bucket that allows a small burst, and
+ * then one request per interval, to stay within GitHub's limit on updates.
+ * </ul>
+ * A {@code Retry-After} response header pauses all requests for the given time.
+ *
+ * <p>This class is thread-safe. Permits are reserved under a lock, and callers
+ * then delay their request, so concurrent writes are spaced out evenly.
  *
  * @author Rossen Stoyanchev
  */
 public class RateLimitHelper {
 
-	private static final Mono<Object> parentMono = Mono.just("foo");
+	private static final Logger logger = LogManager.getLogger(RateLimitHelper.class);
+
+	private static final List<String> writeMethods = Arrays.asList("POST", "PATCH", "PUT", "DELETE");
+
 
-	private final Duration timeBetweenCalls = Duration.ofMillis(350);
+	private final long writeIntervalMillis;
 
-	private Mono<Object> nextPermit;
+	private final int writeBurst;
 
-	private AtomicLong requests = new AtomicLong();
+	private double writeTokens;
 
-	private AtomicLong reset = new AtomicLong();
+	private long lastRefillTime;
 
+	/** Remaining in the primary budget, or -1 if not known yet. */
+	private long primaryRemaining = -1;
 
-	public void obtainPermitToCall() {
+	/** When the primary budget is reset, in epoch millis. */
+	private long primaryResetTime;
 
-		reset.compareAndSet(0, System.currentTimeMillis());
-		if(requests.incrementAndGet() > 99){
+	private long retryAfterTime;
 
-			long since = reset.getAndSet(System.currentTimeMillis());
-			long now = System.currentTimeMillis();
+	private long requestCount;
 
+	private long writeCount;
 
-			double seconds = TimeUnit.MILLISECONDS.toSeconds(now - since);
-			double requests = this.requests.getAndSet(0);
-			double requestsPerSecond =  requests/ seconds;
-			double requestsPerMinute = requestsPerSecond * 60;
-			double requestsPerHour = requestsPerMinute * 60;
+	private long waitMillis;
+
+
+	public RateLimitHelper() {
+		this(Duration.ofMillis(350), 5);
+	}
 
-			System.out.println();
-			System.out.println(String
-					.format("Requests %.0f, per second %.2f, per minute %.2f, per hour %.2f", requests, requestsPerSecond, requestsPerMinute, requestsPerHour));
+	/**
+	 * @param writeInterval the time between content creating requests
+	 * @param writeBurst how many content creating requests can be made back to
+	 * back, after a pause
+	 */
+	public RateLimitHelper(Duration writeInterval, int writeBurst) {
+		this.writeIntervalMillis = writeInterval.toMillis();
+		this.writeBurst = writeBurst;
+		this.writeTokens = writeBurst;
+		this.lastRefillTime = System.currentTimeMillis();
+	}
+
+
+	/**
+	 * Return the remaining primary budget, or {@link Long#MAX_VALUE} if not
+	 * known yet, or if it has since been reset.
+	 */
+	public synchronized long getPrimaryRemaining() {
+		if (this.primaryRemaining < 0 || this.primaryResetTime <= System.currentTimeMillis()) {
+			return Long.MAX_VALUE;
 		}
+		return this.primaryRemaining;
+	}
 
-		if (nextPermit != null) {
-			nextPermit.block();
+	/**
+	 * Reserve a permit for a request with the given HTTP method. This does not
+	 * block, and the caller is expected to delay the request instead.
+	 * @return how long to wait, in millis, before making the request
+	 */
+	public long reservePermit(String method) {
+		return reserve(isWrite(method), System.currentTimeMillis());
+	}
+
+	private static boolean isWrite(String method) {
+		return method != null && writeMethods.contains(method.toUpperCase());
+	}
+
+	/**
+	 * Reserve a permit, and return how long to wait before using it.
+	 */
+	synchronized long reserve(boolean write, long now) {
+		long readyTime = Math.max(now, this.retryAfterTime);
+		if (this.primaryRemaining == 0 && this.primaryResetTime > now) {
+			readyTime = Math.max(readyTime, this.primaryResetTime);
+		}
+		else if (this.primaryRemaining > 0) {
+			this.primaryRemaining--;
+		}
+		if (write) {
+			long elapsed = Math.max(0, now - this.lastRefillTime);
+			this.writeTokens = Math.min(this.writeBurst, this.writeTokens + (double) elapsed / this.writeIntervalMillis);
+			this.lastRefillTime = Math.max(this.lastRefillTime, now);
+			this.writeTokens--;
+			if (this.writeTokens < 0) {
+				long refillTime = now + (long) Math.ceil(-this.writeTokens * this.writeIntervalMillis);
+				readyTime = Math.max(readyTime, refillTime);
+			}
+			this.writeCount++;
 		}
-		resetNextPermit();
+		this.requestCount++;
+		this.waitMillis += readyTime - now;
+		if (this.requestCount % 100 == 0) {
+			logger.debug("{} requests, {} writes, {} seconds waiting, primary remaining {}",
+					this.requestCount, this.writeCount, this.waitMillis / 1000, this.primaryRemaining);
+		}
+		return readyTime - now;
+	}
+
+	/**
+	 * Update the budgets from the rate limit headers of a response.
+	 * @param headers lookup for response header values
+	 * @return whether the response indicates the request was rate limited, and
+	 * should be retried once a permit is obtained
+	 */
+	public boolean updateLimits(Function<String, String> headers) {
+		return updateLimits(headers.apply("X-RateLimit-Remaining"), headers.apply("X-RateLimit-Reset"),
+				headers.apply("Retry-After"), System.currentTimeMillis());
 	}
 
-	private void resetNextPermit() {
-		nextPermit = parentMono.delayElement(timeBetweenCalls);
+	synchronized boolean updateLimits(String remaining, String reset, String retryAfter, long now) {
+		boolean limited = false;
+		if (retryAfter != null) {
+			this.retryAfterTime = Math.max(this.retryAfterTime, now + 1000 * Long.parseLong(retryAfter.trim()));
+			limited = true;
+		}
+		if (remaining != null && reset != null) {
+			long remainingValue = Long.parseLong(remaining.trim());
+			long resetTime = 1000 * Long.parseLong(reset.trim());
+			if (resetTime > this.primaryResetTime || this.primaryRemaining < 0) {
+				// New window: the server count is authoritative
+				this.primaryRemaining = remainingValue;
+				this.primaryResetTime = resetTime;
+			}
+			else {
+				// Same window: responses may arrive out of order
+				this.primaryRemaining = Math.min(this.primaryRemaining, remainingValue);
+			}
+			limited |= (remainingValue == 0);
+		}
+		return limited;
 	}
 
 }
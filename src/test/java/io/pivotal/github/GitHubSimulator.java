@@ -0,0 +1,724 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Local stand-in for the parts of the GitHub API that {@link ReactiveGitHubClient}
+ * uses, on reactor-netty, to dry-run the migration and measure import
+ * throughput without a real repository or rate limit budget. State is kept in
+ * memory, and repositories are created on first use.
+ *
+ * <p>Beyond the repository, labels, milestones, issues, comments and the issue
+ * import endpoints, it simulates:
+ * <ul>
+ * <li>The primary rate limit, per token, with {@code X-RateLimit-*} headers on
+ * every response, and 403 once the budget is used up.
+ * <li>A secondary rate limit on writes, with 403, or 429, and {@code Retry-After} when
+ * there are too many writes within a time window.
+ * <li>Imports that remain pending for some time, and complete in the order
+ * they were submitted, as GitHub processes them from a queue.
+ * <li>Random 5xx responses, from a seeded random, before any state changes.
+ * <li>Response latency.
+ * </ul>
+ *
+ * <p>Run {@link #main} to start it on a fixed port, and point the migration at
+ * it with {@code github.api-url=http://localhost:8089}.
+ */
+public class GitHubSimulator implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(GitHubSimulator.class);
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+	private static final List<String> writeMethods = Arrays.asList("POST", "PATCH", "PUT", "DELETE");
+
+	/** Path segments after "/repos/{owner}/{repo}" that are not variables */
+	private static final List<String> routeSegments = Arrays.asList("issues", "comments");
+
+
+	private int rateLimit = 5000;
+
+	private Duration rateLimitWindow = Duration.ofHours(1);
+
+	private int secondaryRateLimit;
+
+	private Duration secondaryRateLimitWindow = Duration.ofMinutes(1);
+
+	private Duration retryAfter = Duration.ofSeconds(1);
+
+	private int secondaryRateLimitStatus = 403;
+
+	private Duration importLatency = Duration.ZERO;
+
+	private Duration responseLatency = Duration.ZERO;
+
+	private double serverErrorRate;
+
+	private Random random = new Random(42);
+
+
+	private final Map<String, Repository> repositories = new HashMap<>();
+
+	private final Map<String, Budget> budgets = new HashMap<>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong rateLimitedCount = new AtomicLong();
+
+	private final AtomicLong serverErrorCount = new AtomicLong();
+
+	@Nullable
+	private DisposableServer server;
+
+
+	/**
+	 * The number of requests per token within each {@link #setRateLimitWindow window}.
+	 * The default is 5000.
+	 */
+	public void setRateLimit(int rateLimit) {
+		this.rateLimit = rateLimit;
+	}
+
+	/**
+	 * The window of the primary rate limit, one hour by default.
+	 */
+	public void setRateLimitWindow(Duration rateLimitWindow) {
+		this.rateLimitWindow = rateLimitWindow;
+	}
+
+	/**
+	 * The max number of writes per token within a sliding window, after which
+	 * writes are rejected with a {@code Retry-After} header. Off by default.
+	 */
+	public void setSecondaryRateLimit(int writes, Duration window, Duration retryAfter) {
+		this.secondaryRateLimit = writes;
+		this.secondaryRateLimitWindow = window;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * The status for writes over the secondary rate limit, 403 by default.
+	 * GitHub may also respond with 429.
+	 */
+	public void setSecondaryRateLimitStatus(int status) {
+		this.secondaryRateLimitStatus = status;
+	}
+
+	/**
+	 * How long each import remains pending, after the previous one completes.
+	 */
+	public void setImportLatency(Duration importLatency) {
+		this.importLatency = importLatency;
+	}
+
+	/**
+	 * How long to delay each response.
+	 */
+	public void setResponseLatency(Duration responseLatency) {
+		this.responseLatency = responseLatency;
+	}
+
+	/**
+	 * The share of requests, from 0 to 1, that fail with a 5xx response.
+	 */
+	public void setServerErrorRate(double serverErrorRate) {
+		this.serverErrorRate = serverErrorRate;
+	}
+
+	public synchronized void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	public long getRateLimitedCount() {
+		return this.rateLimitedCount.get();
+	}
+
+	public long getServerErrorCount() {
+		return this.serverErrorCount.get();
+	}
+
+	/**
+	 * Return the issues of a repository, as returned by the API, in order.
+	 */
+	public synchronized List<Map<String, Object>> getIssues(String repositorySlug) {
+		Repository repository = this.repositories.get(repositorySlug);
+		return (repository != null ?
+				repository.issues.values().stream().map(Issue::toMap).collect(Collectors.toList()) :
+				Collections.emptyList());
+	}
+
+
+	/**
+	 * Start the server on the given port, or any free port if 0.
+	 */
+	public void start(int port) {
+		Assert.state(this.server == null, "Already started");
+		this.server = HttpServer.create().host("localhost").port(port).handle(this::handle).bindNow();
+		logger.info("GitHub simulator started at {}", getApiUrl());
+	}
+
+	/**
+	 * The root of the API, e.g. for {@link ReactiveGitHubClient}.
+	 */
+	public String getApiUrl() {
+		Assert.state(this.server != null, "Not started");
+		return "http://localhost:" + this.server.port();
+	}
+
+	@Override
+	public void close() {
+		if (this.server != null) {
+			this.server.disposeNow();
+			this.server = null;
+		}
+	}
+
+
+	private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+		String method = request.method().name();
+		String uri = request.uri();
+		String authorization = request.requestHeaders().get("Authorization");
+		return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+				.defaultIfEmpty("")
+				.map(body -> {
+					this.requestCount.incrementAndGet();
+					try {
+						return dispatch(method, uri, authorization, body);
+					}
+					catch (IOException | RuntimeException ex) {
+						logger.error(method + " " + uri, ex);
+						return Reply.error(400, "Problems parsing JSON: " + ex.getMessage());
+					}
+				})
+				.delayElement(this.responseLatency)
+				.flatMap(reply -> send(response, reply));
+	}
+
+	private Mono<Void> send(HttpServerResponse response, Reply reply) {
+		response.status(reply.status);
+		reply.headers.forEach(response::header);
+		if (reply.body == null) {
+			return response.send().then();
+		}
+		try {
+			String json = objectMapper.writeValueAsString(reply.body);
+			response.header("Content-Type", "application/json; charset=utf-8");
+			return response.sendString(Mono.just(json)).then();
+		}
+		catch (IOException ex) {
+			return Mono.error(ex);
+		}
+	}
+
+	private synchronized Reply dispatch(String method, String uri, @Nullable String authorization, String body)
+			throws IOException {
+
+		if (authorization == null) {
+			return Reply.error(401, "Requires authentication");
+		}
+		long now = System.currentTimeMillis();
+		Budget budget = this.budgets.computeIfAbsent(authorization, key -> new Budget());
+		Map<String, String> headers = budget.consume(now);
+		if (headers == null) {
+			this.rateLimitedCount.incrementAndGet();
+			return Reply.error(403, "API rate limit exceeded").headers(budget.headers(now));
+		}
+		boolean write = writeMethods.contains(method);
+		if (write && !budget.consumeWrite(now)) {
+			this.rateLimitedCount.incrementAndGet();
+			headers.put("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(this.retryAfter.toMillis())));
+			return Reply.error(this.secondaryRateLimitStatus, "You have exceeded a secondary rate limit").headers(headers);
+		}
+		if (this.serverErrorRate > 0 && this.random.nextDouble() < this.serverErrorRate) {
+			this.serverErrorCount.incrementAndGet();
+			return Reply.error(this.random.nextBoolean() ? 502 : 500, "Server Error").headers(headers);
+		}
+
+		UriComponents components = UriComponentsBuilder.fromUriString(uri).build();
+		List<String> segments = components.getPathSegments().stream()
+				.map(segment -> UriUtils.decode(segment, StandardCharsets.UTF_8))
+				.collect(Collectors.toList());
+		MultiValueMap<String, String> params = components.getQueryParams();
+		Map<String, Object> input = (StringUtils.hasText(body) ? objectMapper.readValue(body, MAP_TYPE) : null);
+
+		Reply reply;
+		if (segments.size() == 2 && segments.get(0).equals("user") && segments.get(1).equals("repos")) {
+			reply = createRepository(method, input);
+		}
+		else if (segments.size() >= 3 && segments.get(0).equals("repos")) {
+			String slug = segments.get(1) + "/" + segments.get(2);
+			reply = dispatchRepository(method, slug, segments.subList(3, segments.size()), params, input, now);
+		}
+		else {
+			reply = Reply.error(404, "Not Found");
+		}
+		return reply.headers(headers);
+	}
+
+	private Reply createRepository(String method, @Nullable Map<String, Object> input) {
+		if (!method.equals("POST") || input == null) {
+			return Reply.error(404, "Not Found");
+		}
+		// Repositories are created on first use
+		return new Reply(201, Collections.singletonMap("name", input.get("name")));
+	}
+
+	private Reply dispatchRepository(String method, String slug, List<String> path,
+			MultiValueMap<String, String> params, @Nullable Map<String, Object> input, long now) {
+
+		if (path.isEmpty()) {
+			if (method.equals("DELETE")) {
+				return (this.repositories.remove(slug) != null ? new Reply(204, null) : Reply.error(404, "Not Found"));
+			}
+			return Reply.error(404, "Not Found");
+		}
+		Repository repo = this.repositories.computeIfAbsent(slug, Repository::new);
+		// Label names, issue numbers, and ids as "*"
+		String route = method + " " + path.stream()
+				.map(segment -> segment.equals(path.get(0)) || routeSegments.contains(segment) ? segment : "*")
+				.collect(Collectors.joining("/"));
+		String id = path.get(path.size() - 1);
+		switch (route) {
+			case "GET commits":
+				return Reply.error(409, "Git Repository is empty.");
+			case "GET labels":
+				return page(new ArrayList<>(repo.labels.values()), params);
+			case "POST labels":
+				return repo.createLabel(input);
+			case "DELETE labels/*":
+				return (repo.labels.remove(id) != null ? new Reply(204, null) : Reply.error(404, "Not Found"));
+			case "GET milestones":
+				return page(repo.getMilestones(params.getFirst("state")), params);
+			case "POST milestones":
+				return repo.createMilestone(input);
+			case "GET issues":
+				return page(repo.getIssues(params.getFirst("state")), params);
+			case "GET issues/*":
+				return repo.withIssue(id, issue -> new Reply(200, issue.toMap()));
+			case "PATCH issues/*":
+				return repo.withIssue(id, issue -> {
+					issue.update(input, repo);
+					return new Reply(200, issue.toMap());
+				});
+			case "GET issues/*/comments":
+				return repo.withIssue(path.get(1), issue -> page(new ArrayList<>(issue.comments), params));
+			case "POST issues/*/comments":
+				return repo.withIssue(path.get(1), issue -> new Reply(201, repo.addComment(issue, (String) input.get("body"))));
+			case "PATCH issues/comments/*":
+				return repo.editComment(id, input);
+			case "POST import/issues":
+				return repo.submitImport(input, now);
+			case "GET import/issues/*":
+				return repo.getImportStatus(id, now);
+			default:
+				return Reply.error(404, "Not Found");
+		}
+	}
+
+	private static Reply page(List<Map<String, Object>> items, MultiValueMap<String, String> params) {
+		int perPage = Integer.parseInt(params.getOrDefault("per_page", Collections.singletonList("30")).get(0));
+		int page = Integer.parseInt(params.getOrDefault("page", Collections.singletonList("1")).get(0));
+		int from = Math.min(items.size(), (page - 1) * perPage);
+		int to = Math.min(items.size(), from + perPage);
+		return new Reply(200, new ArrayList<>(items.subList(from, to)));
+	}
+
+
+	/**
+	 * Primary and secondary rate limit budgets of a token.
+	 */
+	private class Budget {
+
+		private long resetTime;
+
+		private int remaining;
+
+		private final Deque<Long> writeTimes = new ArrayDeque<>();
+
+		/**
+		 * Consume one request from the primary budget.
+		 * @return the rate limit headers, or {@code null} if the budget is used up
+		 */
+		@Nullable
+		Map<String, String> consume(long now) {
+			if (now >= this.resetTime) {
+				this.resetTime = now + rateLimitWindow.toMillis();
+				this.remaining = rateLimit;
+			}
+			if (this.remaining == 0) {
+				return null;
+			}
+			this.remaining--;
+			return headers(now);
+		}
+
+		Map<String, String> headers(long now) {
+			Map<String, String> headers = new LinkedHashMap<>();
+			headers.put("X-RateLimit-Limit", String.valueOf(rateLimit));
+			headers.put("X-RateLimit-Remaining", String.valueOf(this.remaining));
+			headers.put("X-RateLimit-Reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(this.resetTime + 999)));
+			return headers;
+		}
+
+		boolean consumeWrite(long now) {
+			if (secondaryRateLimit <= 0) {
+				return true;
+			}
+			while (!this.writeTimes.isEmpty() && this.writeTimes.peekFirst() <= now - secondaryRateLimitWindow.toMillis()) {
+				this.writeTimes.removeFirst();
+			}
+			if (this.writeTimes.size() >= secondaryRateLimit) {
+				return false;
+			}
+			this.writeTimes.addLast(now);
+			return true;
+		}
+	}
+
+
+	/**
+	 * State of a repository.
+	 */
+	private class Repository {
+
+		private final String slug;
+
+		private final String url;
+
+		private final Map<String, Map<String, Object>> labels = new LinkedHashMap<>();
+
+		private final Map<String, Map<String, Object>> milestones = new LinkedHashMap<>();
+
+		private final Map<Integer, Issue> issues = new LinkedHashMap<>();
+
+		private final Map<Integer, Import> imports = new LinkedHashMap<>();
+
+		/** Imports not processed yet, in order of submission */
+		private final Deque<Import> importQueue = new ArrayDeque<>();
+
+		private long lastImportTime;
+
+		private long commentId;
+
+		Repository(String slug) {
+			this.slug = slug;
+			this.url = getApiUrl() + "/repos/" + slug;
+		}
+
+		Reply createLabel(Map<String, Object> input) {
+			String name = (String) input.get("name");
+			if (this.labels.containsKey(name)) {
+				return Reply.error(422, "Validation Failed: already_exists");
+			}
+			Map<String, Object> label = new LinkedHashMap<>();
+			label.put("name", name);
+			label.put("color", input.get("color"));
+			label.put("url", this.url + "/labels/" + name);
+			this.labels.put(name, label);
+			return new Reply(201, label);
+		}
+
+		Reply createMilestone(Map<String, Object> input) {
+			String title = (String) input.get("title");
+			if (this.milestones.containsKey(title)) {
+				return Reply.error(422, "Validation Failed: already_exists");
+			}
+			Map<String, Object> milestone = new LinkedHashMap<>(input);
+			int number = this.milestones.size() + 1;
+			milestone.put("number", number);
+			milestone.put("state", input.getOrDefault("state", "open"));
+			milestone.put("url", this.url + "/milestones/" + number);
+			this.milestones.put(title, milestone);
+			return new Reply(201, milestone);
+		}
+
+		List<Map<String, Object>> getMilestones(@Nullable String state) {
+			return this.milestones.values().stream()
+					.filter(milestone -> state == null || state.equals("all") || state.equals(milestone.get("state")))
+					.collect(Collectors.toList());
+		}
+
+		List<Map<String, Object>> getIssues(@Nullable String state) {
+			String actualState = (state != null ? state : "open");
+			return this.issues.values().stream()
+					.filter(issue -> actualState.equals("all") || actualState.equals(issue.state))
+					.map(Issue::toMap)
+					.collect(Collectors.toList());
+		}
+
+		Reply withIssue(String number, Function<Issue, Reply> action) {
+			Issue issue = (number.matches("\\d{1,9}") ? this.issues.get(Integer.valueOf(number)) : null);
+			return (issue != null ? action.apply(issue) : Reply.error(404, "Not Found"));
+		}
+
+		Map<String, Object> addComment(Issue issue, String body) {
+			Map<String, Object> comment = new LinkedHashMap<>();
+			long id = ++this.commentId;
+			comment.put("id", id);
+			comment.put("body", body);
+			comment.put("url", this.url + "/issues/comments/" + id);
+			comment.put("issue_url", this.url + "/issues/" + issue.number);
+			issue.comments.add(comment);
+			return comment;
+		}
+
+		Reply editComment(String id, Map<String, Object> input) {
+			for (Issue issue : this.issues.values()) {
+				for (Map<String, Object> comment : issue.comments) {
+					if (comment.get("id").toString().equals(id)) {
+						comment.put("body", input.get("body"));
+						return new Reply(200, comment);
+					}
+				}
+			}
+			return Reply.error(404, "Not Found");
+		}
+
+		@SuppressWarnings("unchecked")
+		Reply submitImport(Map<String, Object> input, long now) {
+			Import imported = new Import(this.imports.size() + 1);
+			Map<String, Object> issue = (Map<String, Object>) input.get("issue");
+			if (issue == null || !StringUtils.hasText((String) issue.get("title")) || issue.get("body") == null) {
+				imported.errors.add(Collections.singletonMap("field", issue == null ? "issue" : "title"));
+			}
+			imported.input = input;
+			this.lastImportTime = Math.max(this.lastImportTime, now) + importLatency.toMillis();
+			imported.readyTime = this.lastImportTime;
+			this.imports.put(imported.id, imported);
+			this.importQueue.addLast(imported);
+			return new Reply(202, imported.toMap(this.url));
+		}
+
+		Reply getImportStatus(String id, long now) {
+			processImports(now);
+			Import imported = (id.matches("\\d{1,9}") ? this.imports.get(Integer.valueOf(id)) : null);
+			return (imported != null ? new Reply(200, imported.toMap(this.url)) : Reply.error(404, "Not Found"));
+		}
+
+		/**
+		 * Complete imports whose time has come, in order of submission.
+		 */
+		@SuppressWarnings("unchecked")
+		private void processImports(long now) {
+			while (!this.importQueue.isEmpty() && this.importQueue.peekFirst().readyTime <= now) {
+				Import imported = this.importQueue.removeFirst();
+				if (!imported.errors.isEmpty()) {
+					imported.status = "failed";
+					continue;
+				}
+				Issue issue = new Issue(this.issues.size() + 1);
+				issue.update((Map<String, Object>) imported.input.get("issue"), this);
+				List<Map<String, Object>> comments = (List<Map<String, Object>>) imported.input.get("comments");
+				if (comments != null) {
+					comments.forEach(comment -> addComment(issue, (String) comment.get("body")));
+				}
+				this.issues.put(issue.number, issue);
+				imported.issueNumber = issue.number;
+				imported.status = "imported";
+				imported.input = null;
+			}
+		}
+	}
+
+
+	private static class Import {
+
+		private final int id;
+
+		private String status = "pending";
+
+		private long readyTime;
+
+		@Nullable
+		private Map<String, Object> input;
+
+		@Nullable
+		private Integer issueNumber;
+
+		private final List<Map<String, Object>> errors = new ArrayList<>();
+
+		Import(int id) {
+			this.id = id;
+		}
+
+		Map<String, Object> toMap(String repositoryUrl) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("id", this.id);
+			map.put("status", this.status);
+			map.put("url", repositoryUrl + "/import/issues/" + this.id);
+			map.put("import_issues_url", repositoryUrl + "/import/issues");
+			map.put("repository_url", repositoryUrl);
+			if (this.issueNumber != null) {
+				map.put("issue_url", repositoryUrl + "/issues/" + this.issueNumber);
+			}
+			if (this.status.equals("failed")) {
+				map.put("errors", this.errors);
+			}
+			return map;
+		}
+	}
+
+
+	private static class Issue {
+
+		private final int number;
+
+		private String title;
+
+		private String body;
+
+		private String state = "open";
+
+		private List<String> labels = new ArrayList<>();
+
+		@Nullable
+		private Object milestone;
+
+		@Nullable
+		private Object assignee;
+
+		private final List<Map<String, Object>> comments = new ArrayList<>();
+
+		Issue(int number) {
+			this.number = number;
+		}
+
+		@SuppressWarnings("unchecked")
+		void update(Map<String, Object> input, Repository repository) {
+			if (input.containsKey("title")) {
+				this.title = (String) input.get("title");
+			}
+			if (input.containsKey("body")) {
+				this.body = (String) input.get("body");
+			}
+			if (input.containsKey("state")) {
+				this.state = (String) input.get("state");
+			}
+			if (Boolean.TRUE.equals(input.get("closed"))) {
+				this.state = "closed";
+			}
+			if (input.containsKey("labels")) {
+				this.labels = new ArrayList<>((List<String>) input.get("labels"));
+			}
+			if (input.containsKey("milestone")) {
+				Object number = input.get("milestone");
+				this.milestone = (number == null ? null : repository.milestones.values().stream()
+						.filter(milestone -> number.equals(milestone.get("number")))
+						.findFirst().orElse(null));
+			}
+			if (input.containsKey("assignee")) {
+				this.assignee = input.get("assignee");
+			}
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("number", this.number);
+			map.put("title", this.title);
+			map.put("body", this.body);
+			map.put("state", this.state);
+			map.put("labels", this.labels.stream()
+					.map(name -> Collections.singletonMap("name", name)).collect(Collectors.toList()));
+			map.put("milestone", this.milestone);
+			map.put("assignee", this.assignee != null ? Collections.singletonMap("login", this.assignee) : null);
+			map.put("comments", this.comments.size());
+			return map;
+		}
+	}
+
+
+	private static class Reply {
+
+		private final int status;
+
+		@Nullable
+		private final Object body;
+
+		private final Map<String, String> headers = new LinkedHashMap<>();
+
+		Reply(int status, @Nullable Object body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		static Reply error(int status, String message) {
+			return new Reply(status, Collections.singletonMap("message", message));
+		}
+
+		Reply headers(Map<String, String> headers) {
+			this.headers.putAll(headers);
+			return this;
+		}
+	}
+
+
+	/**
+	 * Start the simulator on port 8089, or the port given as the first argument,
+	 * until the process is stopped.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		GitHubSimulator simulator = new GitHubSimulator();
+		simulator.setImportLatency(Duration.ofMillis(Long.getLong("simulator.import-latency", 500)));
+		simulator.setServerErrorRate(Double.parseDouble(System.getProperty("simulator.server-error-rate", "0")));
+		simulator.start(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+		Thread.currentThread().join();
+	}
+
+}
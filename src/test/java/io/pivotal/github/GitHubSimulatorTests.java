@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link GitHubSimulator}, through {@link ReactiveGitHubClient}.
+ */
+public class GitHubSimulatorTests {
+
+	private static final String SLUG = "spring-projects/spring-framework";
+
+	private final GitHubSimulator simulator = new GitHubSimulator();
+
+	private ReactiveGitHubClient client;
+
+
+	@Before
+	public void setUp() {
+		this.simulator.start(0);
+		this.client = new ReactiveGitHubClient(this.simulator.getApiUrl(), SLUG, new GitHubTokenPool("token"));
+	}
+
+	@After
+	public void tearDown() {
+		this.simulator.close();
+	}
+
+
+	@Test
+	public void labelsAndMilestones() {
+		Label label = new Label();
+		label.setName("type: bug");
+		label.setColor("ff0000");
+		this.client.createLabel(label).block();
+		assertThat(this.client.getLabels().collectList().block()).extracting(Label::getName).containsExactly("type: bug");
+		this.client.deleteLabel("type: bug").block();
+		assertThat(this.client.getLabels().collectList().block()).isEmpty();
+
+		Milestone milestone = new Milestone();
+		milestone.setTitle("5.0.1");
+		milestone.setState("closed");
+		this.client.createMilestone(milestone).block();
+		List<Milestone> milestones = this.client.getMilestones("all").collectList().block();
+		assertThat(milestones).extracting(Milestone::getTitle).containsExactly("5.0.1");
+		assertThat(milestones.get(0).getNumber()).isEqualTo(1);
+		assertThat(this.client.getMilestones("open").collectList().block()).isEmpty();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void importIssue() throws Exception {
+		this.simulator.setImportLatency(Duration.ofMillis(200));
+
+		ResponseEntity<Map> response = this.client.importIssue(importIssue("First"), Map.class).block();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+		String importUrl = (String) response.getBody().get("url");
+		assertThat(importUrl).startsWith(this.simulator.getApiUrl() + "/repos/" + SLUG + "/import/issues/");
+		String secondImportUrl = (String) this.client.importIssue(importIssue("Second"), Map.class).block()
+				.getBody().get("url");
+
+		assertThat(this.client.getImportStatus(importUrl).block()).containsEntry("status", "pending");
+		Thread.sleep(500);
+		assertThat(this.client.getImportStatus(secondImportUrl).block())
+				.containsEntry("status", "imported")
+				.containsEntry("issue_url", this.simulator.getApiUrl() + "/repos/" + SLUG + "/issues/2");
+
+		Map<String, Object> issue = this.client.getIssue(1).block();
+		assertThat(issue).containsEntry("title", "First").containsEntry("state", "closed").containsEntry("comments", 1);
+		assertThat(this.client.getComments(1).collectList().block())
+				.extracting(comment -> comment.get("body")).containsExactly("A comment");
+	}
+
+	@Test
+	public void primaryRateLimit() {
+		this.simulator.setRateLimit(2);
+		WebClient webClient = WebClient.create(this.simulator.getApiUrl());
+		ClientResponse response = get(webClient);
+		assertThat(response.statusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.headers().header("X-RateLimit-Limit")).containsExactly("2");
+		assertThat(response.headers().header("X-RateLimit-Remaining")).containsExactly("1");
+		assertThat(response.headers().header("X-RateLimit-Reset")).hasSize(1);
+
+		assertThat(get(webClient).statusCode()).isEqualTo(HttpStatus.OK);
+		response = get(webClient);
+		assertThat(response.statusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+		assertThat(response.headers().header("X-RateLimit-Remaining")).containsExactly("0");
+		assertThat(this.simulator.getRateLimitedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void secondaryRateLimitIsRetriedAfterDelay() {
+		this.simulator.setSecondaryRateLimit(2, Duration.ofSeconds(1), Duration.ofSeconds(1));
+		for (int i = 0; i < 3; i++) {
+			Label label = new Label();
+			label.setName("label" + i);
+			label.setColor("ffffff");
+			this.client.createLabel(label).block();
+		}
+		assertThat(this.client.getLabels().collectList().block()).hasSize(3);
+		assertThat(this.simulator.getRateLimitedCount()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void serverErrors() {
+		this.simulator.setServerErrorRate(1);
+		assertThatThrownBy(() -> this.client.getLabels().collectList().block())
+				.isInstanceOf(WebClientResponseException.class);
+		assertThat(this.simulator.getServerErrorCount()).isEqualTo(1);
+	}
+
+
+	private static ClientResponse get(WebClient webClient) {
+		ClientResponse response = webClient.get().uri("/repos/" + SLUG + "/labels")
+				.header("Authorization", "token a").exchange().block();
+		response.bodyToMono(String.class).block();
+		return response;
+	}
+
+	private static ImportGithubIssue importIssue(String title) {
+		GithubIssue issue = new GithubIssue();
+		issue.setTitle(title);
+		issue.setBody("Body of " + title);
+		issue.setClosed(true);
+		issue.setLabels(Collections.singletonList("type: bug"));
+		GithubComment comment = new GithubComment();
+		comment.setBody("A comment");
+		ImportGithubIssue importIssue = new ImportGithubIssue();
+		importIssue.setIssue(issue);
+		importIssue.setComments(Collections.singletonList(comment));
+		return importIssue;
+	}
+
+}
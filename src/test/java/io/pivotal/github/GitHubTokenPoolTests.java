@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.http.HttpMethod;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link GitHubTokenPool}.
+ */
+public class GitHubTokenPoolTests {
+
+	private final GitHubTokenPool pool = new GitHubTokenPool("w", Arrays.asList("r1", "w", "r2", "r1"));
+
+
+	@Test
+	public void distinctTokens() {
+		assertThat(pool.size()).isEqualTo(3);
+	}
+
+	@Test
+	public void readsUseTokenWithMostRemaining() {
+		assertThat(pool.getCredential(HttpMethod.GET)).isSameAs(pool.getWriteCredential());
+
+		updateLimits(pool.getWriteCredential(), 100);
+		GitHubTokenPool.Credential r1 = pool.getCredential(HttpMethod.GET);
+		assertThat(r1).isNotSameAs(pool.getWriteCredential());
+
+		updateLimits(r1, 50);
+		GitHubTokenPool.Credential r2 = pool.getCredential(HttpMethod.GET);
+		assertThat(r2).isNotSameAs(pool.getWriteCredential()).isNotSameAs(r1);
+
+		updateLimits(r2, 10);
+		assertThat(pool.getCredential(HttpMethod.GET)).isSameAs(pool.getWriteCredential());
+	}
+
+	@Test
+	public void writesArePinned() {
+		updateLimits(pool.getWriteCredential(), 0);
+		assertThat(pool.getCredential(HttpMethod.PATCH)).isSameAs(pool.getWriteCredential());
+		assertThat(pool.getCredential(HttpMethod.POST)).isSameAs(pool.getWriteCredential());
+		assertThat(pool.getCredential(HttpMethod.GET)).isNotSameAs(pool.getWriteCredential());
+	}
+
+
+	private static void updateLimits(GitHubTokenPool.Credential credential, int remaining) {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("X-RateLimit-Remaining", String.valueOf(remaining));
+		headers.put("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+		credential.getRateLimitHelper().updateLimits(headers::get);
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.egit.github.core.Label;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReactiveGitHubClient}, against a {@link GitHubSimulator}.
+ */
+public class ReactiveGitHubClientTests {
+
+	private static final String SLUG = "spring-projects/spring-framework";
+
+	private final GitHubSimulator simulator = new GitHubSimulator();
+
+	private ReactiveGitHubClient client;
+
+
+	@Before
+	public void setUp() {
+		this.simulator.start(0);
+		this.client = new ReactiveGitHubClient(this.simulator.getApiUrl(), SLUG, new GitHubTokenPool("token"));
+	}
+
+	@After
+	public void tearDown() {
+		this.simulator.close();
+	}
+
+
+	@Test
+	public void primaryRateLimitIsRetriedAfterReset() {
+		this.simulator.setRateLimit(2);
+		this.simulator.setRateLimitWindow(Duration.ofSeconds(1));
+
+		// Concurrent, before any response tells the client the remaining budget
+		List<List<Label>> results = Flux.range(0, 3)
+				.flatMap(i -> this.client.getLabels().collectList())
+				.collectList()
+				.block(Duration.ofSeconds(10));
+
+		assertThat(results).hasSize(3);
+		assertThat(this.simulator.getRateLimitedCount()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void secondaryRateLimitWith429IsRetriedAfterDelay() {
+		this.simulator.setSecondaryRateLimit(1, Duration.ofSeconds(1), Duration.ofSeconds(1));
+		this.simulator.setSecondaryRateLimitStatus(429);
+
+		Flux.range(0, 2).flatMap(i -> this.client.createLabel(label("label" + i))).blockLast(Duration.ofSeconds(10));
+
+		assertThat(this.client.getLabels().collectList().block())
+				.extracting(Label::getName).containsOnly("label0", "label1");
+		assertThat(this.simulator.getRateLimitedCount()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void allPages() {
+		List<String> names = IntStream.range(0, 250).mapToObj(i -> "label" + i).collect(Collectors.toList());
+		WebClient webClient = WebClient.create(this.simulator.getApiUrl());
+		Flux.fromIterable(names)
+				.concatMap(name -> webClient.post().uri("/repos/" + SLUG + "/labels")
+						.header("Authorization", "token seed").syncBody(label(name))
+						.retrieve().bodyToMono(Void.class))
+				.blockLast();
+
+		long requestCount = this.simulator.getRequestCount();
+		assertThat(this.client.getLabels().collectList().block())
+				.extracting(Label::getName).containsExactlyElementsOf(names);
+		assertThat(this.simulator.getRequestCount() - requestCount).isEqualTo(3);
+	}
+
+	@Test
+	public void lastPageFull() {
+		WebClient webClient = WebClient.create(this.simulator.getApiUrl());
+		Flux.range(0, 100)
+				.concatMap(i -> webClient.post().uri("/repos/" + SLUG + "/labels")
+						.header("Authorization", "token seed").syncBody(label("label" + i))
+						.retrieve().bodyToMono(Void.class))
+				.blockLast();
+
+		// A full page is followed by a request for an empty one
+		long requestCount = this.simulator.getRequestCount();
+		assertThat(this.client.getLabels().collectList().block()).hasSize(100);
+		assertThat(this.simulator.getRequestCount() - requestCount).isEqualTo(2);
+	}
+
+
+	private static Label label(String name) {
+		Label label = new Label();
+		label.setName(name);
+		label.setColor("ffffff");
+		return label;
+	}
+
+}
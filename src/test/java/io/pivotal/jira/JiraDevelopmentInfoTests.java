@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import io.pivotal.jira.JiraIssue.Fields;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the check of the "Development" field in {@link JiraClient},
+ * that decides which issues need a request for commits.
+ */
+public class JiraDevelopmentInfoTests {
+
+	private static final String DEVELOPMENT_FIELD = "customfield_10000";
+
+	private JiraConfig jiraConfig;
+
+	private JiraClient client;
+
+
+	@Before
+	public void setup() {
+		jiraConfig = new JiraConfig();
+		jiraConfig.setBaseUrl("http://localhost");
+		jiraConfig.setProjectId("SPR");
+		jiraConfig.setDevelopmentField(DEVELOPMENT_FIELD);
+		client = new JiraClient(jiraConfig);
+	}
+
+
+	@Test
+	public void noDevelopmentInfo() {
+		assertThat(client.hasDevelopmentInfo(issue("{}"))).isFalse();
+		assertThat(client.hasDevelopmentInfo(issue(null))).isFalse();
+	}
+
+	@Test
+	public void noCommits() {
+		assertThat(client.hasDevelopmentInfo(issue(summary(0)))).isFalse();
+	}
+
+	@Test
+	public void commits() {
+		assertThat(client.hasDevelopmentInfo(issue(summary(1)))).isTrue();
+		assertThat(client.hasDevelopmentInfo(issue(summary(12)))).isTrue();
+	}
+
+	@Test
+	public void unrecognizedFormat() {
+		assertThat(client.hasDevelopmentInfo(issue("{pullrequest={dataType=pullrequest, state=OPEN}}"))).isTrue();
+	}
+
+	@Test
+	public void noDevelopmentField() {
+		jiraConfig.setDevelopmentField(null);
+		assertThat(client.hasDevelopmentInfo(issue("{}"))).isTrue();
+	}
+
+
+	private static JiraIssue issue(String developmentValue) {
+		Fields fields = new Fields();
+		fields.setCustomField(DEVELOPMENT_FIELD, developmentValue);
+		JiraIssue issue = new JiraIssue();
+		issue.setKey("SPR-1");
+		issue.setFields(fields);
+		return issue;
+	}
+
+	private static String summary(int commitCount) {
+		return "{summaryBean=com.atlassian.jira.plugin.devstatus.rest.SummaryBean@6c3f4a1[summary=" +
+				"{pullrequest=com.atlassian.jira.plugin.devstatus.summary.beans.PullRequestOverallBean@3e2a0b1" +
+				"[stateCount=0,state=OPEN,details=PullRequestOverallDetails{openCount=0, mergedCount=0}], " +
+				"repository=com.atlassian.jira.plugin.devstatus.summary.beans.CommitOverallBean@5d1b2c7" +
+				"[count=" + commitCount + ",lastUpdated=2018-06-01T10:15:30.000+0000]},errors=[]]}";
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link JiraIssueSnapshot}.
+ */
+public class JiraIssueSnapshotTests {
+
+	private static final String JQL = "project = SPR ORDER BY key ASC";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = new File(folder.getRoot(), "snapshot.ndjson.gz");
+	}
+
+
+	@Test
+	public void saveAndLoad() {
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(file);
+		JiraIssue issue = issue("SPR-1", "First");
+		issue.setVotes(3);
+		issue.setCommitUrls(Collections.singletonList("https://github.com/spring-projects/spring-framework/commit/1"));
+		snapshot.replace(JQL, 1000L, Arrays.asList(issue, issue("SPR-2", "Second")));
+		snapshot.save();
+
+		JiraIssueSnapshot loaded = new JiraIssueSnapshot(file);
+		assertThat(loaded.load(JQL)).isTrue();
+		assertThat(loaded.getTimestamp()).isEqualTo(1000L);
+		assertThat(loaded.getIssues()).extracting(JiraIssue::getKey).containsExactly("SPR-1", "SPR-2");
+
+		JiraIssue first = loaded.getIssues().get(0);
+		assertThat(first.getFields().getSummary()).isEqualTo("First");
+		assertThat(first.getFields().getCreated().getMillis()).isEqualTo(issue.getFields().getCreated().getMillis());
+		assertThat(first.getVotes()).isEqualTo(3);
+		assertThat(first.getCommitUrls()).hasSize(1);
+	}
+
+	@Test
+	public void loadForDifferentQuery() {
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(file);
+		snapshot.replace(JQL, 1000L, Collections.singletonList(issue("SPR-1", "First")));
+		snapshot.save();
+
+		JiraIssueSnapshot loaded = new JiraIssueSnapshot(file);
+		assertThat(loaded.load("project = SEC")).isFalse();
+		assertThat(loaded.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void loadWithoutFile() {
+		assertThat(new JiraIssueSnapshot(file).load(JQL)).isFalse();
+	}
+
+	@Test
+	public void merge() {
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(file);
+		snapshot.replace(JQL, 1000L, Arrays.asList(issue("SPR-1", "First"), issue("SPR-2", "Second")));
+		snapshot.merge(2000L, Arrays.asList(issue("SPR-1", "First updated"), issue("SPR-3", "Third")));
+
+		assertThat(snapshot.getTimestamp()).isEqualTo(2000L);
+		assertThat(snapshot.getIssues()).extracting(JiraIssue::getKey).containsExactly("SPR-1", "SPR-2", "SPR-3");
+		assertThat(snapshot.getIssues().get(0).getFields().getSummary()).isEqualTo("First updated");
+	}
+
+	@Test
+	public void updatedWithin() {
+		assertThat(JiraIssueSnapshot.updatedWithin(JQL, 90))
+				.isEqualTo("(project = SPR) AND updated >= \"-90m\" ORDER BY key ASC");
+		assertThat(JiraIssueSnapshot.updatedWithin("project = SPR", 90))
+				.isEqualTo("(project = SPR) AND updated >= \"-90m\"");
+		assertThat(JiraIssueSnapshot.updatedWithin("order by key", 90))
+				.isEqualTo("updated >= \"-90m\" order by key");
+	}
+
+	@Test
+	public void and() {
+		assertThat(JiraIssueSnapshot.and(JQL, "issuetype = Backport"))
+				.isEqualTo("(project = SPR) AND issuetype = Backport ORDER BY key ASC");
+		assertThat(JiraIssueSnapshot.and("", "level IS NOT EMPTY")).isEqualTo("level IS NOT EMPTY");
+	}
+
+
+	private static JiraIssue issue(String key, String summary) {
+		JiraIssue.Fields fields = new JiraIssue.Fields();
+		fields.setSummary(summary);
+		fields.setCreated(DateTime.parse("2018-05-22T10:15:30.000Z"));
+		JiraIssue issue = new JiraIssue();
+		issue.setKey(key);
+		issue.setSelf("https://jira.spring.io/rest/api/2/issue/1");
+		issue.setFields(fields);
+		return issue;
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the "votes" field of a {@link JiraIssue}, as loaded from a
+ * search response, and {@link JiraIssue#initVotes()}.
+ */
+public class JiraIssueVotesTests {
+
+	private static final String PAGE = "{\"startAt\":0,\"maxResults\":50,\"total\":3,\"issues\":[" +
+			"{\"id\":\"1\",\"key\":\"SPR-1\",\"fields\":{\"summary\":\"One\"," +
+			"\"votes\":{\"self\":\"https://jira.spring.io/rest/api/2/issue/SPR-1/votes\",\"votes\":54,\"hasVoted\":false}}}," +
+			"{\"id\":\"2\",\"key\":\"SPR-2\",\"fields\":{\"summary\":\"Two\"," +
+			"\"votes\":{\"self\":\"https://jira.spring.io/rest/api/2/issue/SPR-2/votes\",\"votes\":0,\"hasVoted\":false}}}," +
+			"{\"id\":\"3\",\"key\":\"SPR-3\",\"fields\":{\"summary\":\"Three\"}}" +
+			"]}";
+
+
+	@Test
+	public void votesFromSearchResponse() {
+		List<JiraIssue> issues = parse(PAGE);
+
+		assertThat(issues).hasSize(3);
+		assertThat(issues.get(0).getFields().getVotes().getVotes()).isEqualTo(54);
+		assertThat(issues.get(1).getFields().getVotes().getVotes()).isEqualTo(0);
+		assertThat(issues.get(2).getFields().getVotes()).isNull();
+	}
+
+	@Test
+	public void initVotes() {
+		List<JiraIssue> issues = parse(PAGE);
+		assertThat(issues).extracting(JiraIssue::getVotes).containsExactly(-1, -1, -1);
+
+		issues.forEach(JiraIssue::initVotes);
+		assertThat(issues).extracting(JiraIssue::getVotes).containsExactly(54, 0, -1);
+	}
+
+
+	private static List<JiraIssue> parse(String page) {
+		SearchPageParser parser = new SearchPageParser(Jackson2ObjectMapperBuilder.json().build());
+		List<JiraIssue> issues = new ArrayList<>(parser.parse(
+				new DefaultDataBufferFactory().wrap(page.getBytes(StandardCharsets.UTF_8))));
+		issues.addAll(parser.endOfInput());
+		return issues;
+	}
+
+}
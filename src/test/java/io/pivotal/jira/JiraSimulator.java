@@ -0,0 +1,502 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pivotal.jira.SyntheticJiraProject.Issue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Local stand-in for the parts of the Jira REST API that {@link JiraClient}
+ * uses, on reactor-netty, serving a {@link SyntheticJiraProject}. It makes it
+ * possible to run the client, and measure how fast it loads issues, without a
+ * real Jira instance, and with the same issues every time.
+ *
+ * <p>It serves search, the project, votes, comments (including adding them),
+ * users, and the dev-status details with commits. Search supports the subset
+ * of JQL the migration uses: conditions on project, issue, issue type,
+ * security level, and created or updated dates, joined with "AND", and an
+ * "ORDER BY". Other JQL is rejected with 400, as Jira does for invalid JQL.
+ * Search pages are limited to {@link #setMaxResultsLimit maxResults}, and the
+ * issues of a page are rendered while they are written.
+ *
+ * <p>Latency is a fixed time per response, plus a time per issue of a search
+ * page, as a real server takes longer for larger pages. Search pages can also
+ * be {@link #setBrokenSearchPages broken off} half way through.
+ *
+ * <p>Run {@link #main} to start it on a fixed port, and point the migration at
+ * it with {@code jira.base-url=http://localhost:8090}.
+ */
+public class JiraSimulator implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(JiraSimulator.class);
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+	private static final Pattern ORDER_BY_PATTERN =
+			Pattern.compile("(?i)\\s*ORDER\\s+BY\\s+(\\w+)(?:\\s+(ASC|DESC))?\\s*$");
+
+	private static final Pattern AND_PATTERN = Pattern.compile("(?i)\\s+AND\\s+");
+
+	private static final Pattern PROJECT_PATTERN = Pattern.compile("(?i)project\\s*=\\s*\"?(\\w+)\"?");
+
+	private static final Pattern ISSUE_PATTERN = Pattern.compile("(?i)(?:issue|issuekey|key|id)\\s*=\\s*\"?([\\w-]+)\"?");
+
+	private static final Pattern ISSUE_TYPE_PATTERN = Pattern.compile("(?i)(?:issuetype|type)\\s*=\\s*\"?([\\w -]+?)\"?");
+
+	private static final Pattern LEVEL_PATTERN = Pattern.compile("(?i)level\\s+IS\\s+(NOT\\s+)?EMPTY");
+
+	private static final Pattern DATE_PATTERN = Pattern.compile("(?i)(created|updated)\\s*(>=|<=|>|<)\\s*\"?([^\"]+?)\"?");
+
+	private static final Pattern RELATIVE_DATE_PATTERN = Pattern.compile("-(\\d+)([mhdw])");
+
+
+	private final SyntheticJiraProject project;
+
+	private int maxResultsLimit = 1000;
+
+	private Duration responseLatency = Duration.ZERO;
+
+	private Duration searchLatencyPerIssue = Duration.ZERO;
+
+	private final AtomicInteger brokenSearchPages = new AtomicInteger();
+
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong searchCount = new AtomicLong();
+
+	private final AtomicLong searchIssueCount = new AtomicLong();
+
+	private final AtomicLong devStatusCount = new AtomicLong();
+
+	@Nullable
+	private DisposableServer server;
+
+
+	public JiraSimulator(SyntheticJiraProject project) {
+		this.project = project;
+	}
+
+
+	public SyntheticJiraProject getProject() {
+		return this.project;
+	}
+
+	/**
+	 * The max number of issues per search page, regardless of the requested
+	 * {@code maxResults}. The default is 1000.
+	 */
+	public void setMaxResultsLimit(int maxResultsLimit) {
+		this.maxResultsLimit = maxResultsLimit;
+	}
+
+	/**
+	 * How long to delay each response.
+	 */
+	public void setResponseLatency(Duration responseLatency) {
+		this.responseLatency = responseLatency;
+	}
+
+	/**
+	 * How long to further delay search responses, per issue in the page.
+	 */
+	public void setSearchLatencyPerIssue(Duration searchLatencyPerIssue) {
+		this.searchLatencyPerIssue = searchLatencyPerIssue;
+	}
+
+	/**
+	 * Break off the given number of the next search pages, with more than one
+	 * issue, after half of the issues are written, as when the connection is
+	 * lost mid-way.
+	 */
+	public void setBrokenSearchPages(int count) {
+		this.brokenSearchPages.set(count);
+	}
+
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * The number of search requests, including those for the total only.
+	 */
+	public long getSearchCount() {
+		return this.searchCount.get();
+	}
+
+	/**
+	 * The number of issues returned in search pages.
+	 */
+	public long getSearchIssueCount() {
+		return this.searchIssueCount.get();
+	}
+
+	/**
+	 * The number of dev-status requests for commits.
+	 */
+	public long getDevStatusCount() {
+		return this.devStatusCount.get();
+	}
+
+
+	/**
+	 * Start the server on the given port, or any free port if 0.
+	 */
+	public void start(int port) {
+		Assert.state(this.server == null, "Already started");
+		this.server = HttpServer.create().host("localhost").port(port).handle(this::handle).bindNow();
+		logger.info("Jira simulator started at {} with {} issues in project {}",
+				getBaseUrl(), this.project.getIssues().size(), this.project.getKey());
+	}
+
+	/**
+	 * The root of the server, e.g. for {@link JiraConfig#setBaseUrl}.
+	 */
+	public String getBaseUrl() {
+		Assert.state(this.server != null, "Not started");
+		return "http://localhost:" + this.server.port();
+	}
+
+	@Override
+	public void close() {
+		if (this.server != null) {
+			this.server.disposeNow();
+			this.server = null;
+		}
+	}
+
+
+	private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+		String method = request.method().name();
+		String uri = request.uri();
+		return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+				.defaultIfEmpty("")
+				.map(body -> {
+					this.requestCount.incrementAndGet();
+					try {
+						return dispatch(method, uri, body);
+					}
+					catch (IOException | RuntimeException ex) {
+						logger.error(method + " " + uri, ex);
+						return Reply.error(400, ex.getMessage());
+					}
+				})
+				.flatMap(reply -> Mono.just(reply)
+						.delayElement(this.responseLatency.plus(this.searchLatencyPerIssue.multipliedBy(reply.issueCount)))
+						.flatMap(delayed -> send(response, delayed)));
+	}
+
+	private Mono<Void> send(HttpServerResponse response, Reply reply) {
+		response.status(reply.status);
+		response.header("Content-Type", "application/json;charset=UTF-8");
+		if (reply.content != null) {
+			return response.sendByteArray(reply.content).then();
+		}
+		return response.sendByteArray(Mono.fromCallable(() -> objectMapper.writeValueAsBytes(reply.body))).then();
+	}
+
+	private Reply dispatch(String method, String uri, String body) throws IOException {
+		UriComponents components = UriComponentsBuilder.fromUriString(uri).build();
+		List<String> segments = components.getPathSegments().stream()
+				.map(segment -> UriUtils.decode(segment, StandardCharsets.UTF_8))
+				.collect(Collectors.toList());
+		MultiValueMap<String, String> params = components.getQueryParams();
+		String baseUrl = getBaseUrl();
+
+		String path = String.join("/", segments);
+		if (path.equals("rest/dev-status/1.0/issue/detail") && method.equals("GET")) {
+			this.devStatusCount.incrementAndGet();
+			Issue issue = this.project.getIssue(param(params, "issueId", ""));
+			return (issue != null ? new Reply(200, this.project.renderDevelopmentDetail(issue)) :
+					Reply.error(404, "Issue does not exist"));
+		}
+		if (segments.size() < 4 || !path.startsWith("rest/api/2/")) {
+			return Reply.error(404, "Not Found");
+		}
+		// Issue keys and ids as "*"
+		String route = method + " " + segments.get(3) + (segments.size() > 5 ? "/*/" + segments.get(5) :
+				segments.size() > 4 ? "/*" : "");
+		switch (route) {
+			case "GET search":
+				return search(baseUrl, params);
+			case "GET project/*":
+				String id = segments.get(4);
+				return (id.equals(this.project.getKey()) || id.equals(this.project.getId()) ?
+						new Reply(200, this.project.renderProject(baseUrl)) :
+						Reply.error(404, "No project could be found with key '" + id + "'."));
+			case "GET user":
+				String key = param(params, "key", param(params, "username", ""));
+				return (this.project.hasUser(key) ? new Reply(200, this.project.renderUser(baseUrl, key)) :
+						Reply.error(404, "The user with the key '" + key + "' does not exist"));
+			case "GET issue/*/votes":
+				return withIssue(segments.get(4), issue -> new Reply(200, this.project.renderVotes(baseUrl, issue, true)));
+			case "GET issue/*/comment":
+				return withIssue(segments.get(4), issue -> new Reply(200, this.project.renderCommentPage(baseUrl, issue)));
+			case "POST issue/*/comment":
+				Map<String, Object> input = (StringUtils.hasText(body) ? objectMapper.readValue(body, MAP_TYPE) : null);
+				if (input == null || !StringUtils.hasText((String) input.get("body"))) {
+					return Reply.error(400, "Comment body can not be empty!");
+				}
+				return withIssue(segments.get(4), issue ->
+						new Reply(201, this.project.addComment(baseUrl, issue, (String) input.get("body"))));
+			default:
+				return Reply.error(404, "Not Found");
+		}
+	}
+
+	private Reply withIssue(String keyOrId, Function<Issue, Reply> action) {
+		Issue issue = this.project.getIssue(keyOrId);
+		return (issue != null ? action.apply(issue) : Reply.error(404, "Issue Does Not Exist"));
+	}
+
+	private Reply search(String baseUrl, MultiValueMap<String, String> params) {
+		this.searchCount.incrementAndGet();
+		List<Issue> issues = query(param(params, "jql", ""));
+		int startAt = Integer.parseInt(param(params, "startAt", "0"));
+		int maxResults = Math.min(Integer.parseInt(param(params, "maxResults", "50")), this.maxResultsLimit);
+		Set<String> fields = null;
+		String fieldsParam = param(params, "fields", "*all");
+		if (!fieldsParam.contains("*all") && !fieldsParam.contains("*navigable")) {
+			fields = new HashSet<>(Arrays.asList(StringUtils.commaDelimitedListToStringArray(fieldsParam)));
+		}
+		List<Issue> page = issues.subList(Math.min(startAt, issues.size()), Math.min(startAt + maxResults, issues.size()));
+		this.searchIssueCount.addAndGet(page.size());
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("expand", "schema,names");
+		result.put("startAt", startAt);
+		result.put("maxResults", maxResults);
+		result.put("total", issues.size());
+		String header = toJson(result);
+		Set<String> issueFields = fields;
+		boolean broken = (page.size() > 1 && this.brokenSearchPages.getAndUpdate(n -> Math.max(0, n - 1)) > 0);
+		int issueCount = (broken ? page.size() / 2 : page.size());
+		Flux<byte[]> content = Flux.concat(
+				Mono.just((header.substring(0, header.length() - 1) + ",\"issues\":[").getBytes(StandardCharsets.UTF_8)),
+				Flux.range(0, issueCount).map(i -> {
+					String json = toJson(this.project.renderIssue(baseUrl, page.get(i), issueFields));
+					return (i > 0 ? "," + json : json).getBytes(StandardCharsets.UTF_8);
+				}),
+				(broken ? Mono.<byte[]>error(new IllegalStateException("Search page broken off")) :
+						Mono.just("]}".getBytes(StandardCharsets.UTF_8))));
+		return new Reply(200, content, page.size());
+	}
+
+	/**
+	 * Find the issues for the given JQL, in the requested order.
+	 * @throws IllegalArgumentException for JQL that isn't supported
+	 */
+	List<Issue> query(String jql) {
+		Comparator<Issue> comparator = Comparator.comparingInt(Issue::getNumber);
+		Matcher orderBy = ORDER_BY_PATTERN.matcher(jql);
+		if (orderBy.find()) {
+			switch (orderBy.group(1).toLowerCase()) {
+				case "created":
+					comparator = Comparator.comparingLong(Issue::getCreated);
+					break;
+				case "updated":
+					comparator = Comparator.comparingLong(Issue::getUpdated);
+					break;
+				case "key":
+				case "id":
+					break;
+				default:
+					throw new IllegalArgumentException("Field '" + orderBy.group(1) + "' does not support sorting.");
+			}
+			if ("DESC".equalsIgnoreCase(orderBy.group(2))) {
+				comparator = comparator.reversed();
+			}
+			jql = jql.substring(0, orderBy.start());
+		}
+		Predicate<Issue> predicate = issue -> true;
+		String conditions = jql.replace("(", " ").replace(")", " ").trim();
+		if (!conditions.isEmpty()) {
+			for (String condition : AND_PATTERN.split(conditions)) {
+				predicate = predicate.and(parseCondition(condition.trim()));
+			}
+		}
+		return this.project.getIssues().stream().filter(predicate).sorted(comparator).collect(Collectors.toList());
+	}
+
+	private Predicate<Issue> parseCondition(String condition) {
+		Matcher matcher = PROJECT_PATTERN.matcher(condition);
+		if (matcher.matches()) {
+			boolean match = matcher.group(1).equals(this.project.getKey()) || matcher.group(1).equals(this.project.getId());
+			return issue -> match;
+		}
+		matcher = ISSUE_PATTERN.matcher(condition);
+		if (matcher.matches()) {
+			Issue match = this.project.getIssue(matcher.group(1));
+			return issue -> issue == match;
+		}
+		matcher = ISSUE_TYPE_PATTERN.matcher(condition);
+		if (matcher.matches()) {
+			String type = matcher.group(1);
+			return issue -> issue.getTypeName().equalsIgnoreCase(type);
+		}
+		matcher = LEVEL_PATTERN.matcher(condition);
+		if (matcher.matches()) {
+			boolean restricted = matcher.group(1) != null;
+			return issue -> issue.isRestricted() == restricted;
+		}
+		matcher = DATE_PATTERN.matcher(condition);
+		if (matcher.matches()) {
+			boolean created = matcher.group(1).equalsIgnoreCase("created");
+			String operator = matcher.group(2);
+			long time = parseDate(matcher.group(3));
+			return issue -> {
+				long value = (created ? issue.getCreated() : issue.getUpdated());
+				switch (operator) {
+					case ">=":
+						return value >= time;
+					case ">":
+						return value > time;
+					case "<=":
+						return value <= time;
+					default:
+						return value < time;
+				}
+			};
+		}
+		throw new IllegalArgumentException("Error in the JQL Query: unsupported condition '" + condition + "'.");
+	}
+
+	private static long parseDate(String value) {
+		Matcher matcher = RELATIVE_DATE_PATTERN.matcher(value);
+		if (matcher.matches()) {
+			long amount = Long.parseLong(matcher.group(1));
+			TimeUnit unit = (matcher.group(2).equals("m") ? TimeUnit.MINUTES :
+					matcher.group(2).equals("h") ? TimeUnit.HOURS : TimeUnit.DAYS);
+			return System.currentTimeMillis() - unit.toMillis(matcher.group(2).equals("w") ? amount * 7 : amount);
+		}
+		String pattern = (value.length() > 10 ? "yyyy-MM-dd HH:mm" : "yyyy-MM-dd");
+		return DateTimeFormat.forPattern(pattern).withZone(DateTimeZone.UTC).parseMillis(value.replace('/', '-'));
+	}
+
+	private static String param(MultiValueMap<String, String> params, String name, String defaultValue) {
+		String value = params.getFirst(name);
+		return (value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : defaultValue);
+	}
+
+	private static String toJson(Object value) {
+		try {
+			return objectMapper.writeValueAsString(value);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+
+	private static class Reply {
+
+		private final int status;
+
+		@Nullable
+		private final Object body;
+
+		/** Content rendered while written, for search pages */
+		@Nullable
+		private final Flux<byte[]> content;
+
+		private final int issueCount;
+
+		Reply(int status, Object body) {
+			this.status = status;
+			this.body = body;
+			this.content = null;
+			this.issueCount = 0;
+		}
+
+		Reply(int status, Flux<byte[]> content, int issueCount) {
+			this.status = status;
+			this.body = null;
+			this.content = content;
+			this.issueCount = issueCount;
+		}
+
+		static Reply error(int status, String message) {
+			Map<String, Object> body = new LinkedHashMap<>();
+			body.put("errorMessages", Collections.singletonList(message));
+			body.put("errors", Collections.emptyMap());
+			return new Reply(status, body);
+		}
+	}
+
+
+	/**
+	 * Start the simulator on port 8090, or the port given as the first argument,
+	 * until the process is stopped. The project key, issue count, and seed are
+	 * set with the "simulator.project", "simulator.issues", and "simulator.seed"
+	 * system properties.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		SyntheticJiraProject project = new SyntheticJiraProject(
+				System.getProperty("simulator.project", "SPR"),
+				Integer.getInteger("simulator.issues", 20000),
+				Long.getLong("simulator.seed", 42));
+		JiraSimulator simulator = new JiraSimulator(project);
+		simulator.setResponseLatency(Duration.ofMillis(Long.getLong("simulator.latency", 50)));
+		simulator.setSearchLatencyPerIssue(Duration.ofNanos(
+				TimeUnit.MICROSECONDS.toNanos(Long.getLong("simulator.latency-per-issue-micros", 500))));
+		simulator.start(args.length > 0 ? Integer.parseInt(args[0]) : 8090);
+		Thread.currentThread().join();
+	}
+
+}
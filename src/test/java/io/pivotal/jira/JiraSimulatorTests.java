@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.pivotal.jira.SyntheticJiraProject.Issue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link JiraSimulator} and {@link SyntheticJiraProject}, through
+ * {@link JiraClient}.
+ */
+public class JiraSimulatorTests {
+
+	private static final String JQL = "project = SYN ORDER BY key ASC";
+
+	private final SyntheticJiraProject project = new SyntheticJiraProject("SYN", 1000, 42);
+
+	private final JiraSimulator simulator = new JiraSimulator(this.project);
+
+	private JiraConfig jiraConfig;
+
+	private JiraClient client;
+
+
+	@Before
+	public void setUp() {
+		this.simulator.setMaxResultsLimit(250);
+		this.simulator.start(0);
+		this.jiraConfig = new JiraConfig();
+		this.jiraConfig.setBaseUrl(this.simulator.getBaseUrl());
+		this.jiraConfig.setProjectId("SYN");
+		this.jiraConfig.setDevelopmentField(SyntheticJiraProject.DEVELOPMENT_FIELD);
+		this.client = new JiraClient(this.jiraConfig);
+	}
+
+	@After
+	public void tearDown() {
+		this.simulator.close();
+	}
+
+
+	@Test
+	public void findIssues() {
+		List<JiraIssue> issues = this.client.findIssues(JQL);
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(
+				this.project.getIssues().stream().map(Issue::getKey).collect(Collectors.toList()));
+		assertThat(this.simulator.getSearchCount()).isGreaterThanOrEqualTo(4);
+		for (int i = 0; i < issues.size(); i++) {
+			JiraIssue issue = issues.get(i);
+			Issue expected = this.project.getIssues().get(i);
+			assertThat(issue.getFields().getComment().getComments()).hasSize(expected.getCommentCount());
+			assertThat(issue.getFields().getIssuetype().getName()).isEqualTo(expected.getTypeName());
+			assertThat(issue.getFields().getSubtasks()).hasSize(expected.getSubtasks().size());
+			assertThat(issue.getVotes()).isEqualTo(expected.getVotes());
+			assertThat(issue.getFields().getCreated().getMillis()).isEqualTo(expected.getCreated());
+		}
+	}
+
+	@Test
+	public void findIssuesWithBrokenSearchPages() {
+		this.simulator.setBrokenSearchPages(3);
+		List<JiraIssue> issues = this.client.findIssues(JQL);
+
+		// Each broken page is resumed after the issues received
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(
+				this.project.getIssues().stream().map(Issue::getKey).collect(Collectors.toList()));
+		assertThat(this.simulator.getSearchCount()).isGreaterThanOrEqualTo(7);
+	}
+
+	@Test
+	public void findIssuesWithResumedFirstPage() {
+		// The cap of 250 is not learned from the resumed first page, but from a short page after it
+		this.simulator.setBrokenSearchPages(1);
+		List<JiraIssue> issues = this.client.findIssues(JQL);
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(
+				this.project.getIssues().stream().map(Issue::getKey).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void streamIssuesVotesAndCommits() {
+		List<JiraIssue> issues = this.client.streamIssuesVotesAndCommits(JQL, issue -> true).collectList().block();
+
+		assertThat(issues).hasSize(1000);
+		long issuesWithCommits = this.project.getIssues().stream().filter(issue -> issue.getCommitCount() > 0).count();
+		assertThat(issuesWithCommits).isGreaterThan(0);
+		assertThat(this.simulator.getDevStatusCount()).isEqualTo(issuesWithCommits);
+		for (int i = 0; i < issues.size(); i++) {
+			assertThat(issues.get(i).getCommitUrls()).hasSize(this.project.getIssues().get(i).getCommitCount());
+		}
+
+		// Fix versions of "Backport" sub-tasks are aggregated into their parent
+		Map<String, JiraIssue> issuesByKey = issues.stream().collect(Collectors.toMap(JiraIssue::getKey, Function.identity()));
+		List<JiraIssue> backportSubtasks = issues.stream()
+				.filter(issue -> issue.getFields().getIssuetype().getName().equals("Backport"))
+				.collect(Collectors.toList());
+		assertThat(backportSubtasks).isNotEmpty();
+		for (JiraIssue subtask : backportSubtasks) {
+			JiraIssue parent = issuesByKey.get(subtask.getFields().getParent().getKey());
+			List<JiraFixVersion> parentVersions = new ArrayList<>(parent.getBackportVersions());
+			parentVersions.add(parent.getFixVersion());
+			assertThat(parentVersions).contains(subtask.getFields().getFixVersions().get(0));
+		}
+	}
+
+	@Test
+	public void findRestrictedIssueKeys() {
+		assertThat(this.client.findRestrictedIssueKeys(JQL)).containsExactlyElementsOf(this.project.getIssues().stream()
+				.filter(Issue::isRestricted).map(Issue::getKey).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void findProjectAndUser() {
+		JiraProject project = this.client.findProject("SYN");
+		assertThat(project.getVersions()).extracting(JiraVersion::getName).contains("1.0 M1", "1.0 GA", "1.0.1");
+		assertThat(project.getIssueTypes()).extracting(JiraIssueType::getName).contains("Bug", "Backport");
+
+		JiraUser user = this.client.findUser("user7").block();
+		assertThat(user.getDisplayName()).isEqualTo("User 7");
+		assertThat(user.getBrowserUrl()).startsWith(this.simulator.getBaseUrl());
+		assertThatThrownBy(() -> this.client.findUser("nobody").block()).isInstanceOf(WebClientResponseException.class);
+	}
+
+	@Test
+	public void addComments() {
+		Issue issue = this.project.getIssues().get(9);
+		this.client.addComments(Collections.singletonMap(issue.getKey(), "Moved to GitHub"));
+
+		List<JiraIssue> issues = this.client.findIssues("issue = " + issue.getKey());
+		assertThat(issues.get(0).getFields().getComment().getComments())
+				.extracting(JiraComment::getBody).endsWith("Moved to GitHub");
+		assertThat(this.client.countIssues(JiraIssueSnapshot.updatedWithin(JQL, 5))).isEqualTo(1);
+	}
+
+	@Test
+	public void unsupportedJql() {
+		assertThatThrownBy(() -> this.client.countIssues("summary ~ \"bean\""))
+				.isInstanceOf(WebClientResponseException.class);
+	}
+
+	@Test
+	public void sameSeedSameProject() {
+		SyntheticJiraProject other = new SyntheticJiraProject("SYN", 1000, 42);
+		assertThat(other.renderIssue("http://localhost", other.getIssue("SYN-500"), null))
+				.isEqualTo(this.project.renderIssue("http://localhost", this.project.getIssue("SYN-500"), null));
+
+		other = new SyntheticJiraProject("SYN", 1000, 43);
+		assertThat(other.renderIssue("http://localhost", other.getIssue("SYN-500"), null))
+				.isNotEqualTo(this.project.renderIssue("http://localhost", this.project.getIssue("SYN-500"), null));
+	}
+
+}
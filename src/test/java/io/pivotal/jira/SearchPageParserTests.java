@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SearchPageParser}.
+ */
+public class SearchPageParserTests {
+
+	private static final String PAGE = "{\"expand\":\"schema,names\",\"startAt\":1000,\"maxResults\":500,\"total\":1502," +
+			"\"issues\":[" +
+			"{\"id\":\"1\",\"key\":\"SPR-1\",\"fields\":{\"summary\":\"First [with] {braces}\",\"labels\":[\"a\",\"b\"]}}," +
+			"{\"id\":\"2\",\"key\":\"SPR-2\",\"fields\":{\"summary\":\"Second\",\"subtasks\":[{\"key\":\"SPR-3\"}]}}" +
+			"],\"warningMessages\":[]}";
+
+
+	@Test
+	public void parseInOneChunk() {
+		SearchPageParser parser = new SearchPageParser(Jackson2ObjectMapperBuilder.json().build());
+		List<JiraIssue> issues = new ArrayList<>(parser.parse(toDataBuffer(PAGE)));
+		issues.addAll(parser.endOfInput());
+
+		assertIssues(issues);
+		assertThat(parser.getStartAt()).isEqualTo(1000);
+		assertThat(parser.getMaxResults()).isEqualTo(500);
+		assertThat(parser.getTotal()).isEqualTo(1502);
+		assertThat(parser.getIssueCount()).isEqualTo(2);
+		assertThat(parser.getByteCount()).isEqualTo(PAGE.length());
+	}
+
+	@Test
+	public void parseInSmallChunks() {
+		SearchPageParser parser = new SearchPageParser(Jackson2ObjectMapperBuilder.json().build());
+		List<JiraIssue> issues = new ArrayList<>();
+		for (int i = 0; i < PAGE.length(); i += 7) {
+			issues.addAll(parser.parse(toDataBuffer(PAGE.substring(i, Math.min(i + 7, PAGE.length())))));
+		}
+		issues.addAll(parser.endOfInput());
+
+		assertIssues(issues);
+		assertThat(parser.getTotal()).isEqualTo(1502);
+	}
+
+	@Test
+	public void issueEmittedWhenComplete() {
+		SearchPageParser parser = new SearchPageParser(Jackson2ObjectMapperBuilder.json().build());
+		int secondIssue = PAGE.indexOf("{\"id\":\"2\"");
+
+		assertThat(parser.parse(toDataBuffer(PAGE.substring(0, secondIssue))))
+				.extracting(JiraIssue::getKey).containsExactly("SPR-1");
+		assertThat(parser.parse(toDataBuffer(PAGE.substring(secondIssue))))
+				.extracting(JiraIssue::getKey).containsExactly("SPR-2");
+		assertThat(parser.endOfInput()).isEmpty();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void incompleteInput() {
+		SearchPageParser parser = new SearchPageParser(Jackson2ObjectMapperBuilder.json().build());
+		parser.parse(toDataBuffer(PAGE.substring(0, PAGE.length() / 2)));
+		parser.endOfInput();
+	}
+
+
+	private static void assertIssues(List<JiraIssue> issues) {
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactly("SPR-1", "SPR-2");
+		assertThat(issues.get(0).getFields().getSummary()).isEqualTo("First [with] {braces}");
+		assertThat(issues.get(0).getFields().getLabels()).containsExactly("a", "b");
+		assertThat(issues.get(1).getFields().getSubtasks()).extracting(JiraIssue::getKey).containsExactly("SPR-3");
+	}
+
+	private static DataBuffer toDataBuffer(String s) {
+		return new DefaultDataBufferFactory().wrap(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SearchPagePlanner}.
+ */
+public class SearchPagePlannerTests {
+
+	@Test
+	public void singlePage() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(42, 42 * 1000, 500);
+		planner.init(0, 1000, 42, 42);
+
+		assertThat(planner.nextPage()).isNull();
+	}
+
+	@Test
+	public void exactPagesForTotal() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(1000, 1000 * 1000, 1000);
+		planner.init(0, 1000, 2500, 1000);
+
+		List<SearchPagePlanner.Page> pages = drain(planner);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getStartAt).containsExactly(1000L, 2000L);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getSize).containsExactly(1000, 500);
+	}
+
+	@Test
+	public void maxResultsCappedByServer() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(500, 500 * 1000, 500);
+		planner.init(0, 500, 1200, 500);
+
+		List<SearchPagePlanner.Page> pages = drain(planner);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getStartAt).containsExactly(500L, 1000L);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getSize).containsExactly(500, 200);
+	}
+
+	@Test
+	public void maxResultsCappedByServerAfterResumedFirstPage() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(500, 500 * 1000, 500);
+		planner.init(100, 0, 2000, 500);
+		assertThat(planner.nextPage().getSize()).isEqualTo(1000);
+
+		// Learned from a later page that was short
+		planner.limitPageSize(500);
+		List<SearchPagePlanner.Page> pages = drain(planner);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getStartAt).containsExactly(1600L);
+		assertThat(pages).extracting(SearchPagePlanner.Page::getSize).containsExactly(400);
+	}
+
+	@Test
+	public void slowResponsesReducePageSize() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(1000, 1000 * 1000, 40_000);
+		planner.init(0, 1000, 10_000, 1000);
+
+		assertThat(planner.getPageSize()).isEqualTo(250);
+		assertThat(planner.nextPage().getSize()).isEqualTo(250);
+	}
+
+	@Test
+	public void largePayloadReducesConcurrency() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(1000, 50 * 1024 * 1024, 1000);
+		planner.init(0, 1000, 20_000, 1000);
+
+		assertThat(planner.getConcurrency()).isEqualTo(2);
+	}
+
+	@Test
+	public void concurrencyDecidedFromFirstPage() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(1000, 1000 * 1000, 1000);
+		planner.init(0, 1000, 20_000, 1000);
+		assertThat(planner.getConcurrency()).isEqualTo(8);
+
+		planner.onPage(1000, 50 * 1024 * 1024, 1000);
+		assertThat(planner.getConcurrency()).isEqualTo(8);
+	}
+
+	@Test
+	public void concurrencyLimitedByRemainingPages() {
+		SearchPagePlanner planner = new SearchPagePlanner(1000);
+		planner.onPage(1000, 1000, 1000);
+		planner.init(0, 1000, 3000, 1000);
+
+		assertThat(planner.getConcurrency()).isEqualTo(2);
+	}
+
+
+	private static List<SearchPagePlanner.Page> drain(SearchPagePlanner planner) {
+		List<SearchPagePlanner.Page> pages = new ArrayList<>();
+		for (SearchPagePlanner.Page page = planner.nextPage(); page != null; page = planner.nextPage()) {
+			pages.add(page);
+		}
+		return pages;
+	}
+
+}
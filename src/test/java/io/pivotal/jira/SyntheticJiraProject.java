@@ -0,0 +1,921 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+/**
+ * Seeded generator of a synthetic Jira project, served by {@link JiraSimulator}.
+ * The same key, issue count, and seed always produce the same project. The
+ * structure of issues (types, sub-tasks, links, versions, counts) is generated
+ * up front, while descriptions and comments are generated from a seed per issue
+ * each time an issue is rendered, so that large projects fit in memory.
+ *
+ * <p>Distributions loosely follow a large, long-lived project such as SPR:
+ * <ul>
+ * <li>Most issues have a few comments, some have none, and a long tail have
+ * dozens, in threads of up to 150 comments.
+ * <li>Text sizes are log-normal, with occasional stack traces and code, and
+ * rare pastes larger than GitHub allows.
+ * <li>Fix versions follow release trains of milestones, release candidates,
+ * GA, and maintenance releases. Some issues are backported with extra fix
+ * versions, and some with "Backport" sub-tasks, as was done circa 2013.
+ * <li>Some issues link to earlier issues, a few are restricted, and resolved
+ * issues of later years have commits, shown in the {@link #DEVELOPMENT_FIELD}.
+ * </ul>
+ */
+public class SyntheticJiraProject {
+
+	/** The "Development" custom field, with a summary of commits */
+	public static final String DEVELOPMENT_FIELD = "customfield_10000";
+
+	private static final DateTimeFormatter dateFormatter =
+			DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withZone(DateTimeZone.UTC);
+
+	private static final long START_TIME = new DateTime(2004, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+	private static final long END_TIME = new DateTime(2019, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+	/** Commits are linked to issues from this time on */
+	private static final long DEVELOPMENT_TIME = new DateTime(2014, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	private static final int USER_COUNT = 300;
+
+	/** The first users are the team, who resolve most issues */
+	private static final int TEAM_SIZE = 10;
+
+	private static final int MAX_GITHUB_BODY_LENGTH = 65536;
+
+	private static final String[] ISSUE_TYPES = {"Bug", "Improvement", "New Feature", "Task", "Refactoring",
+			"Sub-task", "Backport"};
+
+	/** Cumulative weights for {@link #ISSUE_TYPES} of top level issues */
+	private static final int[] ISSUE_TYPE_WEIGHTS = {45, 80, 90, 96, 100};
+
+	private static final String[] COMPONENTS = {"Core", "Web", "Data", "Messaging", "Test", "Build"};
+
+	private static final String[] OPEN_STATUSES = {"Open", "In Progress", "Waiting for Feedback"};
+
+	private static final String[] RESOLUTIONS = {"Fixed", "Duplicate", "Won't Fix", "Invalid", "Incomplete",
+			"Works as Designed"};
+
+	/** Cumulative weights for {@link #RESOLUTIONS} */
+	private static final int[] RESOLUTION_WEIGHTS = {75, 83, 89, 94, 97, 100};
+
+	private static final String[] LABELS = {"regression", "backport-candidate", "contributed", "test-failure"};
+
+	/** Link type name, outward, and inward description */
+	private static final String[][] LINK_TYPES = {
+			{"Relate", "relates to", "is related to"},
+			{"Depend", "depends on", "is depended on by"},
+			{"Supersede", "supersedes", "is superseded by"},
+			{"Duplicate", "duplicates", "is duplicated by"}};
+
+	private static final int DUPLICATE_LINK_TYPE = 3;
+
+	private static final String[] WORDS = {
+			"the", "bean", "context", "request", "handler", "is", "not", "when", "with", "configuration",
+			"should", "be", "registered", "after", "refresh", "converter", "message", "a", "of", "for",
+			"transaction", "proxy", "listener", "template", "property", "annotation", "resolver", "it", "in"};
+
+
+	private final String key;
+
+	private final List<Version> versions = new ArrayList<>();
+
+	private final List<Issue> issues;
+
+	/** Comments added through the API, by issue number */
+	private final Map<Integer, List<Map<String, Object>>> addedComments = new ConcurrentHashMap<>();
+
+
+	public SyntheticJiraProject(String key, int issueCount, long seed) {
+		this.key = key;
+		Random random = new Random(seed);
+		initVersions(random);
+		this.issues = new ArrayList<>(issueCount);
+		initIssues(issueCount, random);
+	}
+
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public String getId() {
+		return "10000";
+	}
+
+	public List<Issue> getIssues() {
+		return Collections.unmodifiableList(this.issues);
+	}
+
+	/**
+	 * Find an issue by key or id.
+	 */
+	@Nullable
+	public Issue getIssue(String keyOrId) {
+		int number = -1;
+		if (keyOrId.startsWith(this.key + "-")) {
+			number = parseInt(keyOrId.substring(this.key.length() + 1));
+		}
+		else if (keyOrId.matches("\\d{6,9}")) {
+			number = Integer.parseInt(keyOrId) - 100000;
+		}
+		return (number >= 1 && number <= this.issues.size() ? this.issues.get(number - 1) : null);
+	}
+
+	private static int parseInt(String value) {
+		return (value.matches("\\d{1,9}") ? Integer.parseInt(value) : -1);
+	}
+
+	/**
+	 * Whether the given user key exists.
+	 */
+	public boolean hasUser(String userKey) {
+		return userKey.matches("user\\d{1,3}") && Integer.parseInt(userKey.substring(4)) < USER_COUNT;
+	}
+
+
+	private void initVersions(Random random) {
+		long trainLength = (END_TIME - START_TIME) / 16;
+		for (int train = 0; train < 16; train++) {
+			String line = (1 + train / 4) + "." + (train % 4);
+			long time = START_TIME + train * trainLength + random.nextInt(30) * DAY;
+			for (String qualifier : new String[] {"M1", "M2", "RC1", "GA"}) {
+				time += (45 + random.nextInt(30)) * DAY;
+				this.versions.add(new Version(this.versions.size(), line + " " + qualifier, train, false, time));
+			}
+			// Maintenance releases until the line after next ships
+			for (int patch = 1; time < START_TIME + (train + 2.5) * trainLength; patch++) {
+				time += (40 + random.nextInt(60)) * DAY;
+				this.versions.add(new Version(this.versions.size(), line + "." + patch, train, true, time));
+			}
+		}
+	}
+
+	private void initIssues(int issueCount, Random random) {
+		long interval = (END_TIME - START_TIME) / Math.max(1, issueCount);
+		Deque<Issue> pendingSubtasks = new ArrayDeque<>();
+		for (int number = 1; number <= issueCount; number++) {
+			Issue issue = new Issue(number);
+			issue.created = START_TIME + (number - 1) * interval + (long) (random.nextDouble() * interval);
+			issue.textSeed = random.nextLong();
+			issue.reporter = skewedUser(random);
+			Issue parent = pendingSubtasks.pollFirst();
+			if (parent != null) {
+				initSubtask(issue, parent, random);
+			}
+			else {
+				initIssue(issue, random, pendingSubtasks);
+			}
+			if (random.nextInt(100) < 12 && number > 1) {
+				for (int i = 0, count = 1 + random.nextInt(3); i < count; i++) {
+					Issue target = this.issues.get(Math.max(0, number - 2 - random.nextInt(500)));
+					addLink(issue, target, random.nextInt(LINK_TYPES.length - 1));
+				}
+			}
+			if (issue.resolution == 1 && issue.parent == 0 && number > 1) {
+				addLink(issue, this.issues.get(Math.max(0, number - 2 - random.nextInt(2000))), DUPLICATE_LINK_TYPE);
+			}
+			issue.restricted = (random.nextInt(100) == 0);
+			issue.commentCount = commentCount(random);
+			issue.votes = (random.nextInt(10) < 7 ? 0 : random.nextInt(200) == 0 ? 20 + random.nextInt(180) :
+					1 + (int) (-Math.log(1 - random.nextDouble()) * 3));
+			issue.watches = 1 + issue.votes + random.nextInt(5);
+			if (issue.resolution == 0 && issue.created >= DEVELOPMENT_TIME && random.nextInt(100) < 60) {
+				issue.commits = 1 + random.nextInt(4);
+			}
+			issue.components = new int[random.nextInt(3)];
+			for (int i = 0; i < issue.components.length; i++) {
+				issue.components[i] = random.nextInt(COMPONENTS.length);
+			}
+			issue.label = (random.nextInt(20) == 0 ? random.nextInt(LABELS.length) : -1);
+			issue.attachments = (random.nextInt(20) == 0 ? 1 + random.nextInt(2) : 0);
+			issue.updated = Math.min(END_TIME - 1, issue.created + (long) (-Math.log(1 - random.nextDouble()) * 60 * DAY));
+			this.issues.add(issue);
+		}
+	}
+
+	private void initIssue(Issue issue, Random random, Deque<Issue> pendingSubtasks) {
+		issue.type = pick(ISSUE_TYPE_WEIGHTS, random);
+		boolean recent = issue.created > END_TIME - (END_TIME - START_TIME) / 10;
+		if (random.nextInt(100) < (recent ? 40 : 5)) {
+			issue.status = random.nextInt(OPEN_STATUSES.length);
+			return;
+		}
+		issue.resolution = pick(RESOLUTION_WEIGHTS, random);
+		issue.assignee = random.nextInt(TEAM_SIZE);
+		Version previous = lastReleasedBefore(issue.created);
+		if (previous != null && random.nextInt(10) < 3) {
+			issue.affectsVersion = previous.index;
+		}
+		if (issue.resolution != 0) {
+			return;
+		}
+		Version fixVersion = nextRelease(issue.created + random.nextInt(90) * DAY, -1);
+		if (fixVersion == null) {
+			issue.resolution = -1;
+			issue.status = 0;
+			return;
+		}
+		issue.fixVersions.add(fixVersion.index);
+		if (random.nextInt(10) == 0) {
+			// Backport to maintenance releases of the previous one or two lines
+			boolean withSubtasks = (issue.created > START_TIME + (END_TIME - START_TIME) * 9 / 15 &&
+					issue.created < START_TIME + (END_TIME - START_TIME) * 11 / 15);
+			for (int train = fixVersion.train - 1; train >= fixVersion.train - 2 && train >= 0; train--) {
+				Version backport = nextRelease(fixVersion.releaseTime - 30 * DAY, train);
+				if (backport == null || !backport.maintenance) {
+					break;
+				}
+				if (withSubtasks) {
+					issue.pendingBackports.add(backport.index);
+					pendingSubtasks.addLast(issue);
+				}
+				else {
+					issue.fixVersions.add(backport.index);
+				}
+			}
+		}
+		if (random.nextInt(100) < 3) {
+			pendingSubtasks.addLast(issue);
+		}
+	}
+
+	private void initSubtask(Issue issue, Issue parent, Random random) {
+		issue.parent = parent.number;
+		parent.subtasks.add(issue.number);
+		issue.resolution = parent.resolution;
+		issue.status = parent.status;
+		issue.assignee = parent.assignee;
+		if (!parent.pendingBackports.isEmpty()) {
+			issue.type = ISSUE_TYPES.length - 1;
+			issue.fixVersions.add(parent.pendingBackports.remove(0));
+			issue.summaryPrefix = "Backport: ";
+		}
+		else {
+			issue.type = ISSUE_TYPES.length - 2;
+			issue.fixVersions.addAll(parent.fixVersions.subList(0, Math.min(1, parent.fixVersions.size())));
+		}
+	}
+
+	private void addLink(Issue source, Issue target, int type) {
+		if (source.number != target.number) {
+			source.links.add(new int[] {target.number, type, 1});
+			target.links.add(new int[] {source.number, type, 0});
+		}
+	}
+
+	@Nullable
+	private Version lastReleasedBefore(long time) {
+		Version result = null;
+		for (Version version : this.versions) {
+			if (version.releaseTime < time && (result == null || version.releaseTime > result.releaseTime)) {
+				result = version;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The first version released after the given time, on the given release
+	 * line, or on any line if -1.
+	 */
+	@Nullable
+	private Version nextRelease(long time, int train) {
+		Version result = null;
+		for (Version version : this.versions) {
+			if (version.releaseTime > time && (train == -1 || version.train == train) &&
+					(result == null || version.releaseTime < result.releaseTime)) {
+				result = version;
+			}
+		}
+		return result;
+	}
+
+	private static int pick(int[] cumulativeWeights, Random random) {
+		int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (value < cumulativeWeights[i]) {
+				return i;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * A few users report most issues and write most comments.
+	 */
+	private static int skewedUser(Random random) {
+		return (int) (USER_COUNT * Math.pow(random.nextDouble(), 3));
+	}
+
+	private static int commentCount(Random random) {
+		if (random.nextInt(5) == 0) {
+			return 0;
+		}
+		if (random.nextInt(100) == 0) {
+			return 30 + random.nextInt(120);
+		}
+		return 1 + (int) (-Math.log(1 - random.nextDouble()) * 3);
+	}
+
+
+	// Rendering as the Jira REST API does
+
+	/**
+	 * Render the project, with versions, components, and issue types.
+	 */
+	public Map<String, Object> renderProject(String baseUrl) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("self", baseUrl + "/rest/api/2/project/" + getId());
+		map.put("id", getId());
+		map.put("key", this.key);
+		map.put("name", "Synthetic " + this.key);
+		map.put("lead", renderUser(baseUrl, 0));
+		List<Map<String, Object>> components = new ArrayList<>();
+		for (int i = 0; i < COMPONENTS.length; i++) {
+			components.add(renderComponent(baseUrl, i));
+		}
+		map.put("components", components);
+		List<Map<String, Object>> issueTypes = new ArrayList<>();
+		for (int i = 0; i < ISSUE_TYPES.length; i++) {
+			issueTypes.add(renderIssueType(baseUrl, i));
+		}
+		map.put("issueTypes", issueTypes);
+		map.put("versions", this.versions.stream().map(version -> version.render(baseUrl)).collect(Collectors.toList()));
+		return map;
+	}
+
+	/**
+	 * Render an issue as in search results.
+	 * @param fields the fields to include, or {@code null} for all fields
+	 */
+	public Map<String, Object> renderIssue(String baseUrl, Issue issue, @Nullable Set<String> fields) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("expand", "operations,versionedRepresentations,editmeta,changelog,renderedFields");
+		map.put("id", issue.getId());
+		map.put("self", baseUrl + "/rest/api/2/issue/" + issue.getId());
+		map.put("key", issue.getKey());
+		Map<String, Object> values = new LinkedHashMap<>();
+		if (include(fields, "summary")) {
+			values.put("summary", issue.summaryPrefix + summary(new Random(issue.textSeed)));
+		}
+		if (include(fields, "description")) {
+			values.put("description", text(new Random(~issue.textSeed), 600, issue.number));
+		}
+		if (include(fields, "issuetype")) {
+			values.put("issuetype", renderIssueType(baseUrl, issue.type));
+		}
+		if (include(fields, "created")) {
+			values.put("created", formatDate(issue.created));
+		}
+		if (include(fields, "updated")) {
+			values.put("updated", formatDate(issue.updated));
+		}
+		if (include(fields, "comment")) {
+			values.put("comment", renderCommentPage(baseUrl, issue));
+		}
+		if (include(fields, "components")) {
+			values.put("components", Arrays.stream(issue.components).distinct()
+					.mapToObj(i -> renderComponent(baseUrl, i)).collect(Collectors.toList()));
+		}
+		if (include(fields, "versions")) {
+			values.put("versions", issue.affectsVersion != -1 ?
+					Collections.singletonList(this.versions.get(issue.affectsVersion).render(baseUrl)) :
+					Collections.emptyList());
+		}
+		if (include(fields, "fixVersions")) {
+			values.put("fixVersions", issue.fixVersions.stream()
+					.map(i -> this.versions.get(i).render(baseUrl)).collect(Collectors.toList()));
+		}
+		if (include(fields, "status")) {
+			String status = (issue.resolution == -1 ? OPEN_STATUSES[issue.status] : "Closed");
+			values.put("status", named(baseUrl + "/rest/api/2/status/", status));
+		}
+		if (include(fields, "resolution")) {
+			values.put("resolution", (issue.resolution != -1 ?
+					named(baseUrl + "/rest/api/2/resolution/", RESOLUTIONS[issue.resolution]) : null));
+		}
+		if (include(fields, "reporter")) {
+			values.put("reporter", renderUser(baseUrl, issue.reporter));
+		}
+		if (include(fields, "creator")) {
+			values.put("creator", renderUser(baseUrl, issue.reporter));
+		}
+		if (include(fields, "assignee")) {
+			values.put("assignee", issue.assignee != -1 ? renderUser(baseUrl, issue.assignee) : null);
+		}
+		if (include(fields, "issuelinks")) {
+			values.put("issuelinks", issue.links.stream()
+					.map(link -> renderLink(baseUrl, link)).collect(Collectors.toList()));
+		}
+		if (include(fields, "parent") && issue.parent != 0) {
+			values.put("parent", renderIssueReference(baseUrl, this.issues.get(issue.parent - 1)));
+		}
+		if (include(fields, "subtasks")) {
+			values.put("subtasks", issue.subtasks.stream()
+					.map(number -> renderIssueReference(baseUrl, this.issues.get(number - 1)))
+					.collect(Collectors.toList()));
+		}
+		if (include(fields, "labels")) {
+			values.put("labels", issue.label != -1 ?
+					Collections.singletonList(LABELS[issue.label]) : Collections.emptyList());
+		}
+		if (include(fields, "attachment")) {
+			List<Map<String, Object>> attachments = new ArrayList<>();
+			for (int i = 0; i < issue.attachments; i++) {
+				String id = String.valueOf(issue.number * 10 + i);
+				Map<String, Object> attachment = new LinkedHashMap<>();
+				attachment.put("id", id);
+				attachment.put("filename", "sample-" + id + ".zip");
+				attachment.put("created", formatDate(issue.created));
+				attachment.put("size", 1024 + (issue.textSeed & 0xfffff));
+				attachment.put("content", baseUrl + "/secure/attachment/" + id + "/sample-" + id + ".zip");
+				attachments.add(attachment);
+			}
+			values.put("attachment", attachments);
+		}
+		if (include(fields, "watches")) {
+			Map<String, Object> watches = new LinkedHashMap<>();
+			watches.put("self", baseUrl + "/rest/api/2/issue/" + issue.getKey() + "/watchers");
+			watches.put("watchCount", issue.watches);
+			watches.put("isWatching", false);
+			values.put("watches", watches);
+		}
+		if (include(fields, "votes")) {
+			values.put("votes", renderVotes(baseUrl, issue, false));
+		}
+		if (include(fields, "customfield_10120")) {
+			values.put("customfield_10120", (issue.textSeed % 31 == 0 ?
+					"https://github.com/example/" + this.key.toLowerCase() + "-sample/pull/" + issue.number : null));
+		}
+		if (include(fields, "customfield_10684")) {
+			values.put("customfield_10684", (issue.textSeed % 17 == 0 ?
+					"https://github.com/example/" + this.key.toLowerCase() + "/pull/" + issue.number : null));
+		}
+		if (include(fields, "security")) {
+			values.put("security", issue.restricted ?
+					named(baseUrl + "/rest/api/2/securitylevel/", "Restricted") : null);
+		}
+		if (include(fields, DEVELOPMENT_FIELD)) {
+			values.put(DEVELOPMENT_FIELD, issue.commits == 0 ? "{}" :
+					"{summaryBean=com.atlassian.jira.plugin.devstatus.rest.SummaryBean@1[summary=" +
+					"{repository=com.atlassian.jira.plugin.devstatus.summary.beans.CommitOverallBean@2" +
+					"[count=" + issue.commits + ",lastUpdated=<null>]},errors=[]]}");
+		}
+		map.put("fields", values);
+		return map;
+	}
+
+	private static boolean include(@Nullable Set<String> fields, String field) {
+		return (fields == null || fields.contains(field) || fields.contains("*all"));
+	}
+
+	/**
+	 * Render the comments of an issue, including those added through the API.
+	 */
+	public Map<String, Object> renderCommentPage(String baseUrl, Issue issue) {
+		List<Map<String, Object>> comments = new ArrayList<>(issue.commentCount);
+		long time = issue.created;
+		for (int i = 0; i < issue.commentCount; i++) {
+			Random random = new Random(issue.textSeed ^ ((i + 1) * 0x9E3779B97F4A7C15L));
+			time += (long) (-Math.log(1 - random.nextDouble()) * 5 * DAY);
+			Map<String, Object> comment = new LinkedHashMap<>();
+			String id = String.valueOf(issue.number * 1000L + i);
+			int author = (random.nextInt(3) == 0 ? random.nextInt(TEAM_SIZE) : skewedUser(random));
+			comment.put("self", baseUrl + "/rest/api/2/issue/" + issue.getId() + "/comment/" + id);
+			comment.put("id", id);
+			comment.put("author", renderUser(baseUrl, author));
+			comment.put("body", text(random, 300, issue.number));
+			comment.put("updateAuthor", renderUser(baseUrl, author));
+			comment.put("created", formatDate(time));
+			comment.put("updated", formatDate(time));
+			if (random.nextInt(30) == 0) {
+				Map<String, Object> visibility = new LinkedHashMap<>();
+				visibility.put("type", "role");
+				visibility.put("value", "Administrators");
+				comment.put("visibility", visibility);
+			}
+			comments.add(comment);
+		}
+		comments.addAll(this.addedComments.getOrDefault(issue.number, Collections.emptyList()));
+		Map<String, Object> page = new LinkedHashMap<>();
+		page.put("comments", comments);
+		page.put("maxResults", comments.size());
+		page.put("total", comments.size());
+		page.put("startAt", 0);
+		return page;
+	}
+
+	/**
+	 * Add a comment, as the first user, which also updates the issue.
+	 */
+	public Map<String, Object> addComment(String baseUrl, Issue issue, String body) {
+		Map<String, Object> comment = new LinkedHashMap<>();
+		List<Map<String, Object>> comments =
+				this.addedComments.computeIfAbsent(issue.number, number -> new ArrayList<>());
+		synchronized (comments) {
+			String id = String.valueOf(issue.number * 1000L + 999 - comments.size());
+			long now = System.currentTimeMillis();
+			comment.put("self", baseUrl + "/rest/api/2/issue/" + issue.getId() + "/comment/" + id);
+			comment.put("id", id);
+			comment.put("author", renderUser(baseUrl, 0));
+			comment.put("body", body);
+			comment.put("created", formatDate(now));
+			comment.put("updated", formatDate(now));
+			comments.add(comment);
+			issue.updated = now;
+		}
+		return comment;
+	}
+
+	public Map<String, Object> renderVotes(String baseUrl, Issue issue, boolean withVoters) {
+		Map<String, Object> votes = new LinkedHashMap<>();
+		votes.put("self", baseUrl + "/rest/api/2/issue/" + issue.getKey() + "/votes");
+		votes.put("votes", issue.votes);
+		votes.put("hasVoted", false);
+		if (withVoters) {
+			Random random = new Random(issue.textSeed);
+			List<Map<String, Object>> voters = new ArrayList<>(issue.votes);
+			for (int i = 0; i < issue.votes; i++) {
+				voters.add(renderUser(baseUrl, random.nextInt(USER_COUNT)));
+			}
+			votes.put("voters", voters);
+		}
+		return votes;
+	}
+
+	/**
+	 * Render the dev-status detail of an issue, with a GitHub repository.
+	 */
+	public Map<String, Object> renderDevelopmentDetail(Issue issue) {
+		List<Map<String, Object>> commits = new ArrayList<>(issue.commits);
+		Random random = new Random(issue.textSeed);
+		for (int i = 0; i < issue.commits; i++) {
+			String id = String.format("%016x%016x%08x", random.nextLong(), random.nextLong(), random.nextInt());
+			Map<String, Object> commit = new LinkedHashMap<>();
+			commit.put("id", id);
+			commit.put("displayId", id.substring(0, 7));
+			commit.put("url", "https://github.com/example/" + this.key.toLowerCase() + "/commit/" + id);
+			commit.put("message", summary(random) + "\n\nIssue: " + issue.getKey());
+			commits.add(commit);
+		}
+		Map<String, Object> detail = new LinkedHashMap<>();
+		detail.put("branches", Collections.emptyList());
+		detail.put("pullRequests", Collections.emptyList());
+		if (commits.isEmpty()) {
+			detail.put("repositories", Collections.emptyList());
+		}
+		else {
+			Map<String, Object> repository = new LinkedHashMap<>();
+			repository.put("name", "example/" + this.key.toLowerCase());
+			repository.put("url", "https://github.com/example/" + this.key.toLowerCase());
+			repository.put("commits", commits);
+			detail.put("repositories", Collections.singletonList(repository));
+		}
+		detail.put("_instance", Collections.singletonMap("type", "github"));
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("errors", Collections.emptyList());
+		map.put("detail", Collections.singletonList(detail));
+		return map;
+	}
+
+	/**
+	 * Render a user, for a key checked with {@link #hasUser}.
+	 */
+	public Map<String, Object> renderUser(String baseUrl, String userKey) {
+		return renderUser(baseUrl, Integer.parseInt(userKey.substring(4)));
+	}
+
+	private Map<String, Object> renderUser(String baseUrl, int user) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("self", baseUrl + "/rest/api/2/user?username=user" + user);
+		map.put("name", "user" + user);
+		map.put("key", "user" + user);
+		map.put("displayName", "User " + user);
+		map.put("active", true);
+		map.put("timeZone", "Etc/UTC");
+		return map;
+	}
+
+	private Map<String, Object> renderIssueReference(String baseUrl, Issue issue) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("id", issue.getId());
+		map.put("key", issue.getKey());
+		map.put("self", baseUrl + "/rest/api/2/issue/" + issue.getId());
+		Map<String, Object> fields = new LinkedHashMap<>();
+		fields.put("summary", issue.summaryPrefix + summary(new Random(issue.textSeed)));
+		fields.put("status", named(baseUrl + "/rest/api/2/status/",
+				issue.resolution == -1 ? OPEN_STATUSES[issue.status] : "Closed"));
+		fields.put("issuetype", renderIssueType(baseUrl, issue.type));
+		map.put("fields", fields);
+		return map;
+	}
+
+	private Map<String, Object> renderLink(String baseUrl, int[] link) {
+		String[] linkType = LINK_TYPES[link[1]];
+		Map<String, Object> type = new LinkedHashMap<>();
+		type.put("id", String.valueOf(10000 + link[1]));
+		type.put("name", linkType[0]);
+		type.put("inward", linkType[2]);
+		type.put("outward", linkType[1]);
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("type", type);
+		map.put(link[2] == 1 ? "outwardIssue" : "inwardIssue", renderIssueReference(baseUrl, this.issues.get(link[0] - 1)));
+		return map;
+	}
+
+	private static Map<String, Object> renderIssueType(String baseUrl, int type) {
+		Map<String, Object> map = named(baseUrl + "/rest/api/2/issuetype/", ISSUE_TYPES[type]);
+		map.put("id", String.valueOf(type + 1));
+		map.put("subtask", type >= ISSUE_TYPES.length - 2);
+		return map;
+	}
+
+	private static Map<String, Object> renderComponent(String baseUrl, int component) {
+		Map<String, Object> map = named(baseUrl + "/rest/api/2/component/", COMPONENTS[component]);
+		map.put("id", String.valueOf(10100 + component));
+		return map;
+	}
+
+	private static Map<String, Object> named(String selfPrefix, String name) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("self", selfPrefix + Math.abs(name.hashCode() % 10000));
+		map.put("name", name);
+		return map;
+	}
+
+	private static String formatDate(long time) {
+		return dateFormatter.print(time);
+	}
+
+
+	// Text
+
+	private static String summary(Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0, words = 4 + random.nextInt(8); i < words; i++) {
+			sb.append(i > 0 ? " " : "").append(word(random));
+		}
+		return StringUtils.capitalize(sb.toString());
+	}
+
+	/**
+	 * Text with a log-normal length around the given median, with occasional
+	 * code blocks, stack traces, mentions, and references to earlier issues.
+	 * About one in a thousand is a large paste, over the GitHub limit.
+	 */
+	private String text(Random random, int median, int issueNumber) {
+		int length = (random.nextInt(1000) == 0 ? MAX_GITHUB_BODY_LENGTH + random.nextInt(4 * MAX_GITHUB_BODY_LENGTH) :
+				(int) Math.min(MAX_GITHUB_BODY_LENGTH / 2, median * Math.exp(random.nextGaussian())));
+		StringBuilder sb = new StringBuilder(length + 200);
+		while (sb.length() < length) {
+			switch (random.nextInt(24)) {
+				case 0:
+					stackTrace(sb.append("{noformat}\n"), random).append("{noformat}\n");
+					break;
+				case 1:
+					sb.append("{code:java}\n");
+					for (int i = 0, lines = 3 + random.nextInt(15); i < lines; i++) {
+						sb.append("\tpublic ").append(StringUtils.capitalize(word(random))).append(' ')
+								.append(word(random)).append("() { return null; }\n");
+					}
+					sb.append("{code}\n");
+					break;
+				case 2:
+					if (issueNumber > 1) {
+						sb.append("See ").append(this.key).append('-').append(1 + random.nextInt(issueNumber - 1)).append(". ");
+					}
+					break;
+				default:
+					sentence(sb, random);
+					sb.append(random.nextInt(5) == 0 ? "\n\n" : " ");
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void sentence(StringBuilder sb, Random random) {
+		for (int i = 0, words = 5 + random.nextInt(15); i < words; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			switch (random.nextInt(25)) {
+				case 0:
+					sb.append("{{").append(word(random)).append("}}");
+					break;
+				case 1:
+					sb.append('*').append(word(random)).append('*');
+					break;
+				case 2:
+					sb.append("[~user").append(skewedUser(random)).append(']');
+					break;
+				default:
+					sb.append(word(random));
+			}
+		}
+		sb.append('.');
+	}
+
+	private static StringBuilder stackTrace(StringBuilder sb, Random random) {
+		sb.append("org.example.").append(StringUtils.capitalize(word(random))).append("Exception: ")
+				.append(word(random)).append('\n');
+		for (int i = 0, frames = 10 + random.nextInt(60); i < frames; i++) {
+			String type = StringUtils.capitalize(word(random));
+			sb.append("\tat org.example.").append(word(random)).append('.').append(type).append('.')
+					.append(word(random)).append('(').append(type).append(".java:").append(random.nextInt(900))
+					.append(")\n");
+		}
+		return sb;
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+
+	/**
+	 * A released, or planned version.
+	 */
+	private static class Version {
+
+		private final int index;
+
+		private final String name;
+
+		private final int train;
+
+		private final boolean maintenance;
+
+		private final long releaseTime;
+
+		Version(int index, String name, int train, boolean maintenance, long releaseTime) {
+			this.index = index;
+			this.name = name;
+			this.train = train;
+			this.maintenance = maintenance;
+			this.releaseTime = releaseTime;
+		}
+
+		Map<String, Object> render(String baseUrl) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			String id = String.valueOf(10500 + this.index);
+			map.put("self", baseUrl + "/rest/api/2/version/" + id);
+			map.put("id", id);
+			map.put("name", this.name);
+			map.put("archived", this.releaseTime < END_TIME - 1000 * DAY);
+			map.put("released", this.releaseTime < END_TIME);
+			map.put("releaseDate", new DateTime(this.releaseTime, DateTimeZone.UTC).toString("yyyy-MM-dd"));
+			map.put("projectId", 10000);
+			return map;
+		}
+	}
+
+
+	/**
+	 * The structure of a generated issue. Text is generated when rendered.
+	 */
+	public class Issue {
+
+		private final int number;
+
+		private int type;
+
+		private String summaryPrefix = "";
+
+		private long created;
+
+		private volatile long updated;
+
+		private long textSeed;
+
+		/** Index of the open status, if not resolved */
+		private int status;
+
+		private int resolution = -1;
+
+		private int reporter;
+
+		private int assignee = -1;
+
+		private int affectsVersion = -1;
+
+		private final List<Integer> fixVersions = new ArrayList<>(1);
+
+		/** Backport versions for "Backport" sub-tasks still to be generated */
+		private final List<Integer> pendingBackports = new ArrayList<>(0);
+
+		private int parent;
+
+		private final List<Integer> subtasks = new ArrayList<>(0);
+
+		/** Other issue number, link type, and 1 if outward or 0 if inward */
+		private final List<int[]> links = new ArrayList<>(0);
+
+		private int[] components;
+
+		private int label;
+
+		private int attachments;
+
+		private int commentCount;
+
+		private int votes;
+
+		private int watches;
+
+		private int commits;
+
+		private boolean restricted;
+
+		Issue(int number) {
+			this.number = number;
+		}
+
+		public int getNumber() {
+			return this.number;
+		}
+
+		public String getId() {
+			return String.valueOf(100000 + this.number);
+		}
+
+		public String getKey() {
+			return SyntheticJiraProject.this.key + "-" + this.number;
+		}
+
+		public String getTypeName() {
+			return ISSUE_TYPES[this.type];
+		}
+
+		public long getCreated() {
+			return this.created;
+		}
+
+		public long getUpdated() {
+			return this.updated;
+		}
+
+		public boolean isRestricted() {
+			return this.restricted;
+		}
+
+		public boolean isResolved() {
+			return this.resolution != -1;
+		}
+
+		public int getCommentCount() {
+			return this.commentCount;
+		}
+
+		public int getCommitCount() {
+			return this.commits;
+		}
+
+		public int getVotes() {
+			return this.votes;
+		}
+
+		public List<Integer> getSubtasks() {
+			return Collections.unmodifiableList(this.subtasks);
+		}
+	}
+
+}
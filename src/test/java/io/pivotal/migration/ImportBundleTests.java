@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.pivotal.github.GithubComment;
+import io.pivotal.github.GithubConfig;
+import io.pivotal.github.GithubIssue;
+import io.pivotal.github.ImportGithubIssue;
+import io.pivotal.migration.ImportBundle.BackportIssue;
+import io.pivotal.migration.ImportBundle.Header;
+import io.pivotal.migration.ImportBundle.IssueEntry;
+import io.pivotal.migration.ImportBundle.Trailer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ImportBundleWriter} and {@link ImportBundleReader}, and
+ * for the checks of {@link MigrationClient#importBundle}.
+ */
+public class ImportBundleTests {
+
+	private static final DateTime CREATED = new DateTime(2018, 5, 22, 10, 15, 30, DateTimeZone.UTC);
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+
+	@Before
+	public void setUp() {
+		this.file = new File(folder.getRoot(), "bundle.ndjson.gz");
+	}
+
+
+	@Test
+	public void writeAndRead() throws IOException {
+		writeBundle("SPR-1", "SPR-2");
+
+		Trailer trailer = ImportBundleReader.verify(this.file);
+		assertThat(trailer.getIssueCount()).isEqualTo(2);
+		assertThat(trailer.getBackports()).containsOnlyKeys("5.0.1");
+
+		try (ImportBundleReader reader = new ImportBundleReader(this.file)) {
+			Header header = reader.getHeader();
+			assertThat(header.getRepositorySlug()).isEqualTo("spring-projects/spring-framework");
+			assertThat(header.getMilestones()).containsEntry("5.0.1", 7);
+
+			IssueEntry entry = reader.read();
+			assertThat(entry.getJiraKey()).isEqualTo("SPR-1");
+			GithubIssue issue = entry.getImportIssue().getIssue();
+			assertThat(issue.getTitle()).isEqualTo("Summary [SPR-1]");
+			assertThat(issue.getBody()).isEqualTo("Line 1\nLine 2 with \"quotes\"");
+			assertThat(issue.getCreatedAt().isEqual(CREATED)).isTrue();
+			assertThat(issue.getMilestone()).isEqualTo(7);
+			assertThat(entry.getImportIssue().getComments()).extracting(GithubComment::getBody).containsExactly("Comment");
+
+			assertThat(reader.read().getJiraKey()).isEqualTo("SPR-2");
+			assertThat(reader.getTrailer()).isNull();
+			assertThat(reader.read()).isNull();
+			assertThat(reader.getTrailer().getBackports().get("5.0.1"))
+					.extracting(BackportIssue::getJiraKey).containsExactly("SPR-1");
+		}
+	}
+
+	@Test
+	public void unfinishedBundleIsRemoved() throws IOException {
+		try (ImportBundleWriter writer = new ImportBundleWriter(this.file, header())) {
+			writer.writeIssue("SPR-1", importIssue("SPR-1"));
+		}
+		assertThat(this.file).doesNotExist();
+		assertThat(new File(this.file.getPath() + ".tmp")).doesNotExist();
+	}
+
+	@Test
+	public void truncatedBundle() throws IOException {
+		writeBundle("SPR-1", "SPR-2");
+		byte[] content;
+		try (InputStream in = new GZIPInputStream(new FileInputStream(this.file))) {
+			content = StreamUtils.copyToByteArray(in);
+		}
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(this.file))) {
+			out.write(content, 0, content.length / 2);
+		}
+		assertThatThrownBy(() -> ImportBundleReader.verify(this.file)).isInstanceOf(IOException.class);
+	}
+
+
+	@Test
+	public void importBundleForOtherRepository() throws IOException {
+		writeBundle("SPR-1", "SPR-2");
+		GithubConfig config = new GithubConfig();
+		config.setApiUrl("http://localhost:1");
+		config.setRepositorySlug("spring-projects/spring-boot");
+		config.setAccessToken("token");
+		MigrationClient client = new MigrationClient(config, null, null, null, null);
+		StringWriter mappingsWriter = new StringWriter();
+		MigrationContext context = new MigrationContext(mappingsWriter, new StringWriter());
+
+		// Rejected before any request to the repository
+		assertThatThrownBy(() -> client.importBundle(this.file, context))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("spring-projects/spring-framework")
+				.hasMessageContaining("spring-projects/spring-boot");
+		assertThat(mappingsWriter.toString()).isEmpty();
+	}
+
+
+	private void writeBundle(String... keys) throws IOException {
+		try (ImportBundleWriter writer = new ImportBundleWriter(this.file, header())) {
+			for (String key : keys) {
+				writer.writeIssue(key, importIssue(key));
+			}
+			Trailer trailer = new Trailer();
+			trailer.getBackports().put("5.0.1",
+					Collections.singletonList(new BackportIssue(keys[0], "Summary", CREATED, CREATED)));
+			writer.finish(trailer);
+		}
+	}
+
+	private static Header header() {
+		return new Header("spring-projects/spring-framework", "project = SPR", CREATED,
+				Collections.singletonMap("5.0.1", 7));
+	}
+
+	private static ImportGithubIssue importIssue(String key) {
+		GithubIssue issue = new GithubIssue();
+		issue.setTitle("Summary [" + key + "]");
+		issue.setBody("Line 1\nLine 2 with \"quotes\"");
+		issue.setCreatedAt(CREATED);
+		issue.setMilestone(7);
+		GithubComment comment = new GithubComment();
+		comment.setBody("Comment");
+		comment.setCreatedAt(CREATED);
+		ImportGithubIssue importIssue = new ImportGithubIssue();
+		importIssue.setIssue(issue);
+		importIssue.setComments(Collections.singletonList(comment));
+		return importIssue;
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.jira.JiraIssue;
+import io.pivotal.migration.MigrationClient.ImportedIssue;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ImportStatusPoller}.
+ */
+public class ImportStatusPollerTests {
+
+	@Test
+	public void pollUntilComplete() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		List<ImportedIssue> results = new CopyOnWriteArrayList<>();
+		ImportStatusPoller poller = new ImportStatusPoller(imported -> {
+			if (attempts.incrementAndGet() < 3) {
+				return null;
+			}
+			imported.setIssueNumber(42);
+			return true;
+		}, results::add);
+
+		try {
+			ImportedIssue imported = poller.submit(importedIssue("SPR-1")).get(10, TimeUnit.SECONDS);
+			assertThat(imported.getIssueNumber()).isEqualTo(42);
+			assertThat(attempts.get()).isEqualTo(3);
+			assertThat(results).containsExactly(imported);
+		}
+		finally {
+			poller.close();
+		}
+	}
+
+	@Test
+	public void statusCheckErrorRetried() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		List<ImportedIssue> results = new CopyOnWriteArrayList<>();
+		ImportStatusPoller poller = new ImportStatusPoller(imported -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new IllegalStateException("Boom");
+			}
+			imported.setIssueNumber(42);
+			return true;
+		}, results::add);
+
+		try {
+			ImportedIssue imported = poller.submit(importedIssue("SPR-1")).get(10, TimeUnit.SECONDS);
+			assertThat(imported.getIssueNumber()).isEqualTo(42);
+			assertThat(imported.getFailure()).isNull();
+			assertThat(attempts.get()).isEqualTo(3);
+			assertThat(results).containsExactly(imported);
+		}
+		finally {
+			poller.close();
+		}
+	}
+
+	@Test
+	public void importFailed() throws Exception {
+		List<ImportedIssue> results = new CopyOnWriteArrayList<>();
+		ImportStatusPoller poller = new ImportStatusPoller(imported -> {
+			imported.setFailure("status: failed");
+			return false;
+		}, results::add);
+
+		try {
+			ImportedIssue imported = poller.submit(importedIssue("SPR-1")).get(10, TimeUnit.SECONDS);
+			assertThat(imported.getIssueNumber()).isNull();
+			assertThat(imported.getFailure()).isEqualTo("status: failed");
+			assertThat(imported.isResolved()).isTrue();
+			assertThat(results).containsExactly(imported);
+		}
+		finally {
+			poller.close();
+		}
+	}
+
+	@Test
+	public void stillPendingAfterMaxWait() throws Exception {
+		List<ImportedIssue> results = new CopyOnWriteArrayList<>();
+		ImportStatusPoller poller = new ImportStatusPoller(imported -> {
+			throw new IllegalStateException("Boom");
+		}, results::add, Duration.ofSeconds(1));
+
+		try {
+			ImportedIssue imported = poller.submit(importedIssue("SPR-1")).get(10, TimeUnit.SECONDS);
+			assertThat(imported.getIssueNumber()).isNull();
+			assertThat(imported.getFailure()).isNull();
+			assertThat(imported.isResolved()).isFalse();
+			assertThat(results).containsExactly(imported);
+		}
+		finally {
+			poller.close();
+		}
+	}
+
+	@Test
+	public void delayBackoffWithJitter() {
+		for (int i = 0; i < 100; i++) {
+			assertThat(ImportStatusPoller.getDelay(0)).isBetween(250L, 500L);
+			assertThat(ImportStatusPoller.getDelay(3)).isBetween(2000L, 4000L);
+			assertThat(ImportStatusPoller.getDelay(30)).isBetween(15000L, 30000L);
+		}
+	}
+
+
+	private static ImportedIssue importedIssue(String key) {
+		JiraIssue issue = new JiraIssue();
+		issue.setKey(key);
+		return new ImportedIssue(issue, null, new MigrationClient.ImportGithubIssueResponse());
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.pivotal.jira.JiraIssue;
+import io.pivotal.migration.MigrationClient.ImportedIssue;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ImportWindow}.
+ */
+public class ImportWindowTests {
+
+	private final StringWriter failuresWriter = new StringWriter();
+
+	private final MigrationContext context = new MigrationContext(new StringWriter(), failuresWriter);
+
+	/** Issue numbers by Jira key, for imports allowed to complete */
+	private final Map<String, Integer> issueNumbers = new ConcurrentHashMap<>();
+
+	private final ImportStatusPoller poller = new ImportStatusPoller(imported -> {
+		Integer number = this.issueNumbers.get(imported.getJiraIssue().getKey());
+		if (number == null) {
+			return null;
+		}
+		imported.setIssueNumber(number);
+		return true;
+	}, this.context::addImportResult);
+
+
+	@After
+	public void tearDown() {
+		this.poller.close();
+	}
+
+
+	@Test
+	public void windowIsBounded() throws Exception {
+		ImportWindow window = new ImportWindow(2, false, this.poller, this.context);
+		window.add(importedIssue("SPR-1"));
+		window.add(importedIssue("SPR-2"));
+		assertThat(window.getPendingCount()).isEqualTo(2);
+
+		Thread thread = new Thread(() -> window.add(importedIssue("SPR-3")));
+		thread.start();
+		thread.join(1000);
+		assertThat(thread.isAlive()).as("Waiting for room in the window").isTrue();
+
+		this.issueNumbers.put("SPR-1", 1);
+		thread.join(10000);
+		assertThat(thread.isAlive()).isFalse();
+		assertThat(window.getPendingCount()).isEqualTo(2);
+		assertThat(this.context.getGitHubIssueId("SPR-1")).isEqualTo(1);
+
+		this.issueNumbers.put("SPR-2", 2);
+		this.issueNumbers.put("SPR-3", 3);
+		window.awaitAll();
+		assertThat(window.getPendingCount()).isEqualTo(0);
+		assertThat(window.getOutOfOrderCount()).isEqualTo(0);
+		assertThat(this.context.getGitHubIssueId("SPR-3")).isEqualTo(3);
+	}
+
+	@Test
+	public void outOfOrder() {
+		this.issueNumbers.put("SPR-1", 2);
+		this.issueNumbers.put("SPR-2", 1);
+		this.issueNumbers.put("SPR-3", 3);
+		ImportWindow window = new ImportWindow(20, false, this.poller, this.context);
+		window.add(importedIssue("SPR-1"));
+		window.add(importedIssue("SPR-2"));
+		window.add(importedIssue("SPR-3"));
+		window.awaitAll();
+
+		assertThat(window.getOutOfOrderCount()).isEqualTo(1);
+		assertThat(this.failuresWriter.toString()).isEqualTo("Out of order: SPR-2 imported as #1 after #2\n");
+	}
+
+	@Test
+	public void awaitTurn() {
+		ImportWindow window = new ImportWindow(20, false, this.poller, this.context);
+		window.add(importedIssue("SPR-1"));
+		window.awaitTurn();
+		assertThat(window.getPendingCount()).isEqualTo(1);
+
+		this.issueNumbers.put("SPR-1", 1);
+		window.awaitAll();
+	}
+
+	@Test
+	public void awaitTurnInStrictOrder() {
+		this.issueNumbers.put("SPR-1", 1);
+		ImportWindow window = new ImportWindow(20, true, this.poller, this.context);
+		window.add(importedIssue("SPR-1"));
+		window.awaitTurn();
+
+		assertThat(window.getPendingCount()).isEqualTo(0);
+		assertThat(this.context.getGitHubIssueId("SPR-1")).isEqualTo(1);
+	}
+
+	@Test
+	public void awaitTurnInStrictOrderStopsAtPendingImport() {
+		try (ImportStatusPoller poller = new ImportStatusPoller(imported -> null,
+				this.context::addImportResult, Duration.ofMillis(200))) {
+
+			ImportWindow window = new ImportWindow(20, true, poller, this.context);
+			window.add(importedIssue("SPR-1"));
+
+			// Not past SPR-1, which could complete after the next import
+			assertThatThrownBy(window::awaitTurn)
+					.isInstanceOf(IllegalStateException.class)
+					.hasMessageContaining("SPR-1 still pending");
+			assertThat(this.context.getUnresolvedImportCount()).isEqualTo(1);
+		}
+	}
+
+
+	private static ImportedIssue importedIssue(String key) {
+		JiraIssue issue = new JiraIssue();
+		issue.setKey(key);
+		return new ImportedIssue(issue, null, new MigrationClient.ImportGithubIssueResponse());
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.pivotal.jira.IssueLink;
+import io.pivotal.jira.JiraFixVersion;
+import io.pivotal.jira.JiraIssue;
+import io.pivotal.jira.JiraIssue.Fields;
+import org.eclipse.egit.github.core.Milestone;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link IssueIndex}.
+ */
+public class IssueIndexTests {
+
+	@Test
+	public void visibleSubtasksAndLinks() {
+		IssueIndex index = new IssueIndex(Arrays.asList("SPR-2", "SPR-4"), Collections.emptyMap());
+		Fields fields = new Fields();
+		fields.setSubtasks(Arrays.asList(issue("SPR-2"), issue("SPR-3")));
+		fields.setIssuelinks(Arrays.asList(link(issue("SPR-4"), null), link(null, issue("SPR-5")),
+				link(null, issue("SPR-2")), link(issue("SPR-6"), null)));
+		JiraIssue issue = issue("SPR-1");
+		issue.setFields(fields);
+
+		assertThat(index.isRestricted("SPR-2")).isTrue();
+		assertThat(index.isRestricted("SPR-1")).isFalse();
+		assertThat(index.getVisibleSubtasks(issue)).extracting(JiraIssue::getKey).containsExactly("SPR-3");
+		List<IssueLink> links = index.getVisibleLinks(issue);
+		assertThat(links).hasSize(2);
+		assertThat(links.get(0).getInwardIssue().getKey()).isEqualTo("SPR-5");
+		assertThat(links.get(1).getOutwardIssue().getKey()).isEqualTo("SPR-6");
+	}
+
+	@Test
+	public void addBackports() {
+		Map<String, Milestone> milestones = new LinkedHashMap<>();
+		milestones.put("5.0.1", new Milestone().setTitle("5.0.1"));
+		milestones.put("4.3.9", new Milestone().setTitle("4.3.9"));
+		IssueIndex index = new IssueIndex(Collections.emptyList(), milestones);
+
+		JiraIssue issue = issue("SPR-1");
+		Fields fields = new Fields();
+		fields.setSummary("Summary");
+		fields.setDescription("Description");
+		fields.setCreated(new DateTime(2018, 1, 1, 0, 0));
+		fields.setUpdated(new DateTime(2018, 2, 1, 0, 0));
+		issue.setFields(fields);
+		issue.setBackportVersions(Arrays.asList(
+				new JiraFixVersion("5.0.1"), new JiraFixVersion("4.3.10"), new JiraFixVersion("4.3.9")));
+		index.addBackports(issue);
+		index.addBackports(issue("SPR-2"));
+
+		assertThat(index.getBackports()).containsOnlyKeys(milestones.get("5.0.1"), milestones.get("4.3.9"));
+		JiraIssue reference = index.getBackports().getFirst(milestones.get("5.0.1"));
+		assertThat(index.getBackports().get(milestones.get("4.3.9"))).containsExactly(reference);
+		assertThat(reference.getKey()).isEqualTo("SPR-1");
+		assertThat(reference.getFields().getSummary()).isEqualTo("Summary");
+		assertThat(reference.getFields().getUpdated()).isEqualTo(fields.getUpdated());
+		assertThat(reference.getFields().getDescription()).isNull();
+	}
+
+
+	private static JiraIssue issue(String key) {
+		JiraIssue issue = new JiraIssue();
+		issue.setKey(key);
+		return issue;
+	}
+
+	private static IssueLink link(JiraIssue outwardIssue, JiraIssue inwardIssue) {
+		IssueLink link = new IssueLink();
+		link.setOutwardIssue(outwardIssue);
+		link.setInwardIssue(inwardIssue);
+		return link;
+	}
+
+}
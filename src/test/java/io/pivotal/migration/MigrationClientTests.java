@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.pivotal.github.GitHubSimulator;
+import io.pivotal.github.GitHubTokenPool;
+import io.pivotal.github.GithubConfig;
+import io.pivotal.github.GithubIssue;
+import io.pivotal.github.ImportGithubIssue;
+import io.pivotal.github.ReactiveGitHubClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MigrationClient}, against a {@link GitHubSimulator}.
+ */
+public class MigrationClientTests {
+
+	private static final String SLUG = "spring-projects/spring-framework";
+
+	private final GitHubSimulator simulator = new GitHubSimulator();
+
+	private final StringWriter mappingsWriter = new StringWriter();
+
+	private final StringWriter failuresWriter = new StringWriter();
+
+	private final MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter);
+
+	private ReactiveGitHubClient github;
+
+	private MigrationClient client;
+
+
+	@Before
+	public void setUp() {
+		this.simulator.start(0);
+		this.github = new ReactiveGitHubClient(this.simulator.getApiUrl(), SLUG, new GitHubTokenPool("token"));
+		GithubConfig config = new GithubConfig();
+		config.setApiUrl(this.simulator.getApiUrl());
+		config.setRepositorySlug(SLUG);
+		config.setAccessToken("token");
+		this.client = new MigrationClient(config, null, null, null, null);
+		this.client.setImportStatusMaxWait(1);
+	}
+
+	@After
+	public void tearDown() {
+		this.simulator.close();
+	}
+
+
+	@Test
+	public void resumeCompletedAndFailedImports() {
+		Map<String, String> importUrls = new LinkedHashMap<>();
+		importUrls.put("SPR-1", submitImport("SPR-1"));
+		importUrls.put("SPR-2", submitImport(""));
+
+		this.client.resumeImports(importUrls, this.context);
+
+		assertThat(this.context.getGitHubIssueId("SPR-1")).isEqualTo(1);
+		assertThat(this.context.getGitHubIssueId("SPR-2")).isNull();
+		assertThat(this.context.getFailedImportCount()).isEqualTo(0);
+		assertThat(this.mappingsWriter.toString()).isEqualTo("SPR-1:1\n");
+		assertThat(this.failuresWriter.toString()).startsWith("Previously submitted import of SPR-2 failed");
+	}
+
+	@Test
+	public void resumeStillPendingImport() {
+		Map<String, String> importUrls = new LinkedHashMap<>();
+		importUrls.put("SPR-1", submitImport("SPR-1"));
+		this.simulator.setImportLatency(Duration.ofHours(1));
+		importUrls.put("SPR-2", submitImport("SPR-2"));
+
+		assertThatThrownBy(() -> this.client.resumeImports(importUrls, this.context))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("[SPR-2]");
+
+		assertThat(this.context.getGitHubIssueId("SPR-1")).isEqualTo(1);
+		assertThat(this.context.getGitHubIssueId("SPR-2")).isNull();
+		assertThat(this.simulator.getIssues(SLUG)).hasSize(1);
+	}
+
+
+	private String submitImport(String title) {
+		GithubIssue issue = new GithubIssue();
+		issue.setTitle(title);
+		issue.setBody("Body");
+		ImportGithubIssue importIssue = new ImportGithubIssue();
+		importIssue.setIssue(issue);
+		return (String) this.github.importIssue(importIssue, Map.class).block().getBody().get("url");
+	}
+
+}
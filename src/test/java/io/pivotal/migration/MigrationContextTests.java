@@ -15,12 +15,26 @@
  */
 package io.pivotal.migration;
 
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
 
 import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.GroupCommitWriter;
+import io.pivotal.util.IssueMappingIndex;
 import org.eclipse.egit.github.core.Milestone;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -29,9 +43,13 @@ import static org.assertj.core.api.Assertions.*;
  */
 public class MigrationContextTests {
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	private final Writer mappingsWriter = new StringWriter();
 	private final Writer failuresWriter = new StringWriter();
-	private final MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter);
+	private final Writer journalWriter = new StringWriter();
+	private final MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, journalWriter);
 
 
 	@Test
@@ -72,6 +90,67 @@ public class MigrationContextTests {
 		assertThat(context.toString()).isEqualTo("0 imported issues, 1 failed imports, 0 backported issue holders");
 	}
 
+	@Test
+	public void jiraIssueUnresolvedImport() {
+		MigrationClient.ImportGithubIssueResponse importResponse = new MigrationClient.ImportGithubIssueResponse();
+		importResponse.setUrl("https://api.github.com/repos/a/b/import/issues/1");
+		JiraIssue jiraIssue = new JiraIssue();
+		jiraIssue.setKey("SPR-1234");
+		context.addImportResult(new MigrationClient.ImportedIssue(jiraIssue, null, importResponse));
+		assertThat(mappingsWriter.toString()).isEmpty();
+		assertThat(context.getFailedImportCount()).isEqualTo(0);
+		assertThat(context.getUnresolvedImportCount()).isEqualTo(1);
+		assertThat(failuresWriter.toString())
+				.isEqualTo("=> SPR-1234 [still pending: https://api.github.com/repos/a/b/import/issues/1]\n");
+	}
+
+	@Test
+	public void submittedImport() {
+		context.addSubmittedImport("SPR-1234", "https://api.github.com/repos/a/b/import/issues/1");
+		assertThat(journalWriter.toString()).isEqualTo("SPR-1234 https://api.github.com/repos/a/b/import/issues/1\n");
+	}
+
+	@Test
+	public void unresolvedImports() throws IOException {
+		context.setPreviouslyImportedIssueMappings(Collections.singletonMap("SPR-1", 1));
+		String journal = "SPR-1 https://api.github.com/repos/a/b/import/issues/1\n" +
+				"SPR-2 https://api.github.com/repos/a/b/import/issues/2\n" +
+				"SPR-3 https://api.github.com/repos/a/b/import/issues/3\n" +
+				"SPR-4 https://api.git";
+
+		assertThat(context.getUnresolvedImports(new StringReader(journal)))
+				.containsOnlyKeys("SPR-2", "SPR-3")
+				.containsEntry("SPR-2", "https://api.github.com/repos/a/b/import/issues/2");
+	}
+
+	@Test
+	public void mappingTornWithinNumber() throws IOException {
+		File journalFile = folder.newFile("journal.txt");
+		write(journalFile, "SPR-1 https://api.github.com/repos/a/b/import/issues/1\n" +
+				"SPR-1234 https://api.github.com/repos/a/b/import/issues/2\n");
+		File mappingsFile = folder.newFile("mappings.properties");
+		write(mappingsFile, "SPR-1:1\nSPR-1234=56");
+
+		// Opened as by the migration: "SPR-1234=5678" torn, but looks valid
+		Set<String> submittedImportKeys = MigrationContext.readSubmittedImportKeys(journalFile);
+		new GroupCommitWriter(mappingsFile, 10, Duration.ofSeconds(1),
+				IssueMappingIndex.lastLineCheck(submittedImportKeys)).close();
+		assertThat(new String(Files.readAllBytes(mappingsFile.toPath()), StandardCharsets.UTF_8)).isEqualTo("SPR-1:1\n");
+
+		context.setPreviouslyImportedIssueMappings(IssueMappingIndex.load(mappingsFile));
+		assertThat(context.getGitHubIssueId("SPR-1234")).isNull();
+		try (Reader journalReader = new FileReader(journalFile)) {
+			assertThat(context.getUnresolvedImports(journalReader))
+					.containsOnlyKeys("SPR-1234")
+					.containsEntry("SPR-1234", "https://api.github.com/repos/a/b/import/issues/2");
+		}
+	}
+
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
 	private static MigrationClient.ImportedIssue jiraIssueImport(String jiraKey, Integer ghIssueId, String failure) {
 		JiraIssue jiraIssue = new JiraIssue();
 		jiraIssue.setKey(jiraKey);
@@ -16,9 +16,8 @@
 package io.pivotal.post;
 
 import java.io.StringWriter;
-import java.util.HashMap;
-import java.util.Map;
 
+import io.pivotal.util.IssueMappingIndex;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -29,7 +28,7 @@ import static org.assertj.core.api.Assertions.*;
  */
 public class JiraLinkConverterTests {
 
-	private final Map<String, Integer> issueMappings = new HashMap<>();
+	private final IssueMappingIndex issueMappings = new IssueMappingIndex();
 
 	private JiraLinkConverter converter;
 
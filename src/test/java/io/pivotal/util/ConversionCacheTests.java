@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ConversionCache}.
+ */
+public class ConversionCacheTests {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger conversionCount = new AtomicInteger();
+
+	private final Function<String, String> converter = text -> {
+		this.conversionCount.incrementAndGet();
+		return text.toUpperCase() + "\né";
+	};
+
+
+	@Test
+	public void convertOnce() throws IOException {
+		try (ConversionCache cache = new ConversionCache(10)) {
+			assertThat(cache.get("config", "a", this.converter)).isEqualTo("A\né");
+			assertThat(cache.get("config", "a", this.converter)).isEqualTo("A\né");
+			assertThat(cache.get("other-config", "a", this.converter)).isEqualTo("A\né");
+
+			assertThat(this.conversionCount.get()).isEqualTo(2);
+			assertThat(cache.getHitCount()).isEqualTo(1);
+			assertThat(cache.getMissCount()).isEqualTo(2);
+			assertThat(cache.getHitRate()).isCloseTo(0.33, within(0.01));
+		}
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException {
+		try (ConversionCache cache = new ConversionCache(2)) {
+			cache.get("config", "a", this.converter);
+			cache.get("config", "b", this.converter);
+			cache.get("config", "a", this.converter);
+			cache.get("config", "c", this.converter);
+			cache.get("config", "a", this.converter);
+			cache.get("config", "b", this.converter);
+
+			assertThat(cache.getEvictionCount()).isEqualTo(2);
+			assertThat(this.conversionCount.get()).isEqualTo(4);
+		}
+	}
+
+	@Test
+	public void diskTier() throws IOException {
+		File file = new File(this.folder.getRoot(), "cache.txt");
+		try (ConversionCache cache = new ConversionCache(1, file)) {
+			cache.get("config", "a", this.converter);
+			cache.get("config", "b", this.converter);
+			assertThat(cache.get("config", "a", this.converter)).isEqualTo("A\né");
+			assertThat(cache.getDiskHitCount()).isEqualTo(1);
+		}
+
+		// Torn last line from an interrupted run
+		Files.write(file.toPath(), "0123".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		try (ConversionCache cache = new ConversionCache(1, file)) {
+			assertThat(cache.get("config", "a", this.converter)).isEqualTo("A\né");
+			assertThat(cache.get("config", "b", this.converter)).isEqualTo("B\né");
+			assertThat(cache.get("config", "c", this.converter)).isEqualTo("C\né");
+			assertThat(cache.getDiskHitCount()).isEqualTo(2);
+			assertThat(this.conversionCount.get()).isEqualTo(3);
+		}
+		assertThat(Files.readAllLines(file.toPath())).hasSize(3);
+	}
+
+	@Test
+	public void hashClasses() {
+		assertThat(ConversionCache.hashClasses(MarkdownEngine.class))
+				.isEqualTo(ConversionCache.hashClasses(MarkdownEngine.class))
+				.isNotEqualTo(ConversionCache.hashClasses(JiraWikiLexer.class))
+				.hasSize(64);
+	}
+
+}
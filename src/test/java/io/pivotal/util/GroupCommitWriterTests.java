@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link GroupCommitWriter}.
+ */
+public class GroupCommitWriterTests {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void commitAfterMaxLines() throws IOException {
+		File file = folder.newFile();
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 2, Duration.ofHours(1))) {
+			writer.write("SPR-1:1\n");
+			writer.commitIfDue();
+			assertThat(read(file)).isEmpty();
+
+			writer.write("SPR-2:2\n");
+			writer.commitIfDue();
+			assertThat(read(file)).isEqualTo("SPR-1:1\nSPR-2:2\n");
+		}
+	}
+
+	@Test
+	public void flush() throws IOException {
+		File file = folder.newFile();
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1))) {
+			writer.write("SPR-1:1\n");
+			writer.flush();
+			assertThat(read(file)).isEqualTo("SPR-1:1\n");
+		}
+	}
+
+	@Test
+	public void sync() throws IOException {
+		File file = folder.newFile();
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1))) {
+			writer.write("SPR-1:1\n");
+			writer.sync();
+			assertThat(read(file)).isEqualTo("SPR-1:1\n");
+		}
+	}
+
+	@Test
+	public void commitOnClose() throws IOException {
+		File file = folder.newFile();
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1))) {
+			writer.write("SPR-1:1\n");
+		}
+		assertThat(read(file)).isEqualTo("SPR-1:1\n");
+	}
+
+	@Test
+	public void tornLastLine() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), "SPR-1:1\nSPR-2:".getBytes(StandardCharsets.UTF_8));
+		assertThat(GroupCommitWriter.readCompleteLines(file, IssueMappingIndex::isValidLine)).isEqualTo("SPR-1:1\n");
+
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1), IssueMappingIndex::isValidLine)) {
+			assertThat(read(file)).isEqualTo("SPR-1:1\n");
+			writer.write("SPR-2:12\n");
+		}
+		assertThat(read(file)).isEqualTo("SPR-1:1\nSPR-2:12\n");
+	}
+
+	@Test
+	public void validUnterminatedLastLine() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), "SPR-1:1\nSPR-2:2".getBytes(StandardCharsets.UTF_8));
+		assertThat(GroupCommitWriter.readCompleteLines(file, IssueMappingIndex::isValidLine))
+				.isEqualTo("SPR-1:1\nSPR-2:2\n");
+
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1), IssueMappingIndex::isValidLine)) {
+			assertThat(read(file)).isEqualTo("SPR-1:1\nSPR-2:2\n");
+			writer.write("SPR-3:3\n");
+		}
+		assertThat(read(file)).isEqualTo("SPR-1:1\nSPR-2:2\nSPR-3:3\n");
+	}
+
+	@Test
+	public void unterminatedLastLineKeptByDefault() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), "No newline".getBytes(StandardCharsets.UTF_8));
+		try (GroupCommitWriter writer = new GroupCommitWriter(file, 100, Duration.ofHours(1))) {
+			writer.write("Next line\n");
+		}
+		assertThat(read(file)).isEqualTo("No newline\nNext line\n");
+	}
+
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link IssueMappingIndex}.
+ */
+public class IssueMappingIndexTests {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void mapBothWays() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		index.put("SPR-1234", 1300);
+		index.put("SEC-1234", 7);
+
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.getGitHubIssueNumber("SPR-1234")).isEqualTo(1300);
+		assertThat(index.getGitHubIssueNumber("SEC-1234")).isEqualTo(7);
+		assertThat(index.getGitHubIssueNumber("SPR-1235")).isEqualTo(IssueMappingIndex.NOT_MAPPED);
+		assertThat(index.getGitHubIssueNumber("INT-1234")).isEqualTo(IssueMappingIndex.NOT_MAPPED);
+		assertThat(index.getJiraKey("SPR", 1300)).isEqualTo("SPR-1234");
+		assertThat(index.getJiraKey("SPR", 7)).isNull();
+	}
+
+	@Test
+	public void replaceMapping() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		index.put("SPR-1", 10);
+		index.put("SPR-1", 11);
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.getGitHubIssueNumber("SPR-1")).isEqualTo(11);
+		assertThat(index.getJiraKey("SPR", 10)).isNull();
+		assertThat(index.getJiraKey("SPR", 11)).isEqualTo("SPR-1");
+	}
+
+	@Test
+	public void invalidKeys() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		assertThat(index.put("SPR", 1)).isFalse();
+		assertThat(index.put("SPR-", 1)).isFalse();
+		assertThat(index.put("SPR-x1", 1)).isFalse();
+		assertThat(index.getGitHubIssueNumber("SPR")).isEqualTo(IssueMappingIndex.NOT_MAPPED);
+		assertThat(index.isEmpty()).isTrue();
+	}
+
+	@Test
+	public void loadFromTextAndIndex() throws IOException {
+		File file = folder.newFile("github-issue-mappings.properties");
+		write(file, "SPR-2:20\nSPR-1:10\nSEC-5 = 3\nSPR-3:");
+
+		IssueMappingIndex index = IssueMappingIndex.load(file);
+		assertThat(toMap(index)).containsExactly(entry("SPR-1", 10), entry("SPR-2", 20), entry("SEC-5", 3));
+		assertThat(new File(file.getPath() + ".idx")).exists();
+
+		// From the binary copy
+		assertThat(toMap(IssueMappingIndex.load(file))).isEqualTo(toMap(index));
+
+		// Text file changed
+		Files.write(file.toPath(), "30\nSPR-4:40".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		index = IssueMappingIndex.load(file);
+		assertThat(index.getGitHubIssueNumber("SPR-3")).isEqualTo(30);
+		assertThat(index.getGitHubIssueNumber("SPR-4")).isEqualTo(40);
+	}
+
+	@Test
+	public void validLines() {
+		assertThat(IssueMappingIndex.isValidLine("SPR-1:10")).isTrue();
+		assertThat(IssueMappingIndex.isValidLine("SPR-1 = 10")).isTrue();
+		assertThat(IssueMappingIndex.isValidLine("# Comment")).isTrue();
+		assertThat(IssueMappingIndex.isValidLine("SPR-1:")).isFalse();
+		assertThat(IssueMappingIndex.isValidLine("SPR-")).isFalse();
+		assertThat(IssueMappingIndex.isValidLine("")).isFalse();
+	}
+
+	@Test
+	public void lastLineCheck() {
+		Predicate<String> check = IssueMappingIndex.lastLineCheck(Collections.singleton("SPR-1234"));
+		// Possibly torn within the number, to be checked again from the journal
+		assertThat(check.test("SPR-1234=56")).isFalse();
+		assertThat(check.test("SPR-1234:5678")).isFalse();
+		// Not written by the migration, e.g. added by hand
+		assertThat(check.test("SPR-7:70")).isTrue();
+		assertThat(check.test("# Comment")).isTrue();
+		assertThat(check.test("SPR-7:")).isFalse();
+	}
+
+	@Test
+	public void loadWithoutFile() throws IOException {
+		assertThat(IssueMappingIndex.load(new File(folder.getRoot(), "none.properties")).isEmpty()).isTrue();
+	}
+
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, Integer> toMap(IssueMappingIndex index) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		index.forEach(map::put);
+		return map;
+	}
+
+}
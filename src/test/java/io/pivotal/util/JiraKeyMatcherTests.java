@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link JiraKeyMatcher}.
+ */
+public class JiraKeyMatcherTests {
+
+	private final JiraKeyMatcher matcher = new JiraKeyMatcher(Arrays.asList("SPR", "SPRNET", "SE", "SES", "SEC"));
+
+
+	@Test
+	public void findAll() {
+		assertThat(findAll("SPR-1, SPRNET-22 and SES-333 but not SPRN-1, SPR- or SPR-x"))
+				.isEqualTo("SPR-1@0 SPRNET-22@7 SES-333@21");
+	}
+
+	@Test
+	public void findWithoutBoundary() {
+		assertThat(findAll("XSPR-1 SECSE-2")).isEqualTo("SPR-1@1 SE-2@10");
+	}
+
+	@Test
+	public void atMostFiveDigits() {
+		assertThat(findAll("SPR-1234567")).isEqualTo("SPR-12345@0");
+		assertThat(matcher.matches("SPR-12345")).isTrue();
+		assertThat(matcher.matches("SPR-123456")).isFalse();
+	}
+
+	@Test
+	public void matchAt() {
+		assertThat(matcher.matchAt("see SEC-5.", 4).getEnd()).isEqualTo(9);
+		assertThat(matcher.matchAt("see SEC-5.", 3)).isNull();
+	}
+
+	@Test
+	public void matches() {
+		assertThat(matcher.matches("SE-1")).isTrue();
+		assertThat(matcher.matches("SEC-1")).isTrue();
+		assertThat(matcher.matches(" SEC-1")).isFalse();
+		assertThat(matcher.matches("SEC-1 ")).isFalse();
+		assertThat(matcher.matches("INT-1")).isFalse();
+	}
+
+	@Test
+	public void invalidProjectKey() {
+		assertThatThrownBy(() -> new JiraKeyMatcher(Collections.singletonList("SPR-1")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new JiraKeyMatcher(Collections.emptyList()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+
+	private String findAll(String text) {
+		return this.matcher.findAll(text).stream()
+				.map(match -> match.getKey() + "@" + match.getStart())
+				.collect(Collectors.joining(" "));
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link JiraWikiLexer}.
+ */
+public class JiraWikiLexerTests {
+
+	private final JiraWikiLexer lexer = new JiraWikiLexer(key -> "[" + key + "](https://jira.spring.io/" + key + ")");
+
+
+	@Test
+	public void listsAndTasks() {
+		assertThat(translate("## (/) done\n #** item\n### three\n-- (x) todo"))
+				.isEqualTo("   1. [x] done\n      * item\n      1. three\n-- [ ] todo");
+	}
+
+	@Test
+	public void headings() {
+		assertThat(translate("h2. Title\nh7. Not a heading")).isEqualTo("## Title\nh7. Not a heading");
+	}
+
+	@Test
+	public void tableHeadings() {
+		assertThat(translate("  || a || {{b}} ||  \n| 1 | 2 |"))
+				.isEqualTo("|a|`b`|\n|:---|:---|\n| 1 | 2 |");
+	}
+
+	@Test
+	public void tableWithoutHeadings() {
+		assertThat(translate("||||")).isEqualTo("||||");
+	}
+
+	@Test
+	public void emDash() {
+		assertThat(translate("   ---\n    ---")).isEqualTo("&mdash;\n    ---");
+	}
+
+	@Test
+	public void codeBlock() {
+		assertThat(translate("{code:java}\nfoo();\n{code}")).isEqualTo("```java \nfoo();\n``` ");
+	}
+
+	@Test
+	public void codeBlockWithinLine() {
+		assertThat(translate("See {code:title=Foo.java}foo(){code} here"))
+				.isEqualTo("See ```\nfoo()\n``` here");
+	}
+
+	@Test
+	public void inlineCodeWithNestedConstructs() {
+		assertThat(translate("{{[~bob]}} and {{a {color:red}b{color} c}}"))
+				.isEqualTo("`[bob](https://jira.spring.io/bob)` and `a b c`");
+	}
+
+	@Test
+	public void quoteBlock() {
+		assertThat(translate("{quote}one\ntwo{quote}\nthree")).isEqualTo("\n > one\n> two\nthree");
+	}
+
+	@Test
+	public void quoteBlockWithNothingToQuote() {
+		assertThat(translate("x {quote}")).isEqualTo("x ");
+	}
+
+	@Test
+	public void lineQuote() {
+		assertThat(translate(" bq. quoted\na bq. b")).isEqualTo(">  quoted\na bq. b");
+	}
+
+	@Test
+	public void links() {
+		assertThat(translate("[~bob] see [{{Foo}} | http://example.org/Foo]"))
+				.isEqualTo("[bob](https://jira.spring.io/bob) see [`Foo`](http://example.org/Foo)");
+	}
+
+	@Test
+	public void lineTerminators() {
+		assertThat(translate("# a\r\n# b\rh1. c")).isEqualTo("1. a\r\n1. b\r# c");
+	}
+
+
+	private String translate(String text) {
+		return this.lexer.translate(text);
+	}
+
+}
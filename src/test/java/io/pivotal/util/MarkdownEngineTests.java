@@ -15,8 +15,15 @@
  */
 package io.pivotal.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraUser;
@@ -39,6 +46,7 @@ public class MarkdownEngineTests {
 		JiraConfig jiraConfig = new JiraConfig();
 		jiraConfig.setBaseUrl("https://jira.spring.io");
 		jiraConfig.setProjectId("SPR");
+		jiraConfig.setLinkedProjects(Arrays.asList("SPR", "DATAGRAPH"));
 		engine.setJiraConfig(jiraConfig);
 	}
 
@@ -543,6 +551,16 @@ public class MarkdownEngineTests {
 				"import java.util.*;\n");
 	}
 
+	@Test
+	public void mayHaveEmphasisToEscape() {
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("import a.\\*;\nimport b.*;\nimport c.*;")).isTrue();
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("import a.\\*;\nimport b.\\*;\nimport c.*;")).isFalse();
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("*a\n\nb*")).isFalse();
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("* one\n* two")).isFalse();
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("_a\nb_")).isTrue();
+		assertThat(MarkdownEngine.mayHaveEmphasisToEscape("text/javascript, */*; q=0.01")).isTrue();
+	}
+
 	@Test
 	public void emphasisWithUserMention() {
 		String body =
@@ -686,4 +704,83 @@ public class MarkdownEngineTests {
 				"\\<version>2.11.1\\</version>\n" +
 				"\\</dependency>\n");
 	}
+
+	@Test
+	public void rewriteChangedNodesOnly() {
+		engine.convert("Plain text with {{code}}\nand a [link|http://example.org]");
+		assertThat(engine.getRewrittenNodeCount()).isEqualTo(0);
+
+		assertThat(engine.convert("See SPR-1, _as is_ and *bold*"))
+				.isEqualTo("See [SPR-1](https://jira.spring.io/browse/SPR-1), _as is_ and **bold**\n");
+		assertThat(engine.getRewrittenNodeCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void convertOversized() {
+		engine.setOversizedThreshold(100);
+		engine.setOversizedMaxLength(1000);
+		String body = "See SPR-1:\n" +
+				"{noformat}\n" +
+				"java.lang.IllegalStateException: *failed*\n" +
+				"\tat org.example.Foo.bar(Foo.java:12)\n" +
+				"{noformat}\n";
+		assertThat(engine.convert(body)).isEqualTo(
+				"See [SPR-1](https://jira.spring.io/browse/SPR-1):\n\n" +
+				"```\n" +
+				"java.lang.IllegalStateException: *failed*\n" +
+				"\tat org.example.Foo.bar(Foo.java:12)\n" +
+				"```\n");
+	}
+
+	@Test
+	public void convertWithCache() throws Exception {
+		String body = "h1. Some Text\n[~bob]";
+		String expected = engine.convert(body);
+		try (ConversionCache cache = new ConversionCache(10)) {
+			engine.setConversionCache(cache);
+			assertThat(engine.convert(body)).isEqualTo(expected);
+			assertThat(engine.convert(body)).isEqualTo(expected);
+			assertThat(cache.getHitCount()).isEqualTo(1);
+
+			// User lookup changes the result
+			engine.configureUserLookup(Collections.singletonMap("bob", user("bob", "Bob")));
+			assertThat(engine.convert(body)).isNotEqualTo(expected).contains("[Bob]");
+			assertThat(cache.getMissCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void findUserMentions() {
+		assertThat(MarkdownEngine.findUserMentions("No mentions [~] or [~bob")).isEmpty();
+		assertThat(MarkdownEngine.findUserMentions("[~bob] and [~alice], cc [~bob]")).containsExactly("bob", "alice");
+	}
+
+	@Test
+	public void convertConcurrently() throws Exception {
+		List<String> bodies = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			bodies.add("h2. Issue " + i + "\n*SPR-" + i + "* with _{{@Bean}}_ and [link|http://example.org/" + i + "]\n" +
+					"# one\n# two\n{code}x" + i + "{code}\n@user" + i);
+		}
+		List<String> expected = new ArrayList<>();
+		for (String body : bodies) {
+			expected.add(engine.convert(body));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int round = 0; round < 10; round++) {
+				for (String body : bodies) {
+					results.add(executor.submit(() -> engine.convert(body)));
+				}
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get()).isEqualTo(expected.get(i % bodies.size()));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OversizedTextConverter}.
+ */
+public class OversizedTextConverterTests {
+
+	private final OversizedTextConverter converter = new OversizedTextConverter(text -> "<" + text.trim() + ">\n");
+
+
+	@Test
+	public void stackTraceWithProse() {
+		String text = "It fails with:\n" +
+				"{noformat}\n" +
+				"java.lang.IllegalStateException: failed\n" +
+				"\tat org.example.Foo.bar(Foo.java:12)\n" +
+				"\t... 35 more\n" +
+				"{noformat}\n" +
+				"Any idea?";
+		assertThat(converter.convert(text, 1000)).isEqualTo("<It fails with:>\n\n" +
+				"```\n" +
+				"java.lang.IllegalStateException: failed\n" +
+				"\tat org.example.Foo.bar(Foo.java:12)\n" +
+				"\t... 35 more\n" +
+				"```\n\n" +
+				"<Any idea?>\n");
+	}
+
+	@Test
+	public void logLines() {
+		String text = "The log:\r\n" +
+				"2020-01-31 12:00:00,000 DEBUG [main] Starting\r\n" +
+				"at the moment this is not used\r\n" +
+				"[INFO] Done\r\n" +
+				"That's all";
+		assertThat(converter.convert(text, 1000)).isEqualTo("<The log:>\n\n" +
+				"```\n" +
+				"2020-01-31 12:00:00,000 DEBUG [main] Starting\n" +
+				"at the moment this is not used\n" +
+				"[INFO] Done\n" +
+				"```\n\n" +
+				"<That's all>\n");
+	}
+
+	@Test
+	public void noMachineOutput() {
+		assertThat(converter.convert("Just a lot of text", 1000)).isEqualTo("```\nJust a lot of text\n```\n");
+	}
+
+	@Test
+	public void longProseBecomesPartOfCodeBlock() {
+		String prose = "Some text that is longer than a quarter of the maximum length, " +
+				"which is too long to convert as prose, so it goes into the code block\n";
+		String text = prose + "\tat org.example.Foo.bar(Foo.java:12)\n" + "Short";
+		assertThat(converter.convert(text, 400)).isEqualTo("```\n" +
+				prose +
+				"\tat org.example.Foo.bar(Foo.java:12)\n" +
+				"```\n\n" +
+				"<Short>\n");
+	}
+
+	@Test
+	public void truncated() {
+		StringBuilder sb = new StringBuilder("java.lang.IllegalStateException: failed\n");
+		for (int i = 0; i < 10000; i++) {
+			sb.append("\tat org.example.Foo.bar(Foo.java:").append(i).append(")\n");
+		}
+		String result = converter.convert(sb.toString(), 1000);
+		assertThat(result.length()).isLessThanOrEqualTo(1000);
+		assertThat(result).startsWith("```\njava.lang.IllegalStateException: failed\n\tat org.example.Foo.bar(Foo.java:0)\n");
+		assertThat(result).matches("(?s).*\n```\n\n_\\d+ more characters omitted, see Jira for the full text._\n");
+	}
+
+	@Test
+	public void codeFenceLongerThanBackticks() {
+		String text = "\tat org.example.Foo.bar(Foo.java:12)\n````\n\tat org.example.Foo.bar(Foo.java:13)";
+		assertThat(converter.convert(text, 1000)).startsWith("`````\n").endsWith("\n`````\n");
+	}
+
+}
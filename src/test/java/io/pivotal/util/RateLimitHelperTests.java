@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RateLimitHelper}.
+ */
+public class RateLimitHelperTests {
+
+	private static final long NOW = System.currentTimeMillis();
+
+
+	@Test
+	public void readsAreNotSpaced() {
+		RateLimitHelper helper = new RateLimitHelper(Duration.ofMillis(1000), 2);
+		for (int i = 0; i < 100; i++) {
+			assertThat(helper.reserve(false, NOW)).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void writesAreSpacedAfterBurst() {
+		RateLimitHelper helper = new RateLimitHelper(Duration.ofMillis(1000), 2);
+		assertThat(helper.reserve(true, NOW)).isEqualTo(0);
+		assertThat(helper.reserve(true, NOW)).isEqualTo(0);
+		assertThat(helper.reserve(true, NOW)).isEqualTo(1000);
+		assertThat(helper.reserve(true, NOW)).isEqualTo(2000);
+
+		// Refilled over time
+		assertThat(helper.reserve(true, NOW + 5000)).isEqualTo(0);
+	}
+
+	@Test
+	public void primaryBudgetUsedUp() {
+		RateLimitHelper helper = new RateLimitHelper(Duration.ofMillis(1000), 2);
+		long reset = (NOW / 1000) + 60;
+		assertThat(helper.updateLimits("1", String.valueOf(reset), null, NOW)).isFalse();
+
+		assertThat(helper.reserve(false, NOW)).isEqualTo(0);
+		assertThat(helper.reserve(false, NOW)).isEqualTo(reset * 1000 - NOW);
+	}
+
+	@Test
+	public void primaryBudgetFromOutOfOrderResponses() {
+		RateLimitHelper helper = new RateLimitHelper(Duration.ofMillis(1000), 2);
+		String reset = String.valueOf((NOW / 1000) + 60);
+		helper.updateLimits("0", reset, null, NOW);
+		helper.updateLimits("5", reset, null, NOW);
+
+		assertThat(helper.reserve(false, NOW)).isGreaterThan(0);
+	}
+
+	@Test
+	public void retryAfter() {
+		RateLimitHelper helper = new RateLimitHelper(Duration.ofMillis(1000), 2);
+		assertThat(helper.updateLimits(null, null, "30", NOW)).isTrue();
+
+		assertThat(helper.reserve(false, NOW)).isEqualTo(30000);
+		assertThat(helper.reserve(true, NOW + 10000)).isEqualTo(20000);
+	}
+
+}